@@ -0,0 +1,318 @@
+package benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import database.Database;
+import database.SearchIndex;
+import database.UnreadCounters;
+
+/*******
+ * <p> Title: BenchmarkDataset Class. </p>
+ *
+ * <p> Description: Seeds a freshly connected Database with a synthetic, reproducible data set
+ * of users, posts, replies, read state, tickets, feedback and grades.  Rows are written with
+ * JDBC batches on a pooled connection rather than through Database.createPost and friends, so
+ * seeding the large size takes seconds instead of minutes; the search index and the unread
+ * reply counters are then built in one pass each.</p>
+ *
+ */
+public class BenchmarkDataset {
+
+	/*******
+	 * <p> Title: Size Enum. </p>
+	 *
+	 * <p> Description: The data set sizes the benchmarks run at.  LARGE is roughly a busy
+	 * course at the end of a term.</p>
+	 */
+	public enum Size {
+		SMALL(50, 500, 4, 100, 200),
+		MEDIUM(200, 5_000, 8, 1_000, 2_000),
+		LARGE(1_000, 20_000, 10, 5_000, 10_000);
+
+		/** Number of student accounts (plus one staff account). */
+		public final int students;
+		/** Number of posts. */
+		public final int posts;
+		/** Average number of replies per post. */
+		public final int repliesPerPost;
+		/** Number of tickets. */
+		public final int tickets;
+		/** Number of feedback messages. */
+		public final int feedback;
+
+		Size(int students, int posts, int repliesPerPost, int tickets, int feedback) {
+			this.students = students;
+			this.posts = posts;
+			this.repliesPerPost = repliesPerPost;
+			this.tickets = tickets;
+			this.feedback = feedback;
+		}
+	}
+
+	/** The students whose read state is seeded, and who the read-side benchmarks query as. */
+	public static final int ACTIVE_STUDENTS = 20;
+
+	/** The staff account that sends feedback. */
+	public static final String STAFF = "staff0";
+
+	/** Words the synthetic titles and bodies are made of; also the search keywords. */
+	public static final String[] VOCABULARY = {
+			"java", "database", "index", "query", "thread", "homework", "exam", "grading",
+			"javafx", "button", "scene", "stage", "login", "password", "invitation", "role",
+			"ticket", "feedback", "reply", "post", "deadline", "lecture", "project", "team",
+			"design", "test", "junit", "bug", "error", "exception", "compile", "deploy" };
+
+	private static final int BATCH = 1_000;
+
+	/*******
+	 * <p> Method: String student(int i) </p>
+	 *
+	 * @param i the student number, from 0
+	 *
+	 * @return the user name of that student
+	 */
+	public static String student(int i) {
+		return "student" + i;
+	}
+
+	/*******
+	 * <p> Method: void seed(Database db, Size size, long randomSeed) </p>
+	 *
+	 * <p> Description: Fill an empty, connected database with a data set of the given size.</p>
+	 *
+	 * @param db the database, after connectToDatabase
+	 * @param size how much data to create
+	 * @param randomSeed seed for the contents, so every run sees the same data
+	 *
+	 * @throws SQLException if the data cannot be written
+	 */
+	public static void seed(Database db, Size size, long randomSeed) throws SQLException {
+		Random random = new Random(randomSeed);
+		long start = System.currentTimeMillis() - 90L * 24 * 3600 * 1000;	// a term ago
+		try (Connection connection = db.getConnectionPool().getConnection()) {
+			connection.setAutoCommit(false);
+			seedUsers(connection, size);
+			seedPosts(connection, size, random, start);
+			seedReplies(connection, size, random, start);
+			seedReadState(connection, size, random);
+			seedTickets(connection, size, random, start);
+			seedFeedback(connection, size, random, start);
+			seedScores(connection, size, random);
+			connection.commit();
+			SearchIndex.rebuildIfEmpty(connection);
+			connection.commit();
+			connection.setAutoCommit(true);
+			UnreadCounters.rebuild(connection);	// its own transaction
+		}
+	}
+
+	/*******
+	 * <p> Method: int lastReplyId(Database db) </p>
+	 *
+	 * @param db a seeded database
+	 *
+	 * @return the highest reply id, or 0 if there are no replies
+	 *
+	 * @throws SQLException if the replies cannot be read
+	 */
+	public static int lastReplyId(Database db) throws SQLException {
+		try (Connection connection = db.getConnectionPool().getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM Replies");
+			 ResultSet rs = pstmt.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/*******
+	 * <p> Method: int removeRepliesAfter(Database db, int lastReplyId) </p>
+	 *
+	 * <p> Description: Delete the replies added since the data set was seeded, with their
+	 * search index entries, and rebuild the unread reply counters, so every iteration of a
+	 * benchmark that adds replies starts from the same data.</p>
+	 *
+	 * @param db the seeded database
+	 * @param lastReplyId the highest reply id of the seeded data (see lastReplyId)
+	 *
+	 * @return the number of replies deleted
+	 *
+	 * @throws SQLException if the replies cannot be deleted
+	 */
+	public static int removeRepliesAfter(Database db, int lastReplyId) throws SQLException {
+		try (Connection connection = db.getConnectionPool().getConnection()) {
+			List<Integer> added = new ArrayList<>();
+			try (PreparedStatement pstmt = connection.prepareStatement("SELECT id FROM Replies WHERE id > ?")) {
+				pstmt.setInt(1, lastReplyId);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) added.add(rs.getInt(1));
+				}
+			}
+			if (added.isEmpty()) return 0;
+
+			connection.setAutoCommit(false);
+			for (Integer id : added) SearchIndex.removeDocument(connection, SearchIndex.REPLY, id);
+			try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM Replies WHERE id > ?")) {
+				pstmt.setInt(1, lastReplyId);
+				pstmt.executeUpdate();
+			}
+			connection.commit();
+			connection.setAutoCommit(true);
+			UnreadCounters.rebuild(connection);	// its own transaction
+			return added.size();
+		}
+	}
+
+	private static void seedUsers(Connection connection, Size size) throws SQLException {
+		String insert = "INSERT INTO userDB (userName, password, firstName, middleName, lastName, "
+				+ "preferredFirstName, emailAddress, adminRole, newRole1, newRole2) "
+				+ "VALUES (?, 'Password1!', ?, '', ?, '', ?, FALSE, ?, ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = -1; i < size.students; i++) {
+				String name = (i < 0) ? STAFF : student(i);
+				pstmt.setString(1, name);
+				pstmt.setString(2, "First" + i);
+				pstmt.setString(3, "Last" + i);
+				pstmt.setString(4, name + "@example.edu");
+				pstmt.setBoolean(5, i >= 0);		// role 1: student
+				pstmt.setBoolean(6, i < 0);		// role 2: staff
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private static void seedPosts(Connection connection, Size size, Random random, long start) throws SQLException {
+		String[] threads = { "General", "Announcements", "Help", "Off-topic" };
+		String insert = "INSERT INTO Posts (title, body, author, thread, created_at, deleted) VALUES (?, ?, ?, ?, ?, FALSE)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = 0; i < size.posts; i++) {
+				pstmt.setString(1, words(random, 3 + random.nextInt(6)));
+				pstmt.setString(2, words(random, 20 + random.nextInt(200)));
+				pstmt.setString(3, student(random.nextInt(size.students)));
+				pstmt.setString(4, threads[random.nextInt(threads.length)]);
+				pstmt.setTimestamp(5, new Timestamp(start + i * 60_000L));
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private static void seedReplies(Connection connection, Size size, Random random, long start) throws SQLException {
+		String insert = "INSERT INTO Replies (postId, content, author, created_at) VALUES (?, ?, ?, ?)";
+		int total = size.posts * size.repliesPerPost;
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = 0; i < total; i++) {
+				// Skewed towards recent posts, as real discussion is
+				int post = size.posts - (int) Math.min(size.posts - 1, Math.abs(random.nextGaussian()) * size.posts / 3);
+				pstmt.setInt(1, post);
+				pstmt.setString(2, words(random, 5 + random.nextInt(60)));
+				pstmt.setString(3, student(random.nextInt(size.students)));
+				pstmt.setTimestamp(4, new Timestamp(start + post * 60_000L + i));
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	// Each active student has read about half the posts and every reply on them
+	private static void seedReadState(Connection connection, Size size, Random random) throws SQLException {
+		String postRead = "INSERT INTO PostReadStatus (postId, userName, isRead) VALUES (?, ?, TRUE)";
+		String watermark = "INSERT INTO ReplyReadWatermarks (userName, postId, lastSeenReplyId) "
+				+ "SELECT ?, ?, COALESCE(MAX(id), 0) FROM Replies WHERE postId = ?";
+		try (PreparedStatement read = connection.prepareStatement(postRead);
+			 PreparedStatement mark = connection.prepareStatement(watermark)) {
+			int n = 0;
+			for (int s = 0; s < Math.min(ACTIVE_STUDENTS, size.students); s++) {
+				for (int post = 1; post <= size.posts; post++) {
+					if (random.nextBoolean()) continue;
+					read.setInt(1, post);
+					read.setString(2, student(s));
+					read.addBatch();
+					mark.setString(1, student(s));
+					mark.setInt(2, post);
+					mark.setInt(3, post);
+					mark.addBatch();
+					if (++n % BATCH == 0) {
+						read.executeBatch();
+						mark.executeBatch();
+					}
+				}
+			}
+			read.executeBatch();
+			mark.executeBatch();
+		}
+	}
+
+	private static void seedTickets(Connection connection, Size size, Random random, long start) throws SQLException {
+		String insert = "INSERT INTO Tickets (title, body, creatorUsername, status, created_at, deleted) "
+				+ "VALUES (?, ?, ?, ?, ?, FALSE)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = 0; i < size.tickets; i++) {
+				pstmt.setString(1, words(random, 4));
+				pstmt.setString(2, words(random, 30));
+				pstmt.setString(3, student(random.nextInt(size.students)));
+				pstmt.setString(4, random.nextInt(4) == 0 ? "OPEN" : "CLOSED");
+				pstmt.setTimestamp(5, new Timestamp(start + i * 300_000L));
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private static void seedFeedback(Connection connection, Size size, Random random, long start) throws SQLException {
+		String insert = "INSERT INTO FeedbackMessages (senderUsername, receiverUsername, subject, content, created_at, isRead) "
+				+ "VALUES (?, ?, ?, ?, ?, ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = 0; i < size.feedback; i++) {
+				pstmt.setString(1, STAFF);
+				pstmt.setString(2, student(random.nextInt(size.students)));
+				pstmt.setString(3, words(random, 4));
+				pstmt.setString(4, words(random, 40));
+				pstmt.setTimestamp(5, new Timestamp(start + i * 120_000L));
+				pstmt.setBoolean(6, random.nextBoolean());
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private static void seedScores(Connection connection, Size size, Random random) throws SQLException {
+		String insert = "INSERT INTO StudentScores (studentUserName, paramId, score) "
+				+ "SELECT ?, id, ROUND(RAND() * maxScore, 1) FROM GradingParameters";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (int i = 0; i < size.students; i++) {
+				pstmt.setString(1, student(i));
+				add(pstmt, i + 1);
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private static void add(PreparedStatement pstmt, int count) throws SQLException {
+		pstmt.addBatch();
+		if (count % BATCH == 0) pstmt.executeBatch();
+	}
+
+	/*******
+	 * <p> Method: String words(Random random, int count) </p>
+	 *
+	 * @param random the source of randomness
+	 * @param count how many words
+	 *
+	 * @return count words from VOCABULARY separated by spaces
+	 */
+	public static String words(Random random, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append(' ');
+			sb.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+		}
+		return sb.toString();
+	}
+}
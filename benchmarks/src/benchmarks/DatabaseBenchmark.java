@@ -0,0 +1,186 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import database.Database;
+import entityClasses.Feedback;
+import entityClasses.Post;
+import entityClasses.Reply;
+import entityClasses.StudentScore;
+import entityClasses.Ticket;
+
+/*******
+ * <p> Title: DatabaseBenchmark Class. </p>
+ *
+ * <p> Description: JMH benchmarks for the Database operations behind the busiest screens,
+ * run against a scratch H2 file seeded by BenchmarkDataset at each of its sizes.  Every
+ * benchmark is measured both as throughput and as sampled latency, which JMH reports as
+ * percentiles (p50, p90, p99, ...).  main() also turns on the GC profiler, which adds the
+ * allocation rate (gc.alloc.rate and gc.alloc.rate.norm, bytes per operation) to the report.</p>
+ *
+ * <p> These classes live outside src so the application does not depend on JMH.  See
+ * benchmarks/README.md for how to compile and run them.  Compare runs at the same size on the
+ * same machine; the absolute numbers mean little on their own.</p>
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark {
+
+	/*******
+	 * <p> Title: DatabaseState Class. </p>
+	 *
+	 * <p> Description: One seeded database per trial, shared by every benchmark thread.</p>
+	 */
+	@State(Scope.Benchmark)
+	public static class DatabaseState {
+
+		/** The data set size; override with -p size=SMALL,LARGE etc. */
+		@Param({ "SMALL", "MEDIUM", "LARGE" })
+		public BenchmarkDataset.Size size;
+
+		/** Seed for the data set contents. */
+		@Param({ "42" })
+		public long seed;
+
+		Database db;
+		Path directory;
+		int lastSeededReplyId;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			directory = Files.createTempDirectory("lms-bench");
+			db = new Database("jdbc:h2:" + directory.resolve("bench").toAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE");
+			db.connectToDatabase();
+			BenchmarkDataset.seed(db, size, seed);
+			lastSeededReplyId = BenchmarkDataset.lastReplyId(db);
+		}
+
+		// createReply adds rows; take them out so each iteration measures the seeded data set
+		@TearDown(Level.Iteration)
+		public void resetReplies() throws Exception {
+			BenchmarkDataset.removeRepliesAfter(db, lastSeededReplyId);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			System.out.println();
+			System.out.println(db.getConnectionPool().getStats());
+			db.closeConnection();
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+
+	/*******
+	 * <p> Title: UserState Class. </p>
+	 *
+	 * <p> Description: Per-thread choice of student, post and keyword, so threads do not all
+	 * hit the same rows.</p>
+	 */
+	@State(Scope.Thread)
+	public static class UserState {
+		SplittableRandom random = new SplittableRandom(7);
+		int students;
+		int posts;
+
+		@Setup(Level.Trial)
+		public void setUp(DatabaseState state) {
+			students = Math.min(BenchmarkDataset.ACTIVE_STUDENTS, state.size.students);
+			posts = state.size.posts;
+		}
+
+		// Picked inside the measured call; a Level.Invocation setup would cost more than this
+		String student() { return BenchmarkDataset.student(random.nextInt(students)); }
+		int postId() { return 1 + random.nextInt(posts); }
+		String keyword() { return BenchmarkDataset.VOCABULARY[random.nextInt(BenchmarkDataset.VOCABULARY.length)]; }
+	}
+
+	@Benchmark
+	public int createReply(DatabaseState state, UserState user) {
+		Reply r = new Reply();
+		r.setPostId(user.postId());
+		r.setContent("benchmark reply about the " + user.keyword());
+		r.setAuthorUsername(user.student());
+		return state.db.createReply(r);
+	}
+
+	@Benchmark
+	public List<Post> getPosts(DatabaseState state) {
+		return state.db.getPosts();
+	}
+
+	@Benchmark
+	public List<Post> searchPosts(DatabaseState state, UserState user) {
+		return state.db.searchPosts(user.keyword(), null);
+	}
+
+	@Benchmark
+	public int getUnreadReplyCountForUser(DatabaseState state, UserState user) {
+		return state.db.getUnreadReplyCountForUser(user.student());
+	}
+
+	@Benchmark
+	public List<Ticket> getTickets(DatabaseState state) {
+		return state.db.getTickets(null, "OPEN", null);
+	}
+
+	@Benchmark
+	public List<Feedback> getAllFeedback(DatabaseState state, UserState user) {
+		return state.db.getAllFeedback(user.student(), false);
+	}
+
+	@Benchmark
+	public List<StudentScore> getStudentScores(DatabaseState state, UserState user) {
+		return state.db.getStudentScores(user.student());
+	}
+
+	/*******
+	 * <p> Method: void main(String[] args) </p>
+	 *
+	 * <p> Description: Run every benchmark at every size with the GC profiler attached.  Pass
+	 * a regular expression to run only the matching benchmarks, e.g. "searchPosts".</p>
+	 *
+	 * @param args an optional benchmark name pattern
+	 *
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String pattern = (args.length > 0) ? args[0] : "";
+		Options options = new OptionsBuilder()
+				.include(DatabaseBenchmark.class.getSimpleName() + ".*" + pattern)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,112 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import database.CredentialVerifier;
+import database.Pbkdf2PasswordHasher;
+
+/*******
+ * <p> Title: PasswordHashBenchmark Class. </p>
+ *
+ * <p> Description: Measures what one login costs at several PBKDF2 iteration counts, to pick
+ * -Dlms.passwordIterations for the machine the application runs on.  verify is a single
+ * password check on the calling thread.  burstLogin has eight threads log in at once through a
+ * CredentialVerifier, so the latency it reports includes the time spent waiting for one of the
+ * verifier's workers, as it would during a rush of logins.  It checks a wrong password, which
+ * costs the same full PBKDF2 run but is never kept in the verifier's cache of recent
+ * logins.</p>
+ *
+ * <p> See benchmarks/README.md for how to compile and run it and how to read the results.</p>
+ *
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashBenchmark {
+
+	private static final String PASSWORD = "Correct-Horse-9";
+	private static final String WRONG_PASSWORD = "Correct-Horse-8";
+
+	/*******
+	 * <p> Title: HasherState Class. </p>
+	 *
+	 * <p> Description: A hasher and verifier for one iteration count.</p>
+	 */
+	@State(Scope.Benchmark)
+	public static class HasherState {
+
+		/** The PBKDF2 iteration count; override with -p iterations=... */
+		@Param({ "100000", "210000", "310000", "600000" })
+		public int iterations;
+
+		/** Verifier worker threads; the application defaults to half the processors. */
+		@Param({ "2" })
+		public int threads;
+
+		Pbkdf2PasswordHasher hasher;
+		CredentialVerifier verifier;
+		String stored;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			hasher = new Pbkdf2PasswordHasher(iterations);
+			verifier = new CredentialVerifier(hasher, threads);
+			stored = hasher.hash(PASSWORD);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			verifier.close();
+		}
+	}
+
+	@Benchmark
+	public boolean verify(HasherState state) {
+		return state.hasher.verify(PASSWORD, state.stored);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public boolean burstLogin(HasherState state) {
+		return state.verifier.verify(WRONG_PASSWORD, state.stored);
+	}
+
+	/*******
+	 * <p> Method: void main(String[] args) </p>
+	 *
+	 * <p> Description: Run the password benchmarks at every iteration count.  Pass a regular
+	 * expression to run only the matching benchmarks, e.g. "verify".</p>
+	 *
+	 * @param args an optional benchmark name pattern
+	 *
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String pattern = (args.length > 0) ? args[0] : "";
+		Options options = new OptionsBuilder()
+				.include(PasswordHashBenchmark.class.getSimpleName() + ".*" + pattern)
+				.build();
+		new Runner(options).run();
+	}
+}
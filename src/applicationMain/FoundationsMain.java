@@ -1,7 +1,9 @@
 package applicationMain;
 	
 import java.sql.SQLException;
+import database.AsyncDatabase;
 import database.Database;
+import database.DatabaseRegistry;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import javafx.scene.control.Alert;
@@ -72,8 +74,12 @@ public class FoundationsMain extends Application {
 
 	// These attributes establish the database and the fixed reference to it for the rest of the
 	// application so we do not need to keep passing the reference in parameters to the rest of the
-	// system for other methods that need it can access it.
-	public static Database database = new Database();
+	// system for other methods that need it can access it.  DatabaseRegistry owns it: it is
+	// opened once in start and closed in stop, and nothing else should make its own Database.
+	public static Database database = DatabaseRegistry.shared();
+
+	// Runs database calls off the JavaFX application thread for screens that load a lot of data
+	public static AsyncDatabase asyncDatabase = new AsyncDatabase(database);
     private Alert databaseInUse = new Alert(AlertType.INFORMATION);
 
 	public static int activeHomePage = 0;		// Which role's home page is currently active?
@@ -84,7 +90,7 @@ public class FoundationsMain extends Application {
 		// Connect to the in-memory database
 		try {
 			// Connect to the database
-			database.connectToDatabase();
+			DatabaseRegistry.open();
 		} catch (SQLException e) {
 			// If the connection request fails, it usually means some other app is using it
 			databaseInUse.setTitle("*** ERROR ***");
@@ -108,6 +114,18 @@ public class FoundationsMain extends Application {
 		// With the JavaFX pages set up, this thread of the execution comes to an end.
 	}
 
+	/*******
+	 * <p> Title: FoundationsMain stop method</p>
+	 *
+	 * <p> Description: Called by JavaFX when the last window closes.  Closing the database here
+	 * writes any read marks still queued before the application exits.</p>
+	 */
+	@Override
+	public void stop() {
+		asyncDatabase.shutdown();
+		DatabaseRegistry.close();
+	}
+
 	/*******
 	 * <p> Title: FoundationsMain main method that starts up JavaFX</p>
 	 * 
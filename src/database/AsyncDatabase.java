@@ -0,0 +1,187 @@
+package database;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*******
+ * <p> Title: AsyncDatabase Class. </p>
+ *
+ * <p> Description: Runs Database calls on background threads and hands back CompletableFutures,
+ * so a screen can ask for data from an event handler without freezing the JavaFX application
+ * thread while H2 works.  The caller decides where the result is used; views hand the future to
+ * guiTools.FxAsync.deliver to continue on the FX thread.</p>
+ *
+ * <p> The work runs on virtual threads when the JVM has them (Java 21 and later) and otherwise
+ * on a small pool of daemon threads.  Either way the ConnectionPool still bounds how many calls
+ * run against H2 at the same time.</p>
+ *
+ * <p> A screen that reloads on every keystroke or filter change should send its loads through
+ * a LatestRequest: each new request cancels the one before it, a cancelled request that has not
+ * started yet never runs, and the result of one that was already running is thrown away instead
+ * of overwriting the newer results.</p>
+ *
+ */
+public class AsyncDatabase {
+
+	/*******
+	 * <p> Title: LatestRequest Class. </p>
+	 *
+	 * <p> Description: A slot for one screen's loads in which only the most recent request
+	 * counts.</p>
+	 *
+	 * @param <T> the type of the loaded data
+	 */
+	public static final class LatestRequest<T> {
+		private final AsyncDatabase async;
+		private CompletableFuture<T> pending = null;
+
+		LatestRequest(AsyncDatabase async) {
+			this.async = async;
+		}
+
+		/*******
+		 * <p> Method: CompletableFuture&lt;T&gt; submit(Function&lt;Database, T&gt; query) </p>
+		 *
+		 * <p> Description: Cancel the previous request in this slot and start a new one.</p>
+		 *
+		 * @param query the Database call to make
+		 *
+		 * @return a future that completes with the result, unless a newer request cancels it
+		 */
+		public synchronized CompletableFuture<T> submit(Function<Database, T> query) {
+			if (pending != null) pending.cancel(false);
+			pending = async.supply(query);
+			return pending;
+		}
+
+		/*******
+		 * <p> Method: boolean isLoading() </p>
+		 *
+		 * @return true while the latest request has not completed
+		 */
+		public synchronized boolean isLoading() {
+			return pending != null && !pending.isDone();
+		}
+
+		/*******
+		 * <p> Method: void cancel() </p>
+		 *
+		 * <p> Description: Cancel the latest request, e.g. when the screen is left.</p>
+		 */
+		public synchronized void cancel() {
+			if (pending != null) pending.cancel(false);
+		}
+	}
+
+	// Used when virtual threads are not available
+	private static final int PLATFORM_THREADS = Database.POOL_SIZE;
+
+	private final Database database;
+	private ExecutorService executor = null;
+
+	/*******
+	 * <p> Method: AsyncDatabase(Database database) </p>
+	 *
+	 * <p> Description: Create a facade over a Database.  No threads are started until the
+	 * first call.</p>
+	 *
+	 * @param database the database to call
+	 */
+	public AsyncDatabase(Database database) {
+		this.database = database;
+	}
+
+	/*******
+	 * <p> Method: &lt;T&gt; CompletableFuture&lt;T&gt; supply(Function&lt;Database, T&gt; query) </p>
+	 *
+	 * <p> Description: Make a Database call on a background thread.  If the returned future is
+	 * cancelled before the call starts, the call is skipped.</p>
+	 *
+	 * @param <T> the type of the result
+	 * @param query the Database call to make
+	 *
+	 * @return a future that completes with the call's result or the exception it threw
+	 */
+	public <T> CompletableFuture<T> supply(Function<Database, T> query) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor().execute(() -> {
+				if (future.isDone()) return;			// cancelled before it started
+				try {
+					future.complete(query.apply(database));
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);		// after shutdown
+		}
+		return future;
+	}
+
+	/*******
+	 * <p> Method: CompletableFuture&lt;Void&gt; run(Consumer&lt;Database&gt; action) </p>
+	 *
+	 * <p> Description: Make a Database call with no result on a background thread.</p>
+	 *
+	 * @param action the Database call to make
+	 *
+	 * @return a future that completes when the call has finished
+	 */
+	public CompletableFuture<Void> run(Consumer<Database> action) {
+		return supply(db -> {
+			action.accept(db);
+			return null;
+		});
+	}
+
+	/*******
+	 * <p> Method: &lt;T&gt; LatestRequest&lt;T&gt; newLatestRequest() </p>
+	 *
+	 * @param <T> the type of the loaded data
+	 *
+	 * @return a new, empty request slot
+	 */
+	public <T> LatestRequest<T> newLatestRequest() {
+		return new LatestRequest<>(this);
+	}
+
+	/*******
+	 * <p> Method: void shutdown() </p>
+	 *
+	 * <p> Description: Stop accepting calls; later calls fail with a
+	 * RejectedExecutionException.  Calls already started are allowed to finish.</p>
+	 */
+	public synchronized void shutdown() {
+		executor().shutdown();
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) executor = newExecutor();
+		return executor;
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor exists from Java 21; it is looked up reflectively
+	 * so the code still compiles and runs on older JVMs.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger n = new AtomicInteger();
+			return Executors.newFixedThreadPool(PLATFORM_THREADS, r -> {
+				Thread t = new Thread(r, "database-async-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package database;
+
+import entityClasses.User;
+
+/*******
+ * <p> Title: Authentication Class. </p>
+ *
+ * <p> Description: The result of a successful Database.authenticate: the user who logged in and
+ * the roles that user plays, packed into a bitmask so the login page can pick a home page with
+ * one table lookup instead of asking the database about each role.</p>
+ *
+ */
+public final class Authentication {
+
+	/** Bit set when the user plays the Admin role */
+	public static final int ROLE_ADMIN = 1;
+
+	/** Bit set when the user plays role1 (Staff) */
+	public static final int ROLE_STAFF = 2;
+
+	/** Bit set when the user plays role2 (Student) */
+	public static final int ROLE_STUDENT = 4;
+
+	/** One more than the largest bitmask, for tables indexed by roles */
+	public static final int ROLE_COMBINATIONS = 8;
+
+	private final User user;
+	private final int roles;
+
+	Authentication(User user) {
+		this.user = user;
+		this.roles = rolesOf(user);
+	}
+
+	/*******
+	 * <p> Method: int rolesOf(User user) </p>
+	 *
+	 * <p> Description: Pack the role flags of a User into a bitmask.</p>
+	 *
+	 * @param user the user
+	 *
+	 * @return ROLE_ADMIN, ROLE_STAFF and ROLE_STUDENT or'ed together for the roles the user plays
+	 */
+	public static int rolesOf(User user) {
+		int roles = 0;
+		if (user.getAdminRole()) roles |= ROLE_ADMIN;
+		if (user.getNewRole1()) roles |= ROLE_STAFF;
+		if (user.getNewRole2()) roles |= ROLE_STUDENT;
+		return roles;
+	}
+
+	/** @return the user who logged in; the caller may keep and modify it */
+	public User getUser() { return user; }
+
+	/** @return the bitmask of the roles the user plays */
+	public int getRoles() { return roles; }
+
+	/** @return the number of roles the user plays */
+	public int getNumberOfRoles() { return Integer.bitCount(roles); }
+
+	/**
+	 * @param role one of ROLE_ADMIN, ROLE_STAFF or ROLE_STUDENT
+	 * @return true if the user plays that role
+	 */
+	public boolean hasRole(int role) { return (roles & role) != 0; }
+}
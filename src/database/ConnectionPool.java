@@ -0,0 +1,459 @@
+package database;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/*******
+ * <p> Title: ConnectionPool Class. </p>
+ *
+ * <p> Description: A small bounded pool of JDBC connections to the H2 database.  H2 lets any
+ * number of connections in the same JVM share one embedded database file, so rather than funnel
+ * every query through a single Connection, the Database class borrows a connection per operation
+ * and gives it back when it is done.  Two operations running on different threads therefore never
+ * share a Connection or a Statement.</p>
+ *
+ * <p> The connections handed out are proxies around the physical connections: calling close() on
+ * one returns the physical connection to the pool instead of closing it, which means callers can
+ * keep using the usual try-with-resources idiom.  At most maxSize connections are ever open; when
+ * they are all borrowed, a caller waits up to the borrow timeout and then gets an SQLException.
+ * </p>
+ *
+ * <p> Each physical connection also carries a StatementCache, so prepareStatement(sql) and
+ * prepareStatement(sql, autoGeneratedKeys) on a pooled connection reuse statements that
+ * connection has already prepared.  A cache size of 0 turns this off.</p>
+ *
+ * <p> Borrow and return counts, wait times, the number of physical connections opened and the
+ * statement cache counters are tracked so the pool's behavior can be checked under load (see
+ * getStats()).  When a QueryMetrics is attached, each borrow is also timed as an operation and
+ * the statements prepared on the borrowed connection are instrumented (see QueryMetrics).</p>
+ *
+ */
+public class ConnectionPool implements DataSource {
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int maxSize;
+	private final long borrowTimeoutMillis;
+	private final int statementCacheSize;
+
+	// Physical connections that are open but not currently borrowed
+	private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+	// One permit per connection that may be borrowed; this is what bounds the pool
+	private final Semaphore permits;
+
+	// The statement cache belonging to each open physical connection
+	private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+	private final StatementCache.Stats statementCacheStats = new StatementCache.Stats();
+
+	private volatile boolean closed = false;
+
+	// Per-operation timings; null when not collected
+	private volatile QueryMetrics queryMetrics = null;
+
+	// Metrics
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong returnCount = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/*******
+	 * <p> Method: ConnectionPool(String url, String user, String password, int maxSize,
+	 * long borrowTimeoutMillis, int statementCacheSize) </p>
+	 *
+	 * <p> Description: Create a pool over the given JDBC URL.  No connections are opened until
+	 * the first borrow.</p>
+	 *
+	 * @param url the JDBC URL of the database
+	 * @param user the database user
+	 * @param password the database password
+	 * @param maxSize the largest number of connections that may be open at once
+	 * @param borrowTimeoutMillis how long a borrow waits for a free connection before failing
+	 * @param statementCacheSize how many prepared statements each connection keeps, 0 for none
+	 */
+	public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+			int statementCacheSize) {
+		if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+		if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize must not be negative");
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/*******
+	 * <p> Method: Connection getConnection() </p>
+	 *
+	 * <p> Description: Borrow a connection from the pool, opening a new physical connection if
+	 * none is idle.  Closing the returned connection gives it back to the pool.</p>
+	 *
+	 * @return a pooled connection
+	 *
+	 * @throws SQLException if the pool is closed, no connection became free within the borrow
+	 * timeout, or a new physical connection could not be opened
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		// A borrow made while this thread already has an operation running is part of it
+		QueryMetrics metrics = queryMetrics;
+		QueryMetrics.Operation op = (metrics == null) ? null : metrics.current();
+		boolean ownsOp = false;
+		if (metrics != null && op == null) {
+			op = metrics.begin();
+			ownsOp = true;
+		}
+		try {
+			Connection connection = borrow(op, ownsOp);
+			ownsOp = false;			// ended by the connection's close()
+			return connection;
+		} catch (SQLException e) {
+			if (op != null) op.error();
+			throw e;
+		} finally {
+			if (ownsOp) metrics.end(op);
+		}
+	}
+
+	private Connection borrow(QueryMetrics.Operation op, boolean ownsOp) throws SQLException {
+		if (closed) throw new SQLException("Connection pool is closed");
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLException("Timed out after " + borrowTimeoutMillis
+						+ " ms waiting for a database connection (pool size " + maxSize + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		long waited = System.nanoTime() - start;
+		totalWaitNanos.addAndGet(waited);
+		maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+		Connection physical = null;
+		try {
+			// Skip over any idle connection that H2 has closed underneath us
+			while ((physical = idle.pollFirst()) != null && physical.isClosed()) {
+				discardStatementCache(physical);
+			}
+			if (physical == null) {
+				physical = DriverManager.getConnection(url, user, password);
+				createdCount.incrementAndGet();
+				if (statementCacheSize > 0) {
+					statementCaches.put(physical, new StatementCache(physical, statementCacheSize, statementCacheStats));
+				}
+			}
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+		borrowCount.incrementAndGet();
+		return wrap(physical, op, ownsOp);
+	}
+
+	/*******
+	 * <p> Method: Connection getConnection(String username, String password) </p>
+	 *
+	 * <p> Description: Not supported; the pool always connects with the credentials it was
+	 * created with.</p>
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("ConnectionPool uses fixed credentials");
+	}
+
+	/*
+	 * Hand a physical connection back to the pool, resetting any per-use state so the next
+	 * borrower sees a clean connection.  A connection that cannot be reset is closed instead.
+	 */
+	private void release(Connection physical) {
+		returnCount.incrementAndGet();
+		try {
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			if (closed || physical.isClosed()) {
+				closePhysical(physical);
+			} else {
+				idle.offerFirst(physical);
+			}
+		} catch (SQLException e) {
+			closePhysical(physical);
+		} finally {
+			permits.release();
+		}
+	}
+
+	// Close a physical connection together with its cached statements
+	private void closePhysical(Connection physical) {
+		discardStatementCache(physical);
+		try {
+			physical.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void discardStatementCache(Connection physical) {
+		StatementCache cache = statementCaches.remove(physical);
+		if (cache != null) cache.closeAll();
+	}
+
+	/*
+	 * Wrap a physical connection in a proxy whose close() returns it to the pool.  Once closed,
+	 * the proxy refuses further use so a stale reference cannot touch another borrower's work.
+	 * The single-argument and generated-keys forms of prepareStatement go through the
+	 * connection's statement cache.  With an operation to charge, statements are instrumented
+	 * and the operation ends when the connection that started it is returned.
+	 */
+	private Connection wrap(Connection physical, QueryMetrics.Operation op, boolean ownsOp) {
+		StatementCache cache = statementCaches.get(physical);
+		QueryMetrics metrics = queryMetrics;
+		InvocationHandler handler = new InvocationHandler() {
+			private boolean returned = false;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (op == null) return forward(proxy, method, args);
+				if (method.getName().equals("close")) {
+					boolean first = !returned;
+					forward(proxy, method, args);
+					if (first && ownsOp) metrics.end(op);
+					return null;
+				}
+				try {
+					Object result = forward(proxy, method, args);
+					// createStatement, prepareStatement and prepareCall
+					if (result instanceof Statement) {
+						return instrumentStatement(result, method.getReturnType());
+					}
+					return result;
+				} catch (SQLException e) {
+					op.error();
+					throw e;
+				}
+			}
+
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			private Object instrumentStatement(Object statement, Class type) {
+				return metrics.instrument(statement, type, op);
+			}
+
+			private Object forward(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "close":
+						if (!returned) {
+							returned = true;
+							release(physical);
+						}
+						return null;
+					case "isClosed":
+						return returned || physical.isClosed();
+					case "unwrap":
+						if (((Class<?>) args[0]).isInstance(physical)) return physical;
+						break;
+					case "prepareStatement":
+						if (returned || cache == null) break;
+						if (args.length == 1) {
+							return cache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+						}
+						if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+							return cache.prepare((String) args[0], (Integer) args[1]);
+						}
+						break;
+					case "toString":
+						return "Pooled[" + physical + "]";
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						break;
+				}
+				if (returned) throw new SQLException("Connection has already been returned to the pool");
+				try {
+					return method.invoke(physical, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		};
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, handler);
+	}
+
+	/*******
+	 * <p> Method: void setQueryMetrics(QueryMetrics metrics) </p>
+	 *
+	 * <p> Description: Start (or, with null, stop) timing the operations on connections
+	 * borrowed from now on.</p>
+	 *
+	 * @param metrics where to record operations, or null
+	 */
+	public void setQueryMetrics(QueryMetrics metrics) {
+		this.queryMetrics = metrics;
+	}
+
+	/*******
+	 * <p> Method: QueryMetrics getQueryMetrics() </p>
+	 *
+	 * @return the operation metrics being recorded, or null if there are none
+	 */
+	public QueryMetrics getQueryMetrics() {
+		return queryMetrics;
+	}
+
+	/*******
+	 * <p> Method: void close() </p>
+	 *
+	 * <p> Description: Close every idle physical connection and refuse further borrows.
+	 * Connections that are still borrowed are closed as they are returned.</p>
+	 */
+	public void close() {
+		closed = true;
+		Connection c;
+		while ((c = idle.pollFirst()) != null) {
+			closePhysical(c);
+		}
+	}
+
+	/*******
+	 * <p> Method: boolean isClosed() </p>
+	 *
+	 * @return true once close() has been called
+	 */
+	public boolean isClosed() { return closed; }
+
+	/*******
+	 * <p> Method: int getMaxSize() </p>
+	 *
+	 * @return the largest number of connections the pool will open
+	 */
+	public int getMaxSize() { return maxSize; }
+
+	/*******
+	 * <p> Method: int getActiveCount() </p>
+	 *
+	 * @return the number of connections currently borrowed
+	 */
+	public int getActiveCount() { return maxSize - permits.availablePermits(); }
+
+	/*******
+	 * <p> Method: int getIdleCount() </p>
+	 *
+	 * @return the number of open connections waiting in the pool
+	 */
+	public int getIdleCount() { return idle.size(); }
+
+	/*******
+	 * <p> Method: long getBorrowCount() </p>
+	 *
+	 * @return the number of successful borrows since the pool was created
+	 */
+	public long getBorrowCount() { return borrowCount.get(); }
+
+	/*******
+	 * <p> Method: long getReturnCount() </p>
+	 *
+	 * @return the number of connections given back since the pool was created
+	 */
+	public long getReturnCount() { return returnCount.get(); }
+
+	/*******
+	 * <p> Method: long getCreatedCount() </p>
+	 *
+	 * @return the number of physical connections opened since the pool was created
+	 */
+	public long getCreatedCount() { return createdCount.get(); }
+
+	/*******
+	 * <p> Method: long getTimeoutCount() </p>
+	 *
+	 * @return the number of borrows that gave up waiting for a free connection
+	 */
+	public long getTimeoutCount() { return timeoutCount.get(); }
+
+	/*******
+	 * <p> Method: StatementCache.Stats getStatementCacheStats() </p>
+	 *
+	 * @return the hit, miss and eviction counters of the connections' statement caches
+	 */
+	public StatementCache.Stats getStatementCacheStats() { return statementCacheStats; }
+
+	/*******
+	 * <p> Method: int getStatementCacheSize() </p>
+	 *
+	 * @return how many prepared statements each connection keeps
+	 */
+	public int getStatementCacheSize() { return statementCacheSize; }
+
+	/*******
+	 * <p> Method: String getStats() </p>
+	 *
+	 * <p> Description: A one-line summary of the pool's metrics, suitable for logging.</p>
+	 *
+	 * @return the summary
+	 */
+	public String getStats() {
+		long borrows = borrowCount.get();
+		double avgWaitMillis = borrows == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+		return String.format("pool size=%d active=%d idle=%d created=%d borrows=%d returns=%d "
+				+ "timeouts=%d avgWait=%.3fms maxWait=%.3fms; %s",
+				maxSize, getActiveCount(), getIdleCount(), createdCount.get(), borrows,
+				returnCount.get(), timeoutCount.get(), avgWaitMillis, maxWaitNanos.get() / 1_000_000.0,
+				statementCacheStats);
+	}
+
+	// The remaining DataSource methods have no meaning for this pool
+
+	@Override
+	public PrintWriter getLogWriter() { return null; }
+
+	@Override
+	public void setLogWriter(PrintWriter out) { }
+
+	@Override
+	public void setLoginTimeout(int seconds) { }
+
+	@Override
+	public int getLoginTimeout() { return 0; }
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) return iface.cast(this);
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+}
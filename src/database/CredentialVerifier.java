@@ -0,0 +1,235 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/*******
+ * <p> Title: CredentialVerifier Class. </p>
+ *
+ * <p> Description: Runs a PasswordHasher for the Database.  Hashing is deliberately slow, so
+ * every hash and verify runs on a small fixed pool of worker threads and the caller waits for
+ * it.  However many people log in at once, at most that many cores are busy hashing; the rest
+ * queue.  The default pool uses half the available processors.</p>
+ *
+ * <p> Bulk imports hash thousands of passwords at once.  They run on a second pool of the same
+ * size, started the first time an import needs it, so a login never waits behind an import;
+ * with the default size the two pools together use every processor and no more.  An import submits
+ * only a few hashes per worker at a time rather than its whole list.</p>
+ *
+ * <p> Successful verifies are remembered for a few minutes, keyed by the stored hash, so a user
+ * who logs out and back in (or switches roles) does not pay for PBKDF2 again.  Only an HMAC of
+ * the password under a key made at start-up is kept, never the password itself, and a new
+ * password gives a new stored hash, which cannot match an old entry.</p>
+ *
+ */
+public class CredentialVerifier {
+
+	// How many verified logins are remembered and for how long
+	static final int VERIFIED_CACHE_SIZE = 256;
+	static final long VERIFIED_CACHE_MILLIS = 5 * 60 * 1000;
+
+	// Import hashes queued per import worker at once
+	static final int IMPORT_JOBS_PER_THREAD = 2;
+
+	private final PasswordHasher hasher;
+	private final int threads;
+	private final ExecutorService workers;
+	private ExecutorService importWorkers = null;	// Started by the first hashAll
+	private final SecretKeySpec cacheKey;
+
+	// Stored hash -> HMAC of the password that matched it, and when
+	private final LinkedHashMap<String, Verified> verified =
+			new LinkedHashMap<String, Verified>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+			return size() > VERIFIED_CACHE_SIZE;
+		}
+	};
+
+	private static final class Verified {
+		final byte[] mac;
+		final long at;
+
+		Verified(byte[] mac, long at) {
+			this.mac = mac;
+			this.at = at;
+		}
+	}
+
+	/*******
+	 * <p> Method: CredentialVerifier(PasswordHasher hasher, int threads) </p>
+	 *
+	 * <p> Description: Create a verifier with its own pool of daemon worker threads.</p>
+	 *
+	 * @param hasher the hasher to run
+	 * @param threads the most hashes that may run at the same time
+	 */
+	public CredentialVerifier(PasswordHasher hasher, int threads) {
+		this.hasher = hasher;
+		this.threads = Math.max(1, threads);
+		this.workers = newPool(this.threads, "password-hasher-");
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		this.cacheKey = new SecretKeySpec(key, "HmacSHA256");
+	}
+
+	/** @return the hasher this verifier runs */
+	public PasswordHasher getHasher() {
+		return hasher;
+	}
+
+	/*******
+	 * <p> Method: String hash(String password) </p>
+	 *
+	 * <p> Description: Hash a password on a worker thread.</p>
+	 *
+	 * @param password the password to hash
+	 *
+	 * @return the value to store in userDB.password
+	 */
+	public String hash(String password) {
+		return call(() -> hasher.hash(password));
+	}
+
+	/*******
+	 * <p> Method: List&lt;String&gt; hashAll(List&lt;String&gt; passwords) </p>
+	 *
+	 * <p> Description: Hash many passwords at once, spread over the import worker threads, for
+	 * bulk imports.  At most IMPORT_JOBS_PER_THREAD hashes per worker are queued at a time.  A
+	 * null password gives a null hash.</p>
+	 *
+	 * @param passwords the passwords to hash
+	 *
+	 * @return the values to store, in the same order
+	 */
+	public List<String> hashAll(List<String> passwords) {
+		ExecutorService importer = importWorkers();
+		int window = threads * IMPORT_JOBS_PER_THREAD;
+		List<String> hashes = new ArrayList<>(passwords.size());
+		List<Future<String>> pending = new ArrayList<>(window);
+		try {
+			for (int start = 0; start < passwords.size(); start += window) {
+				for (String password : passwords.subList(start, Math.min(start + window, passwords.size()))) {
+					pending.add(importer.submit(() -> (password == null) ? null : hasher.hash(password)));
+				}
+				for (Future<String> f : pending) {
+					hashes.add(await(f));
+				}
+				pending.clear();
+			}
+			return hashes;
+		} finally {
+			for (Future<String> f : pending) f.cancel(false);	// left over only after a failure
+		}
+	}
+
+	/*******
+	 * <p> Method: boolean verify(String password, String stored) </p>
+	 *
+	 * <p> Description: Check a password against a stored value, from the cache of recent
+	 * verifies when possible and otherwise on a worker thread.</p>
+	 *
+	 * @param password the password typed by the user
+	 * @param stored the value kept in userDB.password
+	 *
+	 * @return true if the password matches
+	 */
+	public boolean verify(String password, String stored) {
+		if (password == null || stored == null) return false;
+		byte[] mac = mac(password);
+		if (recentlyVerified(stored, mac)) return true;
+		boolean ok = call(() -> hasher.verify(password, stored));
+		if (ok) {
+			synchronized (verified) {
+				verified.put(stored, new Verified(mac, System.currentTimeMillis()));
+			}
+		}
+		return ok;
+	}
+
+	/*******
+	 * <p> Method: void close() </p>
+	 *
+	 * <p> Description: Stop the worker threads once any hashes in progress have finished.</p>
+	 */
+	public void close() {
+		workers.shutdown();
+		synchronized (this) {
+			if (importWorkers != null) importWorkers.shutdown();
+		}
+		synchronized (verified) {
+			verified.clear();
+		}
+	}
+
+	private boolean recentlyVerified(String stored, byte[] mac) {
+		synchronized (verified) {
+			Verified v = verified.get(stored);
+			if (v == null) return false;
+			if (System.currentTimeMillis() - v.at > VERIFIED_CACHE_MILLIS) {
+				verified.remove(stored);
+				return false;
+			}
+			return MessageDigest.isEqual(v.mac, mac);
+		}
+	}
+
+	private byte[] mac(String password) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(cacheKey);
+			return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 is not available", e);
+		}
+	}
+
+	private synchronized ExecutorService importWorkers() {
+		if (importWorkers == null) importWorkers = newPool(threads, "password-import-");
+		return importWorkers;
+	}
+
+	private static ExecutorService newPool(int threads, String name) {
+		AtomicInteger n = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, name + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	// Run on a worker and wait; an interrupted caller keeps its interrupt and gets an exception
+	private <T> T call(Callable<T> work) {
+		return await(workers.submit(work));
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while hashing a password", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -5,11 +5,24 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import entityClasses.User;
+import entityClasses.Invitation;
 import entityClasses.Post;	//OMAR HW2 NEW
 import entityClasses.Reply; //OMAR HW2 NEW
 import entityClasses.Ticket; //Chuan NEW
@@ -42,20 +55,82 @@ import java.time.Instant; //Omar New
  * The Database class is responsible for establishing and managing the connection to the database,
  * and performing operations such as user registration, login validation, handling invitation 
  * codes, and numerous other database related functions.
+ *
+ * Each method borrows its own connection from a ConnectionPool and returns it when done, so
+ * methods may be called from several threads at once without sharing a Connection or Statement.
  */
 public class Database {
 
 	// JDBC driver name and database URL 
 	static final String JDBC_DRIVER = "org.h2.Driver";   
-	static final String DB_URL = "jdbc:h2:~/FoundationDatabase";  
+	// H2 must not close the database from its own shutdown hook: ours flushes queued read marks
+	// first and then closes the pool, which closes the database with its last connection.
+	static final String DB_URL = "jdbc:h2:~/FoundationDatabase;DB_CLOSE_ON_EXIT=FALSE";  
 
 	//  Database credentials 
 	static final String USER = "sa"; 
 	static final String PASS = ""; 
 
+	// Connection pool sizing.  Every method borrows its own connection for the duration of one
+	// operation, so this bounds how many operations can run against H2 at the same time.
+	static final int POOL_SIZE = 8;
+	static final long POOL_BORROW_TIMEOUT_MILLIS = 30_000;
+
+	// Prepared statements kept per pooled connection, keyed by SQL text.  Can be overridden with
+	// -Dlms.statementCacheSize=N (0 turns the cache off).
+	static final int STATEMENT_CACHE_SIZE = Integer.getInteger("lms.statementCacheSize", 64);
+
+	// Read marks are written behind: queued marks are written this long after the first one, or
+	// as soon as this many are queued.
+	static final long READ_MARK_FLUSH_DELAY_MILLIS = 1_000;
+	static final int READ_MARK_BATCH_LIMIT = 200;
+
+	// Per-method call counts, latency histograms, rows and errors (see QueryMetrics).  They add
+	// proxies to every statement and result set, so they are off unless -Dlms.metrics=true;
+	// -Dlms.metrics.dumpSeconds=N then prints them every N seconds.
+	static final boolean METRICS_ENABLED = Boolean.getBoolean("lms.metrics");
+	static final long METRICS_DUMP_SECONDS = Long.getLong("lms.metrics.dumpSeconds", 0);
+
+	// userDB rows kept in memory for the profile and role getters (see UserDirectory).  Can be
+	// overridden with -Dlms.userCacheSize=N (0 turns the cache off).
+	static final int USER_DIRECTORY_SIZE = Integer.getInteger("lms.userCacheSize", 1024);
+
+	// Expired invitations are deleted in the background this often (-Dlms.invitationSweepSeconds)
+	static final long INVITATION_SWEEP_SECONDS = Long.getLong("lms.invitationSweepSeconds", 60);
+
+	// Check the unread reply counters against the tables they summarize at start-up, and rebuild
+	// them if they disagree (-Dlms.verifyUnreadCounters=true; see UnreadCounters)
+	static final boolean VERIFY_UNREAD_COUNTERS = Boolean.getBoolean("lms.verifyUnreadCounters");
+
+	// Rows the driver fetches at a time for the forEach queries, which hand each row on as it
+	// is read (-Dlms.fetchSize=N)
+	static final int STREAM_FETCH_SIZE = Integer.getInteger("lms.fetchSize", 100);
+
+	// Bulk user imports commit this many rows per transaction (see registerUsers)
+	static final int USER_IMPORT_BATCH_SIZE = 500;
+
+	// Bulk invitations are inserted in JDBC batches of this many rows, all in one transaction
+	static final int INVITATION_BATCH_SIZE = 1000;
+
+	// Password hashing (see Pbkdf2PasswordHasher and CredentialVerifier).  The iteration count
+	// is the cost of one login; benchmarks/README.md explains how to pick it for a machine.  At
+	// most PASSWORD_HASH_THREADS hashes run at once, so a burst of logins leaves cores free.
+	static final int PASSWORD_HASH_ITERATIONS = Integer.getInteger("lms.passwordIterations", 210_000);
+	static final int PASSWORD_HASH_THREADS = Integer.getInteger("lms.passwordThreads",
+			Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
 	//  Shared variables used within this class
-	private Connection connection = null;		// Singleton to access the database 
-	private Statement statement = null;			// The H2 Statement is used to construct queries
+	private ConnectionPool pool = null;			// Hands out a connection per database operation
+	private ReadMarkQueue readMarks = null;		// Post and reply read marks not yet written
+	private QueryMetrics metrics = null;		// Timings of the operations run through the pool
+	private final UserDirectory users = new UserDirectory(USER_DIRECTORY_SIZE);	// Cached userDB rows
+	private final UserPrefixIndex userIndex = new UserPrefixIndex();	// Names for the user pickers
+	private PasswordHasher passwordHasher = new Pbkdf2PasswordHasher(PASSWORD_HASH_ITERATIONS);
+	private CredentialVerifier credentials = null;	// Runs passwordHasher on its own threads
+	private ScheduledExecutorService invitationSweeper = null;	// Runs purgeExpiredInvitations
+	private Thread shutdownHook = null;			// Closes the database if the JVM exits first
+	private final String dbUrl;					// The H2 database this object connects to
+	private boolean connected = false;			// Between connectToDatabase and closeConnection
 	
 	// These are the easily accessible attributes of the currently logged-in user
 	// This is only useful for single user applications
@@ -78,7 +153,20 @@ public class Database {
 	 */
 	
 	public Database () {
-		
+		this(DB_URL);
+	}
+
+	/*******
+	 * <p> Method: Database(String dbUrl) </p>
+	 * 
+	 * <p> Description: Create a Database that connects to the given H2 URL instead of the
+	 * application's FoundationDatabase, e.g. a scratch file for benchmarks. Nothing is opened
+	 * until connectToDatabase is called.</p>
+	 * 
+	 * @param dbUrl the JDBC URL to connect to
+	 */
+	public Database (String dbUrl) {
+		this.dbUrl = dbUrl;
 	}
 	
 	
@@ -86,208 +174,130 @@ public class Database {
  * <p> Method: connectToDatabase </p>
  * 
  * <p> Description: Used to establish the in-memory instance of the H2 database from secondary
- *		storage.</p>
+ *		storage.  Does nothing if this Database is already connected.  The application's
+ *		Database is opened through DatabaseRegistry, which reports any other Database that
+ *		connects to the same URL.</p>
  *
  * @throws SQLException when the DriverManager is unable to establish a connection
  * 
  */
 	public void connectToDatabase() throws SQLException {
+		if (connected) return;
+		DatabaseRegistry.opened(this, dbUrl);
 		try {
 			Class.forName(JDBC_DRIVER); // Load the JDBC driver
-			connection = DriverManager.getConnection(DB_URL, USER, PASS);
-			statement = connection.createStatement(); 
-			// You can use this command to clear the database and restart from fresh.
-			//statement.execute("DROP ALL OBJECTS");
-
-			createTables();  // Create the necessary tables if they don't exist
+			users.clear();
+			userIndex.clear();
+			pool = new ConnectionPool(dbUrl, USER, PASS, POOL_SIZE, POOL_BORROW_TIMEOUT_MILLIS,
+					STATEMENT_CACHE_SIZE);
+			if (METRICS_ENABLED) {
+				metrics = new QueryMetrics(Database.class);
+				metrics.registerMBean();
+				metrics.startPeriodicDump(METRICS_DUMP_SECONDS, System.out);
+				pool.setQueryMetrics(metrics);
+			}
+			// Borrowing the first connection here makes a locked or unreachable database fail now
+			try (Connection connection = pool.getConnection()) {
+				// You can use this command to clear the database and restart from fresh.
+				//connection.createStatement().execute("DROP ALL OBJECTS");
+
+				SchemaMigrations.migrate(connection);  // Create or upgrade the tables to the current schema
+				if (VERIFY_UNREAD_COUNTERS) {
+					int wrong = UnreadCounters.verify(connection);
+					if (wrong > 0) {
+						System.err.println("*** WARNING *** " + wrong + " unread counter rows were wrong; rebuilding them");
+						UnreadCounters.rebuild(connection);
+					}
+				}
+			}
+			credentials = new CredentialVerifier(passwordHasher, PASSWORD_HASH_THREADS);
+			startInvitationSweeper();
+			readMarks = new ReadMarkQueue(this::writeReadMarks, READ_MARK_FLUSH_DELAY_MILLIS,
+					READ_MARK_BATCH_LIMIT);
+			// Many views leave with System.exit, so queued marks are also flushed on the way out
+			shutdownHook = new Thread(this::closeConnection, "database-shutdown");
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+			connected = true;
 		} catch (ClassNotFoundException e) {
 			System.err.println("JDBC Driver not found: " + e.getMessage());
+		} finally {
+			if (!connected) DatabaseRegistry.closed(this, dbUrl);
 		}
 	}
 
-	
+
 /*******
- * <p> Method: createTables </p>
+ * <p> Method: boolean isConnected() </p>
  * 
- * <p> Description: Used to create new instances of the two database tables used by this class.</p>
+ * @return true between a successful connectToDatabase and closeConnection
  * 
  */
-	private void createTables() throws SQLException {
-
-	    /*******
-	     * @author Daniel Ortiz Figueroa
-	    */
-	    // Create Grading Parameters table (from Version B)
-	    String gradingParamsTable = "CREATE TABLE IF NOT EXISTS GradingParameters ("
-	            + "id INT AUTO_INCREMENT PRIMARY KEY, "
-	            + "name VARCHAR(255), "
-	            + "maxScore DOUBLE)";
-	    statement.execute(gradingParamsTable);
-
-	    // Create Student Scores table (The actual grades) (from Version B)
-	    // Using composite primary key to ensure one score per parameter per student
-	    String studentScoresTable = "CREATE TABLE IF NOT EXISTS StudentScores ("
-	            + "studentUserName VARCHAR(255), "
-	            + "paramId INT, "
-	            + "score DOUBLE, "
-	            + "PRIMARY KEY (studentUserName, paramId), "
-	            + "FOREIGN KEY (paramId) REFERENCES GradingParameters(id) ON DELETE CASCADE)";
-	    statement.execute(studentScoresTable);
-
-	    // Insert default parameters if empty (from Version B)
-	    try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) AS cnt FROM GradingParameters")) {
-	        if (rs.next() && rs.getInt("cnt") == 0) {
-	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Participation', 20.0)");
-	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Behavior', 10.0)");
-	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Performance', 70.0)");
-	        }
-	    }
-
-		// Create the user database
-		String userTable = "CREATE TABLE IF NOT EXISTS userDB ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "userName VARCHAR(255) UNIQUE, "
-				+ "password VARCHAR(255), "
-				+ "firstName VARCHAR(255), "
-				+ "middleName VARCHAR(255), "
-				+ "lastName VARCHAR (255), "
-				+ "preferredFirstName VARCHAR(255), "
-				+ "emailAddress VARCHAR(255), "
-				+ "adminRole BOOL DEFAULT FALSE, "
-				+ "newRole1 BOOL DEFAULT FALSE, "
-				+ "newRole2 BOOL DEFAULT FALSE)";
-		statement.execute(userTable);
-		
-		// Create the invitation codes table
-		// Omar note - added roles and a created at for expirations
-		String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
-				+ "code VARCHAR(10) PRIMARY KEY, "
-				+ "emailAddress VARCHAR(255), "
-				+ "roles VARCHAR(255), "
-				+ "created_at TIMESTAMP)";
-		statement.execute(invitationCodesTable);
-
-		// OMAR HW2 NEW: Create Posts table
-		String postsTable = "CREATE TABLE IF NOT EXISTS Posts ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "title VARCHAR(1024), "
-				+ "body CLOB, "
-				+ "author VARCHAR(255), "
-				+ "thread VARCHAR(255), "
-				+ "created_at TIMESTAMP, "
-				+ "deleted BOOL DEFAULT FALSE)";
-		statement.execute(postsTable);
-
-		// OMAR HW2 NEW: Create Replies table
-		String repliesTable = "CREATE TABLE IF NOT EXISTS Replies ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "postId INT, "
-				+ "content CLOB, "
-				+ "author VARCHAR(255), "
-				+ "created_at TIMESTAMP, "
-				+ "FOREIGN KEY (postId) REFERENCES Posts(id) ON DELETE CASCADE)";
-		statement.execute(repliesTable);
-
-		// OMAR HW2 NEW: Create ReplyReadStatus table, tracks read/unread for each user
-		String replyReadStatusTable = "CREATE TABLE IF NOT EXISTS ReplyReadStatus ("
-				+ "replyId INT, "
-				+ "userName VARCHAR(255), "
-				+ "isRead BOOL DEFAULT FALSE, "
-				+ "PRIMARY KEY (replyId, userName), "
-				+ "FOREIGN KEY (replyId) REFERENCES Replies(id) ON DELETE CASCADE)";
-		statement.execute(replyReadStatusTable);
-
-		// OMAR HW2 NEW: Create PostReadStatus table, tracks whether a user has read a Post
-		String postReadStatusTable = "CREATE TABLE IF NOT EXISTS PostReadStatus ("
-				+ "postId INT, "
-				+ "userName VARCHAR(255), "
-				+ "isRead BOOL DEFAULT FALSE, "
-				+ "PRIMARY KEY (postId, userName), "
-				+ "FOREIGN KEY (postId) REFERENCES Posts(id) ON DELETE CASCADE)";
-		statement.execute(postReadStatusTable);
-		
-		
-		// OMAR HW3 NEW
-		// Create Threads table
-		String threadsTable = "CREATE TABLE IF NOT EXISTS Threads ("
-				+ "name VARCHAR(255) PRIMARY KEY)";
-		statement.execute(threadsTable);
-
-		// Chuan New
-		/** 
-		 * Creates the Tickets table if it does not already exist.
-		 * Stores ticket metadata including creator, status, and timestamps.
-		 */
-		String ticketsTable = "CREATE TABLE IF NOT EXISTS Tickets ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "title VARCHAR(255), "
-				+ "body CLOB, "
-				+ "creatorUsername VARCHAR(255), "
-				+ "status VARCHAR(20), "			// 'OPEN' or 'CLOSED'
-				+ "reopenedFromId INT, "
-				+ "created_at TIMESTAMP, "
-				+ "deleted BOOL DEFAULT FALSE)";
-		statement.execute(ticketsTable);
-		// Chuan New
-		/**
-		 * Creates the TicketComments table if it does not already exist.
-		 * Stores comments associated with a ticket.
-		 */
-		String ticketCommentsTable = "CREATE TABLE IF NOT EXISTS TicketComments ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "ticketId INT, "
-				+ "authorUsername VARCHAR(255), "
-				+ "content CLOB, "
-				+ "created_at TIMESTAMP, "
-				+ "FOREIGN KEY (ticketId) REFERENCES Tickets(id) ON DELETE CASCADE)";
-		statement.execute(ticketCommentsTable);
+	public boolean isConnected() {
+		return connected;
+	}
+
+
+/*******
+ * <p> Method: ConnectionPool getConnectionPool() </p>
+ * 
+ * <p> Description: Give access to the connection pool, mainly so its borrow and return metrics
+ *		and its statement cache hit and miss counts can be inspected.</p>
+ *
+ * @return the pool, or null if connectToDatabase has not been called
+ * 
+ */
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
+
+/*******
+ * <p> Method: QueryMetrics getQueryMetrics() </p>
+ * 
+ * <p> Description: Give access to the per-method call counts, latencies, rows and errors, the
+ *		same numbers published over JMX as FoundationsF25:type=QueryMetrics.</p>
+ *
+ * @return the metrics, or null if they are turned off or connectToDatabase has not been called
+ * 
+ */
+	public QueryMetrics getQueryMetrics() {
+		return metrics;
+	}
 
-		
-		// OMAR HW3 NEW
-		// Inserts default threads if threads are empty
-		String countThreads = "SELECT COUNT(*) AS cnt FROM Threads";
-		try (PreparedStatement pstmt = connection.prepareStatement(countThreads);
-			 ResultSet rs = pstmt.executeQuery()) {
-			if (rs.next()) {
-				int cnt = rs.getInt("cnt");
-				if (cnt == 0) {
-					// Insert default threads
-					String insertThread = "INSERT INTO Threads (name) VALUES (?)";
-					try (PreparedStatement ip = connection.prepareStatement(insertThread)) {
-						ip.setString(1, "General");
-						ip.executeUpdate();
-						ip.setString(1, "Announcements");
-						ip.executeUpdate();
-						ip.setString(1, "Help");
-						ip.executeUpdate();
-						ip.setString(1, "Off-topic");
-						ip.executeUpdate();
-					} catch (SQLException ex) {
-						ex.printStackTrace();
-					}
-				}
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
 
-        // BRIAN NEW: Create FeedbackMessages table if doesn't exist (from Version B)
-		String feedbackTable = "CREATE TABLE IF NOT EXISTS FeedbackMessages ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "senderUsername VARCHAR(255), "
-                + "receiverUsername VARCHAR(255), "
-                + "subject VARCHAR(1024), "
-                + "content CLOB, "
-                + "created_at TIMESTAMP, "
-                + "isRead BOOL DEFAULT FALSE, " // Status tracked for the receiver
-                + "FOREIGN KEY (senderUsername) REFERENCES userDB(userName), "
-                + "FOREIGN KEY (receiverUsername) REFERENCES userDB(userName)"
-                + ")";
-        statement.execute(feedbackTable);
+/*******
+ * <p> Method: UserDirectory getUserDirectory() </p>
+ * 
+ * <p> Description: Give access to the in-memory user directory, mainly so its size and hit
+ *		rate can be inspected.</p>
+ *
+ * @return the user directory
+ * 
+ */
+	public UserDirectory getUserDirectory() {
+		return users;
 	}
 
 
+/*******
+ * <p> Method: void setPasswordHasher(PasswordHasher hasher) </p>
+ * 
+ * <p> Description: Hash and check passwords with a different hasher, e.g. a cheaper one for
+ *		tests and benchmarks.  Rows already hashed by another hasher only verify if this one
+ *		understands them.</p>
+ *
+ * @param hasher the hasher to use from now on
+ * 
+ */
+	public void setPasswordHasher(PasswordHasher hasher) {
+		passwordHasher = hasher;
+		if (credentials != null) {
+			credentials.close();
+			credentials = new CredentialVerifier(hasher, PASSWORD_HASH_THREADS);
+		}
+	}
 
+	
 /*******
  * <p> Method: isDatabaseEmpty </p>
  * 
@@ -298,7 +308,8 @@ public class Database {
  */
 	public boolean isDatabaseEmpty() {
 		String query = "SELECT COUNT(*) AS count FROM userDB";
-		try {
+		try (Connection connection = pool.getConnection();
+			 Statement statement = connection.createStatement()) {
 			ResultSet resultSet = statement.executeQuery(query);
 			if (resultSet.next()) {
 				return resultSet.getInt("count") == 0;
@@ -320,7 +331,8 @@ public class Database {
  */
 	public int getNumberOfUsers() {
 		String query = "SELECT COUNT(*) AS count FROM userDB";
-		try {
+		try (Connection connection = pool.getConnection();
+			 Statement statement = connection.createStatement()) {
 			ResultSet resultSet = statement.executeQuery(query);
 			if (resultSet.next()) {
 				return resultSet.getInt("count");
@@ -334,7 +346,8 @@ public class Database {
 /*******
  * <p> Method: register(User user) </p>
  * 
- * <p> Description: Creates a new row in the database using the user parameter. </p>
+ * <p> Description: Creates a new row in the database using the user parameter.  The new user
+ * starts with every reply posted so far counted as read. </p>
  * 
  * @throws SQLException when there is an issue creating the SQL command or executing it.
  * 
@@ -342,15 +355,22 @@ public class Database {
  * 
  */ 
 	public void register(User user) throws SQLException {
+		// Hash before borrowing a connection, so the slow part does not hold one
+		String storedPassword = (user.getPassword() == null) ? null
+				: credentials.hash(user.getPassword());
 		String insertUser = "INSERT INTO userDB (userName, password, firstName, middleName, "
 				+ "lastName, preferredFirstName, emailAddress, adminRole, newRole1, newRole2) "
 				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
+			// The user and their starting read state are committed together; the pool rolls back
+			// and restores auto-commit if the connection comes back mid-transaction
+			connection.setAutoCommit(false);
 			currentUsername = user.getUserName();
 			pstmt.setString(1, currentUsername);
 			
 			currentPassword = user.getPassword();
-			pstmt.setString(2, currentPassword);
+			pstmt.setString(2, storedPassword);
 			
 			currentFirstName = user.getFirstName();
 			pstmt.setString(3, currentFirstName);
@@ -377,9 +397,237 @@ public class Database {
 			pstmt.setBoolean(10, currentNewRole2);
 			
 			pstmt.executeUpdate();
+			seedReplyReadState(connection, Collections.singletonList(user.getUserName()));
+			connection.commit();
+			connection.setAutoCommit(true);
+			userIndex.put(user.getUserName(), user.getFirstName(), user.getPreferredFirstName(),
+					user.getLastName());
+		} finally {
+			users.invalidate(user.getUserName());	// Drops a remembered "no such user"
 		}
 		
 	}
+
+	/*******
+	 * <p> Method: String[] registerUsers(List&lt;User&gt; newUsers) </p>
+	 * 
+	 * <p> Description: Add many users at once, for bulk imports.  Unlike register, this does not
+	 * change the current user fields.  User names that are already taken (or repeated in the
+	 * list) are refused first, the remaining passwords are hashed in parallel on the
+	 * verifier's import workers (so logins do not queue behind them) with no connection held,
+	 * and those users are inserted as JDBC batches with USER_IMPORT_BATCH_SIZE rows per
+	 * transaction, each user starting with every existing reply read, as in register.  If a
+	 * batch fails, it is rolled back and its rows are inserted one at a time, so only the rows
+	 * at fault report an error; rows that committed are reported as added whatever happens
+	 * later.</p>
+	 * 
+	 * <p> The users are expected to have been validated already; this only enforces what the
+	 * table does.</p>
+	 * 
+	 * @param newUsers the users to add, with their passwords in plain text
+	 * 
+	 * @return one entry per user, in order: null if the user was added, or why it was not
+	 * 
+	 */
+	public String[] registerUsers(List<User> newUsers) {
+		String[] errors = new String[newUsers.size()];
+		boolean[] added = new boolean[newUsers.size()];
+		if (newUsers.isEmpty()) return errors;
+
+		// Refuse repeated and taken user names before paying for their hashes.  Only the names
+		// in the list are looked up; one registered meanwhile fails its own insert below.
+		Set<String> seen = new HashSet<>();
+		List<String> candidates = new ArrayList<>(newUsers.size());
+		for (int i = 0; i < newUsers.size(); i++) {
+			String name = newUsers.get(i).getUserName();
+			if (!seen.add(name)) {
+				errors[i] = "The user name " + name + " is already in use";
+			} else {
+				candidates.add(name);
+			}
+		}
+		Set<String> taken;
+		try {
+			taken = takenUserNames(candidates);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			Arrays.fill(errors, "Not added: " + e.getMessage());
+			return errors;
+		}
+		List<Integer> accepted = new ArrayList<>(newUsers.size());
+		List<String> passwords = new ArrayList<>(newUsers.size());
+		for (int i = 0; i < newUsers.size(); i++) {
+			User u = newUsers.get(i);
+			if (errors[i] != null) continue;
+			if (taken.contains(u.getUserName())) {
+				errors[i] = "The user name " + u.getUserName() + " is already in use";
+				continue;
+			}
+			accepted.add(i);
+			passwords.add(u.getPassword());
+		}
+		List<String> hashed = credentials.hashAll(passwords);
+		String[] stored = new String[newUsers.size()];
+		for (int k = 0; k < accepted.size(); k++) stored[accepted.get(k)] = hashed.get(k);
+
+		String insertUser = "INSERT INTO userDB (userName, password, firstName, middleName, "
+				+ "lastName, preferredFirstName, emailAddress, adminRole, newRole1, newRole2) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		try (Connection connection = pool.getConnection()) {
+			// The pool rolls back and restores auto-commit if the connection comes back mid-transaction
+			connection.setAutoCommit(false);
+			try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
+				List<Integer> batch = new ArrayList<>(USER_IMPORT_BATCH_SIZE);
+				for (int i : accepted) {
+					bindNewUser(pstmt, newUsers.get(i), stored[i]);
+					pstmt.addBatch();
+					batch.add(i);
+					if (batch.size() == USER_IMPORT_BATCH_SIZE) {
+						commitUserBatch(connection, pstmt, newUsers, stored, batch, errors, added);
+					}
+				}
+				commitUserBatch(connection, pstmt, newUsers, stored, batch, errors, added);
+			}
+			connection.setAutoCommit(true);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			// Only the rows whose batch never committed were not added
+			for (int i = 0; i < errors.length; i++) {
+				if (errors[i] == null && !added[i]) errors[i] = "Not added: " + e.getMessage();
+			}
+		} finally {
+			for (User u : newUsers) users.invalidate(u.getUserName());	// Drops remembered "no such user"s
+		}
+		for (int i = 0; i < errors.length; i++) {
+			User u = newUsers.get(i);
+			if (added[i]) {
+				userIndex.put(u.getUserName(), u.getFirstName(), u.getPreferredFirstName(), u.getLastName());
+			}
+		}
+		return errors;
+	}
+
+	// Names looked up per query by takenUserNames; like SEARCH_FETCH_CHUNK, unused placeholders
+	// get null so the SQL text stays the same
+	private static final int USER_NAME_CHECK_CHUNK = 50;
+
+	/*
+	 * The names in the list that userDB already has.
+	 */
+	private Set<String> takenUserNames(List<String> names) throws SQLException {
+		Set<String> taken = new HashSet<>();
+		StringBuilder sb = new StringBuilder("SELECT userName FROM userDB WHERE userName IN (");
+		for (int i = 0; i < USER_NAME_CHECK_CHUNK; i++) sb.append(i == 0 ? "?" : ", ?");
+		sb.append(")");
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+			for (int start = 0; start < names.size(); start += USER_NAME_CHECK_CHUNK) {
+				for (int i = 0; i < USER_NAME_CHECK_CHUNK; i++) {
+					pstmt.setString(i + 1, start + i < names.size() ? names.get(start + i) : null);
+				}
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) taken.add(rs.getString(1));
+				}
+			}
+		}
+		return taken;
+	}
+
+	private static void bindNewUser(PreparedStatement pstmt, User u, String storedPassword) throws SQLException {
+		pstmt.setString(1, u.getUserName());
+		pstmt.setString(2, storedPassword);
+		pstmt.setString(3, u.getFirstName());
+		pstmt.setString(4, u.getMiddleName());
+		pstmt.setString(5, u.getLastName());
+		pstmt.setString(6, u.getPreferredFirstName());
+		pstmt.setString(7, u.getEmailAddress());
+		pstmt.setBoolean(8, u.getAdminRole());
+		pstmt.setBoolean(9, u.getNewRole1());
+		pstmt.setBoolean(10, u.getNewRole2());
+	}
+
+	/*
+	 * Run and commit one batch of registerUsers' inserts.  The rows of a committed batch are
+	 * marked added.  A failed batch is rolled back and its rows are tried again one at a time,
+	 * each in its own transaction, so only the rows at fault (such as a name registered since
+	 * the names were checked) get an error.  Either way the connection is left ready for the
+	 * next batch.
+	 */
+	private static void commitUserBatch(Connection connection, PreparedStatement pstmt, List<User> newUsers,
+			String[] stored, List<Integer> batch, String[] errors, boolean[] added) throws SQLException {
+		if (batch.isEmpty()) return;
+		try {
+			pstmt.executeBatch();
+			List<String> names = new ArrayList<>(batch.size());
+			for (int i : batch) names.add(newUsers.get(i).getUserName());
+			seedReplyReadState(connection, names);
+			connection.commit();
+			for (int i : batch) added[i] = true;
+		} catch (SQLException e) {
+			connection.rollback();
+			pstmt.clearBatch();
+			for (int i : batch) {
+				User u = newUsers.get(i);
+				try {
+					bindNewUser(pstmt, u, stored[i]);
+					pstmt.executeUpdate();
+					seedReplyReadState(connection, Collections.singletonList(u.getUserName()));
+					connection.commit();
+					added[i] = true;
+				} catch (SQLException rowError) {
+					connection.rollback();
+					if ("23505".equals(rowError.getSQLState())) {	// duplicate key: the name was taken meanwhile
+						errors[i] = "The user name " + u.getUserName() + " is already in use";
+					} else {
+						rowError.printStackTrace();
+						errors[i] = "Not added: " + rowError.getMessage();
+					}
+				}
+			}
+		}
+		batch.clear();
+	}
+
+	/*
+	 * Start new users with every reply posted so far counted as read, as the per-reply read rows
+	 * did: a reply from before a user registered never had a row for them, so it never showed as
+	 * unread.  Each user gets a watermark at the newest reply of every post and read counters to
+	 * match; read-state rows left under the name by a deleted user are dropped first.  Runs
+	 * inside the caller's transaction.
+	 */
+	private static void seedReplyReadState(Connection connection, List<String> userNames) throws SQLException {
+		// One read of the replies, so the watermarks and the counters agree
+		Map<Integer, Integer> lastReply = new HashMap<>();
+		Map<Integer, Integer> replyCount = new HashMap<>();
+		try (Statement stmt = connection.createStatement();
+			 ResultSet rs = stmt.executeQuery("SELECT postId, MAX(id) AS lastId, COUNT(*) AS n FROM Replies GROUP BY postId")) {
+			while (rs.next()) {
+				lastReply.put(rs.getInt("postId"), rs.getInt("lastId"));
+				replyCount.put(rs.getInt("postId"), rs.getInt("n"));
+			}
+		}
+		try (PreparedStatement deleteMarks = connection.prepareStatement(
+					"DELETE FROM ReplyReadMarks WHERE userName = ?");
+			 PreparedStatement deleteWatermarks = connection.prepareStatement(
+					"DELETE FROM ReplyReadWatermarks WHERE userName = ?");
+			 PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO ReplyReadWatermarks (userName, postId, lastSeenReplyId) VALUES (?, ?, ?)")) {
+			for (String userName : userNames) {
+				deleteMarks.setString(1, userName);
+				deleteMarks.executeUpdate();
+				deleteWatermarks.setString(1, userName);
+				deleteWatermarks.executeUpdate();
+				for (Map.Entry<Integer, Integer> e : lastReply.entrySet()) {
+					insert.setString(1, userName);
+					insert.setInt(2, e.getKey());
+					insert.setInt(3, e.getValue());
+					insert.addBatch();
+				}
+				insert.executeBatch();
+				UnreadCounters.resetUser(connection, userName, replyCount);
+			}
+		}
+	}
 	
 /*******
  *  <p> Method: List getUserList() </p>
@@ -393,7 +641,8 @@ public class Database {
 		List<String> userList = new ArrayList<String>();
 		userList.add("<Select a User>");
 		String query = "SELECT userName FROM userDB";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				userList.add(rs.getString("userName"));
@@ -405,13 +654,65 @@ public class Database {
 		return userList;
 	}
 
+	/*******
+	 * <p> Method: List&lt;String&gt; findUserNames(String prefix, int limit) </p>
+	 * 
+	 * <p> Description: The users whose user name, first, preferred or last name, or "first last"
+	 * name starts with what has been typed, ignoring case, for the typeahead user pickers. The
+	 * answer comes from an in-memory index (see UserPrefixIndex) that is read from userDB the
+	 * first time it is needed and kept current by register, registerUsers, the name updates and
+	 * deleteUser.</p>
+	 * 
+	 * @param prefix what has been typed so far; empty lists users from the start of the index
+	 * @param limit the largest number of user names to return
+	 * @return the matching user names (empty if the index cannot be loaded)
+	 *  
+	 */
+	public List<String> findUserNames(String prefix, int limit) {
+		loadUserIndex();
+		return userIndex.search(prefix, limit);
+	}
+
+	/*******
+	 * <p> Method: String getUserDisplayName(String userName) </p>
+	 * 
+	 * @param userName a user name returned by findUserNames
+	 * @return the "first last" name the pickers show beside it, or null if it is unknown
+	 *  
+	 */
+	public String getUserDisplayName(String userName) {
+		return userIndex.displayName(userName);
+	}
+
+	/*******
+	 * <p> Method: void loadUserIndex() </p>
+	 * 
+	 * <p> Description: Read the user picker index from userDB if it has not been read yet. The
+	 * pickers call this in the background when their page opens, so the first keystroke does
+	 * not wait for it.</p>
+	 *  
+	 */
+	public void loadUserIndex() {
+		if (userIndex.isLoaded()) return;
+		try (Connection connection = pool.getConnection()) {
+			userIndex.load(connection);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// The user columns RowMappers.USER_SUMMARY reads; everything but the password
+	private static final String USER_SUMMARY_COLUMNS = "userName, firstName, middleName, lastName, "
+			+ "preferredFirstName, emailAddress, adminRole, newRole1, newRole2";
+
 	/*****
 	 * <p> Method: getAllUsers()
 	 * </p>
 	 * 
 	 * <p> Description: This method retrieves a complete list of all users from the
 	 * userDB table. It creates a User object for each record and returns them
-	 * in a list, sorted alphabetically by the user's last name.
+	 * in a list, sorted alphabetically by the user's last name. The users'
+	 * passwords are not read and are left null.
 	 * </p>
 	 * 
 	 * 
@@ -421,33 +722,191 @@ public class Database {
 	 */
 	public List<User> getAllUsers(){
 		List<User> userList = new ArrayList<>();
-		String query = "SELECT * FROM userDB ORDER BY lastName ASC";
-		try (Statement stmt = connection.createStatement();
-			 ResultSet rs = stmt.executeQuery(query)) {
-
-			while (rs.next()) {
-				
-				User user = new User(
-					rs.getString("userName"),
-					rs.getString("password"),
-					rs.getString("firstName"),
-					rs.getString("middleName"),
-					rs.getString("lastName"),
-					rs.getString("preferredFirstName"),
-					rs.getString("emailAddress"),
-					rs.getBoolean("adminRole"),
-					rs.getBoolean("newRole1"),
-					rs.getBoolean("newRole2")
-				);
-				userList.add(user);
-			}
+		String query = "SELECT " + USER_SUMMARY_COLUMNS + " FROM userDB ORDER BY lastName ASC";
+		try {
+			query(query, pstmt -> { }, RowMappers.USER_SUMMARY, userList::add);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 		return userList;
-		
+	}
+
+	/*******
+	 * <p> Method: List&lt;User&gt; getStudents() </p>
+	 * 
+	 * <p> Description: Retrieve the users the grading system lists as students, sorted by last
+	 * name: those with the student role, and those with neither the staff nor the admin role.
+	 * The users' passwords are not read and are left null.</p>
+	 * 
+	 * @return the students (empty if the query fails)
+	 *  
+	 */
+	public List<User> getStudents() {
+		List<User> students = new ArrayList<>();
+		String query = "SELECT " + USER_SUMMARY_COLUMNS + " FROM userDB "
+				+ "WHERE newRole2 = TRUE OR (NOT COALESCE(newRole1, FALSE) AND NOT COALESCE(adminRole, FALSE)) "
+				+ "ORDER BY lastName ASC";
+		try {
+			query(query, pstmt -> { }, RowMappers.USER_SUMMARY, students::add);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return students;
 	}
 	
+	/*******
+	 * <p> Method: List&lt;User&gt; getUserDirectoryPage(String prefix, UserSort sort,
+	 * boolean ascending, int offset, int pageSize) </p>
+	 * 
+	 * <p> Description: Retrieve one page of the user list for the admin List Users screen.
+	 * Only the columns the list shows are read; the users' passwords are left null. The rows are
+	 * read in the order of the index for the sort (see UserSort), but the database still steps
+	 * over the first offset rows, so a page costs more the further down the list it starts.</p>
+	 * 
+	 * @param prefix only users whose user name, first name, last name or email address starts
+	 * with this, ignoring case; null or empty for every user
+	 * @param sort the column to sort on
+	 * @param ascending true for A to Z
+	 * @param offset the position of the first user to return
+	 * @param pageSize the largest number of users to return
+	 * @return the page of users (empty past the end or if the query fails)
+	 *  
+	 */
+	public List<User> getUserDirectoryPage(String prefix, UserSort sort, boolean ascending, int offset,
+			int pageSize) {
+		List<User> page = new ArrayList<>();
+		String key = userPrefixKey(prefix);
+		String query = "SELECT " + USER_SUMMARY_COLUMNS + " FROM userDB"
+				+ (key != null ? USER_PREFIX_FILTER : "")
+				+ " ORDER BY " + sort.orderBy(ascending) + " LIMIT ? OFFSET ?";
+		try {
+			query(query, pstmt -> {
+				int idx = bindUserPrefix(pstmt, key);
+				pstmt.setInt(idx++, pageSize);
+				pstmt.setInt(idx++, offset);
+			}, RowMappers.USER_SUMMARY, page::add);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return page;
+	}
+
+	/*******
+	 * <p> Method: int countUserDirectory(String prefix) </p>
+	 * 
+	 * @param prefix the filter, as for getUserDirectoryPage
+	 * @return the number of users getUserDirectoryPage can page through, or 0 if the query fails
+	 *  
+	 */
+	public int countUserDirectory(String prefix) {
+		String key = userPrefixKey(prefix);
+		String query = "SELECT COUNT(*) FROM userDB" + (key != null ? USER_PREFIX_FILTER : "");
+		try {
+			Integer count = queryOne(query, pstmt -> bindUserPrefix(pstmt, key), rs -> rs.getInt(1));
+			return (count != null) ? count : 0;
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return 0;
+	}
+
+	// The user directory's prefix filter, on the lower-case keys of migration 7. Each key is
+	// matched by its own range query so every one reads its index; OR-ing them in one WHERE
+	// would scan the whole table.
+	private static final String USER_PREFIX_FILTER = " WHERE userName IN ("
+			+ "SELECT userName FROM userDB WHERE userNameKey >= ? AND userNameKey < ? "
+			+ "UNION SELECT userName FROM userDB WHERE firstNameKey >= ? AND firstNameKey < ? "
+			+ "UNION SELECT userName FROM userDB WHERE lastNameKey >= ? AND lastNameKey < ? "
+			+ "UNION SELECT userName FROM userDB WHERE emailKey >= ? AND emailKey < ?)";
+
+	// The lower-case prefix the keys must start with, or null for no filter
+	private static String userPrefixKey(String prefix) {
+		if (prefix == null || prefix.trim().isEmpty()) return null;
+		return prefix.trim().toLowerCase();
+	}
+
+	// Set the filter's parameters, if there is a filter, and return the next parameter index.
+	// A key starts with the prefix if it sorts between the prefix and the prefix followed by
+	// the highest character.
+	private static int bindUserPrefix(PreparedStatement pstmt, String key) throws SQLException {
+		int idx = 1;
+		if (key != null) {
+			for (int i = 0; i < 4; i++) {
+				pstmt.setString(idx++, key);
+				pstmt.setString(idx++, key + '\uffff');
+			}
+		}
+		return idx;
+	}
+	
+/*******
+ * <p> Method: Authentication authenticate(String username, String password) </p>
+ * 
+ * <p> Description: Check a username and password and, if they match, return the user together
+ * 		with a bitmask of the roles that user plays.  The row comes from the user directory, so
+ * 		this is at most one query however many roles the user has.  The password is checked
+ * 		against the stored hash by the CredentialVerifier; a row still holding a plain-text
+ * 		password, or a hash made with other parameters, is rehashed now that the password is
+ * 		known.  The current user attributes are set as getUserAccountDetails sets them, with
+ * 		the password as typed.</p>
+ * 
+ * @param username is the username typed at login
+ * 
+ * @param password is the password typed at login
+ * 
+ * @return the user and roles, or null if the username and password do not match a user
+ * 
+ */
+	public Authentication authenticate(String username, String password) {
+		if (username == null || password == null) return null;
+		UserDirectory.Snapshot user;
+		try {
+			user = lookupUser(username);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+		if (user == null || !credentials.verify(password, user.getPassword())) return null;
+		if (passwordHasher.needsRehash(user.getPassword()))
+			rehashPassword(username, user.getPassword(), password);
+		currentUsername = user.getUserName();
+		currentPassword = password;
+		currentFirstName = user.getFirstName();
+		currentMiddleName = user.getMiddleName();
+		currentLastName = user.getLastName();
+		currentPreferredFirstName = user.getPreferredFirstName();
+		currentEmailAddress = user.getEmailAddress();
+		currentAdminRole = user.getAdminRole();
+		currentNewRole1 = user.getNewRole1();
+		currentNewRole2 = user.getNewRole2();
+		User loggedIn = user.toUser();
+		loggedIn.setPassword(password);		// The rest of the session sees what was typed
+		return new Authentication(loggedIn);
+	}
+
+
+	/*
+	 * Replace a plain-text or outdated password hash after a successful login.  The row is only
+	 * updated if it still holds the value that was verified, so a password changed in the
+	 * meantime is not overwritten.
+	 */
+	private void rehashPassword(String username, String oldStored, String password) {
+		String newStored = credentials.hash(password);
+		String query = "UPDATE userDB SET password = ? WHERE userName = ? AND password = ?";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, newStored);
+			pstmt.setString(2, username);
+			pstmt.setString(3, oldStored);
+			pstmt.executeUpdate();
+		} catch (SQLException e) {
+			e.printStackTrace();	// The old value still verifies; try again at the next login
+		} finally {
+			users.invalidate(username);
+		}
+	}
+
+
 /*******
  * <p> Method: boolean loginAdmin(User user) </p>
  * 
@@ -461,17 +920,8 @@ public class Database {
  */
 	public boolean loginAdmin(User user){
 		// Validates an admin user's login credentials so the user can login in as an Admin.
-		String query = "SELECT * FROM userDB WHERE userName = ? AND password = ? AND "
-				+ "adminRole = TRUE";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			ResultSet rs = pstmt.executeQuery();
-			return rs.next();	// If a row is returned, rs.next() will return true		
-		} catch  (SQLException e) {
-			e.printStackTrace();
-		}
-		return false;
+		Authentication login = authenticate(user.getUserName(), user.getPassword());
+		return login != null && login.hasRole(Authentication.ROLE_ADMIN);
 	}
 	
 	
@@ -488,17 +938,8 @@ public class Database {
  */
 	public boolean loginRole1(User user) {
 		// Validates a student user's login credentials.
-		String query = "SELECT * FROM userDB WHERE userName = ? AND password = ? AND "
-				+ "newRole1 = TRUE";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			ResultSet rs = pstmt.executeQuery();
-			return rs.next();
-		} catch  (SQLException e) {
-			   e.printStackTrace();
-		}
-		return false;
+		Authentication login = authenticate(user.getUserName(), user.getPassword());
+		return login != null && login.hasRole(Authentication.ROLE_STAFF);
 	}
 
 	/*******
@@ -514,17 +955,8 @@ public class Database {
 	 */
 	// Validates a reviewer user's login credentials.
 	public boolean loginRole2(User user) {
-		String query = "SELECT * FROM userDB WHERE userName = ? AND password = ? AND "
-				+ "newRole2 = TRUE";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			ResultSet rs = pstmt.executeQuery();
-			return rs.next();
-		} catch  (SQLException e) {
-			   e.printStackTrace();
-		}
-		return false;
+		Authentication login = authenticate(user.getUserName(), user.getPassword());
+		return login != null && login.hasRole(Authentication.ROLE_STUDENT);
 	}
 	
 	
@@ -540,16 +972,8 @@ public class Database {
 	 */
 	// Checks if a user already exists in the database based on their userName.
 	public boolean doesUserExist(String userName) {
-		String query = "SELECT COUNT(*) FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			
-			pstmt.setString(1, userName);
-			ResultSet rs = pstmt.executeQuery();
-			
-			if (rs.next()) {
-				// If the count is greater than 0, the user exists
-				return rs.getInt(1) > 0;
-			}
+		try {
+			return lookupUser(userName) != null;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -580,12 +1004,44 @@ public class Database {
 	// Omar Note - invitation duration in seconds
 	private static final long INVITE_EXPIRATION_SECONDS = 300; // 5 minutes
 	
-	// Omar Note - method for invitation is expired
-	private boolean isInvitationExpired(Timestamp createdAt) {
-		if (createdAt == null) return true;
-		Instant created = createdAt.toInstant();
-		Instant expiry = created.plusSeconds(INVITE_EXPIRATION_SECONDS);
-		return Instant.now().isAfter(expiry);
+	// Invitations created after this moment have not expired.  Rows are filtered on this in
+	// SQL and deleted later by purgeExpiredInvitations, so reading never deletes.
+	private static Timestamp invitationCutoff() {
+		return new Timestamp(System.currentTimeMillis() - INVITE_EXPIRATION_SECONDS * 1000);
+	}
+	
+	/*******
+	 * <p> Method: int purgeExpiredInvitations() </p>
+	 * 
+	 * <p> Description: Delete every expired invitation with one range delete on the created_at
+	 * index.  Runs in the background every INVITATION_SWEEP_SECONDS; the read methods already
+	 * ignore expired rows, so this only keeps the table small.</p>
+	 * 
+	 * @return the number of invitations deleted, or -1 if the delete failed
+	 * 
+	 */
+	public int purgeExpiredInvitations() {
+		String query = "DELETE FROM InvitationCodes WHERE created_at <= ? OR created_at IS NULL";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setTimestamp(1, invitationCutoff());
+			return pstmt.executeUpdate();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+	
+	// Purge now, then every INVITATION_SWEEP_SECONDS until closeConnection
+	private void startInvitationSweeper() {
+		if (INVITATION_SWEEP_SECONDS <= 0) return;
+		invitationSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "invitation-sweeper");
+			t.setDaemon(true);
+			return t;
+		});
+		invitationSweeper.scheduleWithFixedDelay(this::purgeExpiredInvitations, 0,
+				INVITATION_SWEEP_SECONDS, TimeUnit.SECONDS);
 	}
 	
 	/*******
@@ -609,7 +1065,8 @@ public class Database {
 		String code = UUID.randomUUID().toString().substring(0, 6); // Generate a random 6-character code
 		String query = "INSERT INTO InvitationCodes (code, emailaddress, roles, created_at) VALUES (?, ?, ?, ?)";
 		Timestamp now = new Timestamp(System.currentTimeMillis());
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, code);
 			pstmt.setString(2, emailAddress);
 			pstmt.setString(3, rolesCSV);
@@ -621,6 +1078,109 @@ public class Database {
 		return code;
 	}
 
+
+	/*******
+	 * <p> Method: int generateInvitationCodes(List&lt;Invitation&gt; invitations) </p>
+	 * 
+	 * <p> Description: Generate a code for every invitation in the list and add them all to the
+	 * InvitationCodes table at once.  The existing codes are read once so new codes can be checked
+	 * for collisions in memory, and the rows are inserted in JDBC batches in a single transaction:
+	 * either every invitation is added or, on an error, none are.</p>
+	 * 
+	 * <p> Each invitation's code is set when the rows have been committed.</p>
+	 * 
+	 * @param invitations the email addresses and roles to invite
+	 * 
+	 * @return the number of invitations added, or -1 if nothing was added because of an error
+	 * 
+	 */
+	public int generateInvitationCodes(List<Invitation> invitations) {
+		if (invitations.isEmpty()) return 0;
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		String insert = "INSERT INTO InvitationCodes (code, emailaddress, roles, created_at) VALUES (?, ?, ?, ?)";
+		try (Connection connection = pool.getConnection()) {
+			Set<String> taken = new HashSet<>();
+			try (Statement stmt = connection.createStatement();
+				 ResultSet rs = stmt.executeQuery("SELECT code FROM InvitationCodes")) {
+				while (rs.next()) {
+					taken.add(rs.getString(1));
+				}
+			}
+			List<String> codes = new ArrayList<>(invitations.size());
+			for (int i = 0; i < invitations.size(); i++) {
+				String code;
+				do {
+					code = newInvitationCode();
+				} while (!taken.add(code));
+				codes.add(code);
+			}
+
+			// The pool rolls back and restores auto-commit if the connection comes back mid-transaction
+			connection.setAutoCommit(false);
+			try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+				for (int i = 0; i < invitations.size(); i++) {
+					Invitation invitation = invitations.get(i);
+					pstmt.setString(1, codes.get(i));
+					pstmt.setString(2, invitation.getEmailAddress());
+					pstmt.setString(3, invitation.getRoles());
+					pstmt.setTimestamp(4, now);
+					pstmt.addBatch();
+					if ((i + 1) % INVITATION_BATCH_SIZE == 0) pstmt.executeBatch();
+				}
+				pstmt.executeBatch();
+			}
+			connection.commit();
+			connection.setAutoCommit(true);
+
+			for (int i = 0; i < invitations.size(); i++) {
+				invitations.get(i).setCode(codes.get(i));
+			}
+			return invitations.size();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	// Letters and digits that cannot be mistaken for one another when read from an email
+	private static final char[] INVITATION_CODE_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+	private static final SecureRandom INVITATION_RANDOM = new SecureRandom();
+
+	// A random six character code, the same length as generateInvitationCode's
+	private static String newInvitationCode() {
+		char[] code = new char[6];
+		for (int i = 0; i < code.length; i++) {
+			code[i] = INVITATION_CODE_CHARS[INVITATION_RANDOM.nextInt(INVITATION_CODE_CHARS.length)];
+		}
+		return new String(code);
+	}
+
+	
+	/*******
+	 * <p> Method: Set&lt;String&gt; getInvitedEmailAddresses() </p>
+	 * 
+	 * <p> Description: The email addresses that have an outstanding (unexpired) invitation, read
+	 * with one query so a bulk import does not have to ask about each address in turn.</p>
+	 * 
+	 * @return the invited email addresses; empty if there are none or on an error
+	 * 
+	 */
+	public Set<String> getInvitedEmailAddresses() {
+		String query = "SELECT emailAddress FROM InvitationCodes WHERE created_at > ?";
+		Set<String> emails = new HashSet<>();
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setTimestamp(1, invitationCutoff());
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				emails.add(rs.getString(1));
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return emails;
+	}
+
 	
 	/*******
 	 * <p> Method: int getNumberOfInvitations() </p>
@@ -631,21 +1191,17 @@ public class Database {
 	 * 
 	 */
 	// Number of invitations in the database
-	// Omar Note - changed to only count non expired invitations
+	// Omar Note - changed to only count non expired invitations; expired rows are left for the
+	// invitation sweeper rather than deleted here
 	public int getNumberOfInvitations() {
-		String query = "SELECT code, created_at FROM InvitationCodes";
+		String query = "SELECT COUNT(*) FROM InvitationCodes WHERE created_at > ?";
 		int count = 0;
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setTimestamp(1, invitationCutoff());
 			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				Timestamp created = rs.getTimestamp("created_at");
-				String code = rs.getString("code");
-				if (isInvitationExpired(created)) {
-					// Clean expired invites
-					removeInvitationAfterUse(code); 
-				} else {
-					count++;
-				}
+			if (rs.next()) {
+				count = rs.getInt(1);
 			}
 		} catch  (SQLException e) {
 			e.printStackTrace();
@@ -667,19 +1223,14 @@ public class Database {
 	// Check to see if an email address is already in the database
 	// Omar Note - made to only look at non expired invites
 	public boolean emailaddressHasBeenUsed(String emailAddress) {
-		String query = "SELECT code, created_at FROM InvitationCodes WHERE emailAddress = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		String query = "SELECT 1 FROM InvitationCodes WHERE emailAddress = ? AND created_at > ? "
+				+ "LIMIT 1";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, emailAddress);
+			pstmt.setTimestamp(2, invitationCutoff());
 			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				Timestamp created = rs.getTimestamp("created_at");
-				String code = rs.getString("code");
-				if (isInvitationExpired(created)) {
-					removeInvitationAfterUse(code);
-					continue;
-				}
-				return true;
-				}
+			return rs.next();
 			} catch (SQLException e) {
 				e.printStackTrace();
 			}
@@ -698,18 +1249,15 @@ public class Database {
 	 * 
 	 */
 	// Obtain the roles associated with an invitation code.
-	// Omar Note - changed to removes invites if expired
+	// Omar Note - ignores expired invites
 	public String getRoleGivenAnInvitationCode(String code) {
-		String query = "SELECT roles, created_at FROM InvitationCodes WHERE code = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		String query = "SELECT roles FROM InvitationCodes WHERE code = ? AND created_at > ?";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, code);
+			pstmt.setTimestamp(2, invitationCutoff());
 			ResultSet rs = pstmt.executeQuery();
 			if (rs.next()) {
-				Timestamp created = rs.getTimestamp("created_at");
-				if (isInvitationExpired(created)) {
-					removeInvitationAfterUse(code);
-					return "";
-				}
 				return rs.getString("roles");
 			}
 		} catch (SQLException e) {
@@ -730,18 +1278,15 @@ public class Database {
 	 * 
 	 */
 	// For a given invitation code, return the associated email address of an empty string
-	// Omar Note - deletes expired invites 
+	// Omar Note - ignores expired invites
 	public String getEmailAddressUsingCode (String code ) {
-		String query = "SELECT emailAddress, created_at FROM InvitationCodes WHERE code = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		String query = "SELECT emailAddress FROM InvitationCodes WHERE code = ? AND created_at > ?";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, code);
+			pstmt.setTimestamp(2, invitationCutoff());
 			ResultSet rs = pstmt.executeQuery();
 			if (rs.next()) {
-				Timestamp created = rs.getTimestamp("created_at");
-				if (isInvitationExpired(created)) {
-					removeInvitationAfterUse(code);
-					return "";
-				}
 				return rs.getString("emailAddress");
 			}
 		} catch (SQLException e) {
@@ -769,7 +1314,8 @@ public class Database {
 	//Omar added method for invites
 	public boolean consumeInvitation(String code) {
 		String query = "DELETE FROM InvitationCodes WHERE code = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, code);
 			int affected = pstmt.executeUpdate();
 			return affected > 0; 
@@ -791,15 +1337,11 @@ public class Database {
 	 */
 	// Get the First Name
 	public String getFirstName(String username) {
-		String query = "SELECT firstName FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();
-			
-			if (rs.next()) {
-				return rs.getString("firstName"); // Return the first name if user exists
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				return user.getFirstName(); // Return the first name if user exists
 			}
-			
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -821,13 +1363,17 @@ public class Database {
 	// update the first name
 	public void updateFirstName(String username, String firstName) {
 		String query = "UPDATE userDB SET firstName = ? WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, firstName);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentFirstName = firstName;
+			userIndex.setFirstName(username, firstName);
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			users.invalidate(username);
 		}
 	}
 
@@ -844,13 +1390,10 @@ public class Database {
 	 */
 	// get the middle name
 	public String getMiddleName(String username) {
-		String query = "SELECT MiddleName FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();
-			
-			if (rs.next()) {
-				return rs.getString("middleName"); // Return the middle name if user exists
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				return user.getMiddleName(); // Return the middle name if user exists
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -873,13 +1416,16 @@ public class Database {
 	// update the middle name
 	public void updateMiddleName(String username, String middleName) {
 		String query = "UPDATE userDB SET middleName = ? WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, middleName);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentMiddleName = middleName;
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			users.invalidate(username);
 		}
 	}
 	
@@ -896,12 +1442,10 @@ public class Database {
 	 */
 	// get he last name
 	public String getLastName(String username) {
-		String query = "SELECT LastName FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();
-			if (rs.next()) {
-				return rs.getString("lastName"); // Return last name role if user exists
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				return user.getLastName(); // Return last name role if user exists
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -924,13 +1468,17 @@ public class Database {
 	// update the last name
 	public void updateLastName(String username, String lastName) {
 		String query = "UPDATE userDB SET lastName = ? WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, lastName);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentLastName = lastName;
+			userIndex.setLastName(username, lastName);
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			users.invalidate(username);
 		}
 	}
 	
@@ -947,15 +1495,11 @@ public class Database {
 	 */
 	// get the preferred first name
 	public String getPreferredFirstName(String username) {
-		String query = "SELECT preferredFirstName FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();
-			
-			if (rs.next()) {
-				return rs.getString("firstName"); // Return the preferred first name if user exists
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				return user.getPreferredFirstName(); // Return the preferred first name if user exists
 			}
-			
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -977,13 +1521,17 @@ public class Database {
 	// update the preferred first name of the user
 	public void updatePreferredFirstName(String username, String preferredFirstName) {
 		String query = "UPDATE userDB SET preferredFirstName = ? WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, preferredFirstName);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentPreferredFirstName = preferredFirstName;
+			userIndex.setPreferredFirstName(username, preferredFirstName);
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			users.invalidate(username);
 		}
 	}
 	
@@ -1000,15 +1548,11 @@ public class Database {
 	 */
 	// get the email address
 	public String getEmailAddress(String username) {
-		String query = "SELECT emailAddress FROM userDB WHERE userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();
-			
-			if (rs.next()) {
-				return rs.getString("emailAddress"); // Return the email address if user exists
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				return user.getEmailAddress(); // Return the email address if user exists
 			}
-			
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1030,27 +1574,34 @@ public class Database {
 	// update the email address
 	public void updateEmailAddress(String username, String emailAddress) {
 		String query = "UPDATE userDB SET emailAddress = ? WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setString(1, emailAddress);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentEmailAddress = emailAddress;
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			users.invalidate(username);
 		}
 	}
 	
 	
 	//Chuan Nguyen Added this
 	public void updateUserPassword(String username, String newPassword) {
+		String storedPassword = (newPassword == null) ? null : credentials.hash(newPassword);
 		String query = "UPDATE userDB SET password = ? WHERE username = ?";  
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, newPassword);
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, storedPassword);
 			pstmt.setString(2, username);
 			pstmt.executeUpdate();
 			currentPassword = newPassword;  
 			} catch (SQLException e) {
 				e.printStackTrace();
+			} finally {
+				users.invalidate(username);
 			}
 		}
 	
@@ -1066,26 +1617,73 @@ public class Database {
 	 */
 	// get the attributes for a specified user
 	public boolean getUserAccountDetails(String username) {
-		String query = "SELECT * FROM userDB WHERE username = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, username);
-			ResultSet rs = pstmt.executeQuery();			
-			rs.next();
-			currentUsername = rs.getString(2);
-			currentPassword = rs.getString(3);
-			currentFirstName = rs.getString(4);
-			currentMiddleName = rs.getString(5);
-			currentLastName = rs.getString(6);
-			currentPreferredFirstName = rs.getString(7);
-			currentEmailAddress = rs.getString(8);
-			currentAdminRole = rs.getBoolean(9);
-			currentNewRole1 = rs.getBoolean(10);
-			currentNewRole2 = rs.getBoolean(11);
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user == null) return false;
+			// The stored password is a hash; keep the one typed in this session, if it is this user's
+			if (!user.getUserName().equals(currentUsername)) currentPassword = null;
+			currentUsername = user.getUserName();
+			currentFirstName = user.getFirstName();
+			currentMiddleName = user.getMiddleName();
+			currentLastName = user.getLastName();
+			currentPreferredFirstName = user.getPreferredFirstName();
+			currentEmailAddress = user.getEmailAddress();
+			currentAdminRole = user.getAdminRole();
+			currentNewRole1 = user.getNewRole1();
+			currentNewRole2 = user.getNewRole2();
 			return true;
 		} catch (SQLException e) {
 			return false;
 		}
 	}
+
+
+	/*******
+	 * <p> Method: User getUser(String username) </p>
+	 * 
+	 * <p> Description: Get all the attributes of a user given that user's username, without
+	 * 		changing the current user attributes.</p>
+	 * 
+	 * @param username is the username of the user
+	 * 
+	 * @return a new User holding the user's attributes, or null if there is no such user
+	 *  
+	 */
+	public User getUser(String username) {
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			return user == null ? null : user.toUser();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+
+	/*
+	 * The profile and role getters all go through here, so a user's row is read from userDB once
+	 * and then served from the user directory until something writes that row.
+	 */
+	private UserDirectory.Snapshot lookupUser(String username) throws SQLException {
+		return users.get(username, this::loadUser);
+	}
+
+	// Read one user's row for the user directory
+	private UserDirectory.Snapshot loadUser(String username) throws SQLException {
+		String query = "SELECT userName, password, firstName, middleName, lastName, "
+				+ "preferredFirstName, emailAddress, adminRole, newRole1, newRole2 "
+				+ "FROM userDB WHERE userName = ?";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, username);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (!rs.next()) return null;
+				return new UserDirectory.Snapshot(rs.getString(1), rs.getString(2),
+						rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+						rs.getString(7), rs.getBoolean(8), rs.getBoolean(9), rs.getBoolean(10));
+			}
+		}
+	}
 	
 	
 	/*******
@@ -1105,9 +1703,19 @@ public class Database {
 	 */
 	// Update a users role
 	public boolean updateUserRole(String username, String role, String value) {
+		try {
+			return writeUserRole(username, role, value);
+		} finally {
+			users.invalidate(username);
+		}
+	}
+
+	// The body of updateUserRole, which invalidates the user directory whatever happens here
+	private boolean writeUserRole(String username, String role, String value) {
 		if (role.compareTo("Admin") == 0) {
 			String query = "UPDATE userDB SET adminRole = ? WHERE username = ?";
-			try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			try (Connection connection = pool.getConnection();
+				 PreparedStatement pstmt = connection.prepareStatement(query)) {
 				pstmt.setString(1, value);
 				pstmt.setString(2, username);
 				pstmt.executeUpdate();
@@ -1122,7 +1730,8 @@ public class Database {
 		}
 		if (role.compareTo("Role1") == 0) {
 			String query = "UPDATE userDB SET newRole1 = ? WHERE username = ?";
-			try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			try (Connection connection = pool.getConnection();
+				 PreparedStatement pstmt = connection.prepareStatement(query)) {
 				pstmt.setString(1, value);
 				pstmt.setString(2, username);
 				pstmt.executeUpdate();
@@ -1137,7 +1746,8 @@ public class Database {
 		}
 		if (role.compareTo("Role2") == 0) {
 			String query = "UPDATE userDB SET newRole2 = ? WHERE username = ?";
-			try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			try (Connection connection = pool.getConnection();
+				 PreparedStatement pstmt = connection.prepareStatement(query)) {
 				pstmt.setString(1, value);
 				pstmt.setString(2, username);
 				pstmt.executeUpdate();
@@ -1169,9 +1779,11 @@ public class Database {
 	/*******
 	 * <p> Method: String getCurrentPassword() </p>
 	 * 
-	 * <p> Description: Get the current user's password.</p>
+	 * <p> Description: Get the current user's password as it was typed at login, registration
+	 * or the last password change in this session.  Passwords are stored hashed, so it is never
+	 * read back from the database.</p>
 	 * 
-	 * @return the password value is returned
+	 * @return the password value is returned, or null if it was not typed in this session
 	 *  
 	 */
 	public String getCurrentPassword() { return currentPassword;};
@@ -1264,10 +1876,51 @@ public class Database {
 	 */
 	public boolean getCurrentNewRole2() { return currentNewRole2;};
 
+	/*
+	 * Sets the parameters of a query's statement.
+	 */
+	private interface Binder {
+		void bind(PreparedStatement pstmt) throws SQLException;
+	}
+
+	/*
+	 * Run a query and hand each row, mapped, to the action as it is read, STREAM_FETCH_SIZE rows
+	 * at a time, so nothing but the current rows is held.  The connection is returned to the
+	 * pool before this method returns; the action must not call back into the Database.
+	 */
+	private <T> void query(String sql, Binder binder, RowMapper<T> mapper, Consumer<? super T> action)
+			throws SQLException {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql)) {
+			binder.bind(pstmt);
+			pstmt.setFetchSize(STREAM_FETCH_SIZE);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) action.accept(mapper.map(rs));
+			}
+		}
+	}
+
+	/*
+	 * Run a query expected to return at most one row and map it; null if there is none.
+	 */
+	private <T> T queryOne(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql)) {
+			binder.bind(pstmt);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				return rs.next() ? mapper.map(rs) : null;
+			}
+		}
+	}
+
 	/* ---------------------------------------------------------------------
 	 *  OMAR HW2 NEW: Post & Reply related methods
 	 * ------------------------------------------------------------------ */
 	
+	// Number of body characters shown in post listings; paged listings fetch one more than this
+	// so the view can tell whether the body was cut short
+	public static final int POST_PREVIEW_LENGTH = 200;
+
 	/*******
 	 * <p> Method: int createPost(Post p) </p>
 	 * 
@@ -1281,7 +1934,11 @@ public class Database {
 	 */
 	public int createPost(Post p) {
 		String insert = "INSERT INTO Posts (title, body, author, thread, created_at, deleted) VALUES (?, ?, ?, ?, ?, ?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+			// The post and its index entries are committed together; if indexing fails the pool
+			// rolls the insert back, so a post is never stored without being searchable
+			connection.setAutoCommit(false);
 			pstmt.setString(1, p.getTitle());
 			pstmt.setString(2, p.getBody());
 			pstmt.setString(3, p.getAuthorUsername());
@@ -1304,6 +1961,11 @@ public class Database {
 					} catch (SQLException ex) {
 						ex.printStackTrace();
 					}
+					if (!p.getDeleted()) {
+						SearchIndex.indexDocument(connection, SearchIndex.POST, newId, p.getTitle(), p.getBody());
+					}
+					connection.commit();
+					connection.setAutoCommit(true);
 					return newId;
 				}
 			}
@@ -1324,33 +1986,49 @@ public class Database {
 	 */
 	public List<Post> getPosts() {
 		List<Post> posts = new ArrayList<>();
-		String query = "SELECT id, title, body, author, thread, created_at, deleted FROM Posts WHERE deleted = FALSE ORDER BY created_at DESC";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				Post p = new Post();
-				p.setId(rs.getInt("id"));
-				p.setTitle(rs.getString("title"));
-				p.setBody(rs.getString("body"));
-				p.setAuthorUsername(rs.getString("author"));
-				p.setThread(rs.getString("thread"));
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) p.setCreatedAt(ts.toInstant());
-				p.setDeleted(rs.getBoolean("deleted"));
-				posts.add(p);
-			}
+		forEachPost(null, posts::add);
+		return posts; 
+	}
+
+	/*******
+	 * <p> Method: boolean forEachPost(String thread, Consumer&lt;? super Post&gt; action) </p>
+	 * 
+	 * <p> Description: Hand every non-deleted post, newest first, to the action as it is read
+	 * from the database, so a listing or export of any size holds only a few rows at a time.
+	 * The action runs while a pooled connection is held and must not call back into the
+	 * Database. If thread is empty it is ignored.</p>
+	 * 
+	 * @param thread the thread name to filter by, or null for every thread
+	 * @param action what to do with each post
+	 * @return true if every post was read, false if the query failed part way
+	 *  
+	 */
+	public boolean forEachPost(String thread, Consumer<? super Post> action) {
+		boolean hasThread = (thread != null && thread.trim().length() > 0);
+		StringBuilder sb = new StringBuilder(
+				"SELECT id, title, body, author, thread, created_at, deleted FROM Posts WHERE deleted = FALSE");
+		if (hasThread) {
+			sb.append(" AND thread = ?");
+		}
+		sb.append(" ORDER BY created_at DESC");
+		try {
+			query(sb.toString(), pstmt -> {
+				if (hasThread) pstmt.setString(1, thread);
+			}, RowMappers.POST, action);
+			return true;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
-		return posts; 
+		return false;
 	}
 
 	/*******
 	 * <p> Method: List&lt;Post&gt; searchPosts(String keyword, String thread) </p>
 	 * 
 	 * <p> Description: Search posts by keyword (title or body) and optional thread.
-	 * Returns posts (not deleted posts) matching the search, ordered by newest.
-	 * If keyword is empty it is ignored; if thread is empty it is ignored.</p>
+	 * Returns posts (not deleted posts) matching the search, best match first, using
+	 * the search index (see SearchIndex). Without a keyword the posts are ordered by
+	 * newest. If keyword is empty it is ignored; if thread is empty it is ignored.</p>
 	 * 
 	 * @param keyword the search keyword to match in title or body (not case sensitive)
 	 * @param thread the thread name to filter by, or null to ignore
@@ -1358,38 +2036,230 @@ public class Database {
 	 *  
 	 */
 	public List<Post> searchPosts(String keyword, String thread) {
+		if (!SearchIndex.tokenize(keyword).isEmpty()) {
+			return searchPostsRanked(keyword, thread, null, null, Integer.MAX_VALUE, false);
+		}
+		List<Post> posts = new ArrayList<>();
+		forEachPost(thread, posts::add);
+		return posts;
+	}
+
+	/*******
+	 * <p> Method: List&lt;Post&gt; searchPostsRanked(String keyword, String thread, String author,
+	 * String unreadForUser, int limit) </p>
+	 * 
+	 * <p> Description: Search posts through the search index and return the best matches
+	 * first, with body previews as in getPostsPage. Every word of the keyword must occur in
+	 * the title or body; the last word may be the start of a word. The other filters are
+	 * ignored when null or empty. A keyword with no searchable words (see hasSearchTerms)
+	 * matches nothing; callers page through getPostsPage instead.</p>
+	 * 
+	 * @param keyword the words to search for
+	 * @param thread the thread name to filter by
+	 * @param author only posts written by this user
+	 * @param unreadForUser only posts this user has not read
+	 * @param limit the largest number of posts to return
+	 * @return the matching posts, best match first
+	 *  
+	 */
+	public List<Post> searchPostsRanked(String keyword, String thread, String author, String unreadForUser,
+			int limit) {
+		if (!hasSearchTerms(keyword)) return new ArrayList<>();
+		return searchPostsRanked(keyword, thread, author, unreadForUser, limit, true);
+	}
+
+	/*******
+	 * <p> Method: boolean hasSearchTerms(String keyword) </p>
+	 * 
+	 * <p> Description: Tell whether a keyword has any words the search index can look up. A
+	 * keyword of only stop words or punctuation has none, and should be treated as no
+	 * keyword.</p>
+	 * 
+	 * @param keyword the user's search text
+	 * @return true if a ranked search for it can match anything
+	 *  
+	 */
+	public static boolean hasSearchTerms(String keyword) {
+		return !SearchIndex.tokenize(keyword).isEmpty();
+	}
+
+	// Number of ids looked up per query when loading ranked search results.  The IN list always
+	// has this many placeholders (unused ones get -1) so the SQL text, and its cached statement,
+	// stays the same.
+	private static final int SEARCH_FETCH_CHUNK = 50;
+
+	private List<Post> searchPostsRanked(String keyword, String thread, String author, String unreadForUser,
+			int limit, boolean preview) {
+		List<Post> posts = new ArrayList<>();
+		boolean hasThread = (thread != null && thread.trim().length() > 0);
+		boolean hasAuthor = (author != null && author.trim().length() > 0);
+		boolean hasUnread = (unreadForUser != null && unreadForUser.trim().length() > 0);
+		// Posts opened since the last write of the read marks are read too
+		Set<Integer> pending = hasUnread ? pendingPostMarks(unreadForUser) : Collections.emptySet();
+
+		StringBuilder sb = new StringBuilder("SELECT id, title, ");
+		sb.append(preview
+				? "CAST(SUBSTRING(body, 1, " + (POST_PREVIEW_LENGTH + 1) + ") AS VARCHAR) AS body, "
+				: "body, ");
+		sb.append("author, thread, created_at, deleted FROM Posts p WHERE deleted = FALSE AND id IN (");
+		for (int i = 0; i < SEARCH_FETCH_CHUNK; i++) sb.append(i == 0 ? "?" : ", ?");
+		sb.append(")");
+		if (hasThread) sb.append(" AND thread = ?");
+		if (hasAuthor) sb.append(" AND author = ?");
+		if (hasUnread) {
+			sb.append(" AND NOT EXISTS (SELECT 1 FROM PostReadStatus prs "
+					+ "WHERE prs.postId = p.id AND prs.userName = ? AND prs.isRead = TRUE)");
+		}
+
+		try (Connection connection = pool.getConnection()) {
+			List<Integer> ranked = new ArrayList<>(SearchIndex.search(connection, SearchIndex.POST, keyword).keySet());
+			try (PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+				for (int start = 0; start < ranked.size() && posts.size() < limit; start += SEARCH_FETCH_CHUNK) {
+					List<Integer> chunk = ranked.subList(start, Math.min(start + SEARCH_FETCH_CHUNK, ranked.size()));
+					int idx = 1;
+					for (int i = 0; i < SEARCH_FETCH_CHUNK; i++) {
+						pstmt.setInt(idx++, i < chunk.size() ? chunk.get(i) : -1);
+					}
+					if (hasThread) pstmt.setString(idx++, thread);
+					if (hasAuthor) pstmt.setString(idx++, author);
+					if (hasUnread) pstmt.setString(idx++, unreadForUser);
+
+					Map<Integer, Post> found = new HashMap<>();
+					try (ResultSet rs = pstmt.executeQuery()) {
+						while (rs.next()) {
+							Post p = RowMappers.POST.map(rs);
+							found.put(p.getId(), p);
+						}
+					}
+					// Keep the index's ranking, not the order the rows came back in
+					for (Integer id : chunk) {
+						Post p = found.get(id);
+						if (p != null && !pending.contains(id) && posts.size() < limit) posts.add(p);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return posts;
+	}
+
+	/*******
+	 * <p> Method: List&lt;Reply&gt; searchReplies(String keyword, int limit) </p>
+	 * 
+	 * <p> Description: Search reply contents through the search index and return the best
+	 * matches first. Every word of the keyword must occur in the reply; the last word may be
+	 * the start of a word.</p>
+	 * 
+	 * @param keyword the words to search for
+	 * @param limit the largest number of replies to return
+	 * @return the matching replies, best match first (empty if the keyword has no searchable words)
+	 *  
+	 */
+	public List<Reply> searchReplies(String keyword, int limit) {
+		List<Reply> replies = new ArrayList<>();
+		StringBuilder sb = new StringBuilder("SELECT id, postId, content, author, created_at FROM Replies WHERE id IN (");
+		for (int i = 0; i < SEARCH_FETCH_CHUNK; i++) sb.append(i == 0 ? "?" : ", ?");
+		sb.append(")");
+		try (Connection connection = pool.getConnection()) {
+			List<Integer> ranked = new ArrayList<>(SearchIndex.search(connection, SearchIndex.REPLY, keyword).keySet());
+			try (PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+				for (int start = 0; start < ranked.size() && replies.size() < limit; start += SEARCH_FETCH_CHUNK) {
+					List<Integer> chunk = ranked.subList(start, Math.min(start + SEARCH_FETCH_CHUNK, ranked.size()));
+					for (int i = 0; i < SEARCH_FETCH_CHUNK; i++) {
+						pstmt.setInt(i + 1, i < chunk.size() ? chunk.get(i) : -1);
+					}
+					Map<Integer, Reply> found = new HashMap<>();
+					try (ResultSet rs = pstmt.executeQuery()) {
+						while (rs.next()) {
+							Reply r = RowMappers.REPLY.map(rs);
+							found.put(r.getId(), r);
+						}
+					}
+					// Keep the index's ranking, not the order the rows came back in
+					for (Integer id : chunk) {
+						Reply r = found.get(id);
+						if (r != null && replies.size() < limit) replies.add(r);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return replies;
+	}
+
+	/*******
+	 * <p> Method: List&lt;Post&gt; getPostsPage(String thread, String author,
+	 * String unreadForUser, Post after, int pageSize) </p>
+	 * 
+	 * <p> Description: Retrieve one page of non-deleted posts, newest first, for screens that
+	 * load posts as the user scrolls. Pages are keyed on (created_at, id): pass the last post of
+	 * the previous page as <code>after</code> (or null for the first page) and the next page
+	 * starts right below it, so a page costs the same however deep the user has scrolled.
+	 * Posts carry only the first POST_PREVIEW_LENGTH + 1 characters of their body; use
+	 * getPostById for the full body. Each filter is ignored when it is null or empty. Keyword
+	 * searches are ranked rather than paged by date; see searchPostsRanked.</p>
+	 * 
+	 * @param thread the thread name to filter by
+	 * @param author only posts written by this user
+	 * @param unreadForUser only posts this user has not read
+	 * @param after the last post of the previous page, or null for the first page
+	 * @param pageSize the largest number of posts to return
+	 * @return the page of Post objects (empty once there are no more posts)
+	 *  
+	 */
+	public List<Post> getPostsPage(String thread, String author, String unreadForUser, Post after,
+			int pageSize) {
 		List<Post> posts = new ArrayList<>();
-		String base = "SELECT id, title, body, author, thread, created_at, deleted FROM Posts WHERE deleted = FALSE";
-		StringBuilder sb = new StringBuilder(base);
-		if (keyword != null && keyword.trim().length() > 0) {
-			sb.append(" AND (LOWER(title) LIKE ? OR LOWER(body) LIKE ?)");
-		}
-		if (thread != null && thread.trim().length() > 0) {
+		boolean hasThread  = (thread != null && thread.trim().length() > 0);
+		boolean hasAuthor  = (author != null && author.trim().length() > 0);
+		boolean hasUnread  = (unreadForUser != null && unreadForUser.trim().length() > 0);
+		boolean hasAfter   = (after != null && after.getCreatedAt() != null);
+
+		StringBuilder sb = new StringBuilder("SELECT id, title, "
+				+ "CAST(SUBSTRING(body, 1, " + (POST_PREVIEW_LENGTH + 1) + ") AS VARCHAR) AS body, "
+				+ "author, thread, created_at, deleted FROM Posts p WHERE deleted = FALSE");
+		if (hasThread) {
 			sb.append(" AND thread = ?");
 		}
-		sb.append(" ORDER BY created_at DESC");
-		try (PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+		if (hasAuthor) {
+			sb.append(" AND author = ?");
+		}
+		if (hasUnread) {
+			// Marks still in the queue are left out in the query, so the page is still full
+			sb.append(" AND NOT EXISTS (SELECT 1 FROM PostReadStatus prs "
+					+ "WHERE prs.postId = p.id AND prs.userName = ? AND prs.isRead = TRUE) "
+					+ "AND NOT (p.id = ANY(?))");
+		}
+		if (hasAfter) {
+			sb.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+		}
+		sb.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
 			int idx = 1;
-			if (keyword != null && keyword.trim().length() > 0) {
-				String kw = "%" + keyword.toLowerCase() + "%";
-				pstmt.setString(idx++, kw);
-				pstmt.setString(idx++, kw);
-			}
-			if (thread != null && thread.trim().length() > 0) {
+			if (hasThread) {
 				pstmt.setString(idx++, thread);
 			}
+			if (hasAuthor) {
+				pstmt.setString(idx++, author);
+			}
+			if (hasUnread) {
+				pstmt.setString(idx++, unreadForUser);
+				pstmt.setArray(idx++, idArray(connection, pendingPostMarks(unreadForUser)));
+			}
+			if (hasAfter) {
+				Timestamp ts = Timestamp.from(after.getCreatedAt());
+				pstmt.setTimestamp(idx++, ts);
+				pstmt.setTimestamp(idx++, ts);
+				pstmt.setInt(idx++, after.getId());
+			}
+			pstmt.setInt(idx++, pageSize);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
-				Post p = new Post();
-				p.setId(rs.getInt("id"));
-				p.setTitle(rs.getString("title"));
-				p.setBody(rs.getString("body"));
-				p.setAuthorUsername(rs.getString("author"));
-				p.setThread(rs.getString("thread"));
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) p.setCreatedAt(ts.toInstant());
-				p.setDeleted(rs.getBoolean("deleted"));
-				posts.add(p);
+				posts.add(RowMappers.POST.map(rs));
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1409,23 +2279,9 @@ public class Database {
 	 */
 	public Post getPostById(int id) {
 		String query = "SELECT id, title, body, author, thread, created_at, deleted FROM Posts WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, id);
-			ResultSet rs = pstmt.executeQuery();
-			if (rs.next()) {
-				boolean deleted = rs.getBoolean("deleted");
-				if (deleted) return null;
-				Post p = new Post();
-				p.setId(rs.getInt("id"));
-				p.setTitle(rs.getString("title"));
-				p.setBody(rs.getString("body"));
-				p.setAuthorUsername(rs.getString("author"));
-				p.setThread(rs.getString("thread"));
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) p.setCreatedAt(ts.toInstant());
-				p.setDeleted(deleted);
-				return p;
-			}
+		try {
+			Post p = queryOne(query, pstmt -> pstmt.setInt(1, id), RowMappers.POST);
+			return (p == null || p.getDeleted()) ? null : p;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1447,7 +2303,8 @@ public class Database {
 	public boolean deletePost(int postId, String requesterUserName) {
 		// Check ownership
 		String check = "SELECT author FROM Posts WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(check)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(check)) {
 			pstmt.setInt(1, postId);
 			ResultSet rs = pstmt.executeQuery();
 			if (rs.next()) {
@@ -1464,9 +2321,16 @@ public class Database {
 		}
 		// Mark deleted
 		String update = "UPDATE Posts SET deleted = TRUE WHERE id = ?";
-		try (PreparedStatement pstmt2 = connection.prepareStatement(update)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt2 = connection.prepareStatement(update)) {
+			// The flag and the index entries change together, as in createPost; if removing the
+			// entries fails the pool rolls the update back
+			connection.setAutoCommit(false);
 			pstmt2.setInt(1, postId);
 			int affected = pstmt2.executeUpdate();
+			SearchIndex.removeDocument(connection, SearchIndex.POST, postId);
+			connection.commit();
+			connection.setAutoCommit(true);
 			return affected > 0;
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1478,9 +2342,11 @@ public class Database {
 	 * <p> Method: int createReply(Reply r) </p>
 	 * 
 	 * <p> Description: Create a new reply for a post. Inserts an entry
-	 * in the Replies table and sets up ReplyReadStatus entries for all users,
-	 * author is marked read, others are marked unread. Returns the generated
-	 * reply id or -1 on failure.</p>
+	 * in the Replies table only; read state is derived from each user's
+	 * read watermark for the post, so the author sees the reply as read and
+	 * everyone else sees it as unread without any per-user rows. The unread
+	 * counters (see UnreadCounters) are updated in the same transaction.
+	 * Returns the generated reply id or -1 on failure.</p>
 	 * 
 	 * @param r the Reply object containing postId, content, and author
 	 * @return generated reply id, or -1 on failure
@@ -1488,39 +2354,27 @@ public class Database {
 	 */
 	public int createReply(Reply r) {
 		String insert = "INSERT INTO Replies (postId, content, author, created_at) VALUES (?, ?, ?, ?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+			// The reply, its index entries and the unread counters are committed together; the pool
+			// rolls back and restores auto-commit if the connection comes back mid-transaction, so
+			// a failure returns -1 with nothing stored
+			connection.setAutoCommit(false);
 			pstmt.setInt(1, r.getPostId());
 			pstmt.setString(2, r.getContent());
 			pstmt.setString(3, r.getAuthorUsername());
 			pstmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
 			pstmt.executeUpdate();
-			int replyId = -1;
 			try (ResultSet keys = pstmt.getGeneratedKeys()) {
 				if (keys.next()) {
-					replyId = keys.getInt(1);
+					int replyId = keys.getInt(1);
+					SearchIndex.indexDocument(connection, SearchIndex.REPLY, replyId, null, r.getContent());
+					UnreadCounters.replyAdded(connection, r.getPostId(), r.getAuthorUsername());
+					connection.commit();
+					connection.setAutoCommit(true);
+					return replyId;
 				}
 			}
-			if (replyId != -1) {
-				// read status for all users, mark as read for the reply author, unread for others
-				String usersQuery = "SELECT userName FROM userDB";
-				try (PreparedStatement pu = connection.prepareStatement(usersQuery)) {
-					ResultSet rs = pu.executeQuery();
-					String insertStatus = "INSERT INTO ReplyReadStatus (replyId, userName, isRead) VALUES (?, ?, ?)";
-					while (rs.next()) {
-						String uname = rs.getString("userName");
-						boolean isRead = uname.equals(r.getAuthorUsername());
-						try (PreparedStatement pis = connection.prepareStatement(insertStatus)) {
-							pis.setInt(1, replyId);
-							pis.setString(2, uname);
-							pis.setBoolean(3, isRead);
-							pis.executeUpdate();
-						}
-					}
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			}
-			return replyId;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1540,65 +2394,361 @@ public class Database {
 	public List<Reply> getRepliesForPost(int postId) {
 		List<Reply> replies = new ArrayList<>();
 		String query = "SELECT id, postId, content, author, created_at FROM Replies WHERE postId = ? ORDER BY created_at ASC";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, postId);
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				Reply r = new Reply();
-				r.setId(rs.getInt("id"));
-				r.setPostId(rs.getInt("postId"));
-				r.setContent(rs.getString("content"));
-				r.setAuthorUsername(rs.getString("author"));
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) r.setCreatedAt(ts.toInstant());
-				replies.add(r);
-			}
+		try {
+			query(query, pstmt -> pstmt.setInt(1, postId), RowMappers.REPLY, replies::add);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return replies;
+	}
+
+	/*******
+	 * <p> Method: List&lt;Reply&gt; getRepliesForPostWithReadState(int postId, String userName,
+	 * boolean unreadOnly) </p>
+	 * 
+	 * <p> Description: Retrieve the replies for a post, oldest first, each with its read flag
+	 * set for the given user, in one query instead of a getRepliesForPost followed by an
+	 * isReplyReadByUser per reply.  A reply is read under the same rules as isReplyReadByUser:
+	 * the user wrote it, it is at or below their watermark for the post, or it carries a read
+	 * mark, written or still queued.</p>
+	 * 
+	 * @param postId the id of the post whose replies are requested
+	 * @param userName the user whose read state is wanted; if null every reply is unread
+	 * @param unreadOnly true to leave out the replies the user has read
+	 * @return list of Reply objects (may be empty)
+	 *  
+	 */
+	public List<Reply> getRepliesForPostWithReadState(int postId, String userName, boolean unreadOnly) {
+		return queryRepliesWithReadState(postId, userName, unreadOnly, null, true, -1, true);
+	}
+
+	/*******
+	 * <p> Method: List&lt;Reply&gt; getReplyWindow(int postId, String userName, boolean unreadOnly,
+	 * Reply from, boolean newer, int limit) </p>
+	 * 
+	 * <p> Description: Retrieve one window of a post's replies, for screens that show a post
+	 * with too many replies to load at once.  Windows are keyed on (created_at, id): pass the
+	 * newest reply already shown as <code>from</code> with newer set to get the replies right
+	 * after it, or the oldest reply shown with newer clear to get the ones right before it, so
+	 * a window costs the same however far into the post it is.  With a null <code>from</code>
+	 * the window is the post's first replies (newer) or its last ones (older).  Either way the
+	 * window is returned oldest first.</p>
+	 * 
+	 * <p> Replies carry their read flag, as in getRepliesForPostWithReadState, but not their
+	 * content, which is left null; use getReplyContents for the rows on screen.</p>
+	 * 
+	 * @param postId the id of the post whose replies are requested
+	 * @param userName the user whose read state is wanted; if null every reply is unread
+	 * @param unreadOnly true to leave out the replies the user has read
+	 * @param from the reply the window starts next to, or null to start at an end of the post
+	 * @param newer true for the replies after <code>from</code>, false for those before it
+	 * @param limit the largest number of replies to return
+	 * @return the window of Reply objects (empty once there are no more in that direction)
+	 *  
+	 */
+	public List<Reply> getReplyWindow(int postId, String userName, boolean unreadOnly, Reply from,
+			boolean newer, int limit) {
+		List<Reply> replies = queryRepliesWithReadState(postId, userName, unreadOnly, from, newer, limit, false);
+		if (!newer) Collections.reverse(replies);	// read newest first to take the last ones
+		return replies;
+	}
+
+	// The replies of a post with their read flag: all of them in posting order when limit is
+	// negative, otherwise up to limit of them after (newer) or before (older, newest first) the
+	// reply from.  A reply is read under the rules of isReplyReadByUser.
+	private List<Reply> queryRepliesWithReadState(int postId, String userName, boolean unreadOnly,
+			Reply from, boolean newer, int limit, boolean withContent) {
+		List<Reply> replies = new ArrayList<>();
+		String user = (userName == null) ? "" : userName;
+		boolean hasFrom = (from != null && from.getCreatedAt() != null);
+		String isRead = "(r.author = ? OR r.id <= COALESCE(w.lastSeenReplyId, 0) OR m.replyId IS NOT NULL)";
+		StringBuilder sb = new StringBuilder("SELECT r.id, r.postId, ");
+		// REPLY_WITH_READ reads content, so a window selects an empty one
+		sb.append(withContent ? "r.content, " : "CAST(NULL AS VARCHAR) AS content, ");
+		sb.append("r.author, r.created_at, CASE WHEN " + isRead + " THEN TRUE ELSE FALSE END AS isRead "
+				+ "FROM Replies r "
+				+ "LEFT JOIN ReplyReadWatermarks w ON w.postId = r.postId AND w.userName = ? "
+				+ "LEFT JOIN ReplyReadMarks m ON m.replyId = r.id AND m.userName = ? "
+				+ "WHERE r.postId = ?");
+		if (unreadOnly) {
+			// Marks still in the queue are left out in the query, so a short window still means
+			// the end of the post
+			sb.append(" AND NOT COALESCE(" + isRead + ", FALSE) AND NOT (r.id = ANY(?))");
+		}
+		if (hasFrom) {
+			sb.append(newer
+					? " AND (r.created_at > ? OR (r.created_at = ? AND r.id > ?))"
+					: " AND (r.created_at < ? OR (r.created_at = ? AND r.id < ?))");
+		}
+		// Older windows are read newest first, to take the replies right before from
+		sb.append(newer ? " ORDER BY r.created_at ASC, r.id ASC" : " ORDER BY r.created_at DESC, r.id DESC");
+		if (limit >= 0) {
+			sb.append(" LIMIT ?");
+		}
+
+		try {
+			query(sb.toString(), pstmt -> {
+				int i = 1;
+				pstmt.setString(i++, user);
+				pstmt.setString(i++, user);
+				pstmt.setString(i++, user);
+				pstmt.setInt(i++, postId);
+				if (unreadOnly) {
+					pstmt.setString(i++, user);
+					pstmt.setArray(i++, idArray(pstmt.getConnection(), pendingReplyMarks(userName)));
+				}
+				if (hasFrom) {
+					Timestamp ts = Timestamp.from(from.getCreatedAt());
+					pstmt.setTimestamp(i++, ts);
+					pstmt.setTimestamp(i++, ts);
+					pstmt.setInt(i++, from.getId());
+				}
+				if (limit >= 0) pstmt.setInt(i++, limit);
+			}, RowMappers.REPLY_WITH_READ, reply -> {
+				// Marks still in the queue are not in ReplyReadMarks yet
+				if (!reply.getRead() && userName != null && readMarks != null
+						&& readMarks.isReplyPending(userName, reply.getId())) {
+					reply.setRead(true);
+				}
+				replies.add(reply);
+			});
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 		return replies;
 	}
 
+	// Number of ids looked up per query by getReplyContents; like SEARCH_FETCH_CHUNK, unused
+	// placeholders get -1 so the SQL text stays the same.
+	private static final int REPLY_CONTENT_CHUNK = 50;
+
+	/*******
+	 * <p> Method: Map&lt;Integer, String&gt; getReplyContents(Collection&lt;Integer&gt; replyIds) </p>
+	 * 
+	 * <p> Description: Retrieve the content of the given replies, for the replies of a window
+	 * (see getReplyWindow) that are on screen.</p>
+	 * 
+	 * @param replyIds the ids of the replies whose content is wanted
+	 * @return each reply's content by id; replies that no longer exist are left out
+	 *  
+	 */
+	public Map<Integer, String> getReplyContents(Collection<Integer> replyIds) {
+		Map<Integer, String> contents = new HashMap<>();
+		if (replyIds == null || replyIds.isEmpty()) return contents;
+		StringBuilder sb = new StringBuilder("SELECT id, content FROM Replies WHERE id IN (");
+		for (int i = 0; i < REPLY_CONTENT_CHUNK; i++) sb.append(i == 0 ? "?" : ", ?");
+		sb.append(")");
+
+		List<Integer> ids = new ArrayList<>(replyIds);
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+			for (int start = 0; start < ids.size(); start += REPLY_CONTENT_CHUNK) {
+				List<Integer> chunk = ids.subList(start, Math.min(start + REPLY_CONTENT_CHUNK, ids.size()));
+				for (int i = 0; i < REPLY_CONTENT_CHUNK; i++) {
+					pstmt.setInt(i + 1, (i < chunk.size()) ? chunk.get(i) : -1);
+				}
+				ResultSet rs = pstmt.executeQuery();
+				while (rs.next()) {
+					contents.put(rs.getInt("id"), rs.getString("content"));
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return contents;
+	}
+
 	/*******
 	 * <p> Method: boolean markReplyAsRead(int replyId, String userName) </p>
 	 * 
-	 * <p> Description: Mark a specific reply as read for the given user.
-	 * Returns true if a row was updated.</p>
+	 * <p> Description: Mark a specific reply as read for the given user. The
+	 * mark is queued and written in the background together with other read
+	 * marks (see writeReadMarks); isReplyReadByUser and the unread counts see
+	 * it straight away. Marks for replies that no longer exist are dropped
+	 * when the queue is written.</p>
 	 * 
 	 * @param replyId the id of the reply to mark read
 	 * @param userName the username for whom the reply should be marked read
-	 * @return true if update succeeded (affected rows > 0), false otherwise
+	 * @return true if the mark was queued, false otherwise
 	 *  
 	 */
 	public boolean markReplyAsRead(int replyId, String userName) {
-		String query = "UPDATE ReplyReadStatus SET isRead = TRUE WHERE replyId = ? AND userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, replyId);
-			pstmt.setString(2, userName);
-			int affected = pstmt.executeUpdate();
-			return affected > 0;
-		} catch (SQLException e) {
-			e.printStackTrace();
+		if (userName == null || readMarks == null) return false;
+		readMarks.markReply(userName, replyId);
+		return true;
+	}
+
+	/*******
+	 * <p> Method: void flushReadMarks() </p>
+	 * 
+	 * <p> Description: Write every queued post and reply read mark now. The
+	 * counter checks call this first, since they compare the tables themselves;
+	 * other queries apply a user's queued marks on top of the tables instead
+	 * (see pendingPostMarks and pendingReplyMarks).</p>
+	 *  
+	 */
+	public void flushReadMarks() {
+		if (readMarks != null && readMarks.hasPending()) readMarks.flush();
+	}
+
+	// The ids of the posts and replies a user has read whose marks are still queued
+	private Set<Integer> pendingPostMarks(String userName) {
+		if (readMarks == null || userName == null) return Collections.emptySet();
+		return readMarks.pendingPostIds(userName);
+	}
+
+	private Set<Integer> pendingReplyMarks(String userName) {
+		if (readMarks == null || userName == null) return Collections.emptySet();
+		return readMarks.pendingReplyIds(userName);
+	}
+
+	// Ids to bind to "= ANY(?)"
+	private static Array idArray(Connection connection, Set<Integer> ids) throws SQLException {
+		return connection.createArrayOf("INTEGER", ids.toArray());
+	}
+
+	/*
+	 * Write a batch of queued read marks in one transaction: the post marks as a JDBC batch, then
+	 * a mark for each reply that was still unread, the unread counters and each affected reply
+	 * watermark once per (user, post).  Marks for posts or replies that no longer exist, and for
+	 * replies already read, select no rows and are skipped, so one stale mark cannot fail the
+	 * whole batch and no reply is counted as read twice.
+	 */
+	private void writeReadMarks(List<ReadMarkQueue.Mark> posts, List<ReadMarkQueue.Mark> replies)
+			throws SQLException {
+		String postMark = "MERGE INTO PostReadStatus (postId, userName, isRead) KEY(postId, userName) "
+						+ "SELECT id, ?, TRUE FROM Posts WHERE id = ?";
+		String unreadReply = "SELECT r.postId FROM Replies r WHERE r.id = ? AND " + UnreadCounters.UNREAD_REPLY;
+		String replyMark = "INSERT INTO ReplyReadMarks (userName, replyId) VALUES (?, ?)";
+		try (Connection connection = pool.getConnection()) {
+			// The pool rolls back and restores auto-commit if the connection comes back mid-transaction
+			connection.setAutoCommit(false);
+			if (!posts.isEmpty()) {
+				try (PreparedStatement pstmt = connection.prepareStatement(postMark)) {
+					for (ReadMarkQueue.Mark m : posts) {
+						pstmt.setString(1, m.userName);
+						pstmt.setInt(2, m.id);
+						pstmt.addBatch();
+					}
+					pstmt.executeBatch();
+				}
+			}
+			if (!replies.isEmpty()) {
+				// user -> post -> how many of its replies were read for the first time
+				Map<String, Map<Integer, Integer>> newlyRead = new HashMap<>();
+				Set<String> seen = new HashSet<>();
+				try (PreparedStatement check = connection.prepareStatement(unreadReply);
+					 PreparedStatement mark = connection.prepareStatement(replyMark)) {
+					for (ReadMarkQueue.Mark m : replies) {
+						// The marks are only inserted at the end, so repeats must be caught here
+						if (!seen.add(m.userName + '\n' + m.id)) continue;
+						check.setInt(1, m.id);
+						check.setString(2, m.userName);
+						check.setString(3, m.userName);
+						check.setString(4, m.userName);
+						ResultSet rs = check.executeQuery();
+						if (!rs.next()) continue;
+						newlyRead.computeIfAbsent(m.userName, k -> new HashMap<>())
+								.merge(rs.getInt("postId"), 1, Integer::sum);
+						mark.setString(1, m.userName);
+						mark.setInt(2, m.id);
+						mark.addBatch();
+					}
+					mark.executeBatch();
+				}
+				for (Map.Entry<String, Map<Integer, Integer>> e : newlyRead.entrySet()) {
+					for (Map.Entry<Integer, Integer> post : e.getValue().entrySet()) {
+						UnreadCounters.repliesRead(connection, e.getKey(), post.getKey(), post.getValue());
+						advanceReplyWatermark(connection, post.getKey(), e.getKey());
+					}
+				}
+			}
+			connection.commit();
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/*
+	 * Move a user's watermark for a post up to the last reply before the first one that is still
+	 * unread (or to the newest reply when none are unread), then drop the read marks the watermark
+	 * now covers.  Runs inside the caller's transaction.
+	 */
+	private void advanceReplyWatermark(Connection connection, int postId, String userName) throws SQLException {
+		int current = 0;
+		String currentQuery = "SELECT lastSeenReplyId FROM ReplyReadWatermarks WHERE userName = ? AND postId = ?";
+		try (PreparedStatement pstmt = connection.prepareStatement(currentQuery)) {
+			pstmt.setString(1, userName);
+			pstmt.setInt(2, postId);
+			ResultSet rs = pstmt.executeQuery();
+			if (rs.next()) current = rs.getInt("lastSeenReplyId");
+		}
+
+		// The first reply above the watermark that the user has still not read, if any
+		Integer firstUnread = null;
+		String firstUnreadQuery = "SELECT MIN(r.id) AS firstUnread FROM Replies r "
+								+ "WHERE r.postId = ? AND r.id > ? AND COALESCE(r.author, '') <> ? "
+								+ "AND NOT EXISTS (SELECT 1 FROM ReplyReadMarks m WHERE m.replyId = r.id AND m.userName = ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(firstUnreadQuery)) {
+			pstmt.setInt(1, postId);
+			pstmt.setInt(2, current);
+			pstmt.setString(3, userName);
+			pstmt.setString(4, userName);
+			ResultSet rs = pstmt.executeQuery();
+			if (rs.next()) {
+				int id = rs.getInt("firstUnread");
+				if (!rs.wasNull()) firstUnread = id;
+			}
+		}
+
+		// Everything between the old watermark and that reply has been read
+		int newMark = current;
+		String newMarkQuery = "SELECT MAX(id) AS newMark FROM Replies WHERE postId = ? AND id > ?"
+							+ (firstUnread == null ? "" : " AND id < ?");
+		try (PreparedStatement pstmt = connection.prepareStatement(newMarkQuery)) {
+			pstmt.setInt(1, postId);
+			pstmt.setInt(2, current);
+			if (firstUnread != null) pstmt.setInt(3, firstUnread);
+			ResultSet rs = pstmt.executeQuery();
+			if (rs.next()) {
+				int id = rs.getInt("newMark");
+				if (!rs.wasNull()) newMark = id;
+			}
+		}
+		if (newMark <= current) return;
+
+		String merge = "MERGE INTO ReplyReadWatermarks (userName, postId, lastSeenReplyId) KEY(userName, postId) "
+					 + "VALUES (?, ?, ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(merge)) {
+			pstmt.setString(1, userName);
+			pstmt.setInt(2, postId);
+			pstmt.setInt(3, newMark);
+			pstmt.executeUpdate();
+		}
+		String prune = "DELETE FROM ReplyReadMarks WHERE userName = ? AND replyId IN "
+					 + "(SELECT id FROM Replies WHERE postId = ? AND id <= ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(prune)) {
+			pstmt.setString(1, userName);
+			pstmt.setInt(2, postId);
+			pstmt.setInt(3, newMark);
+			pstmt.executeUpdate();
 		}
-		return false;
 	}
 
 	/*******
 	 * <p> Method: int getUnreadReplyCountForUser(String userName) </p>
 	 * 
 	 * <p> Description: Count the total number of unread replies for the given user
-	 * in all posts.</p>
+	 * in all posts, from the maintained counters (see UnreadCounters) less the
+	 * replies whose read marks are still queued.</p>
 	 * 
 	 * @param userName the username to check unread reply count for
 	 * @return the number of unread replies, 0 if none or on error
 	 *  
 	 */
 	public int getUnreadReplyCountForUser(String userName) {
-		String query = "SELECT COUNT(*) AS cnt FROM ReplyReadStatus WHERE userName = ? AND isRead = FALSE";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, userName);
-			ResultSet rs = pstmt.executeQuery();
-			if (rs.next()) return rs.getInt("cnt");
+		try (Connection connection = pool.getConnection()) {
+			return UnreadCounters.unreadForUser(connection, userName,
+					idArray(connection, pendingReplyMarks(userName)));
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1609,7 +2759,8 @@ public class Database {
 	 * <p> Method: int getUnreadReplyCountForPostForUser(int postId, String userName) </p>
 	 * 
 	 * <p> Description: Returns the number of unread replies for a post
-	 * and user by joining ReplyReadStatus with Replies.</p>
+	 * and user, from the maintained counters (see UnreadCounters) less the
+	 * replies whose read marks are still queued.</p>
 	 * 
 	 * @param postId the id of the post to check
 	 * @param userName the username to check unread replies for
@@ -1617,13 +2768,9 @@ public class Database {
 	 *  
 	 */
 	public int getUnreadReplyCountForPostForUser(int postId, String userName) {
-		String query = "SELECT COUNT(*) AS cnt FROM ReplyReadStatus r JOIN Replies rp ON r.replyId = rp.id "
-					 + "WHERE rp.postId = ? AND r.userName = ? AND r.isRead = FALSE";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, postId);
-			pstmt.setString(2, userName);
-			ResultSet rs = pstmt.executeQuery();
-			if (rs.next()) return rs.getInt("cnt");
+		try (Connection connection = pool.getConnection()) {
+			return UnreadCounters.unreadForPost(connection, postId, userName,
+					idArray(connection, pendingReplyMarks(userName)));
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1631,22 +2778,38 @@ public class Database {
 	}
 
 	/*******
-	 * <p> Method: boolean markPostAsRead(int postId, String userName) </p>
+	 * <p> Method: int verifyUnreadCounters() </p>
 	 * 
-	 * <p> Description: Mark a post as read for a given user by performing an upsert
-	 * into PostReadStatus, returns true on success.</p>
+	 * <p> Description: Check the unread counters against a recomputation from the replies,
+	 * watermarks and read marks, without changing them.  Run at start-up when the
+	 * lms.verifyUnreadCounters property is set.</p>
 	 * 
-	 * @param postId the id of the post to mark read
-	 * @param userName the username to mark the post read for
-	 * @return true if the operation succeeded, false otherwise
+	 * @return the number of counter rows that are wrong, or -1 if the check could not be run
 	 *  
 	 */
-	public boolean markPostAsRead(int postId, String userName) {
-		String merge = "MERGE INTO PostReadStatus (postId, userName, isRead) KEY(postId, userName) VALUES (?, ?, TRUE)";
-		try (PreparedStatement pstmt = connection.prepareStatement(merge)) {
-			pstmt.setInt(1, postId);
-			pstmt.setString(2, userName);
-			pstmt.executeUpdate();
+	public int verifyUnreadCounters() {
+		flushReadMarks();
+		try (Connection connection = pool.getConnection()) {
+			return UnreadCounters.verify(connection);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/*******
+	 * <p> Method: boolean rebuildUnreadCounters() </p>
+	 * 
+	 * <p> Description: Recompute every unread counter from the replies, watermarks and read
+	 * marks, in one transaction.</p>
+	 * 
+	 * @return true if the counters were rebuilt, false if they were left as they were
+	 *  
+	 */
+	public boolean rebuildUnreadCounters() {
+		flushReadMarks();
+		try (Connection connection = pool.getConnection()) {
+			UnreadCounters.rebuild(connection);
 			return true;
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1654,6 +2817,81 @@ public class Database {
 		return false;
 	}
 
+	/*******
+	 * <p> Method: void loadPostSummariesForUser(List&lt;Post&gt; posts, String userName) </p>
+	 * 
+	 * <p> Description: Fill in the reply count, the unread reply count and the read flag for
+	 * the given user on every post in the list, using one query over the maintained counters
+	 * (see UnreadCounters) instead of three queries per post. Read marks still in the queue
+	 * count as read. The read flag is recorded with Post.markReadByUser. Posts that are not
+	 * found (e.g., deleted since they were loaded) are left unchanged.</p>
+	 * 
+	 * @param posts the posts to fill in
+	 * @param userName the user whose unread counts and read flags are wanted
+	 *  
+	 */
+	public void loadPostSummariesForUser(List<Post> posts, String userName) {
+		if (posts == null || posts.isEmpty()) return;
+		Map<Integer, Post> byId = new HashMap<>();
+		for (Post p : posts) byId.put(p.getId(), p);
+		String user = (userName == null) ? "" : userName;
+		// The ids are bound as one array, which keeps the SQL text fixed (so the statement is
+		// cached) however many posts are displayed, and H2 looks each of them up by primary key
+		Set<Integer> pendingPosts = pendingPostMarks(userName);
+		// Queued reply marks that are not yet in the counters
+		String pendingReplies = "(SELECT COUNT(*) FROM Replies r WHERE r.postId = p.id AND r.id = ANY(?) AND "
+							  + UnreadCounters.UNREAD_REPLY + ")";
+		String query = "SELECT p.id, COALESCE(c.replyCount, 0) AS replyCount, "
+					 + "COALESCE(c.replyCount, 0) - COALESCE(u.readCount, 0) - " + pendingReplies + " AS unreadCount, "
+					 + "CASE WHEN prs.isRead THEN 1 ELSE 0 END AS isRead "
+					 + "FROM Posts p "
+					 + "LEFT JOIN PostReplyCounters c ON c.postId = p.id "
+					 + "LEFT JOIN PostUserReadCounters u ON u.postId = p.id AND u.userName = ? "
+					 + "LEFT JOIN PostReadStatus prs ON prs.postId = p.id AND prs.userName = ? "
+					 + "WHERE p.id = ANY(?)";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setArray(1, idArray(connection, pendingReplyMarks(userName)));
+			pstmt.setString(2, user);
+			pstmt.setString(3, user);
+			pstmt.setString(4, user);
+			pstmt.setString(5, user);
+			pstmt.setString(6, user);
+			pstmt.setArray(7, idArray(connection, byId.keySet()));
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				Post p = byId.get(rs.getInt("id"));
+				if (p == null) continue;
+				p.setReplyCount(rs.getInt("replyCount"));
+				p.setUnreadCount(userName == null ? 0 : Math.max(0, rs.getInt("unreadCount")));
+				if (userName != null && (rs.getInt("isRead") == 1 || pendingPosts.contains(p.getId()))) {
+					p.markReadByUser(userName);
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*******
+	 * <p> Method: boolean markPostAsRead(int postId, String userName) </p>
+	 * 
+	 * <p> Description: Mark a post as read for a given user. The mark is queued
+	 * and upserted into PostReadStatus in the background together with other
+	 * read marks; isPostReadByUser sees it straight away. Returns true once the
+	 * mark is queued.</p>
+	 * 
+	 * @param postId the id of the post to mark read
+	 * @param userName the username to mark the post read for
+	 * @return true if the mark was queued, false otherwise
+	 *  
+	 */
+	public boolean markPostAsRead(int postId, String userName) {
+		if (userName == null || readMarks == null) return false;
+		readMarks.markPost(userName, postId);
+		return true;
+	}
+
 	/*******
 	 * <p> Method: boolean isPostReadByUser(int postId, String userName) </p>
 	 * 
@@ -1666,8 +2904,10 @@ public class Database {
 	 *  
 	 */
 	public boolean isPostReadByUser(int postId, String userName) {
+		if (readMarks != null && readMarks.isPostPending(userName, postId)) return true;
 		String query = "SELECT isRead FROM PostReadStatus WHERE postId = ? AND userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			pstmt.setInt(1, postId);
 			pstmt.setString(2, userName);
 			ResultSet rs = pstmt.executeQuery();
@@ -1681,8 +2921,9 @@ public class Database {
 	/*******
 	 * <p> Method: boolean isReplyReadByUser(int replyId, String userName) </p>
 	 * 
-	 * <p> Description: Check whether a specific reply has been marked as read
-	 * by a user.</p>
+	 * <p> Description: Check whether a specific reply has been read by a user,
+	 * meaning the user wrote it, it is at or below the user's watermark for the
+	 * post, or it carries an explicit read mark.</p>
 	 * 
 	 * @param replyId the id of the reply to check
 	 * @param userName the username to check read status for
@@ -1690,13 +2931,23 @@ public class Database {
 	 *  
 	 */
 	public boolean isReplyReadByUser(int replyId, String userName) {
-		String query = "SELECT isRead FROM ReplyReadStatus WHERE replyId = ? AND userName = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, replyId);
+		if (userName == null) return false;
+		if (readMarks != null && readMarks.isReplyPending(userName, replyId)) return true;
+		String query = "SELECT r.author, w.lastSeenReplyId, m.replyId AS markedId FROM Replies r "
+					 + "LEFT JOIN ReplyReadWatermarks w ON w.postId = r.postId AND w.userName = ? "
+					 + "LEFT JOIN ReplyReadMarks m ON m.replyId = r.id AND m.userName = ? "
+					 + "WHERE r.id = ?";
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, userName);
 			pstmt.setString(2, userName);
+			pstmt.setInt(3, replyId);
 			ResultSet rs = pstmt.executeQuery();
 			if (rs.next()) {
-				return rs.getBoolean("isRead");
+				if (userName.equals(rs.getString("author"))) return true;	// authors have read their own replies
+				if (replyId <= rs.getInt("lastSeenReplyId")) return true;
+				rs.getInt("markedId");
+				return !rs.wasNull();
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1717,11 +2968,17 @@ public class Database {
 	 */
 	public boolean updatePostToDeletedVisual(int postId) {
 		String update = "UPDATE Posts SET title = ?, body = ? WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(update)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(update)) {
+			// The new text and the index entries change together, as in createPost
+			connection.setAutoCommit(false);
 			pstmt.setString(1, "Post deleted");
 			pstmt.setString(2, "");
 			pstmt.setInt(3, postId);
 			int affected = pstmt.executeUpdate();
+			SearchIndex.removeDocument(connection, SearchIndex.POST, postId);
+			connection.commit();
+			connection.setAutoCommit(true);
 			return affected > 0;
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1748,7 +3005,8 @@ public class Database {
 	public List<String> getThreads() {
 		List<String> threads = new ArrayList<>();
 		String query = "SELECT name FROM Threads ORDER BY name";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(query)) {
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				threads.add(rs.getString("name"));
@@ -1770,7 +3028,8 @@ public class Database {
 	public boolean createThread(String name) {
 		if (name == null || name.trim().isEmpty()) return false;
 		String insert = "INSERT INTO Threads (name) VALUES (?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(insert)) {
 			pstmt.setString(1, name.trim());
 			pstmt.executeUpdate();
 			return true;
@@ -1795,7 +3054,8 @@ public class Database {
 		if (oldName == null || newName == null) return false;
 		String updateThreads = "UPDATE Threads SET name = ? WHERE name = ?";
 		String updatePosts = "UPDATE Posts SET thread = ? WHERE thread = ?";
-		try (PreparedStatement pt = connection.prepareStatement(updateThreads)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pt = connection.prepareStatement(updateThreads)) {
 			pt.setString(1, newName.trim());
 			pt.setString(2, oldName.trim());
 			int affectedThreads = pt.executeUpdate();
@@ -1825,7 +3085,7 @@ public class Database {
 		if (name == null || name.trim().isEmpty()) return false;
 		String updatePosts = "UPDATE Posts SET thread = 'General' WHERE thread = ?";
 		String deleteThread = "DELETE FROM Threads WHERE name = ?";
-		try {
+		try (Connection connection = pool.getConnection()) {
 			// move posts 1st
 			try (PreparedStatement pu = connection.prepareStatement(updatePosts)) {
 				pu.setString(1, name.trim());
@@ -1853,10 +3113,16 @@ public class Database {
 	 */
 	public boolean updateReplyToDeletedVisual(int replyId) {
 		String update = "UPDATE Replies SET content = ? WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(update)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(update)) {
+			// The new text and the index entries change together, as in createReply
+			connection.setAutoCommit(false);
 			pstmt.setString(1, "Reply deleted");
 			pstmt.setInt(2, replyId);
 			int affected = pstmt.executeUpdate();
+			SearchIndex.removeDocument(connection, SearchIndex.REPLY, replyId);
+			connection.commit();
+			connection.setAutoCommit(true);
 			return affected > 0;
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -1878,7 +3144,8 @@ public class Database {
 		String sql = "INSERT INTO Tickets "
 				   + "(title, body, creatorUsername, status, reopenedFromId, created_at, deleted) "
 				   + "VALUES (?, ?, ?, ?, ?, ?, FALSE)";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 			pstmt.setString(1, t.getTitle());
 			pstmt.setString(2, t.getBody());
 			pstmt.setString(3, t.getCreatorUserName());
@@ -1905,7 +3172,8 @@ public class Database {
 	// Update ticket status (e.g., OPEN / CLOSED)
 	public boolean updateTicketStatus(int ticketId, String newStatus) {
 		String sql = "UPDATE Tickets SET status = ? WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql)) {
 			pstmt.setString(1, newStatus);
 			pstmt.setInt(2, ticketId);
 			int affected = pstmt.executeUpdate();
@@ -1919,7 +3187,8 @@ public class Database {
 	// Update ticket title/body (edit ticket)
 	public boolean updateTicketDetails(int ticketId, String newTitle, String newBody) {
 		String sql = "UPDATE Tickets SET title = ?, body = ? WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql)) {
 			pstmt.setString(1, newTitle);
 			pstmt.setString(2, newBody);
 			pstmt.setInt(3, ticketId);
@@ -1935,22 +3204,26 @@ public class Database {
 	public boolean visuallyDeleteTicket(int ticketId, String requesterUserName) {
 		// Check creator
 		String check = "SELECT creatorUsername FROM Tickets WHERE id = ?";
-		try (PreparedStatement pc = connection.prepareStatement(check)) {
+		String creator;
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pc = connection.prepareStatement(check)) {
 			pc.setInt(1, ticketId);
 			ResultSet rs = pc.executeQuery();
 			if (!rs.next()) return false;
-			String creator = rs.getString("creatorUsername");
-			// If not owner and not admin, refuse
-			if (!creator.equals(requesterUserName) && !isAdmin(requesterUserName)) {
-				return false;
-			}
+			creator = rs.getString("creatorUsername");
 		} catch (SQLException e) {
 			e.printStackTrace();
 			return false;
 		}
+		// If not owner and not admin, refuse.  isAdmin may borrow a connection of its own, so
+		// it runs after the one above has gone back to the pool.
+		if (!creator.equals(requesterUserName) && !isAdmin(requesterUserName)) {
+			return false;
+		}
 
 		String update = "UPDATE Tickets SET title = ?, body = ?, deleted = TRUE WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(update)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(update)) {
 			pstmt.setString(1, "Ticket deleted");
 			pstmt.setString(2, "");
 			pstmt.setInt(3, ticketId);
@@ -1966,27 +3239,9 @@ public class Database {
 	public Ticket getTicketById(int ticketId) {
 		String sql = "SELECT id, title, body, creatorUsername, status, reopenedFromId, "
 				   + "created_at, deleted FROM Tickets WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-			pstmt.setInt(1, ticketId);
-			ResultSet rs = pstmt.executeQuery();
-			if (rs.next()) {
-				if (rs.getBoolean("deleted")) return null;
-				Ticket t = new Ticket();
-				t.setId(rs.getInt("id"));
-				t.setTitle(rs.getString("title"));
-				t.setBody(rs.getString("body"));
-				t.setCreatorUserName(rs.getString("creatorUsername"));
-				t.setStatus(rs.getString("status"));
-
-				int reopenedId = rs.getInt("reopenedFromId");
-				if (rs.wasNull()) t.setReopenedFromId(null);
-				else t.setReopenedFromId(reopenedId);
-
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) t.setCreatedAt(ts.toInstant());
-				t.setDeleted(rs.getBoolean("deleted"));
-				return t;
-			}
+		try {
+			Ticket t = queryOne(sql, pstmt -> pstmt.setInt(1, ticketId), RowMappers.TICKET);
+			return (t == null || t.isDeleted()) ? null : t;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1997,7 +3252,15 @@ public class Database {
 	// keyword in title/body, statusFilter ("OPEN"/"CLOSED"/null), and creatorUsername for "mine"
 	public List<Ticket> getTickets(String keyword, String statusFilter, String creatorUserName) {
 		List<Ticket> list = new ArrayList<>();
+		forEachTicket(keyword, statusFilter, creatorUserName, list::add);
+		return list;
+	}
 
+	// Hand each ticket matching the same filters as getTickets to the action as it is read,
+	// newest first, without building a list.  The action must not call back into the Database.
+	// Returns false if the query failed part way.
+	public boolean forEachTicket(String keyword, String statusFilter, String creatorUserName,
+			Consumer<? super Ticket> action) {
 		String base = "SELECT id, title, body, creatorUsername, status, "
 					+ "reopenedFromId, created_at, deleted "
 					+ "FROM Tickets WHERE deleted = FALSE";
@@ -2018,42 +3281,26 @@ public class Database {
 		}
 		sb.append(" ORDER BY created_at DESC");
 
-		try (PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
-			int idx = 1;
-			if (hasKeyword) {
-				String kw = "%" + keyword.toLowerCase() + "%";
-				pstmt.setString(idx++, kw);
-				pstmt.setString(idx++, kw);
-			}
-			if (hasStatus) {
-				pstmt.setString(idx++, statusFilter);
-			}
-			if (hasCreator) {
-				pstmt.setString(idx++, creatorUserName);
-			}
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				Ticket t = new Ticket();
-				t.setId(rs.getInt("id"));
-				t.setTitle(rs.getString("title"));
-				t.setBody(rs.getString("body"));
-				t.setCreatorUserName(rs.getString("creatorUsername"));
-				t.setStatus(rs.getString("status"));
-
-				int reopenedId = rs.getInt("reopenedFromId");
-				if (rs.wasNull()) t.setReopenedFromId(null);
-				else t.setReopenedFromId(reopenedId);
-
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) t.setCreatedAt(ts.toInstant());
-				t.setDeleted(rs.getBoolean("deleted"));
-				list.add(t);
-			}
+		try {
+			query(sb.toString(), pstmt -> {
+				int idx = 1;
+				if (hasKeyword) {
+					String kw = "%" + keyword.toLowerCase() + "%";
+					pstmt.setString(idx++, kw);
+					pstmt.setString(idx++, kw);
+				}
+				if (hasStatus) {
+					pstmt.setString(idx++, statusFilter);
+				}
+				if (hasCreator) {
+					pstmt.setString(idx++, creatorUserName);
+				}
+			}, RowMappers.TICKET, action);
+			return true;
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
-
-		return list;
+		return false;
 	}
 
 	
@@ -2072,7 +3319,8 @@ public class Database {
 	public void createTicketComment(int ticketId, String authorUserName, String content) {
 		String sql = "INSERT INTO TicketComments "
 				   + "(ticketId, authorUsername, content, created_at) VALUES (?, ?, ?, ?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement pstmt = connection.prepareStatement(sql)) {
 			pstmt.setInt(1, ticketId);
 			pstmt.setString(2, authorUserName);
 			pstmt.setString(3, content);
@@ -2088,19 +3336,8 @@ public class Database {
 		List<TicketComment> comments = new ArrayList<>();
 		String sql = "SELECT id, ticketId, authorUsername, content, created_at "
 				   + "FROM TicketComments WHERE ticketId = ? ORDER BY created_at ASC";
-		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-			pstmt.setInt(1, ticketId);
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				TicketComment c = new TicketComment();
-				c.setId(rs.getInt("id"));
-				c.setTicketId(rs.getInt("ticketId"));
-				c.setAuthorUserName(rs.getString("authorUsername"));
-				c.setContent(rs.getString("content"));
-				Timestamp ts = rs.getTimestamp("created_at");
-				if (ts != null) c.setCreatedAt(ts.toInstant());
-				comments.add(c);
-			}
+		try {
+			query(sql, pstmt -> pstmt.setInt(1, ticketId), RowMappers.TICKET_COMMENT, comments::add);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -2121,38 +3358,60 @@ public class Database {
 	// Dumps the database.
 	public void dump() throws SQLException {
 		String query = "SELECT * FROM userDB";
-		ResultSet resultSet = statement.executeQuery(query);
-		ResultSetMetaData meta = resultSet.getMetaData();
-		while (resultSet.next()) {
-		for (int i = 0; i < meta.getColumnCount(); i++) {
-		System.out.println(
-		meta.getColumnLabel(i + 1) + ": " +
-				resultSet.getString(i + 1));
-		}
-		System.out.println();
+		try (Connection connection = pool.getConnection();
+			 Statement statement = connection.createStatement()) {
+			ResultSet resultSet = statement.executeQuery(query);
+			ResultSetMetaData meta = resultSet.getMetaData();
+			while (resultSet.next()) {
+				for (int i = 0; i < meta.getColumnCount(); i++) {
+					System.out.println(
+					meta.getColumnLabel(i + 1) + ": " +
+							resultSet.getString(i + 1));
+				}
+				System.out.println();
+			}
+			resultSet.close();
 		}
-		resultSet.close();
 	}
 
 
 	/*******
 	 * <p> Method: void closeConnection()</p>
 	 * 
-	 * <p> Description: Closes the database statement and connection.</p>
+	 * <p> Description: Writes any queued read marks, then closes the connection pool and every
+	 * idle connection in it.</p>
 	 * 
 	 */
-	// Closes the database statement and connection.
+	// Closes the database connection pool.
 	public void closeConnection() {
-		try{ 
-			if(statement!=null) statement.close(); 
-		} catch(SQLException se2) { 
-			se2.printStackTrace();
-		} 
-		try { 
-			if(connection!=null) connection.close(); 
-		} catch(SQLException se){ 
-			se.printStackTrace(); 
-		} 
+		if (readMarks != null) readMarks.close();
+		if (credentials != null) credentials.close();
+		if (invitationSweeper != null) {
+			// Not shutdownNow: interrupting a thread inside H2 can close the database file
+			invitationSweeper.shutdown();
+			try {
+				invitationSweeper.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			invitationSweeper = null;
+		}
+		if (pool != null) pool.close();
+		if (metrics != null) {
+			if (METRICS_DUMP_SECONDS > 0) System.out.print(metrics.dump());
+			metrics.close();
+			metrics = null;
+		}
+		if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// The JVM is already shutting down and the hook will run anyway
+			}
+			shutdownHook = null;
+		}
+		connected = false;
+		DatabaseRegistry.closed(this, dbUrl);
 	}
 	/*******
 	 * <p> Method: boolean deleteUser(String Username) </p>
@@ -2162,9 +3421,11 @@ public class Database {
 	 */
 	public boolean deleteUser(String username) {
 		String sql = "DELETE FROM userDB WHERE userName = ?";
-		try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+		try (Connection connection = pool.getConnection();
+			 PreparedStatement stmt = connection.prepareStatement(sql)) {
 			stmt.setString(1, username);
 			int rowsAffected = stmt.executeUpdate();
+			userIndex.remove(username);
 			// Returns true if at least one row deleted
 			return rowsAffected > 0;
 		} catch (SQLException e) {
@@ -2172,18 +3433,17 @@ public class Database {
 			e.printStackTrace();
 			// if delete user failed for some reason
 			return false;
+		} finally {
+			users.invalidate(username);
 		}
 	}
 	
 	public boolean isAdmin(String username) {
-		String sql = "SELECT adminRole FROM userDB WHERE userName = ?";
-		try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-			stmt.setString(1, username);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					//	Return twue if adminRole column is true for the user				
-					return rs.getBoolean("adminRole");
-				}
+		try {
+			UserDirectory.Snapshot user = lookupUser(username);
+			if (user != null) {
+				//	Return twue if adminRole column is true for the user				
+				return user.getAdminRole();
 			}
 		} catch (SQLException e) {
 			System.err.println("*** ERROR *** Database error checking admin: " + e.getMessage());
@@ -2206,7 +3466,9 @@ public class Database {
     public List<GradingParameter> getGradingParameters() {
         List<GradingParameter> list = new ArrayList<>();
         String query = "SELECT * FROM GradingParameters";
-        try (ResultSet rs = statement.executeQuery(query)) {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
             while (rs.next()) {
                 list.add(new GradingParameter(rs.getInt("id"), rs.getString("name"), rs.getDouble("maxScore")));
             }
@@ -2224,7 +3486,8 @@ public class Database {
     // Add new Parameter
     public void addGradingParameter(String name, double maxScore) {
         String query = "INSERT INTO GradingParameters (name, maxScore) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, name);
             pstmt.setDouble(2, maxScore);
             pstmt.executeUpdate();
@@ -2240,7 +3503,8 @@ public class Database {
     // Delete Parameter
     public void deleteGradingParameter(int id) {
         String query = "DELETE FROM GradingParameters WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, id);
             pstmt.executeUpdate();
         } catch (SQLException e) { e.printStackTrace(); }
@@ -2257,7 +3521,8 @@ public class Database {
     // Update Parameter
     public void updateGradingParameter(int id, String name, double maxScore) {
         String query = "UPDATE GradingParameters SET name = ?, maxScore = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, name);
             pstmt.setDouble(2, maxScore);
             pstmt.setInt(3, id);
@@ -2280,7 +3545,8 @@ public class Database {
         String query = "SELECT gp.id, gp.name, gp.maxScore, COALESCE(ss.score, 0.0) as score " +
                        "FROM GradingParameters gp " +
                        "LEFT JOIN StudentScores ss ON gp.id = ss.paramId AND ss.studentUserName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, studentUserName);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -2306,7 +3572,8 @@ public class Database {
     // Update or Insert a score 
     public void updateStudentScore(String studentUserName, int paramId, double score) {
         String query = "MERGE INTO StudentScores (studentUserName, paramId, score) KEY(studentUserName, paramId) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, studentUserName);
             pstmt.setInt(2, paramId);
             pstmt.setDouble(3, score);
@@ -2338,7 +3605,8 @@ public class Database {
     // BRIAN NEW: Submit new feedback
     public void submitFeedback(String sender, String receiver, String subject, String content) throws SQLException {
         String sql = "INSERT INTO FeedbackMessages (senderUsername, receiverUsername, subject, content, created_at, isRead) VALUES (?, ?, ?, ?, ?, FALSE)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, sender);
             pstmt.setString(2, receiver);
             pstmt.setString(3, subject);
@@ -2351,35 +3619,18 @@ public class Database {
     /**
      * <p> Method: List<Feedback> getFeedbackForUser(String username, boolean filterRead) </p>
      *
-     * <p> Description: Retrieve all feedback messages for a given receiver (student view). </p>
+     * <p> Description: Retrieve all feedback messages for a given receiver (student view).
+     * The messages are returned without their content; getFeedbackById loads a whole message
+     * and getFeedbackContent just its content. </p>
      *
      * @param username   the receiver username whose feedback messages are requested
-     * @param filterRead if true the caller intends only unread messages
+     * @param filterRead if true only unread feedback (isRead = FALSE) will be returned
      * @return a List of Feedback objects for the given receive
      */
     // BRIAN NEW: Gets all feedback for target user (student/receiver view)
     public List<Feedback> getFeedbackForUser(String username, boolean filterRead) {
         List<Feedback> feedbackList = new ArrayList<>();
-        String sql = "SELECT id, senderUsername, receiverUsername, subject, content, created_at, isRead "
-                   + "FROM FeedbackMessages WHERE receiverUsername = ? ORDER BY created_at DESC";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Feedback f = new Feedback(
-                    rs.getInt("id"),
-                    rs.getString("senderUsername"),
-                    rs.getString("receiverUsername"),
-                    rs.getString("subject"),
-                    rs.getClob("content").getSubString(1, (int) rs.getClob("content").length()),
-                    rs.getTimestamp("created_at").toLocalDateTime(),
-                    rs.getBoolean("isRead")
-                );
-                feedbackList.add(f);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        forEachFeedback(username, filterRead, false, feedbackList::add);
         return feedbackList;
     }
     
@@ -2388,7 +3639,7 @@ public class Database {
      *
      * <p> Description: Retrieve feedback messages for staff view. Can filters by a specific
      * student username (receiverUsername) and/or to unread messages when
-     * filterRead is true.</p>
+     * filterRead is true. As with getFeedbackForUser the content is not loaded.</p>
      *
      * @param filterStudentUsername optional receiver username to filter by
      * @param filterRead            if true only unread feedback (isRead = FALSE) will be returned
@@ -2397,46 +3648,55 @@ public class Database {
     // BRIAN NEW: Gets all feedback (staff view) and filters by student if selected
     public List<Feedback> getAllFeedback(String filterStudentUsername, boolean filterRead) {
         List<Feedback> feedbackList = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT id, senderUsername, receiverUsername, subject, content, created_at, isRead FROM FeedbackMessages WHERE 1=1");
-        int paramIndex = 1;
+        forEachFeedback(filterStudentUsername, filterRead, false, feedbackList::add);
+        return feedbackList;
+    }
 
-        if (filterStudentUsername != null && !filterStudentUsername.trim().isEmpty()) {
+    /**
+     * <p> Method: boolean forEachFeedback(String receiverUsername, boolean filterRead,
+     * boolean withContent, Consumer<? super Feedback> action) </p>
+     *
+     * <p> Description: Hand each feedback message matching the filters to the action as it is
+     * read, newest first, without building a list, so an export holds only a few messages at a
+     * time. Each content CLOB is read once, and only when withContent is true. The action must
+     * not call back into the Database.</p>
+     *
+     * @param receiverUsername optional receiver username to filter by
+     * @param filterRead       if true only unread feedback (isRead = FALSE) is read
+     * @param withContent      true to load each message's content, false to leave it null
+     * @param action           what to do with each message
+     * @return true if every message was read, false if the query failed part way
+     */
+    public boolean forEachFeedback(String receiverUsername, boolean filterRead, boolean withContent,
+            Consumer<? super Feedback> action) {
+        boolean hasReceiver = (receiverUsername != null && !receiverUsername.trim().isEmpty());
+        StringBuilder sql = new StringBuilder("SELECT id, senderUsername, receiverUsername, subject, ");
+        if (withContent) sql.append("content, ");
+        sql.append("created_at, isRead FROM FeedbackMessages WHERE 1=1");
+        if (hasReceiver) {
             sql.append(" AND receiverUsername = ?");
         }
         if (filterRead) {
-             sql.append(" AND isRead = FALSE");
+            sql.append(" AND isRead = FALSE");
         }
         sql.append(" ORDER BY created_at DESC");
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
-            if (filterStudentUsername != null && !filterStudentUsername.trim().isEmpty()) {
-                 pstmt.setString(paramIndex++, filterStudentUsername);
-            }
-           
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Feedback f = new Feedback(
-                    rs.getInt("id"),
-                    rs.getString("senderUsername"),
-                    rs.getString("receiverUsername"),
-                    rs.getString("subject"),
-                    rs.getClob("content").getSubString(1, (int) rs.getClob("content").length()),
-                    rs.getTimestamp("created_at").toLocalDateTime(),
-                    rs.getBoolean("isRead")
-                );
-                feedbackList.add(f);
-            }
+        try {
+            query(sql.toString(), pstmt -> {
+                if (hasReceiver) pstmt.setString(1, receiverUsername);
+            }, withContent ? RowMappers.FEEDBACK : RowMappers.FEEDBACK_SUMMARY, action);
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return feedbackList;
+        return false;
     }
     
     /**
      * <p> Method: Feedback getFeedbackById(int feedbackId) </p>
      *
-     * <p> Description: Retrieve a single feedback message by its unique ID. Returns null if no message
-     * with the given ID exists.</p>
+     * <p> Description: Retrieve a single feedback message, with its content, by its unique ID.
+     * Returns null if no message with the given ID exists.</p>
      *
      * @param feedbackId the unique ID of the feedback message
      * @return a Feedback object if found, otherwise null
@@ -2444,20 +3704,27 @@ public class Database {
     // BRIAN NEW: Get single feedback item by ID
     public Feedback getFeedbackById(int feedbackId) {
         String sql = "SELECT id, senderUsername, receiverUsername, subject, content, created_at, isRead FROM FeedbackMessages WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, feedbackId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return new Feedback(
-                    rs.getInt("id"),
-                    rs.getString("senderUsername"),
-                    rs.getString("receiverUsername"),
-                    rs.getString("subject"),
-                    rs.getClob("content").getSubString(1, (int) rs.getClob("content").length()),
-                    rs.getTimestamp("created_at").toLocalDateTime(),
-                    rs.getBoolean("isRead")
-                );
-            }
+        try {
+            return queryOne(sql, pstmt -> pstmt.setInt(1, feedbackId), RowMappers.FEEDBACK);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * <p> Method: String getFeedbackContent(int feedbackId) </p>
+     *
+     * <p> Description: Load the content of one feedback message, for messages listed without
+     * it.</p>
+     *
+     * @param feedbackId the unique ID of the feedback message
+     * @return the content, or null if there is no such message
+     */
+    public String getFeedbackContent(int feedbackId) {
+        String sql = "SELECT content FROM FeedbackMessages WHERE id = ?";
+        try {
+            return queryOne(sql, pstmt -> pstmt.setInt(1, feedbackId), rs -> rs.getString("content"));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -2475,7 +3742,8 @@ public class Database {
     // BRIAN NEW: Mark feedback as read
     public void markRead(int feedbackId) throws SQLException {
         String sql = "UPDATE FeedbackMessages SET isRead = TRUE WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, feedbackId);
             pstmt.executeUpdate();
         }
@@ -2489,7 +3757,8 @@ public class Database {
      */
     public void deleteFeedback(int feedbackId) throws SQLException {
         String sql = "DELETE FROM FeedbackMessages WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, feedbackId);
             pstmt.executeUpdate();
         }
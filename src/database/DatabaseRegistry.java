@@ -0,0 +1,99 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*******
+ * <p> Title: DatabaseRegistry Class. </p>
+ *
+ * <p> Description: The owner of the application's one Database.  Every screen gets it from
+ * shared(), the application opens it once with open() when it starts and closes it with close()
+ * when it stops, so connecting, the schema migrations and the pool are paid for once per run
+ * rather than once per screen.</p>
+ *
+ * <p> Every Database also reports here when it connects and when it closes.  A Database that
+ * connects to a URL another open Database is already using is a stray open: it gets a second
+ * pool, reruns the migrations and competes for the same H2 file.  The registry prints a warning
+ * with the stack of the code that opened it and counts it, but does not refuse it, so a scratch
+ * Database in a test or benchmark keeps working.</p>
+ *
+ */
+public final class DatabaseRegistry {
+
+	private static Database shared = null;		// The application's Database, once asked for
+	private static final Map<String, Database> openByUrl = new HashMap<>();	// The first open one per URL
+	private static int strayOpens = 0;
+
+	private DatabaseRegistry() {
+	}
+
+	/*******
+	 * <p> Method: Database shared() </p>
+	 *
+	 * <p> Description: The application's Database.  It is created on the first call but not
+	 * connected; open() does that.</p>
+	 *
+	 * @return the shared Database
+	 */
+	public static synchronized Database shared() {
+		if (shared == null) shared = new Database();
+		return shared;
+	}
+
+	/*******
+	 * <p> Method: Database open() </p>
+	 *
+	 * <p> Description: Connect the shared Database if it is not connected yet.  Later calls
+	 * return it as it is.</p>
+	 *
+	 * @return the shared Database, connected
+	 *
+	 * @throws SQLException if the database cannot be opened, usually because another
+	 * application has it
+	 */
+	public static synchronized Database open() throws SQLException {
+		Database db = shared();
+		if (!db.isConnected()) db.connectToDatabase();
+		return db;
+	}
+
+	/*******
+	 * <p> Method: void close() </p>
+	 *
+	 * <p> Description: Close the shared Database if it is connected, writing any queued read
+	 * marks first.</p>
+	 */
+	public static synchronized void close() {
+		if (shared != null && shared.isConnected()) shared.closeConnection();
+	}
+
+	/*******
+	 * <p> Method: int getStrayOpens() </p>
+	 *
+	 * @return how many times a Database has connected to a URL another open Database was using
+	 */
+	public static synchronized int getStrayOpens() {
+		return strayOpens;
+	}
+
+	/*
+	 * Called by Database.connectToDatabase before it connects.
+	 */
+	static synchronized void opened(Database db, String url) {
+		Database first = openByUrl.putIfAbsent(url, db);
+		if (first != null && first != db) {
+			strayOpens++;
+			System.err.println("*** WARNING *** A second Database was opened on " + url
+					+ "; use DatabaseRegistry.shared() instead");
+			new Exception("Stray Database open").printStackTrace();
+		}
+	}
+
+	/*
+	 * Called by Database.closeConnection.
+	 */
+	static synchronized void closed(Database db, String url) {
+		openByUrl.remove(url, db);
+	}
+}
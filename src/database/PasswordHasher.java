@@ -0,0 +1,46 @@
+package database;
+
+/*******
+ * <p> Title: PasswordHasher Interface. </p>
+ *
+ * <p> Description: Turns passwords into the strings kept in userDB.password and checks
+ * passwords against them.  Each stored string carries the parameters it was made with, so the
+ * cost can be raised later without breaking existing rows; rows made with older parameters, or
+ * still holding a plain-text password from before hashing, report needsRehash and are replaced
+ * the next time their user logs in.</p>
+ *
+ * <p> The Database uses Pbkdf2PasswordHasher unless another hasher is set with
+ * Database.setPasswordHasher.</p>
+ *
+ */
+public interface PasswordHasher {
+
+	/*******
+	 * <p> Method: String hash(String password) </p>
+	 *
+	 * @param password the password to hash
+	 *
+	 * @return the string to store, including a fresh salt and the hash parameters
+	 */
+	String hash(String password);
+
+	/*******
+	 * <p> Method: boolean verify(String password, String stored) </p>
+	 *
+	 * @param password the password typed by the user
+	 * @param stored the value kept in userDB.password, hashed or legacy plain text
+	 *
+	 * @return true if the password matches
+	 */
+	boolean verify(String password, String stored);
+
+	/*******
+	 * <p> Method: boolean needsRehash(String stored) </p>
+	 *
+	 * @param stored the value kept in userDB.password
+	 *
+	 * @return true if the value is plain text or was made with parameters other than the current
+	 * ones, so it should be replaced by hash(password) after a successful verify
+	 */
+	boolean needsRehash(String stored);
+}
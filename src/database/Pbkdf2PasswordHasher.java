@@ -0,0 +1,128 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/*******
+ * <p> Title: Pbkdf2PasswordHasher Class. </p>
+ *
+ * <p> Description: A PasswordHasher built on the JDK's PBKDF2WithHmacSHA512, so no library is
+ * needed.  Stored values look like</p>
+ *
+ * <pre>pbkdf2-sha512$210000$&lt;salt&gt;$&lt;hash&gt;</pre>
+ *
+ * <p> with the salt and hash in Base64.  The iteration count is kept in every row, so rows
+ * hashed with an older count still verify and are upgraded at the next login.  Anything that
+ * does not start with the prefix is a password stored before hashing was introduced; it is
+ * compared as plain text and always needs a rehash.  A value that starts with the prefix but
+ * is damaged matches no password at all, so the damaged text never becomes a password.</p>
+ *
+ * <p> The iteration count is the cost knob.  benchmarks/src/benchmarks/PasswordHashBenchmark
+ * measures how long a verify takes at several counts; see benchmarks/README.md.</p>
+ *
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+	private static final String PREFIX = "pbkdf2-sha512";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 512;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final int iterations;
+
+	/*******
+	 * <p> Method: Pbkdf2PasswordHasher(int iterations) </p>
+	 *
+	 * <p> Description: Create a hasher that hashes new passwords with the given iteration
+	 * count.</p>
+	 *
+	 * @param iterations the PBKDF2 iteration count for new hashes
+	 */
+	public Pbkdf2PasswordHasher(int iterations) {
+		if (iterations < 1) throw new IllegalArgumentException("iterations must be positive");
+		this.iterations = iterations;
+	}
+
+	/** @return the iteration count used for new hashes */
+	public int getIterations() {
+		return iterations;
+	}
+
+	@Override
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		byte[] hash = derive(password, salt, iterations);
+		Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+		return PREFIX + "$" + iterations + "$" + b64.encodeToString(salt) + "$"
+				+ b64.encodeToString(hash);
+	}
+
+	@Override
+	public boolean verify(String password, String stored) {
+		if (password == null || stored == null) return false;
+		if (!isHashed(stored)) {
+			// A password from before hashing; compare every byte so timing does not leak
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+					stored.getBytes(StandardCharsets.UTF_8));
+		}
+		String[] parts = parse(stored);
+		if (parts == null) {
+			System.err.println("*** ERROR *** A stored password hash is malformed; it matches no password");
+			return false;
+		}
+		try {
+			int rowIterations = Integer.parseInt(parts[1]);
+			byte[] salt = Base64.getDecoder().decode(parts[2]);
+			byte[] expected = Base64.getDecoder().decode(parts[3]);
+			if (rowIterations < 1 || salt.length == 0 || expected.length == 0) return false;
+			return MessageDigest.isEqual(derive(password, salt, rowIterations), expected);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();	// A damaged row matches nothing
+			return false;
+		}
+	}
+
+	@Override
+	public boolean needsRehash(String stored) {
+		String[] parts = parse(stored);
+		if (parts == null) return true;
+		try {
+			return Integer.parseInt(parts[1]) != iterations;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	// Whether a stored value is a hash (well formed or not) rather than legacy plain text
+	private static boolean isHashed(String stored) {
+		return stored != null && stored.startsWith(PREFIX + "$");
+	}
+
+	// The four fields of a hashed value, or null for a legacy plain-text or malformed one
+	private static String[] parse(String stored) {
+		if (!isHashed(stored)) return null;
+		String[] parts = stored.split("\\$", -1);
+		return parts.length == 4 ? parts : null;
+	}
+
+	private static byte[] derive(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			// Every Java 8+ runtime ships PBKDF2WithHmacSHA512
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
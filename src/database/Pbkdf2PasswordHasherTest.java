@@ -0,0 +1,81 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/*******
+ * <p> Title: Pbkdf2PasswordHasherTest Class. </p>
+ *
+ * <p> Description: JUnit 5 tests of Pbkdf2PasswordHasher: hashes verify the password they were
+ * made from and no other, plain-text passwords from before hashing still verify and are marked
+ * for rehashing, and damaged hashes match nothing.  A low iteration count keeps the tests
+ * fast.</p>
+ *
+ */
+public class Pbkdf2PasswordHasherTest {
+
+	private final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+	@Test
+	public void hashesVerifyTheirOwnPasswordOnly() {
+		String stored = hasher.hash("Secret1!");
+
+		assertTrue(hasher.verify("Secret1!", stored));
+		assertFalse(hasher.verify("secret1!", stored));
+		assertFalse(hasher.verify("", stored));
+		assertFalse(hasher.verify(null, stored));
+	}
+
+	@Test
+	public void hashesCarryTheirParametersAndAFreshSalt() {
+		String first = hasher.hash("Secret1!");
+		String second = hasher.hash("Secret1!");
+
+		assertTrue(first.startsWith("pbkdf2-sha512$1000$"), first);
+		assertEquals(4, first.split("\\$").length);
+		assertNotEquals(first, second, "Each hash gets its own salt");
+		assertTrue(hasher.verify("Secret1!", second));
+	}
+
+	@Test
+	public void hashesFromAnotherIterationCountVerifyAndNeedRehash() {
+		String stored = new Pbkdf2PasswordHasher(500).hash("Secret1!");
+
+		assertTrue(hasher.verify("Secret1!", stored), "The row's own iteration count is used");
+		assertTrue(hasher.needsRehash(stored));
+		assertFalse(hasher.needsRehash(hasher.hash("Secret1!")));
+	}
+
+	@Test
+	public void legacyPlainTextPasswordsStillVerify() {
+		assertTrue(hasher.verify("Secret1!", "Secret1!"));
+		assertFalse(hasher.verify("Secret1", "Secret1!"));
+		assertFalse(hasher.verify("Secret1!", null));
+		assertTrue(hasher.needsRehash("Secret1!"), "Plain text is replaced at the next login");
+	}
+
+	@Test
+	public void damagedHashesMatchNothing() {
+		String[] damaged = {
+			"pbkdf2-sha512$1000$onlythree",
+			"pbkdf2-sha512$1000$c2FsdA$aGFzaA$extra",
+			"pbkdf2-sha512$many$c2FsdA$aGFzaA",
+			"pbkdf2-sha512$0$c2FsdA$aGFzaA",
+			"pbkdf2-sha512$1000$$aGFzaA",
+			"pbkdf2-sha512$1000$not base64!$aGFzaA",
+		};
+		for (String stored : damaged) {
+			// Not even the damaged text itself is accepted as the password
+			assertFalse(hasher.verify(stored, stored), stored);
+		}
+		assertTrue(hasher.needsRehash(damaged[0]));
+		assertTrue(hasher.needsRehash(damaged[1]));
+		assertTrue(hasher.needsRehash(damaged[2]));
+	}
+
+	@Test
+	public void iterationsMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> new Pbkdf2PasswordHasher(0));
+		assertEquals(1000, hasher.getIterations());
+	}
+}
@@ -0,0 +1,399 @@
+package database;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*******
+ * <p> Title: QueryMetrics Class. </p>
+ *
+ * <p> Description: Per-operation call counts, latency histograms, rows returned and error
+ * counts for the Database class.  An operation is everything a Database method does with the
+ * connection it borrows: the ConnectionPool starts one when a thread borrows a connection and
+ * ends it when that connection is returned, and names it after the outermost Database method on
+ * the borrowing thread's stack.  Connections borrowed again by the same thread while an
+ * operation is running (for example by flushReadMarks inside verifyUnreadCounters) belong
+ * to that operation.</p>
+ *
+ * <p> Statements and result sets on the borrowed connection are wrapped so that every row read
+ * with next() is counted and every SQLException is noticed before the Database method catches
+ * and prints it.  An operation that saw an SQLException counts as one error.</p>
+ *
+ * <p> The numbers can be read through JMX (see QueryMetricsMBean) or printed as a table, either
+ * on demand with dump() or every few seconds with startPeriodicDump.</p>
+ *
+ * <p> The wrapping and the stack walk that names each operation cost something on every query,
+ * so the Database only attaches a QueryMetrics when it is started with -Dlms.metrics=true.</p>
+ *
+ */
+public class QueryMetrics implements QueryMetricsMBean {
+
+	// Upper bounds of the latency histogram buckets, in microseconds; the last bucket is unbounded
+	private static final long[] BUCKET_MICROS = {
+			50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+			100_000, 250_000, 500_000, 1_000_000, 2_500_000, Long.MAX_VALUE };
+
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	/*******
+	 * <p> Title: Operation Class. </p>
+	 *
+	 * <p> Description: One running Database operation on one thread.</p>
+	 */
+	public static final class Operation {
+		final String name;
+		final long startNanos = System.nanoTime();
+		long rows = 0;
+		boolean failed = false;
+
+		Operation(String name) { this.name = name; }
+
+		/** Note that an SQLException was thrown during the operation. */
+		public void error() { failed = true; }
+	}
+
+	/*******
+	 * <p> Title: MethodStats Class. </p>
+	 *
+	 * <p> Description: What has been recorded for one operation name.</p>
+	 */
+	public static final class MethodStats {
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MICROS.length);
+
+		void record(long nanos, long rowCount, boolean failed) {
+			calls.increment();
+			if (failed) errors.increment();
+			rows.add(rowCount);
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			long micros = nanos / 1_000;
+			int b = 0;
+			while (micros > BUCKET_MICROS[b]) b++;
+			buckets.incrementAndGet(b);
+		}
+
+		/** @return the number of calls */
+		public long getCalls() { return calls.sum(); }
+
+		/** @return the number of calls that saw an SQLException */
+		public long getErrors() { return errors.sum(); }
+
+		/** @return the number of rows read from result sets */
+		public long getRows() { return rows.sum(); }
+
+		/** @return the total time spent, in milliseconds */
+		public double getTotalMillis() { return totalNanos.sum() / 1e6; }
+
+		/** @return the mean time per call, in milliseconds */
+		public double getMeanMillis() {
+			long n = calls.sum();
+			return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+		}
+
+		/** @return the longest call, in milliseconds */
+		public double getMaxMillis() { return maxNanos.get() / 1e6; }
+
+		/*******
+		 * <p> Method: double getPercentileMillis(double p) </p>
+		 *
+		 * @param p the percentile wanted, between 0 and 100
+		 *
+		 * @return an upper bound on that percentile of the call times, in milliseconds: the top of
+		 * the histogram bucket it falls in (or the maximum, for the last bucket)
+		 */
+		public double getPercentileMillis(double p) {
+			long n = 0;
+			for (int i = 0; i < buckets.length(); i++) n += buckets.get(i);
+			if (n == 0) return 0;
+			long rank = (long) Math.ceil(p / 100 * n);
+			long seen = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+				if (seen >= Math.max(1, rank)) {
+					return BUCKET_MICROS[i] == Long.MAX_VALUE ? getMaxMillis() : Math.min(BUCKET_MICROS[i] / 1e3, getMaxMillis());
+				}
+			}
+			return getMaxMillis();
+		}
+	}
+
+	private final String ownerClass;
+	private final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+	private final ThreadLocal<Operation> current = new ThreadLocal<>();
+	private ScheduledExecutorService dumper = null;
+	private ObjectName objectName = null;
+
+	/*******
+	 * <p> Method: QueryMetrics(Class&lt;?&gt; owner) </p>
+	 *
+	 * <p> Description: Create an empty registry.</p>
+	 *
+	 * @param owner the class whose methods operations are named after, normally Database
+	 */
+	public QueryMetrics(Class<?> owner) {
+		this.ownerClass = owner.getName();
+	}
+
+	/*******
+	 * <p> Method: Operation current() </p>
+	 *
+	 * @return the operation running on this thread, or null if there is none
+	 */
+	public Operation current() {
+		return current.get();
+	}
+
+	/*******
+	 * <p> Method: Operation begin() </p>
+	 *
+	 * <p> Description: Start an operation on this thread, named after the caller.</p>
+	 *
+	 * @return the new operation; pass it to end() when its connection is returned
+	 */
+	public Operation begin() {
+		Operation op = new Operation(callerName());
+		current.set(op);
+		return op;
+	}
+
+	/*******
+	 * <p> Method: void end(Operation op) </p>
+	 *
+	 * <p> Description: Finish an operation and record its time, rows and outcome.</p>
+	 *
+	 * @param op the operation returned by begin()
+	 */
+	public void end(Operation op) {
+		if (current.get() == op) current.remove();
+		stats.computeIfAbsent(op.name, k -> new MethodStats())
+				.record(System.nanoTime() - op.startNanos, op.rows, op.failed);
+	}
+
+	/*
+	 * The outermost method of the owner class on the stack, so private helpers are charged to
+	 * the public method that called them.  Borrows from anywhere else are named after the first
+	 * caller outside this package's plumbing.
+	 */
+	private String callerName() {
+		return StackWalker.getInstance().walk(frames -> {
+			String owner = null;
+			String other = null;
+			for (StackWalker.StackFrame f : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+				String cls = f.getClassName();
+				if (cls.equals(ownerClass)) {
+					owner = f.getMethodName();
+				} else if (other == null && !cls.equals(QueryMetrics.class.getName())
+						&& !cls.equals(ConnectionPool.class.getName())) {
+					other = cls.substring(cls.lastIndexOf('.') + 1) + "." + f.getMethodName();
+				}
+			}
+			return owner != null ? owner : (other != null ? other : "unknown");
+		});
+	}
+
+	/*******
+	 * <p> Method: &lt;T&gt; T instrument(T statement, Class&lt;T&gt; type, Operation op) </p>
+	 *
+	 * <p> Description: Wrap a Statement (or PreparedStatement or CallableStatement) so rows
+	 * read from its result sets and SQLExceptions it throws are charged to the operation.</p>
+	 *
+	 * @param <T> the statement interface
+	 * @param statement the statement to wrap
+	 * @param type the statement interface the proxy must implement
+	 * @param op the operation to charge
+	 *
+	 * @return the wrapped statement
+	 */
+	public <T> T instrument(T statement, Class<T> type, Operation op) {
+		return wrap(statement, type, op, (method, result) -> {
+			if (result instanceof ResultSet && (method.equals("executeQuery") || method.equals("getResultSet")
+					|| method.equals("getGeneratedKeys"))) {
+				return wrap((ResultSet) result, ResultSet.class, op, (m, r) -> {
+					if (m.equals("next") && Boolean.TRUE.equals(r)) op.rows++;
+					return r;
+				});
+			}
+			return result;
+		});
+	}
+
+	@FunctionalInterface
+	private interface AfterCall {
+		Object apply(String method, Object result);
+	}
+
+	private static <T> T wrap(T target, Class<T> type, Operation op, AfterCall after) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "unwrap":
+					if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+					break;
+				default:
+					break;
+			}
+			try {
+				return after.apply(method.getName(), method.invoke(target, args));
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof SQLException) op.error();
+				throw e.getCause();
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	/*******
+	 * <p> Method: Map&lt;String, MethodStats&gt; getStats() </p>
+	 *
+	 * @return the live statistics, keyed by operation name
+	 */
+	public Map<String, MethodStats> getStats() {
+		return stats;
+	}
+
+	@Override
+	public long getTotalCalls() {
+		long n = 0;
+		for (MethodStats s : stats.values()) n += s.getCalls();
+		return n;
+	}
+
+	@Override
+	public long getTotalErrors() {
+		long n = 0;
+		for (MethodStats s : stats.values()) n += s.getErrors();
+		return n;
+	}
+
+	@Override
+	public String[] getMethodSummaries() {
+		List<Map.Entry<String, MethodStats>> entries = sortedByTotalTime();
+		String[] lines = new String[entries.size()];
+		for (int i = 0; i < lines.length; i++) lines[i] = formatRow(entries.get(i).getKey(), entries.get(i).getValue());
+		return lines;
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Database metrics at ").append(LocalDateTime.now().withNano(0))
+		  .append(" (times in ms, slowest total first)\n");
+		sb.append(String.format("%-36s %8s %6s %10s %9s %8s %8s %8s %9s%n",
+				"operation", "calls", "errors", "rows", "total", "mean", "p95", "p99", "max"));
+		for (Map.Entry<String, MethodStats> e : sortedByTotalTime()) {
+			sb.append(formatRow(e.getKey(), e.getValue())).append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void reset() {
+		stats.clear();
+	}
+
+	private List<Map.Entry<String, MethodStats>> sortedByTotalTime() {
+		List<Map.Entry<String, MethodStats>> entries = new ArrayList<>(stats.entrySet());
+		entries.sort((a, b) -> Double.compare(b.getValue().getTotalMillis(), a.getValue().getTotalMillis()));
+		return entries;
+	}
+
+	private static String formatRow(String name, MethodStats s) {
+		return String.format("%-36s %8d %6d %10d %9.1f %8.2f %8.2f %8.2f %9.2f", name, s.getCalls(), s.getErrors(),
+				s.getRows(), s.getTotalMillis(), s.getMeanMillis(), s.getPercentileMillis(95),
+				s.getPercentileMillis(99), s.getMaxMillis());
+	}
+
+	/*******
+	 * <p> Method: boolean registerMBean() </p>
+	 *
+	 * <p> Description: Publish these metrics on the platform MBean server.  The database package
+	 * must be exported to java.management (see module-info.java) for the server to read
+	 * QueryMetricsMBean.  A failure is reported on System.err and otherwise ignored, since
+	 * metrics must never stop the application; dump() still works without JMX.</p>
+	 *
+	 * @return true if the metrics are published, false if they could not be
+	 */
+	public synchronized boolean registerMBean() {
+		if (objectName != null) return true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			int n = instances.incrementAndGet();
+			objectName = new ObjectName("FoundationsF25:type=QueryMetrics" + (n == 1 ? "" : ",instance=" + n));
+			server.registerMBean(this, objectName);
+			return true;
+		} catch (JMException | RuntimeException e) {
+			System.err.println("*** ERROR *** Query metrics could not be published over JMX as "
+					+ objectName + ": " + e);
+			objectName = null;
+			return false;
+		}
+	}
+
+	/*******
+	 * <p> Method: void startPeriodicDump(long periodSeconds, PrintStream out) </p>
+	 *
+	 * <p> Description: Print dump() to the stream every periodSeconds seconds on a daemon
+	 * thread.</p>
+	 *
+	 * @param periodSeconds how often to print
+	 * @param out where to print
+	 */
+	public synchronized void startPeriodicDump(long periodSeconds, PrintStream out) {
+		if (dumper != null || periodSeconds <= 0) return;
+		dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "query-metrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+		dumper.scheduleAtFixedRate(() -> out.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/*******
+	 * <p> Method: void close() </p>
+	 *
+	 * <p> Description: Stop the periodic dump and unregister the MBean.</p>
+	 */
+	public synchronized void close() {
+		if (dumper != null) {
+			dumper.shutdownNow();
+			dumper = null;
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+			objectName = null;
+		}
+	}
+}
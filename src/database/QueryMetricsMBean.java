@@ -0,0 +1,26 @@
+package database;
+
+/*******
+ * <p> Title: QueryMetricsMBean Interface. </p>
+ *
+ * <p> Description: The JMX view of QueryMetrics, visible in JConsole or VisualVM under
+ * FoundationsF25:type=QueryMetrics.</p>
+ *
+ */
+public interface QueryMetricsMBean {
+
+	/** @return the number of Database operations recorded since the last reset */
+	long getTotalCalls();
+
+	/** @return the number of those operations in which an SQLException was thrown */
+	long getTotalErrors();
+
+	/** @return one line per operation name, slowest total time first */
+	String[] getMethodSummaries();
+
+	/** @return the same report the periodic dump prints */
+	String dump();
+
+	/** Forget everything recorded so far. */
+	void reset();
+}
@@ -0,0 +1,270 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*******
+ * <p> Title: ReadMarkQueue Class. </p>
+ *
+ * <p> Description: A write-behind queue for "post read" and "reply read" marks.  Opening a post
+ * or a reply only records the mark in memory; a background thread writes the queued marks a
+ * short delay later, as JDBC batches in a single transaction.  Marking the same post or reply
+ * read again before it is written costs nothing, so clicking quickly through a thread results
+ * in one commit rather than one commit per click.</p>
+ *
+ * <p> A mark stays visible through isPostPending and isReplyPending until it has been written
+ * and committed, so a reader that checks the queue before the database never sees a mark
+ * disappear while it is being written.  Readers that count or filter over many rows take a
+ * user's queued ids from pendingPostIds and pendingReplyIds and apply them on top of what the
+ * database holds.  flush() writes everything queued on the caller's thread, for the few
+ * readers that need the tables themselves to be complete.</p>
+ *
+ * <p> close() stops the background thread and writes whatever is left; the Database calls it
+ * from closeConnection.</p>
+ *
+ */
+public class ReadMarkQueue {
+
+	/*******
+	 * <p> Title: Writer Interface. </p>
+	 *
+	 * <p> Description: Writes a batch of marks to the database in one transaction.</p>
+	 */
+	@FunctionalInterface
+	public interface Writer {
+		void write(List<Mark> posts, List<Mark> replies) throws SQLException;
+	}
+
+	/*******
+	 * <p> Title: Mark Class. </p>
+	 *
+	 * <p> Description: One user having read one post or reply.</p>
+	 */
+	public static final class Mark {
+		/** The user who read the post or reply. */
+		public final String userName;
+		/** The id of the post or reply. */
+		public final int id;
+
+		Mark(String userName, int id) {
+			this.userName = userName;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Mark)) return false;
+			Mark m = (Mark) o;
+			return id == m.id && userName.equals(m.userName);
+		}
+
+		@Override
+		public int hashCode() { return Objects.hash(userName, id); }
+	}
+
+	private final Writer writer;
+	private final long delayMillis;
+	private final int batchLimit;
+	private final ScheduledExecutorService executor;
+
+	// Guards the pending sets and the scheduled flag
+	private final Object lock = new Object();
+	// Held for the whole of a write, so only one batch is being written at a time
+	private final Object flushLock = new Object();
+	private final Set<Mark> pendingPosts = new LinkedHashSet<>();
+	private final Set<Mark> pendingReplies = new LinkedHashSet<>();
+	private boolean scheduled = false;
+	private boolean closed = false;
+
+	/*******
+	 * <p> Method: ReadMarkQueue(Writer writer, long delayMillis, int batchLimit) </p>
+	 *
+	 * <p> Description: Create a queue and its background writer thread.</p>
+	 *
+	 * @param writer writes a batch of marks to the database
+	 * @param delayMillis how long a mark may wait before it is written
+	 * @param batchLimit the number of queued marks that triggers a write without waiting
+	 */
+	public ReadMarkQueue(Writer writer, long delayMillis, int batchLimit) {
+		this.writer = writer;
+		this.delayMillis = delayMillis;
+		this.batchLimit = batchLimit;
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "read-mark-writer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/*******
+	 * <p> Method: void markPost(String userName, int postId) </p>
+	 *
+	 * <p> Description: Queue a post as read by a user.</p>
+	 *
+	 * @param userName the user who read the post
+	 * @param postId the id of the post
+	 */
+	public void markPost(String userName, int postId) {
+		enqueue(pendingPosts, new Mark(userName, postId));
+	}
+
+	/*******
+	 * <p> Method: void markReply(String userName, int replyId) </p>
+	 *
+	 * <p> Description: Queue a reply as read by a user.</p>
+	 *
+	 * @param userName the user who read the reply
+	 * @param replyId the id of the reply
+	 */
+	public void markReply(String userName, int replyId) {
+		enqueue(pendingReplies, new Mark(userName, replyId));
+	}
+
+	/*******
+	 * <p> Method: boolean isPostPending(String userName, int postId) </p>
+	 *
+	 * @param userName the user to check
+	 * @param postId the id of the post
+	 *
+	 * @return true if the post has been marked read for the user but the mark is not yet committed
+	 */
+	public boolean isPostPending(String userName, int postId) {
+		synchronized (lock) {
+			return pendingPosts.contains(new Mark(userName, postId));
+		}
+	}
+
+	/*******
+	 * <p> Method: boolean isReplyPending(String userName, int replyId) </p>
+	 *
+	 * @param userName the user to check
+	 * @param replyId the id of the reply
+	 *
+	 * @return true if the reply has been marked read for the user but the mark is not yet committed
+	 */
+	public boolean isReplyPending(String userName, int replyId) {
+		synchronized (lock) {
+			return pendingReplies.contains(new Mark(userName, replyId));
+		}
+	}
+
+	/*******
+	 * <p> Method: Set&lt;Integer&gt; pendingPostIds(String userName) </p>
+	 *
+	 * @param userName the user to check
+	 *
+	 * @return the ids of the posts marked read for the user whose marks are not yet committed
+	 */
+	public Set<Integer> pendingPostIds(String userName) {
+		return pendingIds(pendingPosts, userName);
+	}
+
+	/*******
+	 * <p> Method: Set&lt;Integer&gt; pendingReplyIds(String userName) </p>
+	 *
+	 * @param userName the user to check
+	 *
+	 * @return the ids of the replies marked read for the user whose marks are not yet committed
+	 */
+	public Set<Integer> pendingReplyIds(String userName) {
+		return pendingIds(pendingReplies, userName);
+	}
+
+	/*******
+	 * <p> Method: boolean hasPending() </p>
+	 *
+	 * @return true if any mark is waiting to be written
+	 */
+	public boolean hasPending() {
+		synchronized (lock) {
+			return !pendingPosts.isEmpty() || !pendingReplies.isEmpty();
+		}
+	}
+
+	/*******
+	 * <p> Method: void flush() </p>
+	 *
+	 * <p> Description: Write every queued mark now, on the calling thread.  If the write fails
+	 * the marks stay queued and are tried again by the next flush.</p>
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			List<Mark> posts;
+			List<Mark> replies;
+			synchronized (lock) {
+				scheduled = false;
+				if (pendingPosts.isEmpty() && pendingReplies.isEmpty()) return;
+				posts = new ArrayList<>(pendingPosts);
+				replies = new ArrayList<>(pendingReplies);
+			}
+			try {
+				writer.write(posts, replies);
+			} catch (SQLException e) {
+				e.printStackTrace();
+				return;
+			}
+			// Marks queued again while the batch was being written are already in the database
+			synchronized (lock) {
+				pendingPosts.removeAll(posts);
+				pendingReplies.removeAll(replies);
+			}
+		}
+	}
+
+	/*******
+	 * <p> Method: void close() </p>
+	 *
+	 * <p> Description: Stop the background writer and write the marks still queued.  Marks
+	 * queued after close are written immediately.</p>
+	 */
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	// A copy of one user's ids in a pending set
+	private Set<Integer> pendingIds(Set<Mark> pending, String userName) {
+		Set<Integer> ids = new LinkedHashSet<>();
+		synchronized (lock) {
+			for (Mark m : pending) {
+				if (m.userName.equals(userName)) ids.add(m.id);
+			}
+		}
+		return ids;
+	}
+
+	private void enqueue(Set<Mark> pending, Mark mark) {
+		boolean flushNow;
+		synchronized (lock) {
+			if (!pending.add(mark)) return;			// already queued
+			if (closed) {
+				flushNow = true;
+			} else {
+				if (pendingPosts.size() + pendingReplies.size() >= batchLimit) {
+					executor.execute(this::flush);
+					scheduled = true;
+				} else if (!scheduled) {
+					executor.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+					scheduled = true;
+				}
+				flushNow = false;
+			}
+		}
+		if (flushNow) flush();
+	}
+}
@@ -0,0 +1,158 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*******
+ * <p> Title: ReadMarkQueueTest Class. </p>
+ *
+ * <p> Description: JUnit 5 tests of ReadMarkQueue: repeated marks are coalesced, marks stay
+ * pending until their batch is written, and flush, the batch limit and close all write what is
+ * queued.  The writer records its batches instead of touching a database.</p>
+ *
+ */
+public class ReadMarkQueueTest {
+
+	// Long enough that the timed write never runs during a test
+	private static final long NEVER = TimeUnit.MINUTES.toMillis(10);
+
+	private final List<List<ReadMarkQueue.Mark>> postBatches = Collections.synchronizedList(new ArrayList<>());
+	private final List<List<ReadMarkQueue.Mark>> replyBatches = Collections.synchronizedList(new ArrayList<>());
+	private ReadMarkQueue queue;
+
+	@AfterEach
+	public void tearDown() {
+		if (queue != null) queue.close();
+	}
+
+	// A queue whose writer records each batch
+	private ReadMarkQueue recordingQueue(int batchLimit) {
+		return new ReadMarkQueue((posts, replies) -> {
+			postBatches.add(posts);
+			replyBatches.add(replies);
+		}, NEVER, batchLimit);
+	}
+
+	@Test
+	public void repeatedMarksAreWrittenOnce() {
+		queue = recordingQueue(100);
+		queue.markPost("alice", 1);
+		queue.markPost("alice", 1);
+		queue.markReply("alice", 7);
+		queue.markReply("alice", 7);
+		queue.markReply("bob", 7);
+
+		queue.flush();
+
+		assertEquals(1, postBatches.size(), "Everything queued goes in one batch");
+		assertEquals(Arrays.asList(new ReadMarkQueue.Mark("alice", 1)), postBatches.get(0));
+		assertEquals(Arrays.asList(new ReadMarkQueue.Mark("alice", 7), new ReadMarkQueue.Mark("bob", 7)),
+				replyBatches.get(0));
+	}
+
+	@Test
+	public void marksArePendingUntilFlushed() {
+		queue = recordingQueue(100);
+		assertFalse(queue.hasPending());
+
+		queue.markPost("alice", 1);
+		queue.markReply("alice", 2);
+		assertTrue(queue.isPostPending("alice", 1));
+		assertTrue(queue.isReplyPending("alice", 2));
+		assertFalse(queue.isPostPending("bob", 1), "Marks belong to one user");
+		assertFalse(queue.isReplyPending("alice", 1), "Post and reply marks are kept apart");
+		assertTrue(queue.hasPending());
+
+		queue.flush();
+
+		assertFalse(queue.isPostPending("alice", 1));
+		assertFalse(queue.isReplyPending("alice", 2));
+		assertFalse(queue.hasPending());
+	}
+
+	@Test
+	public void pendingIdsAreListedPerUser() {
+		queue = recordingQueue(100);
+		queue.markPost("alice", 1);
+		queue.markPost("bob", 2);
+		queue.markReply("alice", 7);
+		queue.markReply("alice", 8);
+		queue.markReply("bob", 9);
+
+		assertEquals(new HashSet<>(Arrays.asList(1)), queue.pendingPostIds("alice"));
+		assertEquals(new HashSet<>(Arrays.asList(7, 8)), queue.pendingReplyIds("alice"));
+		assertTrue(queue.pendingPostIds("carol").isEmpty());
+
+		queue.flush();
+
+		assertTrue(queue.pendingReplyIds("alice").isEmpty(), "Written marks are no longer pending");
+	}
+
+	@Test
+	public void flushWithNothingQueuedWritesNothing() {
+		queue = recordingQueue(100);
+		queue.flush();
+		assertTrue(postBatches.isEmpty());
+	}
+
+	@Test
+	public void failedWritesStayQueuedForTheNextFlush() {
+		boolean[] fail = { true };
+		List<ReadMarkQueue.Mark> written = new ArrayList<>();
+		queue = new ReadMarkQueue((posts, replies) -> {
+			if (fail[0]) throw new SQLException("database unavailable");
+			written.addAll(posts);
+		}, NEVER, 100);
+		queue.markPost("alice", 1);
+
+		queue.flush();
+		assertTrue(queue.isPostPending("alice", 1), "A failed write keeps the mark queued");
+
+		fail[0] = false;
+		queue.flush();
+		assertEquals(Arrays.asList(new ReadMarkQueue.Mark("alice", 1)), written);
+		assertFalse(queue.hasPending());
+	}
+
+	@Test
+	public void reachingTheBatchLimitWritesWithoutWaiting() throws Exception {
+		CountDownLatch written = new CountDownLatch(1);
+		queue = new ReadMarkQueue((posts, replies) -> {
+			postBatches.add(posts);
+			written.countDown();
+		}, NEVER, 3);
+		queue.markPost("alice", 1);
+		queue.markPost("alice", 2);
+		queue.markPost("alice", 2);		// already queued, so not a third mark
+		assertTrue(postBatches.isEmpty());
+
+		queue.markPost("alice", 3);
+
+		assertTrue(written.await(5, TimeUnit.SECONDS), "The background writer should run at the limit");
+		assertEquals(3, postBatches.get(0).size());
+	}
+
+	@Test
+	public void closeWritesWhatIsLeftAndLaterMarksAtOnce() {
+		queue = recordingQueue(100);
+		queue.markPost("alice", 1);
+
+		queue.close();
+		assertEquals(1, postBatches.size(), "close writes the queued marks");
+
+		queue.markReply("alice", 2);
+		assertEquals(2, postBatches.size(), "A mark queued after close is written immediately");
+		assertEquals(Arrays.asList(new ReadMarkQueue.Mark("alice", 2)), replyBatches.get(1));
+		assertFalse(queue.hasPending());
+	}
+}
@@ -0,0 +1,30 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*******
+ * <p> Title: RowMapper Interface. </p>
+ *
+ * <p> Description: Turns the current row of a ResultSet into an object.  A mapper only reads the
+ * columns of the row it is given; it never moves the cursor or keeps the ResultSet, so one
+ * mapper can serve every query that selects its columns.  The shared mappers are in
+ * RowMappers.</p>
+ *
+ * @param <T> the type of object made from each row
+ *
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+	/*******
+	 * <p> Method: T map(ResultSet rs) </p>
+	 *
+	 * @param rs a ResultSet positioned on the row to map
+	 *
+	 * @return the object for that row
+	 *
+	 * @throws SQLException if a column cannot be read
+	 */
+	T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,124 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import entityClasses.Feedback;
+import entityClasses.Post;
+import entityClasses.Reply;
+import entityClasses.Ticket;
+import entityClasses.TicketComment;
+import entityClasses.User;
+
+/*******
+ * <p> Title: RowMappers Class. </p>
+ *
+ * <p> Description: The RowMapper for each entity the Database reads, so every query for an
+ * entity builds it the same way.  Each mapper names the columns it reads; a query may select
+ * more, but must select at least those.  A preview query can alias a shortened column to the
+ * full column's name (as the post pages do with body) and use the same mapper.</p>
+ *
+ */
+public final class RowMappers {
+
+	private RowMappers() {
+	}
+
+	/** Users without their password, which is left null: userName, firstName, middleName,
+	 *  lastName, preferredFirstName, emailAddress, adminRole, newRole1, newRole2. */
+	public static final RowMapper<User> USER_SUMMARY = rs -> new User(
+			rs.getString("userName"),
+			null,
+			rs.getString("firstName"),
+			rs.getString("middleName"),
+			rs.getString("lastName"),
+			rs.getString("preferredFirstName"),
+			rs.getString("emailAddress"),
+			rs.getBoolean("adminRole"),
+			rs.getBoolean("newRole1"),
+			rs.getBoolean("newRole2"));
+
+	/** Posts: id, title, body, author, thread, created_at, deleted. */
+	public static final RowMapper<Post> POST = rs -> {
+		Post p = new Post();
+		p.setId(rs.getInt("id"));
+		p.setTitle(rs.getString("title"));
+		p.setBody(rs.getString("body"));
+		p.setAuthorUsername(rs.getString("author"));
+		p.setThread(rs.getString("thread"));
+		Timestamp ts = rs.getTimestamp("created_at");
+		if (ts != null) p.setCreatedAt(ts.toInstant());
+		p.setDeleted(rs.getBoolean("deleted"));
+		return p;
+	};
+
+	/** Replies: id, postId, content, author, created_at. */
+	public static final RowMapper<Reply> REPLY = rs -> {
+		Reply r = new Reply();
+		r.setId(rs.getInt("id"));
+		r.setPostId(rs.getInt("postId"));
+		r.setContent(rs.getString("content"));
+		r.setAuthorUsername(rs.getString("author"));
+		Timestamp ts = rs.getTimestamp("created_at");
+		if (ts != null) r.setCreatedAt(ts.toInstant());
+		return r;
+	};
+
+	/** Replies with the reader's read flag: the REPLY columns and isRead. */
+	public static final RowMapper<Reply> REPLY_WITH_READ = rs -> {
+		Reply r = REPLY.map(rs);
+		r.setRead(rs.getBoolean("isRead"));
+		return r;
+	};
+
+	/** Tickets: id, title, body, creatorUsername, status, reopenedFromId, created_at, deleted. */
+	public static final RowMapper<Ticket> TICKET = rs -> {
+		Ticket t = new Ticket();
+		t.setId(rs.getInt("id"));
+		t.setTitle(rs.getString("title"));
+		t.setBody(rs.getString("body"));
+		t.setCreatorUserName(rs.getString("creatorUsername"));
+		t.setStatus(rs.getString("status"));
+
+		int reopenedId = rs.getInt("reopenedFromId");
+		t.setReopenedFromId(rs.wasNull() ? null : reopenedId);
+
+		Timestamp ts = rs.getTimestamp("created_at");
+		if (ts != null) t.setCreatedAt(ts.toInstant());
+		t.setDeleted(rs.getBoolean("deleted"));
+		return t;
+	};
+
+	/** Ticket comments: id, ticketId, authorUsername, content, created_at. */
+	public static final RowMapper<TicketComment> TICKET_COMMENT = rs -> {
+		TicketComment c = new TicketComment();
+		c.setId(rs.getInt("id"));
+		c.setTicketId(rs.getInt("ticketId"));
+		c.setAuthorUserName(rs.getString("authorUsername"));
+		c.setContent(rs.getString("content"));
+		Timestamp ts = rs.getTimestamp("created_at");
+		if (ts != null) c.setCreatedAt(ts.toInstant());
+		return c;
+	};
+
+	/** Feedback messages: id, senderUsername, receiverUsername, subject, content, created_at, isRead.
+	 *  The content CLOB is read once, as a String. */
+	public static final RowMapper<Feedback> FEEDBACK = rs -> feedback(rs, rs.getString("content"));
+
+	/** Feedback messages without their content, which is left null: the FEEDBACK columns less
+	 *  content.  Database.getFeedbackContent fetches it when it is needed. */
+	public static final RowMapper<Feedback> FEEDBACK_SUMMARY = rs -> feedback(rs, null);
+
+	private static Feedback feedback(ResultSet rs, String content) throws SQLException {
+		Timestamp ts = rs.getTimestamp("created_at");
+		return new Feedback(
+				rs.getInt("id"),
+				rs.getString("senderUsername"),
+				rs.getString("receiverUsername"),
+				rs.getString("subject"),
+				content,
+				(ts != null) ? ts.toLocalDateTime() : null,
+				rs.getBoolean("isRead"));
+	}
+}
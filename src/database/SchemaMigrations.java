@@ -0,0 +1,415 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/*******
+ * <p> Title: SchemaMigrations Class. </p>
+ *
+ * <p> Description: Brings the H2 schema up to date by applying numbered migrations in order.
+ * The schema_version table records every migration that has been applied, so opening a
+ * database only runs the migrations it has not seen yet.</p>
+ *
+ * <p> Migration 1 is the schema as it stood before versioning was introduced, written with
+ * CREATE TABLE IF NOT EXISTS.  A FoundationDatabase file created by an older build has no
+ * schema_version table; for it migration 1 changes nothing and the later migrations upgrade
+ * it in place.</p>
+ *
+ * <p> H2 commits every DDL statement as soon as it runs, so a migration cannot be rolled back
+ * as a whole.  Each migration is therefore written so that running it again after a partial
+ * failure is harmless, and its version is only recorded once all of its steps succeed.</p>
+ *
+ * <p> To change the schema, add a migration with the next version number at the end of
+ * MIGRATIONS.  Never edit a migration that has already shipped.</p>
+ *
+ */
+public class SchemaMigrations {
+
+	/*******
+	 * <p> Title: Step Interface. </p>
+	 *
+	 * <p> Description: The body of one migration.</p>
+	 */
+	@FunctionalInterface
+	interface Step {
+		void apply(Connection connection, Statement statement) throws SQLException;
+	}
+
+	/*******
+	 * <p> Title: Migration Class. </p>
+	 *
+	 * <p> Description: A numbered, described change to the schema.</p>
+	 */
+	static final class Migration {
+		final int version;
+		final String description;
+		final Step step;
+
+		Migration(int version, String description, Step step) {
+			this.version = version;
+			this.description = description;
+			this.step = step;
+		}
+	}
+
+	// Every migration, in the order it must be applied
+	private static final List<Migration> MIGRATIONS = List.of(
+			new Migration(1, "Baseline schema", SchemaMigrations::baseline),
+			new Migration(2, "Reply read watermarks", SchemaMigrations::replyReadWatermarks),
+			new Migration(3, "Search index", SchemaMigrations::searchIndex),
+			new Migration(4, "Secondary indexes for filtered and sorted queries", SchemaMigrations::secondaryIndexes),
+			new Migration(5, "Invitation expiry indexes", SchemaMigrations::invitationExpiryIndexes),
+			new Migration(6, "Unread reply counters", SchemaMigrations::unreadCounters),
+			new Migration(7, "User directory sort and search keys", SchemaMigrations::userDirectoryKeys),
+			new Migration(8, "Reply window index", SchemaMigrations::replyWindowIndex));
+
+	/*******
+	 * <p> Method: int migrate(Connection connection) </p>
+	 *
+	 * <p> Description: Create the schema_version table if needed and apply, in order, every
+	 * migration newer than the version it records.</p>
+	 *
+	 * @param connection the connection to migrate with
+	 *
+	 * @return the number of migrations applied
+	 *
+	 * @throws SQLException if a migration fails; the migrations before it stay applied
+	 */
+	public static int migrate(Connection connection) throws SQLException {
+		int applied = 0;
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+					+ "version INT PRIMARY KEY, "
+					+ "description VARCHAR(255), "
+					+ "applied_at TIMESTAMP)");
+
+			int current = currentVersion(connection);
+			for (Migration m : MIGRATIONS) {
+				if (m.version <= current) continue;
+				m.step.apply(connection, statement);
+				recordVersion(connection, m);
+				applied++;
+			}
+		}
+		return applied;
+	}
+
+	/*******
+	 * <p> Method: int currentVersion(Connection connection) </p>
+	 *
+	 * @param connection the connection to read with
+	 *
+	 * @return the newest migration applied to the database, or 0 if none has been
+	 *
+	 * @throws SQLException if schema_version cannot be read
+	 */
+	public static int currentVersion(Connection connection) throws SQLException {
+		try (PreparedStatement pstmt = connection.prepareStatement("SELECT MAX(version) FROM schema_version");
+			 ResultSet rs = pstmt.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/*******
+	 * <p> Method: int latestVersion() </p>
+	 *
+	 * @return the version the schema is at once every migration has been applied
+	 */
+	public static int latestVersion() {
+		return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+	}
+
+	private static void recordVersion(Connection connection, Migration m) throws SQLException {
+		String insert = "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			pstmt.setInt(1, m.version);
+			pstmt.setString(2, m.description);
+			pstmt.setTimestamp(3, Timestamp.from(Instant.now()));
+			pstmt.executeUpdate();
+		}
+	}
+
+	// Migration 1: the tables as they were before schema versioning
+	private static void baseline(Connection connection, Statement statement) throws SQLException {
+	    /*******
+	     * @author Daniel Ortiz Figueroa
+	    */
+	    // Create Grading Parameters table (from Version B)
+	    String gradingParamsTable = "CREATE TABLE IF NOT EXISTS GradingParameters ("
+	            + "id INT AUTO_INCREMENT PRIMARY KEY, "
+	            + "name VARCHAR(255), "
+	            + "maxScore DOUBLE)";
+	    statement.execute(gradingParamsTable);
+
+	    // Create Student Scores table (The actual grades) (from Version B)
+	    // Using composite primary key to ensure one score per parameter per student
+	    String studentScoresTable = "CREATE TABLE IF NOT EXISTS StudentScores ("
+	            + "studentUserName VARCHAR(255), "
+	            + "paramId INT, "
+	            + "score DOUBLE, "
+	            + "PRIMARY KEY (studentUserName, paramId), "
+	            + "FOREIGN KEY (paramId) REFERENCES GradingParameters(id) ON DELETE CASCADE)";
+	    statement.execute(studentScoresTable);
+
+	    // Insert default parameters if empty (from Version B)
+	    try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) AS cnt FROM GradingParameters")) {
+	        if (rs.next() && rs.getInt("cnt") == 0) {
+	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Participation', 20.0)");
+	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Behavior', 10.0)");
+	            statement.execute("INSERT INTO GradingParameters (name, maxScore) VALUES ('Performance', 70.0)");
+	        }
+	    }
+
+		// Create the user database
+		String userTable = "CREATE TABLE IF NOT EXISTS userDB ("
+				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "userName VARCHAR(255) UNIQUE, "
+				+ "password VARCHAR(255), "
+				+ "firstName VARCHAR(255), "
+				+ "middleName VARCHAR(255), "
+				+ "lastName VARCHAR (255), "
+				+ "preferredFirstName VARCHAR(255), "
+				+ "emailAddress VARCHAR(255), "
+				+ "adminRole BOOL DEFAULT FALSE, "
+				+ "newRole1 BOOL DEFAULT FALSE, "
+				+ "newRole2 BOOL DEFAULT FALSE)";
+		statement.execute(userTable);
+
+		// Create the invitation codes table
+		// Omar note - added roles and a created at for expirations
+		String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
+				+ "code VARCHAR(10) PRIMARY KEY, "
+				+ "emailAddress VARCHAR(255), "
+				+ "roles VARCHAR(255), "
+				+ "created_at TIMESTAMP)";
+		statement.execute(invitationCodesTable);
+
+		// OMAR HW2 NEW: Create Posts table
+		String postsTable = "CREATE TABLE IF NOT EXISTS Posts ("
+				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "title VARCHAR(1024), "
+				+ "body CLOB, "
+				+ "author VARCHAR(255), "
+				+ "thread VARCHAR(255), "
+				+ "created_at TIMESTAMP, "
+				+ "deleted BOOL DEFAULT FALSE)";
+		statement.execute(postsTable);
+
+		// OMAR HW2 NEW: Create Replies table
+		String repliesTable = "CREATE TABLE IF NOT EXISTS Replies ("
+				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "postId INT, "
+				+ "content CLOB, "
+				+ "author VARCHAR(255), "
+				+ "created_at TIMESTAMP, "
+				+ "FOREIGN KEY (postId) REFERENCES Posts(id) ON DELETE CASCADE)";
+		statement.execute(repliesTable);
+
+		// OMAR HW2 NEW: Create ReplyReadStatus table, tracks read/unread for each user
+		String replyReadStatusTable = "CREATE TABLE IF NOT EXISTS ReplyReadStatus ("
+				+ "replyId INT, "
+				+ "userName VARCHAR(255), "
+				+ "isRead BOOL DEFAULT FALSE, "
+				+ "PRIMARY KEY (replyId, userName), "
+				+ "FOREIGN KEY (replyId) REFERENCES Replies(id) ON DELETE CASCADE)";
+		statement.execute(replyReadStatusTable);
+
+		// OMAR HW2 NEW: Create PostReadStatus table, tracks whether a user has read a Post
+		String postReadStatusTable = "CREATE TABLE IF NOT EXISTS PostReadStatus ("
+				+ "postId INT, "
+				+ "userName VARCHAR(255), "
+				+ "isRead BOOL DEFAULT FALSE, "
+				+ "PRIMARY KEY (postId, userName), "
+				+ "FOREIGN KEY (postId) REFERENCES Posts(id) ON DELETE CASCADE)";
+		statement.execute(postReadStatusTable);
+
+
+		// OMAR HW3 NEW
+		// Create Threads table
+		String threadsTable = "CREATE TABLE IF NOT EXISTS Threads ("
+				+ "name VARCHAR(255) PRIMARY KEY)";
+		statement.execute(threadsTable);
+
+		// Chuan New
+		/**
+		 * Creates the Tickets table if it does not already exist.
+		 * Stores ticket metadata including creator, status, and timestamps.
+		 */
+		String ticketsTable = "CREATE TABLE IF NOT EXISTS Tickets ("
+				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "title VARCHAR(255), "
+				+ "body CLOB, "
+				+ "creatorUsername VARCHAR(255), "
+				+ "status VARCHAR(20), "			// 'OPEN' or 'CLOSED'
+				+ "reopenedFromId INT, "
+				+ "created_at TIMESTAMP, "
+				+ "deleted BOOL DEFAULT FALSE)";
+		statement.execute(ticketsTable);
+		// Chuan New
+		/**
+		 * Creates the TicketComments table if it does not already exist.
+		 * Stores comments associated with a ticket.
+		 */
+		String ticketCommentsTable = "CREATE TABLE IF NOT EXISTS TicketComments ("
+				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "ticketId INT, "
+				+ "authorUsername VARCHAR(255), "
+				+ "content CLOB, "
+				+ "created_at TIMESTAMP, "
+				+ "FOREIGN KEY (ticketId) REFERENCES Tickets(id) ON DELETE CASCADE)";
+		statement.execute(ticketCommentsTable);
+
+
+		// OMAR HW3 NEW
+		// Inserts default threads if threads are empty
+		try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) AS cnt FROM Threads")) {
+			if (rs.next() && rs.getInt("cnt") == 0) {
+				// Insert default threads
+				String insertThread = "INSERT INTO Threads (name) VALUES (?)";
+				try (PreparedStatement ip = connection.prepareStatement(insertThread)) {
+					for (String name : new String[] { "General", "Announcements", "Help", "Off-topic" }) {
+						ip.setString(1, name);
+						ip.executeUpdate();
+					}
+				}
+			}
+		}
+
+        // BRIAN NEW: Create FeedbackMessages table if doesn't exist (from Version B)
+		String feedbackTable = "CREATE TABLE IF NOT EXISTS FeedbackMessages ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "senderUsername VARCHAR(255), "
+                + "receiverUsername VARCHAR(255), "
+                + "subject VARCHAR(1024), "
+                + "content CLOB, "
+                + "created_at TIMESTAMP, "
+                + "isRead BOOL DEFAULT FALSE, " // Status tracked for the receiver
+                + "FOREIGN KEY (senderUsername) REFERENCES userDB(userName), "
+                + "FOREIGN KEY (receiverUsername) REFERENCES userDB(userName)"
+                + ")";
+        statement.execute(feedbackTable);
+	}
+
+	// Migration 2: replace the per-(reply, user) ReplyReadStatus fan-out with watermarks
+	private static void replyReadWatermarks(Connection connection, Statement statement) throws SQLException {
+		// Reply read tracking: rather than one row per (reply, user), each user keeps a watermark
+		// per post (every reply with an id at or below it has been read) plus explicit marks for
+		// replies that were read out of order above the watermark.  A reply's author always
+		// counts as having read it, so posting a reply writes no read-tracking rows at all.
+		String replyReadWatermarksTable = "CREATE TABLE IF NOT EXISTS ReplyReadWatermarks ("
+				+ "userName VARCHAR(255), "
+				+ "postId INT, "
+				+ "lastSeenReplyId INT DEFAULT 0, "
+				+ "PRIMARY KEY (userName, postId), "
+				+ "FOREIGN KEY (postId) REFERENCES Posts(id) ON DELETE CASCADE)";
+		statement.execute(replyReadWatermarksTable);
+
+		String replyReadMarksTable = "CREATE TABLE IF NOT EXISTS ReplyReadMarks ("
+				+ "userName VARCHAR(255), "
+				+ "replyId INT, "
+				+ "PRIMARY KEY (userName, replyId), "
+				+ "FOREIGN KEY (replyId) REFERENCES Replies(id) ON DELETE CASCADE)";
+		statement.execute(replyReadMarksTable);
+
+		// Carry over the read state of the old per-reply fan-out and drain that table, so an
+		// existing FoundationDatabase shows the same unread replies after the upgrade.  The
+		// fan-out only counted rows with isRead = FALSE as unread; a reply posted before a user
+		// registered had no row for them and never showed as unread.  So each user's watermark
+		// for a post sits just below their first unread reply there (or at its newest reply),
+		// and every reply above it without an unread row gets a read mark.
+		statement.execute("MERGE INTO ReplyReadWatermarks (userName, postId, lastSeenReplyId) KEY(userName, postId) "
+				+ "SELECT u.userName, r.postId, COALESCE(MIN(s.replyId) - 1, MAX(r.id)) "
+				+ "FROM userDB u JOIN Replies r ON TRUE "
+				+ "LEFT JOIN ReplyReadStatus s ON s.replyId = r.id AND s.userName = u.userName AND s.isRead = FALSE "
+				+ "GROUP BY u.userName, r.postId");
+		statement.execute("MERGE INTO ReplyReadMarks (userName, replyId) KEY(userName, replyId) "
+				+ "SELECT w.userName, r.id FROM ReplyReadWatermarks w "
+				+ "JOIN Replies r ON r.postId = w.postId AND r.id > w.lastSeenReplyId "
+				+ "WHERE NOT EXISTS (SELECT 1 FROM ReplyReadStatus s "
+				+ "WHERE s.replyId = r.id AND s.userName = w.userName AND s.isRead = FALSE)");
+		statement.execute("DELETE FROM ReplyReadStatus");
+	}
+
+	// Migration 3: the inverted index behind searchPosts and searchReplies
+	private static void searchIndex(Connection connection, Statement statement) throws SQLException {
+		SearchIndex.createTable(statement);
+		// Index the posts and replies of a database that predates the search index
+		SearchIndex.rebuildIfEmpty(connection);
+	}
+
+	// Migration 4: indexes matching the WHERE and ORDER BY clauses of the frequent queries, so
+	// they are answered by index range scans instead of table scans plus sorts
+	private static void secondaryIndexes(Connection connection, Statement statement) throws SQLException {
+		List<String> indexes = new ArrayList<>();
+		// getPostsPage / getPosts: newest undeleted posts, optionally within one thread
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Posts_thread_deleted_created ON Posts (thread, deleted, created_at, id)");
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Posts_deleted_created ON Posts (deleted, created_at, id)");
+		// "My Posts"
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Posts_author ON Posts (author)");
+		// getRepliesForPost: a post's replies in posting order
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Replies_post_created ON Replies (postId, created_at)");
+		// Tickets list filtered by status and creator, newest first
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Tickets_status_creator_created ON Tickets (status, creatorUsername, created_at)");
+		// A ticket's comments in posting order
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_TicketComments_ticket_created ON TicketComments (ticketId, created_at)");
+		// A student's feedback inbox and the staff unread filter, newest first
+		indexes.add("CREATE INDEX IF NOT EXISTS idx_Feedback_receiver_read_created ON FeedbackMessages (receiverUsername, isRead, created_at)");
+		// ReplyReadStatus is drained by migration 2, and the watermark and mark tables are already
+		// keyed by (userName, ...), so reply read tracking needs no index of its own.
+		for (String ddl : indexes) {
+			statement.execute(ddl);
+		}
+	}
+
+	// Migration 5: invitations are filtered by created_at when read and purged by a range delete
+	// on created_at (see Database.purgeExpiredInvitations), so both need it indexed.
+	private static void invitationExpiryIndexes(Connection connection, Statement statement) throws SQLException {
+		// getNumberOfInvitations and the expiry sweep
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_InvitationCodes_created ON InvitationCodes (created_at)");
+		// emailaddressHasBeenUsed
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_InvitationCodes_email_created ON InvitationCodes (emailAddress, created_at)");
+	}
+
+	// Migration 6: maintained counters behind the unread reply badges (see UnreadCounters), filled
+	// from the replies, watermarks and read marks already in the database.  Reply counts are kept
+	// per post only; there is no row for the total over all posts, which every reply would have
+	// to lock.
+	private static void unreadCounters(Connection connection, Statement statement) throws SQLException {
+		UnreadCounters.createTables(statement);
+		UnreadCounters.rebuild(connection);
+	}
+
+	// Migration 7: lower-case copies of the user columns the admin user list sorts and searches on
+	// (see Database.getUserDirectoryPage), kept by H2 itself, each indexed with userName last so
+	// every sort order is total and a page is read straight off an index.
+	private static void userDirectoryKeys(Connection connection, Statement statement) throws SQLException {
+		statement.execute("ALTER TABLE userDB ADD COLUMN IF NOT EXISTS userNameKey VARCHAR(255) "
+				+ "GENERATED ALWAYS AS (LOWER(userName))");
+		statement.execute("ALTER TABLE userDB ADD COLUMN IF NOT EXISTS firstNameKey VARCHAR(255) "
+				+ "GENERATED ALWAYS AS (LOWER(firstName))");
+		statement.execute("ALTER TABLE userDB ADD COLUMN IF NOT EXISTS lastNameKey VARCHAR(255) "
+				+ "GENERATED ALWAYS AS (LOWER(lastName))");
+		statement.execute("ALTER TABLE userDB ADD COLUMN IF NOT EXISTS emailKey VARCHAR(255) "
+				+ "GENERATED ALWAYS AS (LOWER(emailAddress))");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_userDB_userNameKey ON userDB (userNameKey, userName)");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_userDB_lastNameKey ON userDB (lastNameKey, firstNameKey, userName)");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_userDB_firstNameKey ON userDB (firstNameKey, lastNameKey, userName)");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_userDB_emailKey ON userDB (emailKey, userName)");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_userDB_roles ON userDB (adminRole DESC, newRole1 DESC, newRole2 DESC, userName)");
+	}
+
+	// Migration 8: a post's replies are read in windows keyed on (created_at, id) (see
+	// Database.getReplyWindow), so the reply index ends with id and a window is a range scan in
+	// either direction.  It replaces migration 4's index on (postId, created_at).
+	private static void replyWindowIndex(Connection connection, Statement statement) throws SQLException {
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_Replies_post_created_id ON Replies (postId, created_at, id)");
+		statement.execute("DROP INDEX IF EXISTS idx_Replies_post_created");
+	}
+}
@@ -0,0 +1,360 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*******
+ * <p> Title: SearchIndex Class. </p>
+ *
+ * <p> Description: An inverted index over post titles and bodies and reply contents, kept in the
+ * SearchIndex table of the H2 database.  Each row says that a term occurs in a document with a
+ * given weight (its number of occurrences, with title occurrences counting three times).  The
+ * primary key starts with (docType, term), so finding the documents for a term, or for every term
+ * starting with a prefix, is an index range scan rather than a scan of every post body.</p>
+ *
+ * <p> Searches split the query into terms, require every term to be present (the last term is
+ * matched as a prefix so results keep up while the user is typing, once it is long enough to
+ * narrow the index down), and rank the documents by the sum over the terms of
+ * weight * ln(1 + N / df), where N is the number of documents of that type and df is the number
+ * of documents containing the term.  A search reads at most MAX_CANDIDATES documents: those of
+ * its rarest term, newest first, which the other terms are then looked up for.</p>
+ *
+ * <p> The Database class keeps the index in step with the Posts and Replies tables: documents are
+ * indexed when created and removed when they are deleted.  N is read from those tables when a
+ * search runs rather than kept in a counter row, which every post or reply would have to lock:
+ * the undeleted posts, and every reply.  Every method works on a connection the caller has
+ * borrowed, so index updates share the caller's transaction.</p>
+ *
+ */
+public class SearchIndex {
+
+	/** Document type of a post in the index. */
+	public static final String POST = "P";
+
+	/** Document type of a reply in the index. */
+	public static final String REPLY = "R";
+
+	// Terms longer than this are truncated; they must fit the term column
+	private static final int MAX_TERM_LENGTH = 64;
+
+	// Occurrences in a title count this many times as much as occurrences in a body
+	private static final int TITLE_WEIGHT = 3;
+
+	// The last term of a query is matched as a prefix only from this length; a shorter one
+	// would match most of the index
+	private static final int MIN_PREFIX_LENGTH = 3;
+
+	// Most documents a search scores, taken from its rarest term
+	private static final int MAX_CANDIDATES = 1000;
+
+	// Document frequencies are counted up to this; a term in more documents is weighted as if
+	// it were in this many, which changes little since its weight is already near zero
+	private static final int MAX_DOCUMENT_FREQUENCY = 10000;
+
+	// Candidates looked up per query for the other terms; like Database.SEARCH_FETCH_CHUNK,
+	// unused placeholders get -1 so the SQL text stays the same
+	private static final int CANDIDATE_CHUNK = 50;
+
+	// Words too common to be worth a posting list of their own
+	private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+			"a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into",
+			"is", "it", "of", "on", "or", "so", "that", "the", "their", "then", "there", "these",
+			"they", "this", "to", "was", "were", "will", "with"));
+
+	/*******
+	 * <p> Method: void createTable(Statement statement) </p>
+	 *
+	 * <p> Description: Create the SearchIndex table and its per-document index if they do not
+	 * exist.</p>
+	 *
+	 * @param statement a statement on the connection being used to create tables
+	 *
+	 * @throws SQLException if the table cannot be created
+	 */
+	public static void createTable(Statement statement) throws SQLException {
+		statement.execute("CREATE TABLE IF NOT EXISTS SearchIndex ("
+				+ "docType CHAR(1), "
+				+ "term VARCHAR(" + MAX_TERM_LENGTH + "), "
+				+ "docId INT, "
+				+ "weight INT, "
+				+ "PRIMARY KEY (docType, term, docId))");
+		statement.execute("CREATE INDEX IF NOT EXISTS idx_SearchIndex_doc ON SearchIndex (docType, docId)");
+	}
+
+	/*******
+	 * <p> Method: List&lt;String&gt; tokenize(String text) </p>
+	 *
+	 * <p> Description: Split text into lower-case terms made of letters and digits, dropping
+	 * stop words.  The same rules are applied to documents and to queries.</p>
+	 *
+	 * @param text the text to split; null gives an empty list
+	 *
+	 * @return the terms in the order they appear, with repeats
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) return terms;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = (i < text.length()) ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				if (sb.length() < MAX_TERM_LENGTH) sb.append(Character.toLowerCase(c));
+			} else if (sb.length() > 0) {
+				String term = sb.toString();
+				if (!STOP_WORDS.contains(term)) terms.add(term);
+				sb.setLength(0);
+			}
+		}
+		return terms;
+	}
+
+	/*******
+	 * <p> Method: void indexDocument(Connection connection, String docType, int docId,
+	 * String title, String body) </p>
+	 *
+	 * <p> Description: Replace the index entries of a document with entries for the given
+	 * text.</p>
+	 *
+	 * @param connection the connection to write with
+	 * @param docType POST or REPLY
+	 * @param docId the id of the post or reply
+	 * @param title the title (null for replies)
+	 * @param body the body or reply content
+	 *
+	 * @throws SQLException if the index cannot be written
+	 */
+	public static void indexDocument(Connection connection, String docType, int docId, String title,
+			String body) throws SQLException {
+		Map<String, Integer> weights = new HashMap<>();
+		for (String t : tokenize(title)) weights.merge(t, TITLE_WEIGHT, Integer::sum);
+		for (String t : tokenize(body)) weights.merge(t, 1, Integer::sum);
+
+		removeDocument(connection, docType, docId);
+		if (weights.isEmpty()) return;
+		String insert = "INSERT INTO SearchIndex (docType, term, docId, weight) VALUES (?, ?, ?, ?)";
+		try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+			for (Map.Entry<String, Integer> e : weights.entrySet()) {
+				pstmt.setString(1, docType);
+				pstmt.setString(2, e.getKey());
+				pstmt.setInt(3, docId);
+				pstmt.setInt(4, e.getValue());
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	/*******
+	 * <p> Method: void removeDocument(Connection connection, String docType, int docId) </p>
+	 *
+	 * <p> Description: Remove every index entry of a document so it no longer turns up in
+	 * searches.</p>
+	 *
+	 * @param connection the connection to write with
+	 * @param docType POST or REPLY
+	 * @param docId the id of the post or reply
+	 *
+	 * @throws SQLException if the index cannot be written
+	 */
+	public static void removeDocument(Connection connection, String docType, int docId) throws SQLException {
+		String delete = "DELETE FROM SearchIndex WHERE docType = ? AND docId = ?";
+		try (PreparedStatement pstmt = connection.prepareStatement(delete)) {
+			pstmt.setString(1, docType);
+			pstmt.setInt(2, docId);
+			pstmt.executeUpdate();
+		}
+	}
+
+	/*******
+	 * <p> Method: LinkedHashMap&lt;Integer, Double&gt; search(Connection connection, String docType,
+	 * String query) </p>
+	 *
+	 * <p> Description: Find the documents of a type that contain every term of the query, with
+	 * the last term matched as a prefix when it has at least MIN_PREFIX_LENGTH characters, best
+	 * match first.  Only the newest MAX_CANDIDATES documents holding the query's rarest term are
+	 * considered.</p>
+	 *
+	 * @param connection the connection to read with
+	 * @param docType POST or REPLY
+	 * @param query the user's search text
+	 *
+	 * @return document ids mapped to their scores, in descending score order; empty if the query
+	 * has no searchable terms
+	 *
+	 * @throws SQLException if the index cannot be read
+	 */
+	public static LinkedHashMap<Integer, Double> search(Connection connection, String docType, String query)
+			throws SQLException {
+		LinkedHashMap<Integer, Double> ranked = new LinkedHashMap<>();
+		List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+		if (terms.isEmpty()) return ranked;
+		int last = terms.size() - 1;
+		boolean[] prefix = new boolean[terms.size()];
+		prefix[last] = terms.get(last).length() >= MIN_PREFIX_LENGTH;
+
+		// Every term must match, so a term in no document ends the search before any postings
+		// are read, and the rarest term gives the fewest candidates
+		int[] frequency = new int[terms.size()];
+		int rarest = 0;
+		for (int i = 0; i < terms.size(); i++) {
+			frequency[i] = documentFrequency(connection, docType, terms.get(i), prefix[i]);
+			if (frequency[i] == 0) return ranked;
+			if (frequency[i] < frequency[rarest]) rarest = i;
+		}
+
+		double documentCount = Math.max(1, countDocuments(connection, docType));
+		Map<Integer, Double> scores = new HashMap<>();
+		for (Map.Entry<Integer, Integer> p : candidates(connection, docType, terms.get(rarest), prefix[rarest]).entrySet()) {
+			scores.put(p.getKey(), p.getValue() * idf(documentCount, frequency[rarest]));
+		}
+		for (int i = 0; i < terms.size() && !scores.isEmpty(); i++) {
+			if (i == rarest) continue;
+			Map<Integer, Integer> postings = postings(connection, docType, terms.get(i), prefix[i], scores.keySet());
+			double idf = idf(documentCount, frequency[i]);
+			Map<Integer, Double> next = new HashMap<>();
+			for (Map.Entry<Integer, Integer> p : postings.entrySet()) {
+				next.put(p.getKey(), scores.get(p.getKey()) + p.getValue() * idf);
+			}
+			scores = next;
+		}
+
+		List<Map.Entry<Integer, Double>> entries = new ArrayList<>(scores.entrySet());
+		// Highest score first; newer documents (higher ids) first among equals
+		entries.sort((a, b) -> {
+			int c = Double.compare(b.getValue(), a.getValue());
+			return c != 0 ? c : Integer.compare(b.getKey(), a.getKey());
+		});
+		for (Map.Entry<Integer, Double> e : entries) ranked.put(e.getKey(), e.getValue());
+		return ranked;
+	}
+
+	/*******
+	 * <p> Method: void rebuildIfEmpty(Connection connection) </p>
+	 *
+	 * <p> Description: Index every existing post and reply when the index is empty but the
+	 * tables are not, which is the case the first time a database created before the index
+	 * existed is opened.</p>
+	 *
+	 * @param connection the connection to use
+	 *
+	 * @throws SQLException if the tables cannot be read or the index written
+	 */
+	public static void rebuildIfEmpty(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM SearchIndex")) {
+				if (rs.next() && rs.getInt(1) > 0) return;
+			}
+			List<Object[]> posts = new ArrayList<>();
+			try (ResultSet rs = statement.executeQuery("SELECT id, title, body FROM Posts WHERE deleted = FALSE")) {
+				while (rs.next()) posts.add(new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3) });
+			}
+			for (Object[] p : posts) indexDocument(connection, POST, (Integer) p[0], (String) p[1], (String) p[2]);
+
+			List<Object[]> replies = new ArrayList<>();
+			try (ResultSet rs = statement.executeQuery("SELECT id, content FROM Replies")) {
+				while (rs.next()) replies.add(new Object[] { rs.getInt(1), rs.getString(2) });
+			}
+			for (Object[] r : replies) indexDocument(connection, REPLY, (Integer) r[0], null, (String) r[1]);
+		}
+	}
+
+	private static double idf(double documentCount, int frequency) {
+		return Math.log(1 + documentCount / frequency);
+	}
+
+	// The condition on the term column, and the value to bind to it
+	private static String termCondition(boolean prefix) {
+		return prefix ? "term LIKE ? ESCAPE '\\'" : "term = ?";
+	}
+
+	private static String termValue(String term, boolean prefix) {
+		// Terms are letters and digits only, so there is nothing to escape in a prefix
+		return prefix ? term + "%" : term;
+	}
+
+	// The number of documents containing a term (or a term with the given prefix), counted up to
+	// MAX_DOCUMENT_FREQUENCY index entries
+	private static int documentFrequency(Connection connection, String docType, String term, boolean prefix)
+			throws SQLException {
+		String query = "SELECT COUNT(DISTINCT docId) FROM (SELECT docId FROM SearchIndex "
+				+ "WHERE docType = ? AND " + termCondition(prefix) + " LIMIT ?) AS t";
+		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, docType);
+			pstmt.setString(2, termValue(term, prefix));
+			pstmt.setInt(3, MAX_DOCUMENT_FREQUENCY);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
+			}
+		}
+	}
+
+	// The newest MAX_CANDIDATES documents containing a term (or a term with the given prefix),
+	// with their weights
+	private static Map<Integer, Integer> candidates(Connection connection, String docType, String term,
+			boolean prefix) throws SQLException {
+		Map<Integer, Integer> postings = new HashMap<>();
+		String query = "SELECT docId, MAX(weight) AS weight FROM SearchIndex WHERE docType = ? AND "
+				+ termCondition(prefix) + " GROUP BY docId ORDER BY docId DESC LIMIT ?";
+		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, docType);
+			pstmt.setString(2, termValue(term, prefix));
+			pstmt.setInt(3, MAX_CANDIDATES);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) postings.put(rs.getInt("docId"), rs.getInt("weight"));
+			}
+		}
+		return postings;
+	}
+
+	// Which of the given documents contain a term (or a term with the given prefix), with their
+	// weights; the documents are looked up CANDIDATE_CHUNK at a time
+	private static Map<Integer, Integer> postings(Connection connection, String docType, String term,
+			boolean prefix, Set<Integer> docIds) throws SQLException {
+		Map<Integer, Integer> postings = new HashMap<>();
+		StringBuilder sb = new StringBuilder("SELECT docId, MAX(weight) AS weight FROM SearchIndex "
+				+ "WHERE docType = ? AND " + termCondition(prefix) + " AND docId IN (");
+		for (int i = 0; i < CANDIDATE_CHUNK; i++) sb.append(i == 0 ? "?" : ", ?");
+		sb.append(") GROUP BY docId");
+		List<Integer> ids = new ArrayList<>(docIds);
+		try (PreparedStatement pstmt = connection.prepareStatement(sb.toString())) {
+			for (int start = 0; start < ids.size(); start += CANDIDATE_CHUNK) {
+				int idx = 1;
+				pstmt.setString(idx++, docType);
+				pstmt.setString(idx++, termValue(term, prefix));
+				for (int i = 0; i < CANDIDATE_CHUNK; i++) {
+					pstmt.setInt(idx++, start + i < ids.size() ? ids.get(start + i) : -1);
+				}
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) postings.put(rs.getInt("docId"), rs.getInt("weight"));
+				}
+			}
+		}
+		return postings;
+	}
+
+	// The number of documents of a type: the undeleted posts, or every reply.  H2 answers an
+	// unfiltered COUNT(*) from the table's row count, and the deleted posts are a range of the
+	// (deleted, created_at, id) index, so neither reads the table.  Posts and replies blanked by
+	// a visual delete still count; there are few of them and N only damps the weights.
+	private static int countDocuments(Connection connection, String docType) throws SQLException {
+		String query = POST.equals(docType)
+				? "SELECT (SELECT COUNT(*) FROM Posts) - (SELECT COUNT(*) FROM Posts WHERE deleted = TRUE)"
+				: "SELECT COUNT(*) FROM Replies";
+		try (PreparedStatement pstmt = connection.prepareStatement(query);
+			 ResultSet rs = pstmt.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*******
+ * <p> Title: SearchIndexTest Class. </p>
+ *
+ * <p> Description: JUnit 5 tests of SearchIndex: how text is split into terms, and how search
+ * matches and ranks documents.  Each test works on its own in-memory H2 database, with just
+ * enough of the Posts and Replies tables for the document counts.</p>
+ *
+ */
+public class SearchIndexTest {
+
+	private Connection connection;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:searchIndexTest");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE Posts (id INT PRIMARY KEY, deleted BOOL DEFAULT FALSE)");
+			statement.execute("CREATE TABLE Replies (id INT PRIMARY KEY)");
+			SearchIndex.createTable(statement);
+		}
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		// The in-memory database goes away with its last connection
+		connection.close();
+	}
+
+	@Test
+	public void tokenizeLowerCasesAndSplitsOnPunctuation() {
+		assertEquals(Arrays.asList("hello", "world", "java17"), SearchIndex.tokenize("Hello, WORLD! Java17"));
+	}
+
+	@Test
+	public void tokenizeDropsStopWordsAndKeepsRepeats() {
+		assertEquals(Arrays.asList("cat", "cat", "mat"), SearchIndex.tokenize("The cat and the cat on a mat"));
+	}
+
+	@Test
+	public void tokenizeHandlesNullAndEmptyText() {
+		assertTrue(SearchIndex.tokenize(null).isEmpty());
+		assertTrue(SearchIndex.tokenize("").isEmpty());
+		assertTrue(SearchIndex.tokenize("the and of").isEmpty(), "Only stop words gives no terms");
+	}
+
+	@Test
+	public void tokenizeTruncatesLongTerms() {
+		char[] word = new char[100];
+		Arrays.fill(word, 'x');
+		List<String> terms = SearchIndex.tokenize(new String(word));
+		assertEquals(1, terms.size());
+		assertEquals(64, terms.get(0).length());
+	}
+
+	@Test
+	public void titleMatchesRankAboveBodyMatches() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Other topic", "java mentioned once");
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 2, "Java streams", "an introduction");
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 3, "Python", "snakes");
+
+		assertEquals(Arrays.asList(2, 1), ids(SearchIndex.search(connection, SearchIndex.POST, "java")));
+	}
+
+	@Test
+	public void everyTermMustMatchAndTheLastIsAPrefix() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Java streams", "filter and map");
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 2, "Java threads", "locks");
+
+		assertEquals(Arrays.asList(1), ids(SearchIndex.search(connection, SearchIndex.POST, "java str")));
+		assertEquals(Arrays.asList(2), ids(SearchIndex.search(connection, SearchIndex.POST, "threads jav")));
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "str java").isEmpty(),
+				"Only the last term is matched as a prefix");
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "java kotlin").isEmpty());
+	}
+
+	@Test
+	public void shortLastTermsMatchOnlyWholeTerms() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Java streams", "filter and map");
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 2, "Java st", "abbreviations");
+
+		assertEquals(Arrays.asList(2), ids(SearchIndex.search(connection, SearchIndex.POST, "java st")),
+				"Two characters are matched exactly, not as a prefix");
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "ja").isEmpty());
+		assertEquals(Arrays.asList(1), ids(SearchIndex.search(connection, SearchIndex.POST, "java stre")));
+	}
+
+	@Test
+	public void equalScoresPutNewerDocumentsFirst() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.REPLY, 4, null, "kotlin");
+		SearchIndex.indexDocument(connection, SearchIndex.REPLY, 5, null, "kotlin");
+
+		assertEquals(Arrays.asList(5, 4), ids(SearchIndex.search(connection, SearchIndex.REPLY, "kotlin")));
+	}
+
+	@Test
+	public void documentTypesAreSearchedSeparately() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Gradle", "build");
+		SearchIndex.indexDocument(connection, SearchIndex.REPLY, 1, null, "maven build");
+
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "maven").isEmpty());
+		assertEquals(Arrays.asList(1), ids(SearchIndex.search(connection, SearchIndex.REPLY, "maven")));
+	}
+
+	@Test
+	public void reindexedAndRemovedDocumentsLeaveTheResults() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Java", "first draft");
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 2, "Java", "second");
+
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "Kotlin", "edited");
+		assertEquals(Arrays.asList(2), ids(SearchIndex.search(connection, SearchIndex.POST, "java")));
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "draft").isEmpty());
+
+		SearchIndex.removeDocument(connection, SearchIndex.POST, 2);
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "java").isEmpty());
+	}
+
+	@Test
+	public void deletedPostsAreNotCounted() throws Exception {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO Posts (id) VALUES (1), (2), (3)");
+			statement.execute("UPDATE Posts SET deleted = TRUE WHERE id IN (2, 3)");
+		}
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, null, "java");
+
+		// One undeleted post, holding the term: weight 1 * ln(1 + 1 / 1)
+		double score = SearchIndex.search(connection, SearchIndex.POST, "java").get(1);
+		assertEquals(Math.log(2), score, 1e-9);
+	}
+
+	@Test
+	public void queriesOfOnlyStopWordsFindNothing() throws Exception {
+		SearchIndex.indexDocument(connection, SearchIndex.POST, 1, "The end", "of the story");
+
+		assertTrue(SearchIndex.search(connection, SearchIndex.POST, "the of").isEmpty());
+	}
+
+	// The document ids of a search result, best match first
+	private static List<Integer> ids(Map<Integer, Double> ranked) {
+		return new ArrayList<>(ranked.keySet());
+	}
+}
@@ -0,0 +1,257 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*******
+ * <p> Title: StatementCache Class. </p>
+ *
+ * <p> Description: A least-recently-used cache of PreparedStatements for one physical
+ * connection, keyed by SQL text.  The pool gives every physical connection its own cache, since
+ * a PreparedStatement belongs to the connection that prepared it.  Asking the pooled connection
+ * to prepare SQL it has prepared before hands back the already parsed statement instead of
+ * having H2 parse and plan it again, which is what makes table renders that run the same query
+ * once per row affordable.</p>
+ *
+ * <p> Statements are handed out as proxies: close() clears the parameters, closes any open
+ * result set, restores the fetch size and row limit the statement was prepared with and puts
+ * the statement back in the cache rather than closing it.  If the same SQL
+ * is prepared again while its cached statement is still in use, a plain uncached statement is
+ * returned for that call.  When the cache is full the least recently used statement is closed.
+ * </p>
+ *
+ * <p> Hit, miss and eviction counts are kept in a Stats object that the pool shares between all
+ * of its connections' caches.</p>
+ *
+ */
+public class StatementCache {
+
+	/*******
+	 * <p> Title: Stats Class. </p>
+	 *
+	 * <p> Description: Hit, miss and eviction counters shared by every statement cache in a
+	 * pool.</p>
+	 */
+	public static final class Stats {
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		private final AtomicLong evictions = new AtomicLong();
+
+		/** @return the number of prepares served from a cache */
+		public long getHits() { return hits.get(); }
+
+		/** @return the number of prepares that had to parse the SQL */
+		public long getMisses() { return misses.get(); }
+
+		/** @return the number of statements closed to make room in a cache */
+		public long getEvictions() { return evictions.get(); }
+
+		/** @return hits divided by all cacheable prepares, or 0 when there have been none */
+		public double getHitRate() {
+			long h = hits.get();
+			long total = h + misses.get();
+			return total == 0 ? 0.0 : (double) h / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("statement cache hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+					getHits(), getMisses(), getEvictions(), getHitRate() * 100);
+		}
+	}
+
+	// One cached statement, whether a caller is currently holding it, and the settings it was
+	// prepared with, which release() puts back for the next caller
+	private static final class Entry {
+		final PreparedStatement statement;
+		final int fetchSize;
+		final int maxRows;
+		boolean inUse;
+		boolean evicted;
+
+		Entry(PreparedStatement statement) throws SQLException {
+			this.statement = statement;
+			this.fetchSize = statement.getFetchSize();
+			this.maxRows = statement.getMaxRows();
+		}
+	}
+
+	private final Connection physical;
+	private final int maxSize;
+	private final Stats stats;
+	private final LinkedHashMap<String, Entry> entries;
+
+	/*******
+	 * <p> Method: StatementCache(Connection physical, int maxSize, Stats stats) </p>
+	 *
+	 * <p> Description: Create an empty cache for a physical connection.</p>
+	 *
+	 * @param physical the connection whose statements are cached
+	 * @param maxSize the largest number of statements kept open
+	 * @param stats the counters to record hits, misses and evictions in
+	 */
+	public StatementCache(Connection physical, int maxSize, Stats stats) {
+		this.physical = physical;
+		this.maxSize = maxSize;
+		this.stats = stats;
+		// Access order makes iteration run from least to most recently used
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/*******
+	 * <p> Method: PreparedStatement prepare(String sql, int autoGeneratedKeys) </p>
+	 *
+	 * <p> Description: Return a prepared statement for the SQL, reusing a cached one if it is
+	 * free.  Closing the returned statement releases it back to the cache.</p>
+	 *
+	 * @param sql the SQL text
+	 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+	 *
+	 * @return a statement ready for its parameters to be set
+	 *
+	 * @throws SQLException if the SQL cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K|" + sql : sql;
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			if (entry.inUse) {
+				// Already checked out on this connection; give this caller a private statement,
+				// which had to parse the SQL like any other miss
+				stats.misses.incrementAndGet();
+				return physical.prepareStatement(sql, autoGeneratedKeys);
+			}
+			stats.hits.incrementAndGet();
+		} else {
+			stats.misses.incrementAndGet();
+			entry = new Entry(physical.prepareStatement(sql, autoGeneratedKeys));
+			entries.put(key, entry);
+			evictOverflow();
+		}
+		entry.inUse = true;
+		return wrap(entry);
+	}
+
+	/*******
+	 * <p> Method: int size() </p>
+	 *
+	 * @return the number of statements currently cached
+	 */
+	public synchronized int size() { return entries.size(); }
+
+	/*******
+	 * <p> Method: void closeAll() </p>
+	 *
+	 * <p> Description: Close every cached statement; used when the physical connection is
+	 * closed.</p>
+	 */
+	public synchronized void closeAll() {
+		for (Entry e : entries.values()) {
+			closeQuietly(e.statement);
+		}
+		entries.clear();
+	}
+
+	// Close least recently used statements until the cache is back within its size
+	private void evictOverflow() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (entries.size() > maxSize && it.hasNext()) {
+			Entry e = it.next().getValue();
+			it.remove();
+			stats.evictions.incrementAndGet();
+			if (e.inUse) {
+				e.evicted = true;		// closed for real when its holder releases it
+			} else {
+				closeQuietly(e.statement);
+			}
+		}
+	}
+
+	// Called when a holder closes a statement it got from prepare()
+	private synchronized void release(Entry entry) {
+		entry.inUse = false;
+		if (entry.evicted) {
+			closeQuietly(entry.statement);
+			return;
+		}
+		try {
+			ResultSet open = entry.statement.getResultSet();
+			if (open != null) open.close();
+			entry.statement.clearParameters();
+			// Settings a holder changed must not carry over to the next one
+			if (entry.statement.getFetchSize() != entry.fetchSize) entry.statement.setFetchSize(entry.fetchSize);
+			if (entry.statement.getMaxRows() != entry.maxRows) entry.statement.setMaxRows(entry.maxRows);
+		} catch (SQLException e) {
+			// A statement that cannot be reset is not worth keeping
+			entries.values().remove(entry);
+			closeQuietly(entry.statement);
+		}
+	}
+
+	private PreparedStatement wrap(Entry entry) {
+		InvocationHandler handler = new InvocationHandler() {
+			private boolean released = false;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "close":
+						if (!released) {
+							released = true;
+							release(entry);
+						}
+						return null;
+					case "isClosed":
+						return released || entry.statement.isClosed();
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						break;
+				}
+				if (released) throw new SQLException("Statement has already been closed");
+				try {
+					return method.invoke(entry.statement, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		};
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+	private static void closeQuietly(Statement s) {
+		try {
+			s.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*******
+	 * <p> Method: List&lt;String&gt; cachedSql() </p>
+	 *
+	 * <p> Description: The SQL of the cached statements, least recently used first; useful when
+	 * tuning the cache size.</p>
+	 *
+	 * @return a snapshot of the cached SQL
+	 */
+	public synchronized List<String> cachedSql() {
+		return new ArrayList<>(entries.keySet());
+	}
+}
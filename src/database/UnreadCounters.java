@@ -0,0 +1,337 @@
+package database;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/*******
+ * <p> Title: UnreadCounters Class. </p>
+ *
+ * <p> Description: Maintained counters behind the unread reply badges, so a count is a
+ * primary-key read instead of a COUNT over the replies, watermarks and read marks.</p>
+ *
+ * <p> Reply read state is kept without per-user rows for new replies (see the
+ * ReplyReadWatermarks migration), so a per-user unread counter would have to be bumped for every
+ * user whenever anyone replies.  The counters are kept the other way round:</p>
+ *
+ * <ul>
+ * <li> PostReplyCounters: the number of replies in each post.</li>
+ * <li> PostUserReadCounters: for each user and post, the number of its replies the user has read;
+ * a reply's author counts as having read it.</li>
+ * <li> UserReadCounters: the same summed over all posts for each user.</li>
+ * </ul>
+ *
+ * <p> A user's unread count for a post is then its reply count less the user's read count, and
+ * their total is the number of rows in Replies less their total read count.  There is no
+ * counter row for the total over all posts: every reply would update it, so all replies would
+ * queue on its lock, while H2 answers an unfiltered COUNT(*) from the table's row count.
+ * Posting a reply touches one row per table and reading replies touches one row per table per
+ * post, however many users there are.</p>
+ *
+ * <p> The Database keeps the counters in step inside the same transactions as the reply and
+ * read-mark writes.  rebuild recomputes them from the underlying tables and verify reports how
+ * many rows disagree with such a recomputation.  Every method works on a connection the caller
+ * has borrowed.</p>
+ *
+ */
+public class UnreadCounters {
+
+	// For each (userName, postId), the ids of the replies the user has read: their own replies,
+	// the ones at or below their watermark and the ones with an explicit read mark
+	private static final String READ_REPLIES =
+			"SELECT author AS userName, postId, id AS replyId FROM Replies WHERE author IS NOT NULL "
+			+ "UNION SELECT w.userName, r.postId, r.id FROM ReplyReadWatermarks w "
+			+ "JOIN Replies r ON r.postId = w.postId AND r.id <= w.lastSeenReplyId "
+			+ "UNION SELECT m.userName, r.postId, r.id FROM ReplyReadMarks m JOIN Replies r ON r.id = m.replyId";
+
+	// A reply r that the user, bound three times, has not read: not their own, above their
+	// watermark for its post and without a read mark.  Shared with the read-mark writer, and used
+	// to take a user's queued marks off their counts before the marks are written.
+	static final String UNREAD_REPLY = "COALESCE(r.author, '') <> ? "
+			+ "AND r.id > COALESCE((SELECT w.lastSeenReplyId FROM ReplyReadWatermarks w "
+			+ "WHERE w.postId = r.postId AND w.userName = ?), 0) "
+			+ "AND NOT EXISTS (SELECT 1 FROM ReplyReadMarks m WHERE m.replyId = r.id AND m.userName = ?)";
+
+	// The counters as they should be, one query per table
+	private static final String EXPECTED_POST_REPLIES =
+			"SELECT postId, COUNT(*) AS n FROM Replies GROUP BY postId";
+	private static final String EXPECTED_POST_USER_READ =
+			"SELECT userName, postId, COUNT(*) AS n FROM (" + READ_REPLIES + ") AS rr GROUP BY userName, postId";
+	private static final String EXPECTED_USER_READ =
+			"SELECT userName, COUNT(*) AS n FROM (" + READ_REPLIES + ") AS rr GROUP BY userName";
+
+	/*******
+	 * <p> Method: void createTables(Statement statement) </p>
+	 *
+	 * <p> Description: Create the three counter tables if they do not exist.</p>
+	 *
+	 * @param statement a statement on the connection being used to create tables
+	 *
+	 * @throws SQLException if a table cannot be created
+	 */
+	public static void createTables(Statement statement) throws SQLException {
+		statement.execute("CREATE TABLE IF NOT EXISTS PostReplyCounters ("
+				+ "postId INT PRIMARY KEY, "
+				+ "replyCount INT NOT NULL)");
+		statement.execute("CREATE TABLE IF NOT EXISTS PostUserReadCounters ("
+				+ "userName VARCHAR(255), "
+				+ "postId INT, "
+				+ "readCount INT NOT NULL, "
+				+ "PRIMARY KEY (userName, postId))");
+		statement.execute("CREATE TABLE IF NOT EXISTS UserReadCounters ("
+				+ "userName VARCHAR(255) PRIMARY KEY, "
+				+ "readCount INT NOT NULL)");
+	}
+
+	/*******
+	 * <p> Method: void replyAdded(Connection connection, int postId, String author) </p>
+	 *
+	 * <p> Description: Count a new reply: one more reply in its post, and one more read reply
+	 * for its author.</p>
+	 *
+	 * @param connection the caller's connection, inside the transaction that inserted the reply
+	 * @param postId the post the reply belongs to
+	 * @param author the reply's author, or null
+	 *
+	 * @throws SQLException if a counter cannot be updated
+	 */
+	public static void replyAdded(Connection connection, int postId, String author) throws SQLException {
+		addToPostReplies(connection, postId, 1);
+		if (author != null) repliesRead(connection, author, postId, 1);
+	}
+
+	/*******
+	 * <p> Method: void repliesRead(Connection connection, String userName, int postId, int n) </p>
+	 *
+	 * <p> Description: Count replies in a post that a user has just read for the first time.
+	 * The caller must only count replies that were unread before.</p>
+	 *
+	 * @param connection the caller's connection, inside the transaction that recorded the reads
+	 * @param userName the user who read them
+	 * @param postId the post they belong to
+	 * @param n how many were read
+	 *
+	 * @throws SQLException if a counter cannot be updated
+	 */
+	public static void repliesRead(Connection connection, String userName, int postId, int n)
+			throws SQLException {
+		add(connection,
+				"UPDATE PostUserReadCounters SET readCount = readCount + ? WHERE userName = ? AND postId = ?",
+				"INSERT INTO PostUserReadCounters (readCount, userName, postId) VALUES (?, ?, ?)",
+				n, userName, postId);
+		add(connection,
+				"UPDATE UserReadCounters SET readCount = readCount + ? WHERE userName = ?",
+				"INSERT INTO UserReadCounters (readCount, userName) VALUES (?, ?)",
+				n, userName, null);
+	}
+
+	/*******
+	 * <p> Method: void resetUser(Connection connection, String userName, Map&lt;Integer, Integer&gt;
+	 * readPerPost) </p>
+	 *
+	 * <p> Description: Replace a user's read counters, including any left behind by an earlier
+	 * user of the same name, with the given counts.</p>
+	 *
+	 * @param connection the caller's connection, inside the transaction that set the user's
+	 * watermarks and marks
+	 * @param userName the user
+	 * @param readPerPost for each post, how many of its replies the user has read
+	 *
+	 * @throws SQLException if a counter cannot be written
+	 */
+	public static void resetUser(Connection connection, String userName, Map<Integer, Integer> readPerPost)
+			throws SQLException {
+		int total = 0;
+		try (PreparedStatement deletePosts = connection.prepareStatement(
+					"DELETE FROM PostUserReadCounters WHERE userName = ?");
+			 PreparedStatement deleteUser = connection.prepareStatement(
+					"DELETE FROM UserReadCounters WHERE userName = ?");
+			 PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO PostUserReadCounters (userName, postId, readCount) VALUES (?, ?, ?)")) {
+			deletePosts.setString(1, userName);
+			deletePosts.executeUpdate();
+			deleteUser.setString(1, userName);
+			deleteUser.executeUpdate();
+			for (Map.Entry<Integer, Integer> e : readPerPost.entrySet()) {
+				insert.setString(1, userName);
+				insert.setInt(2, e.getKey());
+				insert.setInt(3, e.getValue());
+				insert.addBatch();
+				total += e.getValue();
+			}
+			insert.executeBatch();
+		}
+		if (total > 0) {
+			try (PreparedStatement pstmt = connection.prepareStatement(
+					"INSERT INTO UserReadCounters (userName, readCount) VALUES (?, ?)")) {
+				pstmt.setString(1, userName);
+				pstmt.setInt(2, total);
+				pstmt.executeUpdate();
+			}
+		}
+	}
+
+	/*******
+	 * <p> Method: int unreadForUser(Connection connection, String userName, Array pendingReplyIds) </p>
+	 *
+	 * @param connection the caller's connection
+	 * @param userName the user
+	 * @param pendingReplyIds the ids of replies the user has read whose marks are still queued;
+	 * those that are unread in the database are not counted
+	 *
+	 * @return the number of replies in all posts the user has not read
+	 *
+	 * @throws SQLException if the counters cannot be read
+	 */
+	public static int unreadForUser(Connection connection, String userName, Array pendingReplyIds)
+			throws SQLException {
+		String query = "SELECT (SELECT COUNT(*) FROM Replies) "
+				+ "- COALESCE((SELECT readCount FROM UserReadCounters WHERE userName = ?), 0) "
+				+ "- (SELECT COUNT(*) FROM Replies r WHERE r.id = ANY(?) AND " + UNREAD_REPLY + ")";
+		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setString(1, userName);
+			pstmt.setArray(2, pendingReplyIds);
+			pstmt.setString(3, userName);
+			pstmt.setString(4, userName);
+			pstmt.setString(5, userName);
+			ResultSet rs = pstmt.executeQuery();
+			return rs.next() ? Math.max(0, rs.getInt(1)) : 0;
+		}
+	}
+
+	/*******
+	 * <p> Method: int unreadForPost(Connection connection, int postId, String userName,
+	 * Array pendingReplyIds) </p>
+	 *
+	 * @param connection the caller's connection
+	 * @param postId the post
+	 * @param userName the user
+	 * @param pendingReplyIds the ids of replies the user has read whose marks are still queued;
+	 * those that are unread in the database are not counted
+	 *
+	 * @return the number of replies in the post the user has not read
+	 *
+	 * @throws SQLException if the counters cannot be read
+	 */
+	public static int unreadForPost(Connection connection, int postId, String userName, Array pendingReplyIds)
+			throws SQLException {
+		String query = "SELECT COALESCE((SELECT replyCount FROM PostReplyCounters WHERE postId = ?), 0) "
+				+ "- COALESCE((SELECT readCount FROM PostUserReadCounters WHERE userName = ? AND postId = ?), 0) "
+				+ "- (SELECT COUNT(*) FROM Replies r WHERE r.postId = ? AND r.id = ANY(?) AND " + UNREAD_REPLY + ")";
+		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+			pstmt.setInt(1, postId);
+			pstmt.setString(2, userName);
+			pstmt.setInt(3, postId);
+			pstmt.setInt(4, postId);
+			pstmt.setArray(5, pendingReplyIds);
+			pstmt.setString(6, userName);
+			pstmt.setString(7, userName);
+			pstmt.setString(8, userName);
+			ResultSet rs = pstmt.executeQuery();
+			return rs.next() ? Math.max(0, rs.getInt(1)) : 0;
+		}
+	}
+
+	/*******
+	 * <p> Method: void rebuild(Connection connection) </p>
+	 *
+	 * <p> Description: Replace every counter with one recomputed from Replies,
+	 * ReplyReadWatermarks and ReplyReadMarks.  Runs in its own transaction on the connection, so
+	 * readers never see the tables half filled.  Queued read marks should be flushed first.</p>
+	 *
+	 * @param connection the caller's connection, in auto-commit mode
+	 *
+	 * @throws SQLException if the counters cannot be rebuilt; they are then left unchanged
+	 */
+	public static void rebuild(Connection connection) throws SQLException {
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("DELETE FROM PostReplyCounters");
+			statement.executeUpdate("DELETE FROM PostUserReadCounters");
+			statement.executeUpdate("DELETE FROM UserReadCounters");
+			statement.executeUpdate("INSERT INTO PostReplyCounters (postId, replyCount) " + EXPECTED_POST_REPLIES);
+			statement.executeUpdate("INSERT INTO PostUserReadCounters (userName, postId, readCount) "
+					+ EXPECTED_POST_USER_READ);
+			statement.executeUpdate("INSERT INTO UserReadCounters (userName, readCount) " + EXPECTED_USER_READ);
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/*******
+	 * <p> Method: int verify(Connection connection) </p>
+	 *
+	 * <p> Description: Compare every counter with a recomputation, without changing anything.
+	 * Queued read marks should be flushed first.</p>
+	 *
+	 * @param connection the caller's connection
+	 *
+	 * @return the number of counter rows that are wrong, missing or extra; 0 if all agree
+	 *
+	 * @throws SQLException if the comparison cannot be run
+	 */
+	public static int verify(Connection connection) throws SQLException {
+		// Each expected row is added and each stored row subtracted; any key left non-zero differs
+		String[] checks = {
+			"SELECT COUNT(*) FROM (SELECT postId FROM (" + EXPECTED_POST_REPLIES
+					+ " UNION ALL SELECT postId, -replyCount FROM PostReplyCounters) AS d "
+					+ "GROUP BY postId HAVING SUM(n) <> 0) AS x",
+			"SELECT COUNT(*) FROM (SELECT userName, postId FROM (" + EXPECTED_POST_USER_READ
+					+ " UNION ALL SELECT userName, postId, -readCount FROM PostUserReadCounters) AS d "
+					+ "GROUP BY userName, postId HAVING SUM(n) <> 0) AS x",
+			"SELECT COUNT(*) FROM (SELECT userName FROM (" + EXPECTED_USER_READ
+					+ " UNION ALL SELECT userName, -readCount FROM UserReadCounters) AS d "
+					+ "GROUP BY userName HAVING SUM(n) <> 0) AS x"
+		};
+		int wrong = 0;
+		try (Statement statement = connection.createStatement()) {
+			for (String check : checks) {
+				ResultSet rs = statement.executeQuery(check);
+				if (rs.next()) wrong += rs.getInt(1);
+			}
+		}
+		return wrong;
+	}
+
+	private static void addToPostReplies(Connection connection, int postId, int n) throws SQLException {
+		add(connection,
+				"UPDATE PostReplyCounters SET replyCount = replyCount + ? WHERE postId = ?",
+				"INSERT INTO PostReplyCounters (replyCount, postId) VALUES (?, ?)",
+				n, null, postId);
+	}
+
+	/*
+	 * Add n to a counter row, creating it if there is none.  Both statements take n first, then
+	 * the userName (when not null), then the postId (when not null).  If another transaction
+	 * creates the row between the update and the insert, the update is run again.
+	 */
+	private static void add(Connection connection, String update, String insert, int n,
+			String userName, Integer postId) throws SQLException {
+		if (run(connection, update, n, userName, postId) > 0) return;
+		try {
+			run(connection, insert, n, userName, postId);
+		} catch (SQLException e) {
+			if (!"23505".equals(e.getSQLState())) throw e;	// not a duplicate key
+			run(connection, update, n, userName, postId);
+		}
+	}
+
+	private static int run(Connection connection, String sql, int n, String userName, Integer postId)
+			throws SQLException {
+		try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+			int idx = 1;
+			pstmt.setInt(idx++, n);
+			if (userName != null) pstmt.setString(idx++, userName);
+			if (postId != null) pstmt.setInt(idx++, postId);
+			return pstmt.executeUpdate();
+		}
+	}
+}
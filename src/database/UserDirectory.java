@@ -0,0 +1,198 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entityClasses.User;
+
+/*******
+ * <p> Title: UserDirectory Class. </p>
+ *
+ * <p> Description: A least-recently-used cache of userDB rows keyed by userName.  Screens ask
+ * the Database for a user's first name, last name, email address and roles one call at a time,
+ * and ticket deletes check isAdmin on every delete, so the same row used to be read again and
+ * again.  The directory keeps an immutable Snapshot of each row it has read and answers those
+ * calls from memory.  Usernames that have no row are remembered too, so repeated checks for a
+ * name that is not taken stay cheap.</p>
+ *
+ * <p> The Database invalidates a user's entry whenever it writes that user's row (register, the
+ * update methods and deleteUser).  A row read from H2 is only stored if no invalidation
+ * happened while it was being read, so a load that raced with an update cannot put the old
+ * values back.</p>
+ *
+ */
+public class UserDirectory {
+
+	/*******
+	 * <p> Title: Snapshot Class. </p>
+	 *
+	 * <p> Description: The values of one userDB row at the time it was read.  It cannot be
+	 * changed; toUser() hands out a User the caller is free to modify.</p>
+	 */
+	public static final class Snapshot {
+		private final String userName;
+		private final String password;
+		private final String firstName;
+		private final String middleName;
+		private final String lastName;
+		private final String preferredFirstName;
+		private final String emailAddress;
+		private final boolean adminRole;
+		private final boolean role1;
+		private final boolean role2;
+
+		Snapshot(String userName, String password, String firstName, String middleName,
+				String lastName, String preferredFirstName, String emailAddress,
+				boolean adminRole, boolean role1, boolean role2) {
+			this.userName = userName;
+			this.password = password;
+			this.firstName = firstName;
+			this.middleName = middleName;
+			this.lastName = lastName;
+			this.preferredFirstName = preferredFirstName;
+			this.emailAddress = emailAddress;
+			this.adminRole = adminRole;
+			this.role1 = role1;
+			this.role2 = role2;
+		}
+
+		public String getUserName() { return userName; }
+		public String getPassword() { return password; }
+		public String getFirstName() { return firstName; }
+		public String getMiddleName() { return middleName; }
+		public String getLastName() { return lastName; }
+		public String getPreferredFirstName() { return preferredFirstName; }
+		public String getEmailAddress() { return emailAddress; }
+		public boolean getAdminRole() { return adminRole; }
+		public boolean getNewRole1() { return role1; }
+		public boolean getNewRole2() { return role2; }
+
+		/** @return a new User holding this snapshot's values */
+		public User toUser() {
+			return new User(userName, password, firstName, middleName, lastName,
+					preferredFirstName, emailAddress, adminRole, role1, role2);
+		}
+	}
+
+	/*******
+	 * <p> Title: Loader Interface. </p>
+	 *
+	 * <p> Description: Reads one user's row from H2.</p>
+	 */
+	interface Loader {
+		/** @return the row for userName, or null if there is none */
+		Snapshot load(String userName) throws SQLException;
+	}
+
+	// Stored for usernames that have no row
+	private static final Snapshot NO_SUCH_USER = new Snapshot(null, null, null, null, null, null,
+			null, false, false, false);
+
+	private final int capacity;
+	private final LinkedHashMap<String, Snapshot> entries;
+	private long generation = 0;			// Bumped by every invalidation
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/*******
+	 * <p> Method: UserDirectory(int capacity) </p>
+	 *
+	 * <p> Description: Create an empty directory that keeps at most capacity users, dropping
+	 * the least recently used one when it is full.  A capacity of 0 turns caching off.</p>
+	 *
+	 * @param capacity the largest number of users kept
+	 */
+	public UserDirectory(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+				return size() > UserDirectory.this.capacity;
+			}
+		};
+	}
+
+	/*******
+	 * <p> Method: Snapshot get(String userName, Loader loader) </p>
+	 *
+	 * <p> Description: The row for this username, from memory if the directory has it and
+	 * otherwise from the loader, which is then remembered.  The loader runs outside the
+	 * directory's lock, so a slow query does not hold up lookups of other users.</p>
+	 *
+	 * @param userName the username to look up
+	 * @param loader reads the row from H2 when it is not in memory
+	 *
+	 * @return the snapshot, or null when there is no such user
+	 *
+	 * @throws SQLException when the loader fails; nothing is remembered in that case
+	 */
+	Snapshot get(String userName, Loader loader) throws SQLException {
+		long loadedAt;
+		synchronized (this) {
+			Snapshot s = entries.get(userName);
+			if (s != null) {
+				hits.incrementAndGet();
+				return s == NO_SUCH_USER ? null : s;
+			}
+			misses.incrementAndGet();
+			loadedAt = generation;
+		}
+		Snapshot loaded = loader.load(userName);
+		synchronized (this) {
+			// Skip it if the row was written while it was being read
+			if (userName != null && capacity > 0 && loadedAt == generation)
+				entries.put(userName, loaded == null ? NO_SUCH_USER : loaded);
+		}
+		return loaded;
+	}
+
+	/*******
+	 * <p> Method: void invalidate(String userName) </p>
+	 *
+	 * <p> Description: Forget this user, so the next lookup reads the row again.</p>
+	 *
+	 * @param userName the username whose row was written
+	 */
+	synchronized void invalidate(String userName) {
+		generation++;
+		entries.remove(userName);
+	}
+
+	/*******
+	 * <p> Method: void clear() </p>
+	 *
+	 * <p> Description: Forget every user.</p>
+	 */
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+
+	/** @return the number of usernames currently remembered */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** @return the number of lookups answered from memory */
+	public long getHits() { return hits.get(); }
+
+	/** @return the number of lookups that had to read userDB */
+	public long getMisses() { return misses.get(); }
+
+	/** @return hits divided by all lookups, or 0 when there have been none */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("user directory size=%d hits=%d misses=%d hitRate=%.1f%%",
+				size(), getHits(), getMisses(), getHitRate() * 100);
+	}
+}
@@ -0,0 +1,214 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*******
+ * <p> Title: UserPrefixIndex Class. </p>
+ *
+ * <p> Description: An in-memory, sorted index of every user's name, for the pickers that let an
+ * admin or staff member type the start of a user name or a person's name instead of scrolling a
+ * list of every account.  Each user is filed under the lower-case forms of their user name,
+ * first name, preferred first name and last name, and of their "first last" names, so "smi", "jo" and
+ * "john sm" all find John Smith.  A search is a seek into a ConcurrentSkipListMap followed by a
+ * walk over the next few keys, so it costs O(log n + k) however many users there are and never
+ * touches H2.</p>
+ *
+ * <p> The index is filled from userDB once, the first time it is needed, and the Database then
+ * keeps it current as users are registered, renamed and deleted.  Changes before it is loaded
+ * are ignored, since the load reads them from the table.  Searches need no lock; loads and
+ * changes are serialized so a load cannot put back a user deleted while it ran.</p>
+ *
+ */
+public class UserPrefixIndex {
+
+	// Separates a key from the user name that owns it, and sorts before every other character,
+	// so all the entries for one key are together and ahead of longer keys
+	private static final char SEPARATOR = '\u0000';
+
+	private final ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+	private final Map<String, String[]> keysOf = new ConcurrentHashMap<>();	// The keys each user is filed under
+	private final Map<String, String> displayNames = new ConcurrentHashMap<>();
+	private final Map<String, String[]> namesOf = new ConcurrentHashMap<>();	// {first, preferred, last}
+	private volatile boolean loaded = false;
+
+	/*******
+	 * <p> Method: boolean isLoaded() </p>
+	 *
+	 * @return true once load has filled the index
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/*******
+	 * <p> Method: void load(Connection connection) </p>
+	 *
+	 * <p> Description: Fill the index from userDB, unless it is already loaded.</p>
+	 *
+	 * @param connection the caller's connection
+	 *
+	 * @throws SQLException if userDB cannot be read; the index is then left empty
+	 */
+	public synchronized void load(Connection connection) throws SQLException {
+		if (loaded) return;
+		String query = "SELECT userName, firstName, preferredFirstName, lastName FROM userDB";
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery(query)) {
+			while (rs.next()) {
+				index(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+			}
+			loaded = true;
+		} finally {
+			if (!loaded) clear();
+		}
+	}
+
+	/*******
+	 * <p> Method: void clear() </p>
+	 *
+	 * <p> Description: Empty the index; the next search reloads it.</p>
+	 */
+	public synchronized void clear() {
+		loaded = false;
+		entries.clear();
+		keysOf.clear();
+		displayNames.clear();
+		namesOf.clear();
+	}
+
+	/*******
+	 * <p> Method: void put(String userName, String firstName, String preferredFirstName,
+	 * String lastName) </p>
+	 *
+	 * <p> Description: Add a user, or refile one whose names have changed.</p>
+	 *
+	 * @param userName the user's user name
+	 * @param firstName their first name
+	 * @param preferredFirstName their preferred first name, or empty
+	 * @param lastName their last name
+	 */
+	public synchronized void put(String userName, String firstName, String preferredFirstName,
+			String lastName) {
+		if (loaded && userName != null) index(userName, firstName, preferredFirstName, lastName);
+	}
+
+	/*******
+	 * <p> Method: void setFirstName(String userName, String firstName) </p>
+	 *
+	 * @param userName a user in the index
+	 * @param firstName their new first name
+	 */
+	public synchronized void setFirstName(String userName, String firstName) {
+		String[] names = namesOf.get(userName);
+		if (loaded && names != null) index(userName, firstName, names[1], names[2]);
+	}
+
+	/*******
+	 * <p> Method: void setPreferredFirstName(String userName, String preferredFirstName) </p>
+	 *
+	 * @param userName a user in the index
+	 * @param preferredFirstName their new preferred first name
+	 */
+	public synchronized void setPreferredFirstName(String userName, String preferredFirstName) {
+		String[] names = namesOf.get(userName);
+		if (loaded && names != null) index(userName, names[0], preferredFirstName, names[2]);
+	}
+
+	/*******
+	 * <p> Method: void setLastName(String userName, String lastName) </p>
+	 *
+	 * @param userName a user in the index
+	 * @param lastName their new last name
+	 */
+	public synchronized void setLastName(String userName, String lastName) {
+		String[] names = namesOf.get(userName);
+		if (loaded && names != null) index(userName, names[0], names[1], lastName);
+	}
+
+	/*******
+	 * <p> Method: void remove(String userName) </p>
+	 *
+	 * @param userName the user to take out of the index
+	 */
+	public synchronized void remove(String userName) {
+		if (userName == null) return;
+		String[] keys = keysOf.remove(userName);
+		if (keys != null) {
+			for (String key : keys) entries.remove(key + SEPARATOR + userName);
+		}
+		displayNames.remove(userName);
+		namesOf.remove(userName);
+	}
+
+	/*******
+	 * <p> Method: List&lt;String&gt; search(String prefix, int limit) </p>
+	 *
+	 * <p> Description: The users with a name that starts with the prefix, ignoring case, in the
+	 * order of the name that matched.  Each user is listed once.</p>
+	 *
+	 * @param prefix what has been typed so far; empty matches every user
+	 * @param limit the largest number of users to return
+	 *
+	 * @return the matching user names
+	 */
+	public List<String> search(String prefix, int limit) {
+		String from = (prefix == null) ? "" : prefix.trim().toLowerCase();
+		Set<String> found = new LinkedHashSet<>();
+		if (limit <= 0) return new ArrayList<>(found);
+		// Every key starting with the prefix lies in [prefix, prefix + U+FFFF)
+		for (String userName : entries.subMap(from, from + '\uffff').values()) {
+			found.add(userName);
+			if (found.size() >= limit) break;
+		}
+		return new ArrayList<>(found);
+	}
+
+	/*******
+	 * <p> Method: String displayName(String userName) </p>
+	 *
+	 * @param userName a user name
+	 *
+	 * @return the "first last" name the user is shown with, or null if they are not indexed
+	 */
+	public String displayName(String userName) {
+		return (userName == null) ? null : displayNames.get(userName);
+	}
+
+	/*******
+	 * <p> Method: int size() </p>
+	 *
+	 * @return the number of users in the index
+	 */
+	public int size() {
+		return keysOf.size();
+	}
+
+	// File a user under each of their names, replacing what they were filed under before
+	private void index(String userName, String firstName, String preferredFirstName, String lastName) {
+		remove(userName);
+		String first = (preferredFirstName != null && !preferredFirstName.isBlank())
+				? preferredFirstName.trim() : ((firstName == null) ? "" : firstName.trim());
+		String last = (lastName == null) ? "" : lastName.trim();
+		String display = (first + " " + last).trim();
+
+		Set<String> keys = new LinkedHashSet<>();
+		String full = (((firstName == null) ? "" : firstName.trim()) + " " + last).trim();
+		for (String name : new String[] { userName, firstName, preferredFirstName, lastName, display, full }) {
+			if (name != null && !name.isBlank()) keys.add(name.trim().toLowerCase());
+		}
+		for (String key : keys) entries.put(key + SEPARATOR + userName, userName);
+		keysOf.put(userName, keys.toArray(new String[0]));
+		displayNames.put(userName, display);
+		namesOf.put(userName, new String[] { firstName, preferredFirstName, lastName });
+	}
+}
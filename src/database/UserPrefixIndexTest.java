@@ -0,0 +1,122 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/*******
+ * <p> Title: UserPrefixIndexTest Class. </p>
+ *
+ * <p> Description: JUnit 5 tests of UserPrefixIndex: prefix searches over user names and
+ * people's names, and keeping the index current as users are added, renamed and removed.  The
+ * index is loaded from a small userDB table in an in-memory H2 database.</p>
+ *
+ */
+public class UserPrefixIndexTest {
+
+	private Connection connection;
+	private UserPrefixIndex index;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:userPrefixIndexTest");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE userDB (userName VARCHAR(255), firstName VARCHAR(255), "
+					+ "preferredFirstName VARCHAR(255), lastName VARCHAR(255))");
+			statement.execute("INSERT INTO userDB VALUES ('jsmith', 'John', '', 'Smith'), "
+					+ "('mjones', 'Mary', 'Molly', 'Jones'), ('asmithers', 'Alan', '', 'Smithers')");
+		}
+		index = new UserPrefixIndex();
+		index.load(connection);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		// The in-memory database goes away with its last connection
+		connection.close();
+	}
+
+	@Test
+	public void loadReadsEveryUser() {
+		assertTrue(index.isLoaded());
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void searchMatchesAnyNameIgnoringCase() {
+		assertEquals(Arrays.asList("jsmith"), index.search("JSm", 10), "user name");
+		assertEquals(Arrays.asList("jsmith"), index.search("john", 10), "first name");
+		assertEquals(Arrays.asList("mjones"), index.search("molly", 10), "preferred first name");
+		assertEquals(Arrays.asList("mjones"), index.search("mary jo", 10), "first and last name");
+		assertEquals(Arrays.asList("mjones"), index.search("molly jones", 10), "shown name");
+		assertTrue(index.search("smithx", 10).isEmpty());
+	}
+
+	@Test
+	public void searchListsEachUserOnceUpToTheLimit() {
+		// "smith" is both jsmith's last name and the start of asmithers' last name
+		assertEquals(Arrays.asList("jsmith", "asmithers"), index.search("smith", 10));
+		assertEquals(Arrays.asList("jsmith"), index.search("smith", 1));
+		assertTrue(index.search("smith", 0).isEmpty());
+		assertEquals(3, index.search("", 10).size(), "An empty prefix matches every user");
+	}
+
+	@Test
+	public void displayNamePrefersThePreferredFirstName() {
+		assertEquals("John Smith", index.displayName("jsmith"));
+		assertEquals("Molly Jones", index.displayName("mjones"));
+		assertNull(index.displayName("nobody"));
+	}
+
+	@Test
+	public void putAddsAUser() {
+		index.put("bwayne", "Bruce", "", "Wayne");
+
+		assertEquals(4, index.size());
+		assertEquals(Arrays.asList("bwayne"), index.search("bru", 10));
+		assertEquals("Bruce Wayne", index.displayName("bwayne"));
+	}
+
+	@Test
+	public void renamesRefileTheUser() {
+		index.setLastName("jsmith", "Doe");
+		assertEquals(Arrays.asList("asmithers"), index.search("smith", 10), "The old last name is gone");
+		assertEquals(Arrays.asList("jsmith"), index.search("doe", 10));
+		assertEquals(Arrays.asList("jsmith"), index.search("john doe", 10));
+
+		index.setFirstName("jsmith", "Jack");
+		assertTrue(index.search("john", 10).isEmpty());
+		assertEquals(Arrays.asList("jsmith"), index.search("jack d", 10));
+
+		index.setPreferredFirstName("jsmith", "Jay");
+		assertEquals(Arrays.asList("jsmith"), index.search("jay", 10));
+		assertEquals(Arrays.asList("jsmith"), index.search("jack", 10), "The first name still matches");
+		assertEquals("Jay Doe", index.displayName("jsmith"));
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void removeTakesTheUserOut() {
+		index.remove("jsmith");
+
+		assertEquals(2, index.size());
+		assertEquals(Arrays.asList("asmithers"), index.search("smith", 10));
+		assertTrue(index.search("john", 10).isEmpty());
+		assertNull(index.displayName("jsmith"));
+	}
+
+	@Test
+	public void changesBeforeLoadingAreIgnored() {
+		UserPrefixIndex unloaded = new UserPrefixIndex();
+		unloaded.put("bwayne", "Bruce", "", "Wayne");
+
+		assertFalse(unloaded.isLoaded());
+		assertEquals(0, unloaded.size(), "The load reads users from the table instead");
+	}
+}
@@ -0,0 +1,52 @@
+package database;
+
+/*******
+ * <p> Title: UserSort Enum. </p>
+ *
+ * <p> Description: The orders Database.getUserDirectoryPage can return users in, one per
+ * column of the admin user list.  Names sort without regard to case, using the lower-case key
+ * columns of migration 7, and every order ends with userName so that paging through it never
+ * skips or repeats a user.</p>
+ *
+ */
+public enum UserSort {
+
+	/** Last name, then first name: the order the list opens in. */
+	LAST_NAME("lastNameKey", "firstNameKey", "userName"),
+
+	/** User name. */
+	USER_NAME("userNameKey", "userName"),
+
+	/** First name, then last name, as the Full Name column shows them. */
+	FULL_NAME("firstNameKey", "lastNameKey", "userName"),
+
+	/** Email address. */
+	EMAIL_ADDRESS("emailKey", "userName"),
+
+	/** Admins first, then staff, then students. */
+	ROLES("adminRole DESC", "newRole1 DESC", "newRole2 DESC", "userName");
+
+	private final String[] keys;
+
+	UserSort(String... keys) {
+		this.keys = keys;
+	}
+
+	/*
+	 * The ORDER BY list for this sort, with every key reversed when descending.
+	 */
+	String orderBy(boolean ascending) {
+		StringBuilder sb = new StringBuilder();
+		for (String key : keys) {
+			if (sb.length() > 0) sb.append(", ");
+			if (ascending) {
+				sb.append(key);
+			} else if (key.endsWith(" DESC")) {
+				sb.append(key, 0, key.length() - " DESC".length());
+			} else {
+				sb.append(key).append(" DESC");
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,65 @@
+package entityClasses;
+
+/*******
+ * <p> Title: Invitation Class </p>
+ *
+ * <p> Description: One invitation for a potential user: the email address it is sent to, the
+ * roles the new account will have and the code the user enters to set the account up. </p>
+ *
+ * <p>Invitations generated one at a time only exist as a row in InvitationCodes; this class is
+ * used when many are generated at once, so the codes can be handed back to the caller and
+ * written out for mailing.</p>
+ */
+public class Invitation {
+
+    /** Email address the invitation is sent to. */
+    private String emailAddress;
+
+    /** Comma separated role names, as stored in InvitationCodes.roles (e.g. "Staff,Student"). */
+    private String roles;
+
+    /** The invitation code, or {@code null} until one has been generated. */
+    private String code;
+
+    /**
+     * Creates an invitation that has no code yet.
+     * @param emailAddress the address to invite
+     * @param roles comma separated role names
+     */
+    public Invitation(String emailAddress, String roles) {
+        this.emailAddress = emailAddress;
+        this.roles = roles;
+    }
+
+    /**
+     * Gets the email address.
+     * @return the address this invitation is sent to
+     */
+    public String getEmailAddress() {
+        return emailAddress;
+    }
+
+    /**
+     * Gets the roles.
+     * @return comma separated role names
+     */
+    public String getRoles() {
+        return roles;
+    }
+
+    /**
+     * Gets the invitation code.
+     * @return the code, or {@code null} if none has been generated yet
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Sets the invitation code.
+     * @param code the generated code
+     */
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
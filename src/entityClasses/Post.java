@@ -40,6 +40,9 @@ public class Post {
 	/** List of replies associated with this post. */
 	private List<Reply> replies;
 
+	/** Number of replies in the database, set when the replies themselves are not loaded. */
+	private int replyCount;
+
 	/** Count of replies that are unread. */
 	private int unreadCount;
 
@@ -62,6 +65,7 @@ public class Post {
 		this.createdAt = Instant.now();
 		this.deleted = false;
 		this.replies = new ArrayList<>();
+		this.replyCount = 0;
 		this.unreadCount = 0;
 		this.hasUnread = false;
 		this.readByUsers = new HashSet<>();
@@ -87,6 +91,7 @@ public class Post {
 		this.createdAt = (createdAt == null) ? Instant.now() : createdAt;
 		this.deleted = deleted;
 		this.replies = new ArrayList<>();
+		this.replyCount = 0;
 		this.unreadCount = 0;
 		this.hasUnread = false;
 		this.readByUsers = new HashSet<>();
@@ -119,14 +124,22 @@ public class Post {
 	}
 
 	/**
-	 * Gets the total number of replies currently loaded.
+	 * Gets the total number of replies. This is the number of replies loaded into the
+	 * post, or the count set by {@link #setReplyCount(int)} when none are loaded.
 	 *
 	 * @return number of replies
 	 */
 	public int getReplyCount() {
-		return replies == null ? 0 : replies.size();
+		return (replies == null || replies.isEmpty()) ? replyCount : replies.size();
 	}
 
+	/**
+	 * Sets the number of replies without loading them (e.g., from a summary query).
+	 *
+	 * @param replyCount number of replies the post has
+	 */
+	public void setReplyCount(int replyCount) { this.replyCount = replyCount; }
+
 	/**
 	 * Returns a short summary of the post for display (title, author, reply count).
 	 *
@@ -3,17 +3,18 @@ package guiAddFeedback;
 import applicationMain.FoundationsMain;
 import database.Database;
 import entityClasses.User;
+import guiTools.UserTypeahead;
 import guiViewFeedback.ControllerViewFeedback;
+import javafx.scene.control.ComboBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import java.util.List;
 
 /**
  * <p> Class: ControllerAddFeedback </p>
  *
  * <p> Description: Controller responsible for handling actions related to submitting new
  * feedback messages, including opening the "Add Feedback" pop-up window, sending
- * feedback to the database, and retrieving student user lists when needed. </p>
+ * feedback to the database, and looking up recipients when needed. </p>
  */
 public class ControllerAddFeedback {
 
@@ -60,14 +61,15 @@ public class ControllerAddFeedback {
     }
 
     /**
-     * <p> Method: List<User> getAllStudents() </p>
+     * <p> Method: void attachRecipientPicker(ComboBox<String> recipientBox) </p>
      *
-     * <p> Description: Retrieves a list of all users from the database. Used by
-     * the "Add Feedback" view when a staff user needs to select a student. </p>
+     * <p> Description: Turns the recipient drop-down into a typeahead picker. Used by
+     * the "Add Feedback" view when a staff user needs to select a student, so the users
+     * are looked up as the name is typed instead of all being loaded when the form opens. </p>
      *
-     * @return a List of all User objects stored in the database
+     * @param recipientBox the recipient ComboBox of the form
      */
-    public static List<User> getAllStudents() {
-        return theDatabase.getAllUsers();
+    public static void attachRecipientPicker(ComboBox<String> recipientBox) {
+        UserTypeahead.attach(recipientBox, theDatabase, "Type a recipient");
     }
 }
@@ -1,17 +1,12 @@
 package guiAddFeedback;
 
 import entityClasses.User;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /*******
  * <p> Title: ViewAddFeedback Class </p>
  * 
@@ -88,8 +83,8 @@ public class ViewAddFeedback {
     /**
      * <p> Method: Scene getScene(boolean isStaff) </p>
      *
-     * <p> Description: Returns the scene for this view. If the current user is staff (isStaff == true) the recipient dropdown will be
-     * populated with all user names so staff can choose a Student. For non-staff users
+     * <p> Description: Returns the scene for this view. If the current user is staff (isStaff == true) the recipient dropdown
+     * becomes a typeahead that lists the users matching what is typed so staff can choose a Student. For non-staff users
      * the recipient controls are hidden.</p>
      *
      * @param isStaff boolean flag indicating if the current user has staff privileges
@@ -98,12 +93,7 @@ public class ViewAddFeedback {
     public Scene getScene(boolean isStaff) {
         if (isStaff) {
         	// Staff can choose any student as recipient
-            List<User> allUsers = ControllerAddFeedback.getAllStudents(); 
-            List<String> recipientUsernames = allUsers.stream()
-                .map(User::getUserName)
-                .collect(Collectors.toList());
-            ObservableList<String> items = FXCollections.observableArrayList(recipientUsernames);
-            recipientComboBox.setItems(items);
+            ControllerAddFeedback.attachRecipientPicker(recipientComboBox);
         } else {
             recipientLabel.setVisible(false);
             recipientComboBox.setVisible(false);
@@ -127,7 +117,7 @@ public class ViewAddFeedback {
         String content = contentArea.getText().trim();
 
         if (currentUser.getNewRole1()) {
-            recipientUser = recipientComboBox.getSelectionModel().getSelectedItem();
+            recipientUser = recipientComboBox.getValue();
         } else {
             // Hardcode the recipient username for a student submission, 
             recipientUser = "Admin"; 
@@ -26,13 +26,15 @@ public class ControllerAddRemoveRoles {
 	 * 
 	 * <p> Description: This method uses the ComboBox widget, fetches which item in the ComboBox
 	 * was selected (a user in this case), and establishes that user and the current user, setting
-	 * easily accessible values without needing to do a query. </p>
+	 * easily accessible values without needing to do a query.  Until a user who exists has been
+	 * picked or typed, only the request to select a user is shown. </p>
 	 * 
 	 */
 	protected static void doSelectUser() {
-		ViewAddRemoveRoles.theSelectedUser = 
-				(String) ViewAddRemoveRoles.combobox_SelectUser.getValue();
-		theDatabase.getUserAccountDetails(ViewAddRemoveRoles.theSelectedUser);
+		String selected = ViewAddRemoveRoles.combobox_SelectUser.getValue();
+		if (selected == null || !theDatabase.getUserAccountDetails(selected))
+			selected = "<Select a User>";
+		ViewAddRemoveRoles.theSelectedUser = selected;
 		setupSelectedUser();
 	}
 	
@@ -3,7 +3,6 @@ package guiAddRemoveRoles;
 import java.util.ArrayList;
 import java.util.List;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.FXCollections;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -15,6 +14,7 @@ import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import database.Database;
 import entityClasses.User;
+import guiTools.UserTypeahead;
 
 /*******
  * <p> Title: GUIAddRemoveRolesPage Class. </p>
@@ -187,10 +187,9 @@ public class ViewAddRemoveRoles {
 		setupLabelUI(label_SelectUser, "Arial", 20, 300, Pos.BASELINE_LEFT, 20, 130);
 		
 		setupComboBoxUI(combobox_SelectUser, "Dialog", 16, 250, 280, 125);
-		List<String> userList = theDatabase.getUserList();	
-		combobox_SelectUser.setItems(FXCollections.observableArrayList(userList));
-		combobox_SelectUser.getSelectionModel().select(0);
-		combobox_SelectUser.getSelectionModel().selectedItemProperty()
+		// Typing lists the matching users; the roles are shown once one is picked
+		UserTypeahead.attach(combobox_SelectUser, theDatabase, "Type a user or name");
+		combobox_SelectUser.valueProperty()
     	.addListener((ObservableValue<? extends String> observable, 
     		String oldvalue, String newValue) -> {ControllerAddRemoveRoles.doSelectUser();});
 		
@@ -259,6 +259,28 @@ public class ControllerAdminHome {
         ControllerViewFeedback.displayViewFeedback(ViewAdminHome.theStage, ViewAdminHome.theUser);
     }
 
+	/**********
+	 * <p> Title: bulkInvitations () Method. </p>
+	 * 
+	 * <p> Description: Protected method that opens the Bulk Invitations page, where a CSV file
+	 * of email addresses and roles is turned into invitation codes.</p>
+	 */
+	protected static void bulkInvitations() {
+		guiBulkInvitations.ViewBulkInvitations.displayBulkInvitations(ViewAdminHome.theStage,
+				ViewAdminHome.theUser);
+	}
+
+	/**********
+	 * <p> Title: bulkAccounts () Method. </p>
+	 * 
+	 * <p> Description: Protected method that opens the Bulk Accounts page, where a CSV file of
+	 * accounts is added to the database without going through the New Account page.</p>
+	 */
+	protected static void bulkAccounts() {
+		guiBulkAccounts.ViewBulkAccounts.displayBulkAccounts(ViewAdminHome.theStage,
+				ViewAdminHome.theUser);
+	}
+
 	/**********
 	 * <p>  
 	 * 
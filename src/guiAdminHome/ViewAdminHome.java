@@ -119,6 +119,9 @@ public class ViewAdminHome {
 	
 	// Brian NEW: Feedback System Button
 	protected static Button button_FeedbackSystem = new Button("Private Feedback");
+
+	protected static Button button_BulkInvitations = new Button("Bulk Invitations");
+	protected static Button button_BulkAccounts = new Button("Bulk Accounts");
 	
 	protected static Label label_OtpStatus = new Label(); //Chuan Nguyen added
 
@@ -316,6 +319,12 @@ public class ViewAdminHome {
         setupButtonUI(button_FeedbackSystem, "Dialog", 16, 250, Pos.CENTER, 300, 370);
         button_FeedbackSystem.setOnAction((event) -> { ControllerAdminHome.openFeedbackSystem(); });
 
+        setupButtonUI(button_BulkInvitations, "Dialog", 16, 250, Pos.CENTER, 300, 420);
+        button_BulkInvitations.setOnAction((event) -> { ControllerAdminHome.bulkInvitations(); });
+
+        setupButtonUI(button_BulkAccounts, "Dialog", 16, 250, Pos.CENTER, 300, 470);
+        button_BulkAccounts.setOnAction((event) -> { ControllerAdminHome.bulkAccounts(); });
+
 		
 		//Chuan added
 		setupLabelUI(label_OtpStatus, "Arial", 16, width, Pos.BASELINE_LEFT, 300, 325);
@@ -351,7 +360,9 @@ public class ViewAdminHome {
     		button_ViewPosts,
     		button_TicketSystem, 
             button_GradingSystem, 
-            button_FeedbackSystem  
+            button_FeedbackSystem,
+            button_BulkInvitations,
+            button_BulkAccounts
     		);
 		
 		// With theRootPane set up with the common widgets, it is up to displayAdminHome to show
@@ -0,0 +1,116 @@
+package guiBulkAccounts;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import applicationMain.FoundationsMain;
+import database.Database;
+import entityClasses.User;
+
+/*******
+ * <p> Title: ControllerBulkAccounts Class. </p>
+ *
+ * <p> Description: The Bulk Accounts Page Controller.  An import works through the CSV file a
+ * chunk at a time: the chunk is validated in parallel, its valid rows are added with one call to
+ * Database.registerUsers, and every rejected row is written to the error report with its line
+ * number.  It all runs on a background database thread, so the window stays responsive while
+ * the passwords are hashed.</p>
+ *
+ */
+public class ControllerBulkAccounts {
+
+	/*******
+	 * <p> Method: CompletableFuture&lt;String&gt; performImport(Path input, Path report) </p>
+	 *
+	 * <p> Description: Import a CSV of accounts in the background.</p>
+	 *
+	 * @param input the CSV of accounts
+	 * @param report where to write the rows that were not added and why
+	 *
+	 * @return a future that completes with a summary of what was done, for the status label
+	 */
+	protected static CompletableFuture<String> performImport(Path input, Path report) {
+		return FoundationsMain.asyncDatabase.supply(db -> importAccounts(db, input, report));
+	}
+
+	private static String importAccounts(Database db, Path input, Path report) {
+		int added = 0;
+		int rejected = 0;
+		int[] lineNumber = {0};
+		try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+			 BufferedWriter out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+			out.write("line,error");
+			out.newLine();
+			List<ModelBulkAccounts.Row> rows;
+			while (!(rows = ModelBulkAccounts.readChunk(in, lineNumber)).isEmpty()) {
+				ModelBulkAccounts.validate(rows);
+
+				List<User> users = new ArrayList<>(rows.size());
+				List<ModelBulkAccounts.Row> valid = new ArrayList<>(rows.size());
+				for (ModelBulkAccounts.Row row : rows) {
+					if (row.user != null) {
+						users.add(row.user);
+						valid.add(row);
+					}
+				}
+				String[] errors = db.registerUsers(users);
+				for (int i = 0; i < errors.length; i++) {
+					valid.get(i).error = errors[i];
+				}
+
+				for (ModelBulkAccounts.Row row : rows) {
+					if (row.error == null) {
+						added++;
+					} else {
+						rejected++;
+						ModelBulkAccounts.writeError(out, row.lineNumber, row.error);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		String summary = added + " accounts added.";
+		if (rejected > 0) {
+			summary += "\n" + rejected + " rows were not added; see " + report.getFileName() + ".";
+		}
+		return summary;
+	}
+
+	/*******
+	 * <p> Method: void performReturn() </p>
+	 *
+	 * <p> Description: Go back to the Admin Home page.</p>
+	 */
+	protected static void performReturn() {
+		guiAdminHome.ViewAdminHome.displayAdminHome(ViewBulkAccounts.theStage,
+				ViewBulkAccounts.theUser);
+	}
+
+	/*******
+	 * <p> Method: void performLogout() </p>
+	 *
+	 * <p> Description: Go back to the login page.</p>
+	 */
+	protected static void performLogout() {
+		guiUserLogin.ViewUserLogin.displayUserLogin(ViewBulkAccounts.theStage);
+	}
+
+	/*******
+	 * <p> Method: void performQuit() </p>
+	 *
+	 * <p> Description: Terminate the application.</p>
+	 */
+	protected static void performQuit() {
+		System.exit(0);
+	}
+}
@@ -0,0 +1,206 @@
+package guiBulkAccounts;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import entityClasses.User;
+import validation.PasswordEvaluator;
+import validation.UserNameRecognizer;
+
+/*******
+ * <p> Title: ModelBulkAccounts Class. </p>
+ *
+ * <p> Description: The Bulk Accounts Page Model.  Reads the CSV file of accounts to create, a
+ * chunk of rows at a time so a file of any size is held in memory only one chunk at once, and
+ * checks each row with the same recognizers the New Account page uses.  The columns are</p>
+ *
+ * <pre>
+ * userName,password,firstName,middleName,lastName,preferredFirstName,emailAddress,roles
+ * </pre>
+ *
+ * <p> where roles is one or more of Admin, Staff and Student separated by semicolons.  A column
+ * may be written in double quotes, as spreadsheets do; it may then hold commas, line breaks and
+ * doubled quotes ("" for "), and everything between the quotes is kept, so a password can
+ * contain any character.  A row with the wrong number of columns is rejected.  A first line
+ * whose user name is "userName" is taken to be a header and skipped.</p>
+ *
+ */
+public class ModelBulkAccounts {
+
+	/** Rows read, checked and inserted together. */
+	protected static final int CHUNK_SIZE = 5000;
+
+	private static final int COLUMNS = 8;
+
+	/*******
+	 * <p> Title: Row Class. </p>
+	 *
+	 * <p> Description: One line of the file: the user it describes, or why it cannot be used.</p>
+	 */
+	protected static class Row {
+		protected final int lineNumber;
+		protected final String[] columns;
+		protected User user;
+		protected String error;
+
+		Row(int lineNumber, String[] columns) {
+			this.lineNumber = lineNumber;
+			this.columns = columns;
+		}
+	}
+
+	/*******
+	 * <p> Method: List&lt;Row&gt; readChunk(BufferedReader in, int[] lineNumber) </p>
+	 *
+	 * <p> Description: Read up to CHUNK_SIZE non-blank rows.  The rows are only split into
+	 * columns here; validate checks them.  A row whose quoted column is never closed is
+	 * rejected here.</p>
+	 *
+	 * @param in the open CSV file
+	 * @param lineNumber a one element counter of the lines read so far, advanced by this call
+	 *
+	 * @return the rows read; empty at the end of the file
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	protected static List<Row> readChunk(BufferedReader in, int[] lineNumber) throws IOException {
+		List<Row> rows = new ArrayList<>(CHUNK_SIZE);
+		String line;
+		while (rows.size() < CHUNK_SIZE && (line = in.readLine()) != null) {
+			lineNumber[0]++;
+			if (line.isBlank()) continue;
+			int firstLine = lineNumber[0];
+			String record = line;
+			String[] columns = splitRecord(record);
+			// A quoted column can run on to the next lines
+			while (columns == null && (line = in.readLine()) != null) {
+				lineNumber[0]++;
+				record = record + "\n" + line;
+				columns = splitRecord(record);
+			}
+			if (columns == null) {
+				Row row = new Row(firstLine, new String[0]);
+				row.error = "a quoted column is not closed";
+				rows.add(row);
+				continue;
+			}
+			if (firstLine == 1 && columns[0].trim().equalsIgnoreCase("userName")) continue;
+			rows.add(new Row(firstLine, columns));
+		}
+		return rows;
+	}
+
+	/*******
+	 * <p> Method: String[] splitRecord(String record) </p>
+	 *
+	 * <p> Description: Split one CSV record into its columns.  A column that starts with a
+	 * double quote runs to the matching closing quote, and "" inside it stands for one quote;
+	 * its text is kept exactly.  Any other column runs to the next comma and is kept as
+	 * written, quotes included.</p>
+	 *
+	 * @param record the text of the record, without its final line break
+	 *
+	 * @return the columns, or null if a quoted column is still open at the end of the text
+	 */
+	protected static String[] splitRecord(String record) {
+		List<String> columns = new ArrayList<>(COLUMNS);
+		StringBuilder column = new StringBuilder();
+		boolean quoted = false;		// inside a quoted column
+		boolean atStart = true;		// nothing read yet for this column
+		for (int i = 0; i < record.length(); i++) {
+			char c = record.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					column.append(c);
+				} else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+					column.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == ',') {
+				columns.add(column.toString());
+				column.setLength(0);
+				atStart = true;
+			} else if (c == '"' && atStart) {
+				quoted = true;
+				atStart = false;
+			} else {
+				column.append(c);
+				atStart = false;
+			}
+		}
+		if (quoted) return null;
+		columns.add(column.toString());
+		return columns.toArray(new String[0]);
+	}
+
+	/*******
+	 * <p> Method: void validate(List&lt;Row&gt; rows) </p>
+	 *
+	 * <p> Description: Check every row in parallel, setting either its user or its error.</p>
+	 *
+	 * @param rows the rows from readChunk
+	 */
+	protected static void validate(List<Row> rows) {
+		rows.parallelStream().forEach(ModelBulkAccounts::validate);
+	}
+
+	private static void validate(Row row) {
+		if (row.error != null) return;		// rejected by readChunk
+		String[] c = row.columns;
+		if (c.length != COLUMNS) {
+			row.error = "expected " + COLUMNS + " columns but found " + c.length;
+			return;
+		}
+		String userName = c[0].trim();
+		String password = c[1];
+		String error = UserNameRecognizer.check(userName).getErrorMessage();
+		if (error.isEmpty()) error = PasswordEvaluator.evaluate(password).getErrorMessage();
+		if (!error.isEmpty()) {
+			row.error = error.trim();
+			return;
+		}
+
+		boolean admin = false, staff = false, student = false;
+		for (String r : c[7].split(";")) {
+			String role = r.trim();
+			if (role.equalsIgnoreCase("Admin")) admin = true;
+			else if (role.equalsIgnoreCase("Staff")) staff = true;
+			else if (role.equalsIgnoreCase("Student")) student = true;
+			else if (!role.isEmpty()) {
+				row.error = "\"" + role + "\" is not a role";
+				return;
+			}
+		}
+		if (!admin && !staff && !student) {
+			row.error = "needs one or more of Admin, Staff, Student";
+			return;
+		}
+		row.user = new User(userName, password, c[2].trim(), c[3].trim(), c[4].trim(), c[5].trim(),
+				c[6].trim(), admin, staff, student);
+	}
+
+	/*******
+	 * <p> Method: void writeError(BufferedWriter report, int lineNumber, String error) </p>
+	 *
+	 * <p> Description: Add one rejected row to the error report.</p>
+	 *
+	 * @param report the open report file
+	 * @param lineNumber the row's line in the input file
+	 * @param error why the row was rejected
+	 *
+	 * @throws IOException if the report cannot be written
+	 */
+	protected static void writeError(BufferedWriter report, int lineNumber, String error)
+			throws IOException {
+		report.write(Integer.toString(lineNumber));
+		report.write(",\"");
+		report.write(error.replace('"', '\'').replace('\n', ' '));
+		report.write('"');
+		report.newLine();
+	}
+}
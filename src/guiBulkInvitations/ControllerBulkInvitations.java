@@ -0,0 +1,114 @@
+package guiBulkInvitations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import applicationMain.FoundationsMain;
+import database.Database;
+import entityClasses.Invitation;
+
+/*******
+ * <p> Title: ControllerBulkInvitations Class. </p>
+ *
+ * <p> Description: The Bulk Invitations Page Controller.  An import reads the CSV file, drops
+ * addresses that already have an outstanding invitation, generates every code with one call to
+ * Database.generateInvitationCodes and writes the codes to the output file.  All of it runs on
+ * the background database thread, so a file of thousands of addresses does not freeze the
+ * window.</p>
+ *
+ */
+public class ControllerBulkInvitations {
+
+	/** Rejected lines listed in the summary before the rest are only counted. */
+	private static final int REJECTED_LINES_SHOWN = 5;
+
+	/*******
+	 * <p> Method: CompletableFuture&lt;String&gt; performImport(Path input, Path output) </p>
+	 *
+	 * <p> Description: Import a CSV of invitations in the background.</p>
+	 *
+	 * @param input the CSV of email addresses and roles
+	 * @param output where to write the generated codes
+	 *
+	 * @return a future that completes with a summary of what was done, for the status label
+	 */
+	protected static CompletableFuture<String> performImport(Path input, Path output) {
+		return FoundationsMain.asyncDatabase.supply(db -> importInvitations(db, input, output));
+	}
+
+	private static String importInvitations(Database db, Path input, Path output) {
+		ModelBulkInvitations.ParseResult parsed;
+		try {
+			parsed = ModelBulkInvitations.parse(input);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		Set<String> invited = db.getInvitedEmailAddresses();
+		List<Invitation> toSend = new ArrayList<>(parsed.invitations.size());
+		int alreadyInvited = 0;
+		for (Invitation invitation : parsed.invitations) {
+			if (invited.contains(invitation.getEmailAddress())) alreadyInvited++;
+			else toSend.add(invitation);
+		}
+
+		if (db.generateInvitationCodes(toSend) < 0) {
+			return "The invitations could not be saved; no codes were generated.";
+		}
+		try {
+			ModelBulkInvitations.writeCodes(output, toSend);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return toSend.size() + " invitations were generated but " + output.getFileName()
+					+ " could not be written.";
+		}
+
+		StringBuilder summary = new StringBuilder();
+		summary.append(toSend.size()).append(" invitations generated and written to ")
+				.append(output.getFileName()).append('.');
+		if (alreadyInvited > 0) {
+			summary.append('\n').append(alreadyInvited).append(" addresses already had an invitation.");
+		}
+		if (!parsed.rejected.isEmpty()) {
+			summary.append('\n').append(parsed.rejected.size()).append(" lines were skipped:");
+			for (int i = 0; i < Math.min(REJECTED_LINES_SHOWN, parsed.rejected.size()); i++) {
+				summary.append('\n').append(parsed.rejected.get(i));
+			}
+			if (parsed.rejected.size() > REJECTED_LINES_SHOWN) summary.append("\n...");
+		}
+		return summary.toString();
+	}
+
+	/*******
+	 * <p> Method: void performReturn() </p>
+	 *
+	 * <p> Description: Go back to the Admin Home page.</p>
+	 */
+	protected static void performReturn() {
+		guiAdminHome.ViewAdminHome.displayAdminHome(ViewBulkInvitations.theStage,
+				ViewBulkInvitations.theUser);
+	}
+
+	/*******
+	 * <p> Method: void performLogout() </p>
+	 *
+	 * <p> Description: Go back to the login page.</p>
+	 */
+	protected static void performLogout() {
+		guiUserLogin.ViewUserLogin.displayUserLogin(ViewBulkInvitations.theStage);
+	}
+
+	/*******
+	 * <p> Method: void performQuit() </p>
+	 *
+	 * <p> Description: Terminate the application.</p>
+	 */
+	protected static void performQuit() {
+		System.exit(0);
+	}
+}
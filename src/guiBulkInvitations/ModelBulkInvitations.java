@@ -0,0 +1,156 @@
+package guiBulkInvitations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import entityClasses.Invitation;
+
+/*******
+ * <p> Title: ModelBulkInvitations Class. </p>
+ *
+ * <p> Description: The Bulk Invitations Page Model.  Reads the CSV file of people to invite and
+ * writes the file of generated codes.  Each input line is an email address followed by one or
+ * more role names (Admin, Staff or Student), either in further columns or separated by
+ * semicolons in the second column:</p>
+ *
+ * <pre>
+ * email,roles
+ * ann@example.com,Student
+ * bob@example.com,Staff;Student
+ * </pre>
+ *
+ * <p> Quotes around columns are ignored.  A first line that does not hold an email address is taken to be a header and skipped.
+ * The output file has one line per invitation: email, roles and code.</p>
+ *
+ */
+public class ModelBulkInvitations {
+
+	/** The role names an invitation may grant, in the order they are stored. */
+	protected static final String[] ROLES = {"Admin", "Staff", "Student"};
+
+	/*******
+	 * <p> Title: ParseResult Class. </p>
+	 *
+	 * <p> Description: The invitations read from a file and the lines that were rejected.</p>
+	 */
+	protected static class ParseResult {
+		/** One invitation per distinct email address, in file order. */
+		protected final List<Invitation> invitations = new ArrayList<>();
+
+		/** "line N: reason" for every line that could not be used. */
+		protected final List<String> rejected = new ArrayList<>();
+	}
+
+	/*******
+	 * <p> Method: ParseResult parse(Path file) </p>
+	 *
+	 * <p> Description: Read the whole file a line at a time.  Blank lines are ignored, a line
+	 * with a bad email address or role is rejected, and when an address appears more than once
+	 * only its first line is used.</p>
+	 *
+	 * @param file the CSV file to read
+	 *
+	 * @return the invitations and rejected lines
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	protected static ParseResult parse(Path file) throws IOException {
+		ParseResult result = new ParseResult();
+		Map<String, Invitation> byEmail = new LinkedHashMap<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				if (line.isBlank()) continue;
+				String[] columns = line.replace("\"", "").split("[,;]");
+				String email = columns[0].trim();
+				if (!looksLikeEmailAddress(email)) {
+					if (lineNumber == 1) continue;		// a header line
+					result.rejected.add("line " + lineNumber + ": \"" + email + "\" is not an email address");
+					continue;
+				}
+				String roles = rolesCSV(columns);
+				if (roles == null) {
+					result.rejected.add("line " + lineNumber + ": needs one or more of Admin, Staff, Student");
+					continue;
+				}
+				if (byEmail.containsKey(email)) {
+					result.rejected.add("line " + lineNumber + ": " + email + " is already listed");
+					continue;
+				}
+				byEmail.put(email, new Invitation(email, roles));
+			}
+		}
+		result.invitations.addAll(byEmail.values());
+		return result;
+	}
+
+	// Something before an @ and a dotted domain after it, with no spaces
+	private static boolean looksLikeEmailAddress(String email) {
+		int at = email.indexOf('@');
+		return at > 0 && at == email.lastIndexOf('@') && email.indexOf('.', at) > at + 1
+				&& !email.endsWith(".") && email.chars().noneMatch(Character::isWhitespace);
+	}
+
+	/*
+	 * The role columns as a CSV of role names in ROLES order, matching what the Admin Home page
+	 * stores for a single invitation, or null if a column is not a role or there are none.
+	 */
+	private static String rolesCSV(String[] columns) {
+		Set<String> given = new LinkedHashSet<>();
+		for (int i = 1; i < columns.length; i++) {
+			String role = columns[i].trim();
+			if (role.isEmpty()) continue;
+			String match = null;
+			for (String r : ROLES) {
+				if (r.equalsIgnoreCase(role)) match = r;
+			}
+			if (match == null) return null;
+			given.add(match);
+		}
+		if (given.isEmpty()) return null;
+		List<String> ordered = new ArrayList<>();
+		for (String r : ROLES) {
+			if (given.contains(r)) ordered.add(r);
+		}
+		return String.join(",", ordered);
+	}
+
+	/*******
+	 * <p> Method: void writeCodes(Path file, List&lt;Invitation&gt; invitations) </p>
+	 *
+	 * <p> Description: Write the invitations and their codes, one line each, through a buffered
+	 * writer so a large list is never built up as one string.  The roles are quoted because
+	 * they contain commas.</p>
+	 *
+	 * @param file the file to create or replace
+	 * @param invitations invitations whose codes have been generated
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	protected static void writeCodes(Path file, List<Invitation> invitations) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("email,roles,code");
+			out.newLine();
+			for (Invitation invitation : invitations) {
+				out.write(invitation.getEmailAddress());
+				out.write(",\"");
+				out.write(invitation.getRoles());
+				out.write("\",");
+				out.write(invitation.getCode());
+				out.newLine();
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package guiBulkInvitations;
+
+import java.io.File;
+
+import applicationMain.FoundationsMain;
+import entityClasses.User;
+import guiTools.FxAsync;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+/*******
+ * <p> Title: ViewBulkInvitations Class. </p>
+ *
+ * <p> Description: The Bulk Invitations Page View.  The admin picks a CSV file of email
+ * addresses and roles and a file to save the generated codes in; the import then runs in the
+ * background and its summary is shown on the page.  See ModelBulkInvitations for the file
+ * format.</p>
+ *
+ */
+public class ViewBulkInvitations {
+
+	private static double width = FoundationsMain.WINDOW_WIDTH;
+	private static double height = FoundationsMain.WINDOW_HEIGHT;
+
+	protected static Stage theStage;
+	protected static User theUser;
+
+	private static Pane theRootPane;
+	private static Scene theBulkInvitationsScene = null;
+	private static ViewBulkInvitations theView;
+
+	protected static Label label_Instructions = new Label(
+			"Choose a CSV file with one invitation per line: an email address, then the roles\n"
+			+ "(Admin, Staff, Student) separated by commas or semicolons.");
+	protected static Button button_Import = new Button("Generate Invitations");
+	protected static Label label_Status = new Label();
+
+	protected static Button button_Return = new Button("Return");
+	protected static Button button_Logout = new Button("Logout");
+	protected static Button button_Quit = new Button("Quit");
+
+	/*******
+	 * <p> Method: void displayBulkInvitations(Stage ps, User user) </p>
+	 *
+	 * <p> Description: Show the Bulk Invitations page.</p>
+	 *
+	 * @param ps the JavaFX Stage to use
+	 * @param user the admin who is logged in
+	 */
+	public static void displayBulkInvitations(Stage ps, User user) {
+		theStage = ps;
+		theUser = user;
+
+		if (theView == null) theView = new ViewBulkInvitations();
+		label_Status.setText("");
+
+		theStage.setTitle("Bulk Invitations Page");
+		theStage.setScene(theBulkInvitationsScene);
+		theStage.show();
+	}
+
+	private ViewBulkInvitations() {
+		theRootPane = new Pane();
+		theBulkInvitationsScene = new Scene(theRootPane, width, height);
+
+		Label label_PageTitle = new Label("Bulk Invitations Page");
+		setupLabelUI(label_PageTitle, "Arial", 28, width, Pos.CENTER, 0, 20);
+
+		setupLabelUI(label_Instructions, "Arial", 16, width - 40, Pos.BASELINE_LEFT, 20, 80);
+
+		setupButtonUI(button_Import, "Dialog", 16, 250, Pos.CENTER, 20, 140);
+		button_Import.setOnAction((event) -> importFile());
+
+		setupLabelUI(label_Status, "Arial", 16, width - 40, Pos.BASELINE_LEFT, 20, 190);
+
+		setupButtonUI(button_Return, "Dialog", 18, 210, Pos.CENTER, 20, 540);
+		button_Return.setOnAction((event) -> ControllerBulkInvitations.performReturn());
+
+		setupButtonUI(button_Logout, "Dialog", 18, 210, Pos.CENTER, 300, 540);
+		button_Logout.setOnAction((event) -> ControllerBulkInvitations.performLogout());
+
+		setupButtonUI(button_Quit, "Dialog", 18, 210, Pos.CENTER, 570, 540);
+		button_Quit.setOnAction((event) -> ControllerBulkInvitations.performQuit());
+
+		theRootPane.getChildren().addAll(label_PageTitle, label_Instructions, button_Import,
+				label_Status, button_Return, button_Logout, button_Quit);
+	}
+
+	// Ask for the two files, then run the import and show its summary when it is done
+	private static void importFile() {
+		FileChooser inputChooser = new FileChooser();
+		inputChooser.setTitle("Choose the invitations CSV");
+		inputChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+		File input = inputChooser.showOpenDialog(theStage);
+		if (input == null) return;
+
+		FileChooser outputChooser = new FileChooser();
+		outputChooser.setTitle("Save the invitation codes as");
+		outputChooser.setInitialDirectory(input.getParentFile());
+		outputChooser.setInitialFileName("invitation-codes.csv");
+		File output = outputChooser.showSaveDialog(theStage);
+		if (output == null) return;
+
+		button_Import.setDisable(true);
+		label_Status.setText("Generating invitations from " + input.getName() + "...");
+		FxAsync.deliver(ControllerBulkInvitations.performImport(input.toPath(), output.toPath()),
+				summary -> {
+					button_Import.setDisable(false);
+					label_Status.setText(summary);
+				},
+				error -> {
+					button_Import.setDisable(false);
+					label_Status.setText("Could not read " + input.getName() + ": " + error.getMessage());
+				});
+	}
+
+	private static void setupLabelUI(Label l, String ff, double f, double w, Pos p, double x, double y) {
+		l.setFont(Font.font(ff, f));
+		l.setMinWidth(w);
+		l.setAlignment(p);
+		l.setLayoutX(x);
+		l.setLayoutY(y);
+	}
+
+	private static void setupButtonUI(Button b, String ff, double f, double w, Pos p, double x, double y) {
+		b.setFont(Font.font(ff, f));
+		b.setMinWidth(w);
+		b.setAlignment(p);
+		b.setLayoutX(x);
+		b.setLayoutY(y);
+	}
+}
@@ -1,7 +1,5 @@
 package guiDeleteUser;
 
-import java.util.List;
-import javafx.collections.FXCollections;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -13,6 +11,7 @@ import javafx.stage.Stage;
 import applicationMain.FoundationsMain;
 import database.Database;
 import entityClasses.User;
+import guiTools.UserTypeahead;
 
 public class ViewDeleteUser {
 
@@ -57,7 +56,7 @@ public class ViewDeleteUser {
         setupLabelUI(label_PageTitle, "Arial", 28, width, Pos.CENTER, 0, 20);
 
         setupComboBoxUI(combobox_SelectUser, "Dialog", 16, 200, 280, 100);
-        updateUserList();
+        UserTypeahead.attach(combobox_SelectUser, localDatabase, "Type a user or name");
         
         // Delete User button calls controller method, sends username from combobox
         setupButtonUI(button_DeleteUser, "Dialog", 16, 200, Pos.CENTER, 280, 160);
@@ -91,11 +90,9 @@ public class ViewDeleteUser {
         );
     }
 
-    // Updates the ComboBox with all users in the database
+    // Clears the user picker; typing in it lists the matching users
     protected static void updateUserList() {
-        List<String> userList = localDatabase.getUserList();
-        combobox_SelectUser.setItems(FXCollections.observableArrayList(userList));
-        combobox_SelectUser.getSelectionModel().select(0);
+        UserTypeahead.clear(combobox_SelectUser);
     }
 
     private static void setupLabelUI(Label l, String ff, double f, double w, Pos p, double x, double y) {
@@ -1,115 +1,36 @@
 package guiFirstAdmin;
 
-public class PasswordValidator {
-	public static String passwordErrorMessage = "";		// The error message text
-	public static String passwordInput = "";			// The input being processed
-	public static int passwordIndexofError = -1;		// The index where the error was located
-	public static boolean foundUpperCase = false;
-	public static boolean foundLowerCase = false;
-	public static boolean foundNumericDigit = false;
-	public static boolean foundSpecialChar = false;
-	public static boolean foundLongEnough = false;
-	public static boolean notTooLong = false; 			// Student Note: made to ensure input isn't too long
-	private static String inputLine = "";				// The input line
-	private static char currentChar;					// The current character in the line
-	private static int currentCharNdx;					// The index of the current character
-	private static boolean running;						// The flag that specifies if the FSM is 
-														// running
-	public static String evaluatePassword(String input) {
-		// The following are the local variable used to perform the Directed Graph simulation
-		notTooLong = input.length() <= 32; 				// Student Note: nottoolong flag check
-		passwordErrorMessage = "";
-		passwordIndexofError = 0;			// Initialize the IndexofError
-		inputLine = input;					// Save the reference to the input line as a global
-		currentCharNdx = 0;					// The index of the current character
-		
-		if(input.length() <= 0) {
-			return "*** Error *** The password is empty!";
-		}
-		if (input.length() > 32) { 			//Student Note: Makes sure input isn't over 32 characters
-			return "*** Error *** The password is too long! Maximum allowed length is 32 characters.";				
-		}
-		
-		// The input is not empty, so we can access the first character
-		currentChar = input.charAt(0);		// The current character from the above indexed position
+import validation.PasswordEvaluator;
+import validation.PasswordResult;
 
-		// The Directed Graph simulation continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition to a next state.  This
-		// local variable is a working copy of the input.
-		passwordInput = input;				// Save a copy of the input
-		
-		// The following are the attributes associated with each of the requirements
-		foundUpperCase = false;				// Reset the Boolean flag
-		foundLowerCase = false;				// Reset the Boolean flag
-		foundNumericDigit = false;			// Reset the Boolean flag
-		foundSpecialChar = false;			// Reset the Boolean flag
-		foundLongEnough = false;			// Reset the Boolean flag
-		
-		// This flag determines whether the directed graph (FSM) loop is operating or not
-		running = true;						// Start the loop
+/*******
+ * <p> Title: PasswordValidator Class. </p>
+ *
+ * <p> Description: The password check used by the account pages.  The evaluator itself is
+ * validation.PasswordEvaluator, shared by every page; evaluate also reports which requirements
+ * are satisfied so a page can show them as the user types.</p>
+ *
+ */
+public class PasswordValidator {
 
-		// The Directed Graph simulation continues until the end of the input is reached or at some
-		// state the current character does not match any valid transition
-		while (running) {
-			// The cascading if statement sequentially tries the current character against all of
-			// the valid transitions, each associated with one of the requirements
-			if (currentChar >= 'A' && currentChar <= 'Z') {
-				System.out.println("Upper case letter found");
-				foundUpperCase = true;
-			} else if (currentChar >= 'a' && currentChar <= 'z') {
-				System.out.println("Lower case letter found");
-				foundLowerCase = true;
-			} else if (currentChar >= '0' && currentChar <= '9') {
-				System.out.println("Digit found");
-				foundNumericDigit = true;
-			} else if ("~`!@#$%^&*()_-+={}[]|\\:;\"'<>,.?/".indexOf(currentChar) >= 0) {
-				System.out.println("Special character found");
-				foundSpecialChar = true;
-			} else {
-				passwordIndexofError = currentCharNdx;
-				return "*** Error *** An invalid character has been found!";
-			}
-			if (currentCharNdx >= 7) {
-				System.out.println("At least 8 characters found");
-				foundLongEnough = true;
-			}
+	/**********
+	 * Check a password against every requirement.
+	 *
+	 * @param input		The password to check
+	 * @return			The result, including which requirements were found
+	 */
+	public static PasswordResult evaluate(String input) {
+		return PasswordEvaluator.evaluate(input);
+	}
 
-					
-			
-			// Go to the next character if there is one
-			currentCharNdx++;
-			if (currentCharNdx >= inputLine.length())
-				running = false;
-			else
-				currentChar = input.charAt(currentCharNdx);
-			
-			System.out.println();
-		}
-		
-		// Construct a String with a list of the requirement elements that were found.
-		String errMessage = "";
-		if (!foundUpperCase)
-			errMessage += "Upper case; ";
-		
-		if (!foundLowerCase)
-			errMessage += "Lower case; ";
-		
-		if (!foundNumericDigit)
-			errMessage += "Numeric digits; ";
-			
-		if (!foundSpecialChar)
-			errMessage += "Special character; ";
-			
-		if (!foundLongEnough)
-			errMessage += "Long Enough; ";
-		if (!notTooLong)
-			errMessage += "Too long; ";  			//Student  Note: added not too long error message
-		if (errMessage.equals(""))
-			return "";
-		
-		// If it gets here, there something was not found, so return an appropriate message
-		passwordIndexofError = currentCharNdx;
-		return errMessage + "conditions were not satisfied";
+	/**********
+	 * Check a password.
+	 *
+	 * @param input		The password to check
+	 * @return			An output string that is empty if the password is okay or it is a String
+	 * 						listing the requirements that were not satisfied
+	 */
+	public static String evaluatePassword(String input) {
+		return PasswordEvaluator.evaluate(input).getErrorMessage();
 	}
 }
- 
\ No newline at end of file
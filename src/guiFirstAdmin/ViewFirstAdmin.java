@@ -12,6 +12,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
+import validation.PasswordResult;
 
 
 /*******
@@ -451,44 +452,45 @@ public class ViewFirstAdmin {
 		String p = text_AdminPassword1.getText();
 		if (p == null) p = "";
 		
-		String err = guiNewAccount.PasswordValidator.evaluatePassword(p);
+		PasswordResult result = guiNewAccount.PasswordValidator.evaluate(p);
+		String err = result.getErrorMessage();
 		
-		if (guiNewAccount.PasswordValidator.foundUpperCase) {
+		if (result.isFoundUpperCase()) {
 			label_UpperCase.setText("At least one upper case letter - Satisfied");
 			label_UpperCase.setTextFill(Color.GREEN);
 		} else {
 			label_UpperCase.setText("At least one upper case letter - Not yet satisfied");
 			label_UpperCase.setTextFill(Color.RED);
 		}
-		if (guiNewAccount.PasswordValidator.foundLowerCase) {
+		if (result.isFoundLowerCase()) {
 			label_LowerCase.setText("At least one lower case letter - Satisfied");
 			label_LowerCase.setTextFill(Color.GREEN);
 		} else {
 			label_LowerCase.setText("At least one lower case letter - Not yet satisfied");
 			label_LowerCase.setTextFill(Color.RED);
 		}
-		if (guiNewAccount.PasswordValidator.foundNumericDigit) {
+		if (result.isFoundNumericDigit()) {
 			label_NumericDigit.setText("At least one numeric digit - Satisfied");
 			label_NumericDigit.setTextFill(Color.GREEN);
 		} else {
 			label_NumericDigit.setText("At least one numeric digit - Not yet satisfied");
 			label_NumericDigit.setTextFill(Color.RED);
 		}
-		if (guiNewAccount.PasswordValidator.foundSpecialChar) {
+		if (result.isFoundSpecialChar()) {
 			label_SpecialChar.setText("At least one special character - Satisfied");
 			label_SpecialChar.setTextFill(Color.GREEN);
 		} else {
 			label_SpecialChar.setText("At least one special character - Not yet satisfied");
 			label_SpecialChar.setTextFill(Color.RED);
 		}
-		if (guiNewAccount.PasswordValidator.foundLongEnough) {
+		if (result.isFoundLongEnough()) {
 			label_LongEnough.setText("At least eight characters - Satisfied");
 			label_LongEnough.setTextFill(Color.GREEN);
 		} else {
 			label_LongEnough.setText("At least eight characters - Not yet satisfied");
 			label_LongEnough.setTextFill(Color.RED);
 		}
-		if (guiNewAccount.PasswordValidator.notTooLong) {
+		if (result.isNotTooLong()) {
 			label_NotTooLong.setText("Not more than 32 characters - Satisfied");
 			label_NotTooLong.setTextFill(Color.GREEN);
 		} else {
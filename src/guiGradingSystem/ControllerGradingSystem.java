@@ -4,9 +4,11 @@ import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import entityClasses.User;
 import entityClasses.GradingParameter;
+import database.AsyncDatabase;
 import database.Database;
+import guiTools.FxAsync;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /*******
  * <p> Title: ControllerGradingSystem Class </p>
@@ -19,21 +21,24 @@ import java.util.stream.Collectors;
 public class ControllerGradingSystem {
 
     private static Database theDatabase = applicationMain.FoundationsMain.database;
+    private static AsyncDatabase.LatestRequest<List<User>> studentLoads =
+            applicationMain.FoundationsMain.asyncDatabase.newLatestRequest();
 
     // --- Navigation & Data Loading ---
     
     /*******
      * <p> Method: prepareStudentList() </p>
-     * * <p> Description: Fetches all users from the database, filters them to include only students, 
-     * and updates the Model's student list. This prepares the data for the Student List View.</p>
+     * * <p> Description: Fetches the students from the database (see Database.getStudents)
+     * and updates the Model's student list. This prepares the data for the Student List View.
+     * The users are fetched in the background and the Model is updated on the JavaFX thread,
+     * so the returned future completes before the Model changes.</p>
+     * * @return the pending list of students
      */
-    public static void prepareStudentList() {
-        // Fetch all users, filter for students, update Model
-        List<User> allUsers = theDatabase.getAllUsers();
-        List<User> students = allUsers.stream()
-                .filter(u -> u.getNewRole2() || (u.getNewRole1() == false && u.getAdminRole() == false))
-                .collect(Collectors.toList());
-        ModelGradingSystem.setStudentList(students);
+    public static CompletableFuture<List<User>> prepareStudentList() {
+        // Fetch the students off the FX thread, then update the Model
+        CompletableFuture<List<User>> students = studentLoads.submit(db -> db.getStudents());
+        FxAsync.deliver(students, ModelGradingSystem::setStudentList, error -> { });
+        return students;
     }
     
     /*******
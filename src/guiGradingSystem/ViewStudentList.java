@@ -7,6 +7,7 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 import entityClasses.User;
+import guiTools.FxAsync;
 
 /*******
  * <p> Title: ViewStudentList Class </p>
@@ -41,8 +42,11 @@ public class ViewStudentList {
         
         if (theRootPane == null) initialize();
         
-        // Ask Controller to load data into the Model
-        ControllerGradingSystem.prepareStudentList();
+        // Ask Controller to load data into the Model; the table fills in when the load finishes
+        tableStudents.setPlaceholder(new Label("Loading students..."));
+        FxAsync.deliver(ControllerGradingSystem.prepareStudentList(),
+                students -> tableStudents.setPlaceholder(new Label("No students")),
+                error -> tableStudents.setPlaceholder(new Label("Could not load students")));
         populateTable();
         
         theStage.setTitle("Grading System - Student List");
@@ -1,7 +1,7 @@
 package guiListUsers;
 
-import java.util.List;
-import entityClasses.User;
+import database.UserSort;
+import guiTools.FxAsync;
 
 /*******
  * <p> Title: Controller List User </p>
@@ -20,6 +20,11 @@ public class ControllerListUsers {
     private ModelListUsers model;
     private ViewListUsers view;
 
+    // What the table is showing, so a repeated request does not reload it
+    private String shownPrefix = null;
+    private UserSort shownSort = null;
+    private boolean shownAscending = true;
+
    //Private constructor
     private ControllerListUsers() {
         this.model = ModelListUsers.getInstance();
@@ -35,14 +40,29 @@ public class ControllerListUsers {
     }
 
     /**
-     * Fetches the full list of users from the Model and passes it to the View
-     * to be displayed in the table.
+     * Counts the users matching the View's filter and gives the View a list of them, sorted
+     * as the View asks, that loads its pages from the Model as they are shown.  Called each
+     * time the screen is displayed, so the list is always current.
      */
     public void populateUserTable() {
-        //Get the list of all users from the Model.
-        List<User> allUsers = model.getAllUsers();
-        
-        //Pass the list directly to the View.
-        view.setUserData(allUsers);
+        shownSort = null;
+        filterOrSortChanged();
+    }
+
+    /**
+     * Reloads the table if the View's filter or sort differs from what it is showing.
+     */
+    public void filterOrSortChanged() {
+        String prefix = view.getFilter();
+        UserSort sort = view.getSort();
+        boolean ascending = view.isAscending();
+        if (sort == shownSort && ascending == shownAscending && prefix.equals(shownPrefix)) return;
+        shownPrefix = prefix;
+        shownSort = sort;
+        shownAscending = ascending;
+
+        FxAsync.deliver(model.countUsers(prefix),
+                count -> view.setUserData(model.newUserPageList(prefix, sort, ascending, count), count),
+                error -> view.setUserData(model.newUserPageList(prefix, sort, ascending, 0), 0));
     }
-}
\ No newline at end of file
+}
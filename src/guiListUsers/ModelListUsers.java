@@ -1,13 +1,18 @@
 package guiListUsers;
 
-import java.util.List;
-import database.Database;
+import java.util.concurrent.CompletableFuture;
+
+import applicationMain.FoundationsMain;
+import database.AsyncDatabase;
+import database.UserSort;
 import entityClasses.User;
 
 /*******
  * <p> Title: Model List User </p>
  * 
- * <p> Description: It's responsible for fetching the list of users from the database. </p>
+ * <p> Description: It's responsible for fetching the list of users from the database.  The
+ * list is read a page at a time, sorted and filtered by the database, so only the users on
+ * screen are ever loaded. </p>
  * 
  * 
  * @author Daniel Ortiz Figueroa
@@ -18,15 +23,11 @@ import entityClasses.User;
 public class ModelListUsers {
 	// The single, static instance of the Model
 	private static ModelListUsers instance = null;
-    private Database database;
+    // Counts for the list; a newer filter cancels the count before it
+    private AsyncDatabase.LatestRequest<Integer> counts;
     //  Private constructor to prevent direct instantiation
     private ModelListUsers() {
-        database = new Database();
-        try {
-            database.connectToDatabase();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        counts = FoundationsMain.asyncDatabase.newLatestRequest();
     }
     // Public static method to get the single instance
     public static ModelListUsers getInstance() {
@@ -37,11 +38,26 @@ public class ModelListUsers {
     }
 
     /**
-     * Fetches a list of all User objects from the database.
-     * @return A List of User objects.
+     * Counts, in the background, the users the list will show.
+     * @param prefix Only users whose user name, first or last name or email address starts with
+     * this; null or empty for all users.
+     * @return The pending count.
+     */
+    public CompletableFuture<Integer> countUsers(String prefix) {
+        return counts.submit(db -> db.countUserDirectory(prefix));
+    }
+
+    /**
+     * Builds the table items for a list of users that loads its pages as they are shown.
+     * @param prefix The filter, as for countUsers.
+     * @param sort The column to sort on.
+     * @param ascending true for A to Z.
+     * @param count The number of users, from countUsers.
+     * @return The items.
      */
-    public List<User> getAllUsers() {
-        return database.getAllUsers();
+    public UserPageList newUserPageList(String prefix, UserSort sort, boolean ascending, int count) {
+        return new UserPageList(count, (offset, pageSize) -> FoundationsMain.asyncDatabase.supply(
+                db -> db.getUserDirectoryPage(prefix, sort, ascending, offset, pageSize)));
     }
 
 }
@@ -0,0 +1,98 @@
+package guiListUsers;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import entityClasses.User;
+import guiTools.FxAsync;
+import javafx.collections.ObservableListBase;
+
+/*******
+ * <p> Title: User Page List </p>
+ *
+ * <p> Description: The items of the List Users table.  It reports the size of the whole user
+ * list but only holds the pages of it the table has asked for.  A row whose page has not
+ * arrived yet shows a placeholder; its page is loaded in the background and the rows are
+ * replaced when it arrives.  Only the most recently used pages are kept, so scrolling through
+ * any number of users holds a few thousand at most.  Used only on the JavaFX application
+ * thread.</p>
+ *
+ */
+public class UserPageList extends ObservableListBase<User> {
+
+    /**
+     * Loads one page of users in the background.
+     */
+    @FunctionalInterface
+    public interface PageLoader {
+        CompletableFuture<List<User>> load(int offset, int count);
+    }
+
+    /** Users read per query. */
+    public static final int PAGE_SIZE = 100;
+
+    // Pages kept; the least recently shown is dropped first
+    private static final int PAGES_KEPT = 30;
+
+    // Shown in a row until its page arrives
+    private static final User LOADING = new User("", null, "Loading...", "", "", "", "",
+            false, false, false);
+
+    private final int size;
+    private final PageLoader loader;
+    private final Map<Integer, List<User>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<User>> eldest) {
+            return size() > PAGES_KEPT;
+        }
+    };
+    private final Set<Integer> requested = new HashSet<>();
+
+    /**
+     * @param size the number of users in the whole list
+     * @param loader loads the pages
+     */
+    public UserPageList(int size, PageLoader loader) {
+        this.size = size;
+        this.loader = loader;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public User get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int page = index / PAGE_SIZE;
+        List<User> users = pages.get(page);
+        if (users == null) {
+            request(page);
+            return LOADING;
+        }
+        int i = index % PAGE_SIZE;
+        // Fewer users than counted if some were deleted since
+        return (i < users.size()) ? users.get(i) : LOADING;
+    }
+
+    // Load a page unless it is already on its way
+    private void request(int page) {
+        if (!requested.add(page)) return;
+        int from = page * PAGE_SIZE;
+        FxAsync.deliver(loader.load(from, PAGE_SIZE), users -> {
+            requested.remove(page);
+            pages.put(page, users);
+            int to = Math.min(size, from + PAGE_SIZE);
+            beginChange();
+            for (int i = from; i < to; i++) nextSet(i, LOADING);
+            endChange();
+        }, error -> requested.remove(page));
+    }
+}
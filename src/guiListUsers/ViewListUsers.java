@@ -1,14 +1,15 @@
 package guiListUsers;
 
+import database.UserSort;
 import entityClasses.User;
 import guiAdminHome.ViewAdminHome;
-import javafx.collections.FXCollections;
 
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.Pane;
 import javafx.scene.text.Font;
@@ -35,6 +36,8 @@ public class ViewListUsers {
     private Scene scene;
     private Pane rootPane;
     private TableView<User> userTable = new TableView<>();
+    private TextField filterField = new TextField();
+    private Label countLabel = new Label();
 
     // Private constructor 
     private ViewListUsers() {}
@@ -86,6 +89,16 @@ private void initializeView() {
     TableColumn<User, String> rolesCol = new TableColumn<>("Roles");
     rolesCol.setCellValueFactory(new PropertyValueFactory<>("rolesAsString"));
 
+    // Each column sorts the whole list in the database, not just the rows that are loaded
+    userCol.setUserData(UserSort.USER_NAME);
+    nameCol.setUserData(UserSort.FULL_NAME);
+    emailCol.setUserData(UserSort.EMAIL_ADDRESS);
+    rolesCol.setUserData(UserSort.ROLES);
+    userTable.setSortPolicy(table -> {
+        ControllerListUsers.getInstance().filterOrSortChanged();
+        return true;
+    });
+
     // Set column widths
     userCol.setPrefWidth(120);
     nameCol.setPrefWidth(150);
@@ -102,24 +115,60 @@ private void initializeView() {
     title.setLayoutX(20);
     title.setLayoutY(20);
 
+    filterField.setPromptText("Search name or email");
+    filterField.setLayoutX(400);
+    filterField.setLayoutY(25);
+    filterField.setPrefWidth(230);
+    filterField.textProperty().addListener((obs, oldText, newText) ->
+            ControllerListUsers.getInstance().filterOrSortChanged());
+
     userTable.setLayoutX(20);
     userTable.setLayoutY(60);
     userTable.setPrefSize(610, 350);
 
+    countLabel.setFont(Font.font("Arial", 14));
+    countLabel.setLayoutX(250);
+    countLabel.setLayoutY(436);
+
     Button backButton = new Button("Back to Admin Home");
     backButton.setFont(Font.font("Dialog", 16));
     backButton.setLayoutX(20);
     backButton.setLayoutY(430);
     backButton.setOnAction(e -> ViewAdminHome.displayAdminHome(theStage, currentUser));
 
-    rootPane.getChildren().addAll(title, userTable, backButton);
+    rootPane.getChildren().addAll(title, filterField, userTable, backButton, countLabel);
 }
 
     /**
      * Public method to allow the Controller to set the table's data.
      * @param userList The list of users from the Model.
+     * @param count The number of users in the list.
+     */
+    public void setUserData(UserPageList userList, int count) {
+        userTable.setItems(userList);
+        countLabel.setText(count + (count == 1 ? " user" : " users"));
+    }
+
+    /**
+     * @return The text typed in the search field, trimmed.
+     */
+    public String getFilter() {
+        return filterField.getText().trim();
+    }
+
+    /**
+     * @return The sort the user picked by clicking a column header, or last name when none.
+     */
+    public UserSort getSort() {
+        if (userTable.getSortOrder().isEmpty()) return UserSort.LAST_NAME;
+        return (UserSort) userTable.getSortOrder().get(0).getUserData();
+    }
+
+    /**
+     * @return true unless the sorted column is sorted Z to A.
      */
-    public void setUserData(java.util.List<User> userList) {
-        userTable.setItems(FXCollections.observableArrayList(userList));
+    public boolean isAscending() {
+        return userTable.getSortOrder().isEmpty()
+                || userTable.getSortOrder().get(0).getSortType() == TableColumn.SortType.ASCENDING;
     }
 }
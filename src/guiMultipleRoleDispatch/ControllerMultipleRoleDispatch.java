@@ -1,5 +1,10 @@
 package guiMultipleRoleDispatch;
 
+import java.util.function.BiConsumer;
+
+import entityClasses.User;
+import javafx.stage.Stage;
+
 public class ControllerMultipleRoleDispatch {
 
 	/*-********************************************************************************************
@@ -25,30 +30,11 @@ public class ControllerMultipleRoleDispatch {
 		// Fetch the role from the SelectRole ComboBox
 		String role = guiMultipleRoleDispatch.ViewMultipleRoleDispatch.combobox_SelectRole.getValue();
 
-		// See if Admin
-		if (role.compareTo("Admin") == 0) {
-			
-			// It is Admin Role
-			guiAdminHome.ViewAdminHome.displayAdminHome(
-					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theStage, 
-					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theUser);
-			
-		// See if Role1
-		} else if (role.compareTo("Staff") == 0) {
-
-			// It is Role1 Role
-			guiRole1.ViewRole1Home.displayRole1Home(
-					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theStage, 
-					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theUser);
-			
-		// See if Role2
-		} else if (role.compareTo("Student") == 0) {
-			
-			// It is Role 2 Role
-			guiRole2.ViewRole2Home.displayRole2Home(
-					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theStage, 
+		// Look the role up in the dispatch table
+		BiConsumer<Stage, User> homePage = ModelMultipleRoleDispatch.getHomePage(role);
+		if (homePage != null) {
+			homePage.accept(guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theStage, 
 					guiMultipleRoleDispatch.ViewMultipleRoleDispatch.theUser);
-			
 		} else {
 			// Invalid role
 			System.out.println("*** ERROR *** GUIMultipleRoleDispatch was asked to dispatch to " +
@@ -1,20 +1,109 @@
 package guiMultipleRoleDispatch;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import database.Authentication;
+import entityClasses.User;
+import javafx.stage.Stage;
+
 /*******
  * <p> Title: ModelMultipleRoleDispatch Class. </p>
- * 
- * <p> Description: The ModelMultipleRoleDispatch Page Model.  This class is not used as there is
- * no data manipulated by this MVC beyond accepting role information and saving it in the
- * database.</p>
- * 
+ *
+ * <p> Description: The ModelMultipleRoleDispatch Page Model.  It holds the dispatch table used
+ * at login: for every combination of roles (the bitmask from database.Authentication) it knows
+ * the role choices to offer and, when there is exactly one role, which home page to open.  The
+ * table is built once when the class is loaded, so logging in is a lookup rather than a series
+ * of role checks.</p>
+ *
  * <p> Copyright: Lynn Robert Carter © 2025 </p>
- * 
+ *
  * @author Lynn Robert Carter
- * 
+ *
  * @version 1.00		2025-08-15 Initial version
- *  
+ *
  */
 
 public class ModelMultipleRoleDispatch {
 
+	// The first entry of every role choice list
+	static final String SELECT_A_ROLE = "<Select a role>";
+
+	// The role names shown to the user and their home pages, in the order they are offered
+	private static final int[] ROLE_BITS = {
+			Authentication.ROLE_ADMIN, Authentication.ROLE_STAFF, Authentication.ROLE_STUDENT };
+	private static final String[] ROLE_NAMES = { "Admin", "Staff", "Student" };
+	private static final List<BiConsumer<Stage, User>> ROLE_HOME_PAGES = List.of(
+			guiAdminHome.ViewAdminHome::displayAdminHome,
+			guiRole1.ViewRole1Home::displayRole1Home,
+			guiRole2.ViewRole2Home::displayRole2Home);
+
+	// Indexed by role bitmask
+	private static final List<List<String>> roleChoices = new ArrayList<>();
+	private static final List<BiConsumer<Stage, User>> singleRoleHomePages = new ArrayList<>();
+
+	// Indexed by role name
+	private static final Map<String, BiConsumer<Stage, User>> homePagesByName = new HashMap<>();
+
+	static {
+		for (int roles = 0; roles < Authentication.ROLE_COMBINATIONS; roles++) {
+			List<String> choices = new ArrayList<>();
+			choices.add(SELECT_A_ROLE);
+			BiConsumer<Stage, User> onlyHome = null;
+			for (int i = 0; i < ROLE_BITS.length; i++) {
+				if ((roles & ROLE_BITS[i]) != 0) {
+					choices.add(ROLE_NAMES[i]);
+					onlyHome = ROLE_HOME_PAGES.get(i);
+				}
+			}
+			roleChoices.add(Collections.unmodifiableList(choices));
+			singleRoleHomePages.add(Integer.bitCount(roles) == 1 ? onlyHome : null);
+		}
+		for (int i = 0; i < ROLE_NAMES.length; i++)
+			homePagesByName.put(ROLE_NAMES[i], ROLE_HOME_PAGES.get(i));
+	}
+
+	/**********
+	 * <p> Method: getRoleChoices(int roles) </p>
+	 *
+	 * <p> Description: The entries for the role ComboBox: "&lt;Select a role&gt;" followed by
+	 * the name of each role in the bitmask.</p>
+	 *
+	 * @param roles the role bitmask
+	 *
+	 * @return the choices, which must not be modified
+	 */
+	public static List<String> getRoleChoices(int roles) {
+		return roleChoices.get(roles);
+	}
+
+	/**********
+	 * <p> Method: getSingleRoleHomePage(int roles) </p>
+	 *
+	 * <p> Description: The home page for a user who plays exactly one role.</p>
+	 *
+	 * @param roles the role bitmask
+	 *
+	 * @return the page's display method, or null when the bitmask has no role or several
+	 */
+	public static BiConsumer<Stage, User> getSingleRoleHomePage(int roles) {
+		return singleRoleHomePages.get(roles);
+	}
+
+	/**********
+	 * <p> Method: getHomePage(String roleName) </p>
+	 *
+	 * <p> Description: The home page for a role chosen by name from the role ComboBox.</p>
+	 *
+	 * @param roleName the name shown in the ComboBox
+	 *
+	 * @return the page's display method, or null if there is no role by that name
+	 */
+	public static BiConsumer<Stage, User> getHomePage(String roleName) {
+		return homePagesByName.get(roleName);
+	}
 }
@@ -1,7 +1,5 @@
 package guiMultipleRoleDispatch;
 
-import java.util.ArrayList;
-import java.util.List;
 import javafx.collections.FXCollections;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -12,7 +10,7 @@ import javafx.scene.layout.Pane;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
-import database.Database;
+import database.Authentication;
 import entityClasses.User;
 
 /*******
@@ -73,10 +71,6 @@ public class ViewMultipleRoleDispatch {
 	private static ViewMultipleRoleDispatch theView;	// Used to determine if instantiation of
 														// the class is needed
 
-
-	// Reference for the in-memory database so this package has access
-	private static Database theDatabase = applicationMain.FoundationsMain.database;
-
 	protected static Stage theStage;			// The Stage that JavaFX has established for us
 	private static Pane theRootPane;			// The Pane that holds all the GUI widgets 
 	protected static User theUser;				// The current user of the application
@@ -99,6 +93,9 @@ public class ViewMultipleRoleDispatch {
 		if (theView == null) theView = new ViewMultipleRoleDispatch();
 		
 		// Populate the dynamic aspects of the GUI with the data from the user and the current
+		label_UserDetails.setText("User: " + theUser.getUserName());
+		combobox_SelectRole.setItems(FXCollections.observableArrayList(
+				ModelMultipleRoleDispatch.getRoleChoices(Authentication.rolesOf(theUser))));
 		combobox_SelectRole.getSelectionModel().select(0);
 		
 		// Set the title for the window, display the page, and wait for the Admin to do something
@@ -142,16 +139,7 @@ public class ViewMultipleRoleDispatch {
 
 		setupComboBoxUI(combobox_SelectRole, "Dialog", 16, 100, 305, 105);
 
-		List<String> list = new ArrayList<String>();	// Create a new list empty list
-		theDatabase.getUserAccountDetails(theUser.getUserName());
-
-		System.out.println("*** Getting multiple role details for user: " + theUser.getUserName());
-		list = new ArrayList<String>();
-		list.add("<Select a role>");
-		if (theDatabase.getCurrentAdminRole()) list.add("Admin");
-		if (theDatabase.getCurrentNewRole1()) list.add("Staff");
-		if (theDatabase.getCurrentNewRole2()) list.add("Student");
-		combobox_SelectRole.setItems(FXCollections.observableArrayList(list));
+		// The role choices come from the dispatch table each time the page is displayed
 
 		setupButtonUI(button_PerformRole, "Dialog", 16, 100, Pos.CENTER, 495, 105);
 		button_PerformRole.setOnAction((event) -> 
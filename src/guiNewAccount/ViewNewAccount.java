@@ -14,6 +14,7 @@ import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import database.Database;
 import entityClasses.User;
+import validation.PasswordResult;
 
 
 /*******
@@ -459,44 +460,45 @@ public class ViewNewAccount {
 		String p = text_Password1.getText();
 		if (p == null) p = "";
 		
-		String err = PasswordValidator.evaluatePassword(p);
+		PasswordResult result = PasswordValidator.evaluate(p);
+		String err = result.getErrorMessage();
 		
-		if (PasswordValidator.foundUpperCase) {
+		if (result.isFoundUpperCase()) {
 			label_UpperCase.setText("At least one upper case letter - Satisfied");
 			label_UpperCase.setTextFill(Color.GREEN);
 		} else {
 			label_UpperCase.setText("At least one upper case letter - Not yet satisfied");
 			label_UpperCase.setTextFill(Color.RED);
 		}
-		if (PasswordValidator.foundLowerCase) {
+		if (result.isFoundLowerCase()) {
 			label_LowerCase.setText("At least one lower case letter - Satisfied");
 			label_LowerCase.setTextFill(Color.GREEN);
 		} else {
 			label_LowerCase.setText("At least one lower case letter - Not yet satisfied");
 			label_LowerCase.setTextFill(Color.RED);
 		}
-		if (PasswordValidator.foundNumericDigit) {
+		if (result.isFoundNumericDigit()) {
 			label_NumericDigit.setText("At least one numeric digit - Satisfied");
 			label_NumericDigit.setTextFill(Color.GREEN);
 		} else {
 			label_NumericDigit.setText("At least one numeric digit - Not yet satisfied");
 			label_NumericDigit.setTextFill(Color.RED);
 		}
-		if (PasswordValidator.foundSpecialChar) {
+		if (result.isFoundSpecialChar()) {
 			label_SpecialChar.setText("At least one special character - Satisfied");
 			label_SpecialChar.setTextFill(Color.GREEN);
 		} else {
 			label_SpecialChar.setText("At least one special character - Not yet satisfied");
 			label_SpecialChar.setTextFill(Color.RED);
 		}
-		if (PasswordValidator.foundLongEnough) {
+		if (result.isFoundLongEnough()) {
 			label_LongEnough.setText("At least eight characters - Satisfied");
 			label_LongEnough.setTextFill(Color.GREEN);
 		} else {
 			label_LongEnough.setText("At least eight characters - Not yet satisfied");
 			label_LongEnough.setTextFill(Color.RED);
 		}
-		if (PasswordValidator.notTooLong) {
+		if (result.isNotTooLong()) {
 			label_NotTooLong.setText("Not more than 32 characters - Satisfied");
 			label_NotTooLong.setTextFill(Color.GREEN);
 		} else {
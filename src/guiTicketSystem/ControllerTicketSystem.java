@@ -1,11 +1,13 @@
 package guiTicketSystem;
 
 import applicationMain.FoundationsMain;
+import database.AsyncDatabase;
 import database.Database;
 import entityClasses.Ticket;
 import entityClasses.TicketComment;
 import entityClasses.User;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javafx.stage.Stage;
 import guiAdminHome.ViewAdminHome;
 import guiRole1.ViewRole1Home;
@@ -21,6 +23,9 @@ import guiUserLogin.ViewUserLogin;
 public class ControllerTicketSystem {
 
     private static Database theDatabase = FoundationsMain.database;
+    /** Ticket list loads; a new filter change cancels the load before it. */
+    private static AsyncDatabase.LatestRequest<List<Ticket>> ticketLoads =
+            FoundationsMain.asyncDatabase.newLatestRequest();
     protected static Stage theStage;
     protected static User theUser;
     protected static ViewTicketSystem theMainView;
@@ -46,16 +51,20 @@ public class ControllerTicketSystem {
     }
 
     /**********
-     * Load tickets with filters.
+     * Load tickets with filters in the background. Starting a new load
+     * cancels the previous one, so typing in the search box only ever
+     * shows the results for the latest text.
      *
      * @param keyword      search in title/body
      * @param statusFilter "OPEN", "CLOSED", or null for all
      * @param onlyMine     if true, only current user's tickets
+     * @return the pending list of tickets (null when no one is logged in)
      */
-    protected static List<Ticket> loadTickets(String keyword, String statusFilter, boolean onlyMine) {
-        if (theUser == null) return null;
+    protected static CompletableFuture<List<Ticket>> loadTickets(String keyword, String statusFilter,
+            boolean onlyMine) {
+        if (theUser == null) return CompletableFuture.completedFuture(null);
         String creatorUserName = onlyMine ? theUser.getUserName() : null;
-        return theDatabase.getTickets(keyword, statusFilter, creatorUserName);
+        return ticketLoads.submit(db -> db.getTickets(keyword, statusFilter, creatorUserName));
     }
 
     /**********
@@ -1,7 +1,7 @@
 package guiTicketSystem;
 
 import entityClasses.Ticket;
-import java.util.List;
+import guiTools.FxAsync;
 
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
@@ -189,7 +189,8 @@ public class ViewTicketSystem {
      * <p>Method: reloadTable()</p>
      *
      * <p>Reloads the ticket table based on current filter selections:
-     * keyword, status filter, and ownership filter.</p>
+     * keyword, status filter, and ownership filter. The tickets are loaded
+     * in the background; the table says so until they arrive.</p>
      */
     public void reloadTable() {
         String keyword = txtSearchTitle.getText();
@@ -200,10 +201,15 @@ public class ViewTicketSystem {
 
         boolean onlyMine = chkMineOnly.isSelected();
 
-        List<Ticket> tickets = ControllerTicketSystem.loadTickets(keyword, statusFilter, onlyMine);
-        tblTickets.getItems().clear();
-        if (tickets != null) {
-            tblTickets.getItems().addAll(tickets);
-        }
+        tblTickets.setPlaceholder(new Label("Loading tickets..."));
+        FxAsync.deliver(ControllerTicketSystem.loadTickets(keyword, statusFilter, onlyMine),
+                tickets -> {
+                    tblTickets.setPlaceholder(new Label("No tickets"));
+                    tblTickets.getItems().clear();
+                    if (tickets != null) {
+                        tblTickets.getItems().addAll(tickets);
+                    }
+                },
+                error -> tblTickets.setPlaceholder(new Label("Could not load tickets")));
     }
 }
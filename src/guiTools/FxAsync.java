@@ -0,0 +1,49 @@
+package guiTools;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+/*******
+ * <p> Title: FxAsync Class. </p>
+ *
+ * <p> Description: Brings the result of a background database load (see
+ * database.AsyncDatabase) back to the JavaFX application thread, where the
+ * view may safely update its widgets.  A load that was cancelled because a
+ * newer one replaced it delivers nothing, so stale results never overwrite
+ * fresh ones.</p>
+ *
+ */
+public class FxAsync {
+
+	/**********
+	 * <p> Method: deliver(CompletableFuture&lt;T&gt; future, Consumer&lt;T&gt; onResult,
+	 * Consumer&lt;Throwable&gt; onError) </p>
+	 *
+	 * <p> Description: Run onResult with the load's result, or onError with
+	 * what went wrong, on the JavaFX application thread once the load
+	 * finishes.  Neither runs if the load is cancelled.</p>
+	 *
+	 * @param <T> the type of the loaded data
+	 * @param future the background load
+	 * @param onResult what to do with the result
+	 * @param onError what to do if the load failed
+	 */
+	public static <T> void deliver(CompletableFuture<T> future, Consumer<T> onResult,
+			Consumer<Throwable> onError) {
+		future.whenComplete((result, error) -> {
+			if (error == null) {
+				Platform.runLater(() -> onResult.accept(result));
+				return;
+			}
+			Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+					? error.getCause() : error;
+			if (cause instanceof CancellationException) return;	// replaced by a newer load
+			cause.printStackTrace();
+			Platform.runLater(() -> onError.accept(cause));
+		});
+	}
+}
@@ -0,0 +1,82 @@
+package guiTools;
+
+import applicationMain.FoundationsMain;
+import database.Database;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListCell;
+
+/*******
+ * <p> Title: UserTypeahead Class. </p>
+ *
+ * <p> Description: Turns a ComboBox of user names into a typeahead picker.  Instead of every
+ * account, the drop-down holds the few users whose user name or name starts with what has been
+ * typed (see Database.findUserNames), each shown with their display name.  The ComboBox's value
+ * is still a user name, so the pages that read it do not change; it is null until a user is
+ * picked or a name is typed and entered.</p>
+ *
+ */
+public class UserTypeahead {
+
+	/** The most users listed under the editor at once. */
+	public static final int SUGGESTIONS = 15;
+
+	/**********
+	 * <p> Method: attach(ComboBox&lt;String&gt; box, Database database, String prompt) </p>
+	 *
+	 * <p> Description: Make the ComboBox editable, list the matching users as the editor's
+	 * text changes, and start loading the user index in the background so the first keystroke
+	 * does not wait for it.</p>
+	 *
+	 * @param box the ComboBox to turn into a picker
+	 * @param database the database to search
+	 * @param prompt the text shown while nothing has been typed
+	 */
+	public static void attach(ComboBox<String> box, Database database, String prompt) {
+		box.setEditable(true);
+		box.setPromptText(prompt);
+		box.setVisibleRowCount(10);
+		box.setCellFactory(list -> new ListCell<String>() {
+			@Override
+			protected void updateItem(String userName, boolean empty) {
+				super.updateItem(userName, empty);
+				if (empty || userName == null) {
+					setText(null);
+					return;
+				}
+				String name = database.getUserDisplayName(userName);
+				setText((name == null || name.isEmpty()) ? userName : userName + "  (" + name + ")");
+			}
+		});
+		box.getEditor().textProperty().addListener((observable, oldText, newText) -> {
+			// The editor also shows the value once one is picked; that is not a new search
+			if (newText == null || newText.equals(box.getValue())) return;
+			box.getItems().setAll(database.findUserNames(newText, SUGGESTIONS));
+			if (box.getItems().isEmpty()) {
+				box.hide();
+			} else if (box.getEditor().isFocused() && !box.isShowing()) {
+				box.show();
+			}
+		});
+		// Opening the drop-down before typing lists users from the start of the index
+		box.setOnShowing(event -> {
+			if (box.getItems().isEmpty()) {
+				box.getItems().setAll(database.findUserNames(box.getEditor().getText(), SUGGESTIONS));
+			}
+		});
+		FoundationsMain.asyncDatabase.run(Database::loadUserIndex);
+	}
+
+	/**********
+	 * <p> Method: clear(ComboBox&lt;String&gt; box) </p>
+	 *
+	 * <p> Description: Forget the picked user and what has been typed, e.g. when the page is
+	 * shown again or the picked user has been deleted.</p>
+	 *
+	 * @param box a ComboBox set up by attach
+	 */
+	public static void clear(ComboBox<String> box) {
+		box.setValue(null);
+		box.getEditor().clear();
+		box.getItems().clear();
+	}
+}
@@ -1,7 +1,9 @@
 package guiUserLogin;
 
+import database.Authentication;
 import database.Database;
 import entityClasses.User;
+import guiMultipleRoleDispatch.ModelMultipleRoleDispatch;
 import javafx.stage.Stage;
 
 public class ControllerUserLogin {
@@ -37,10 +39,10 @@ public class ControllerUserLogin {
 		theStage = ts;
 		String username = ViewUserLogin.text_Username.getText();
 		String password = ViewUserLogin.text_Password.getText();
-    	boolean loginResult = false;
     	
-		// Fetch the user and verify the username
-     	if (theDatabase.getUserAccountDetails(username) == false) {
+		// Check the username and password and fetch the user and roles in one step
+		Authentication login = theDatabase.authenticate(username, password);
+     	if (login == null) {
      		// Don't provide too much information.  Don't say the username is invalid or the
      		// password is invalid.  Just say the pair is invalid.
     		ViewUserLogin.alertUsernamePasswordError.setContentText(
@@ -48,57 +50,24 @@ public class ControllerUserLogin {
     		ViewUserLogin.alertUsernamePasswordError.showAndWait();
     		return;
     	}
-		System.out.println("*** Username is valid");
-		
-		// Check to see that the login password matches the account password
-    	String actualPassword = theDatabase.getCurrentPassword();
-    	
-    	if (password.compareTo(actualPassword) != 0) {
-    		ViewUserLogin.alertUsernamePasswordError.setContentText(
-    				"Incorrect username/password. Try again!");
-    		ViewUserLogin.alertUsernamePasswordError.showAndWait();
-    		return;
-    	}
-		System.out.println("*** Password is valid for this user");
+		System.out.println("*** Username and password are valid");
 		
 		// Establish this user's details
-    	User user = new User(username, password, theDatabase.getCurrentFirstName(), 
-    			theDatabase.getCurrentMiddleName(), theDatabase.getCurrentLastName(), 
-    			theDatabase.getCurrentPreferredFirstName(), theDatabase.getCurrentEmailAddress(), 
-    			theDatabase.getCurrentAdminRole(), 
-    			theDatabase.getCurrentNewRole1(), theDatabase.getCurrentNewRole2());
+    	User user = login.getUser();
     	
     	// See which home page dispatch to use
-		int numberOfRoles = theDatabase.getNumberOfRoles(user);		
+		int numberOfRoles = login.getNumberOfRoles();		
 		System.out.println("*** The number of roles: "+ numberOfRoles);
 		if (numberOfRoles == 1) {
 			// Single Account Home Page - The user has no choice here
-			
-			// Admin role
-			if (user.getAdminRole()) {
-				loginResult = theDatabase.loginAdmin(user);
-				if (loginResult) {
-					guiAdminHome.ViewAdminHome.displayAdminHome(theStage, user);
-				}
-			} else if (user.getNewRole1()) {
-				loginResult = theDatabase.loginRole1(user);
-				if (loginResult) {
-					guiRole1.ViewRole1Home.displayRole1Home(theStage, user);
-				}
-			} else if (user.getNewRole2()) {
-				loginResult = theDatabase.loginRole2(user);
-				if (loginResult) {
-					guiRole2.ViewRole2Home.displayRole2Home(theStage, user);
-				}
-				// Other roles
-			} else {
-				System.out.println("***** UserLogin goToUserHome request has an invalid role");
-			}
+			ModelMultipleRoleDispatch.getSingleRoleHomePage(login.getRoles()).accept(theStage, user);
 		} else if (numberOfRoles > 1) {
 			// Multiple Account Home Page - The user chooses which role to play
 			System.out.println("*** Going to displayMultipleRoleDispatch");
 			guiMultipleRoleDispatch.ViewMultipleRoleDispatch.
 				displayMultipleRoleDispatch(theStage, user);
+		} else {
+			System.out.println("***** UserLogin goToUserHome request has an invalid role");
 		}
 	}
 	
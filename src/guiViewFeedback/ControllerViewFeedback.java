@@ -1,12 +1,14 @@
 package guiViewFeedback;
 
 import applicationMain.FoundationsMain;
+import database.AsyncDatabase;
 import database.Database;
 import entityClasses.Feedback;
 import entityClasses.User;
 import guiFeedbackDetail.ControllerFeedbackDetail;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javafx.stage.Stage;
 
 /*******
@@ -25,6 +27,9 @@ import javafx.stage.Stage;
 public class ControllerViewFeedback {
 
 	private static Database theDatabase = FoundationsMain.database;
+	/** Feedback list loads; a newer filter cancels the load before it. */
+	private static AsyncDatabase.LatestRequest<List<Feedback>> feedbackLoads =
+			FoundationsMain.asyncDatabase.newLatestRequest();
 	protected static Stage theStage;
 	protected static User theUser; 
 	protected static ViewViewFeedback theView;
@@ -118,19 +123,21 @@ public class ControllerViewFeedback {
      * <p> Method: loadFeedback(String filterStudent, boolean filterUnreadOnly) </p>
      *
      * <p> Description: Loads feedback based on the user's role and view filters.
-     * This method correctly calls the specific database methods you defined (getAllFeedback/getFeedbackForUser).</p>
+     * This method correctly calls the specific database methods you defined (getAllFeedback/getFeedbackForUser).
+     * The query runs in the background; a newer load cancels this one.</p>
      *
      * @param filterStudent Username filter (staff only)
      * @param filterUnreadOnly Boolean filter for read status
-     * @return List of relevant Feedback objects
+     * @return the pending List of relevant Feedback objects
      */
-	protected static List<Feedback> loadFeedback(String filterStudent, boolean filterUnreadOnly) {
+	protected static CompletableFuture<List<Feedback>> loadFeedback(String filterStudent, boolean filterUnreadOnly) {
+        String userName = theUser.getUserName();
         if (theUser.getNewRole1()) {
             // Staff: calls getAllFeedback with optional filters
-            return theDatabase.getAllFeedback(filterStudent, filterUnreadOnly);
+            return feedbackLoads.submit(db -> db.getAllFeedback(filterStudent, filterUnreadOnly));
         } else {
             // Student: calls getFeedbackForUser for only their username
-            return theDatabase.getFeedbackForUser(theUser.getUserName(), filterUnreadOnly);
+            return feedbackLoads.submit(db -> db.getFeedbackForUser(userName, filterUnreadOnly));
         }
 	}
     
@@ -11,7 +11,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import entityClasses.Feedback;
-import java.util.List;
+import guiTools.FxAsync;
 
 /*******
  * <p> Title: ViewViewFeedback Class </p>
@@ -110,15 +110,20 @@ public class ViewViewFeedback {
      * 
      * <p> Description: Re-query the controller for an updated list of feedback items using the
      * current filter controls and replace
-     * the contents of the ListView.</p>
+     * the contents of the ListView once the background load finishes.</p>
      */
     public void refreshFeedbackList() {
         // Get filter criteria from the view controls
         String studentFilter = isStaffView ? studentFilterField.getText().trim() : null;
         boolean unreadOnly = unreadFilterCheckbox.isSelected();
 
-        List<Feedback> feedbackList = ControllerViewFeedback.loadFeedback(studentFilter, unreadOnly);
-        feedbackListView.getItems().setAll(feedbackList);
+        feedbackListView.setPlaceholder(new Label("Loading feedback..."));
+        FxAsync.deliver(ControllerViewFeedback.loadFeedback(studentFilter, unreadOnly),
+                feedbackList -> {
+                    feedbackListView.setPlaceholder(new Label("No feedback messages"));
+                    feedbackListView.getItems().setAll(feedbackList);
+                },
+                error -> feedbackListView.setPlaceholder(new Label("Could not load feedback")));
     }
 
     /**
@@ -1,11 +1,16 @@
 package guiViewPosts;
 
 import applicationMain.FoundationsMain;
+import database.AsyncDatabase;
 import database.Database;
 import entityClasses.Post;
 import entityClasses.Reply;
 import entityClasses.User;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javafx.stage.Stage;
 
 /*******
@@ -27,7 +32,7 @@ import javafx.stage.Stage;
  * holds references to the View ({@code theView}) and the Model 
  * ({@code theDatabase}) and handles all data flow and logic.
  * <li><b>(User Stories):</b> This class implements the logic for 
- * all Student User Stories, either directly ({@code loadPosts}) 
+ * all Student User Stories, either directly ({@code loadPostsPage}) 
  * or by navigating to other views ({@code openAddPost}).
  * </ul>
  * @author Omar Munoz
@@ -42,6 +47,11 @@ public class ControllerViewPosts {
      * */
 	private static Database theDatabase = FoundationsMain.database;
 	/**
+     * Post page loads; a new search or filter cancels the load before it.
+     * */
+	private static AsyncDatabase.LatestRequest<List<Post>> postLoads =
+			FoundationsMain.asyncDatabase.newLatestRequest();
+	/**
      * The main application window.
      * */
 	protected static Stage theStage;
@@ -159,62 +169,124 @@ public class ControllerViewPosts {
 	}
 
 
+	/**
+	 * Number of posts fetched per page as the user scrolls the posts table.
+	 */
+	protected static final int POST_PAGE_SIZE = 50;
+
+	/**
+	 * Largest number of best matches shown for a keyword search.
+	 */
+	protected static final int POST_SEARCH_LIMIT = 200;
+
+	/**
+	 * Number of replies fetched per window as the user scrolls a post's replies.
+	 */
+	protected static final int REPLY_WINDOW_SIZE = 50;
+
 	/**********
 	 * <p> 
-	 * Title: loadPosts() Method. </p>
+	 * Title: loadReplyWindow() Method. </p>
 	 * 
-	 * <p> Description: Loads posts from the database, optionally filters by keyword 
-	 *  or thread. Returns all posts if no filters are applied. </p>
+	 * <p> Description: Loads one window of a post's replies in the background, 
+	 *  each with its read flag for the user, but without its content (see 
+	 *  {@link #loadReplyContents}). Windows continue from the reply at either 
+	 *  end of what is already shown, so a window costs the same however many 
+	 *  replies the post has. </p>
+	 * 
+	 * @param postId The ID of the post to get replies for.
+	 * @param userName The user whose read state is wanted, or null.
+	 * @param unreadOnly true to leave out the replies the user has read.
+	 * @param from The reply to continue from, or null for the first window.
+	 * @param newer true for the replies after {@code from}, false for those before it.
+	 * @return The pending window of {@link Reply} objects, oldest first, empty when there are no more.
+	 */
+	protected static CompletableFuture<List<Reply>> loadReplyWindow(int postId, String userName,
+			boolean unreadOnly, Reply from, boolean newer) {
+		// (MVC): Controller fetches Model data from the database layer.
+		return FoundationsMain.asyncDatabase.supply(db ->
+				db.getReplyWindow(postId, userName, unreadOnly, from, newer, REPLY_WINDOW_SIZE));
+	}
+
+	/**********
+	 * <p> 
+	 * Title: loadReplyContents() Method. </p>
+	 * 
+	 * <p> Description: Loads the content of the given replies in the 
+	 *  background, for the rows of a reply window that are on screen. </p>
+	 * 
+	 * @param replyIds The IDs of the replies.
+	 * @return The pending map from reply ID to content.
+	 */
+	protected static CompletableFuture<Map<Integer, String>> loadReplyContents(Collection<Integer> replyIds) {
+		return FoundationsMain.asyncDatabase.supply(db -> db.getReplyContents(replyIds));
+	}
+
+	/**********
+	 * <p> 
+	 * Title: loadPostsPage() Method. </p>
+	 * 
+	 * <p> Description: Loads one page of posts from the database, optionally 
+	 *  filtered by keyword, thread, "My Posts" and "Show Unread". Posts hold a 
+	 *  body preview rather than the full body. The reply count, unread count 
+	 *  and read flag for the current user are filled in on every post with one 
+	 *  summary query, so the table never queries per row. </p>
+	 *  
+	 * <p> A keyword search returns the best {@link #POST_SEARCH_LIMIT} matches, 
+	 *  ranked by the search index, as a single page; only searches without a 
+	 *  searchable keyword are paged by date. </p>
 	 *  
 	 *  * <p><b>(Operations):</b> This is the core data-access 
 	 * operation for the main view, supporting the "View all posts" and 
 	 * filtering stories.</p>
 	 * 
+	 * <p> The queries run in the background. Starting a new load cancels the 
+	 *  one still pending, so a stale page never reaches the table. </p>
+	 * 
 	 * @param keyword The search term (or null/empty).
      * @param thread The thread to filter by (or null).
-     * @return A {@code List} of {@link Post} objects.
+     * @param onlyMine true to keep only the current user's posts.
+     * @param onlyUnread true to keep only posts the current user has not read.
+     * @param after The last post already shown, or null for the first page.
+     * @return The pending {@code List} of {@link Post} objects, empty when there are no more.
 	 */
-	protected static List<Post> loadPosts(String keyword, String thread) {
-		boolean noKeyword = (keyword == null || keyword.trim().isEmpty());
-		boolean noThread  = (thread == null || thread.trim().isEmpty());
+	protected static CompletableFuture<List<Post>> loadPostsPage(String keyword, String thread,
+			boolean onlyMine, boolean onlyUnread, Post after) {
+		String currentUser = (theUser == null) ? null : theUser.getUserName();
+		// With no user, "My Posts" matches nothing and "Show Unread" is ignored,
+		// as the View's filters always behaved.
+		if (onlyMine && currentUser == null) return postLoads.submit(db -> new ArrayList<>());
+		String author = onlyMine ? currentUser : null;
+		String unreadFor = onlyUnread ? currentUser : null;
 		// (MVC): Controller fetches Model data from the database layer.
-		if (noKeyword && noThread) {
-			return theDatabase.getPosts();
-		} else {
-			return theDatabase.searchPosts(keyword, thread);
+		// A keyword of only stop words is no keyword: the posts are paged by date.
+		if (Database.hasSearchTerms(keyword)) {
+			// Ranked results have no date order to continue from
+			if (after != null) return postLoads.submit(db -> new ArrayList<>());
+			return postLoads.submit(db -> {
+				List<Post> posts = db.searchPostsRanked(keyword, thread, author, unreadFor,
+						POST_SEARCH_LIMIT);
+				db.loadPostSummariesForUser(posts, currentUser);
+				return posts;
+			});
 		}
+		return postLoads.submit(db -> {
+			List<Post> posts = db.getPostsPage(thread, author, unreadFor, after, POST_PAGE_SIZE);
+			db.loadPostSummariesForUser(posts, currentUser);
+			return posts;
+		});
 	}
 
 	/**********
 	 * <p> 
-	 * Title: getReplyCountForPost() Method. </p>
+	 * Title: isLoadingPosts() Method. </p>
 	 * 
-	 * <p> Description: Returns the total number of replies for a given post </p>
-	 * * <p><b>(Operations):</b> Supports the 
-	 * "View all posts" story by providing data for the 'Replies' column.</p>
-	 * @param postId The post ID.
-     * @return The total count of replies.
-	 */
-	protected static int getReplyCountForPost(int postId) {
-		List<Reply> replies = theDatabase.getRepliesForPost(postId);
-		return replies == null ? 0 : replies.size();
-	}
-	
-	/**********
-	 * <p> 
-	 * Title: getUnreadCountForPost() Method. </p>
+	 * <p> Description: Tells whether a {@link #loadPostsPage} is still running. </p>
 	 * 
-	 * <p> Description: Returns the number of unread replies for the current user 
-	 *  on a post. </p>
-	 *  
-	 *  * <p><b>(Operations):</b> Supports the 
-	 * "View all posts" story by providing data for the 'Unread' column.</p>
-	 * @param postId The post ID.
-     * @return The count of unread replies for the current user.
+	 * @return true while the latest page of posts has not arrived.
 	 */
-	protected static int getUnreadCountForPost(int postId) {
-		if (theUser == null) return 0;
-		return theDatabase.getUnreadReplyCountForPostForUser(postId, theUser.getUserName());
+	protected static boolean isLoadingPosts() {
+		return postLoads.isLoading();
 	}
 
 	/**********
@@ -257,20 +329,15 @@ public class ControllerViewPosts {
 	 * Title: isPostReadForCurrentUser() Method. </p>
 	 * 
 	 * <p> Description: Checks if a post has been marked as read 
-	 *  by the user. </p>
+	 *  by the user, using the read flag {@link #loadPostsPage} filled in. </p>
 	 *  * <p><b>(Operations):</b> Supports the 
 	 * "View all posts" story by providing data for the 'Read?' column.</p>
-	 * @param postId The post ID.
+	 * @param post The post, as returned by loadPostsPage.
      * @return true if the post is read, false otherwise.
 	 */
-	protected static boolean isPostReadForCurrentUser(int postId) {
-		if (theUser == null) return false;
-		try {
-			return theDatabase.isPostReadByUser(postId, theUser.getUserName());
-		} catch (Exception e) {
-			e.printStackTrace();
-			return false;
-		}
+	protected static boolean isPostReadForCurrentUser(Post post) {
+		if (theUser == null || post == null) return false;
+		return post.hasBeenReadByUser(theUser.getUserName());
 	}
 
 	/**********
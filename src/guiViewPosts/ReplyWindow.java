@@ -0,0 +1,239 @@
+package guiViewPosts;
+
+import entityClasses.Reply;
+import guiTools.FxAsync;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*******
+ * <p> Title: ReplyWindow Class </p>
+ *
+ * <p> Description: The replies shown in {@link ViewPostDetail}'s reply table.
+ *  A post can collect thousands of replies, so the table never holds them
+ *  all: it opens on the first window of replies and loads the next or the
+ *  previous window as the user scrolls towards either end. Once it holds
+ *  more than {@link #MAX_ROWS} rows the replies furthest from the user are
+ *  dropped, to be loaded again if the user scrolls back to them. </p>
+ *
+ * <p> Windows carry no reply content. The content of the rows on screen is
+ *  loaded in the background, a batch per layout pass, and shown when it
+ *  arrives. </p>
+ *
+ * <ul>
+ * <li><b>(Packages):</b> This class is part of the 'guiViewPosts' package.
+ * <li><b>(MVC):</b> This class is part of the 'View'; it gets its data
+ * through {@link ControllerViewPosts}.
+ * </ul>
+ *
+ */
+public class ReplyWindow {
+
+	/**
+	 * Most replies held by the table at once.
+	 */
+	protected static final int MAX_ROWS = 500;
+
+	private final TableView<Reply> table;
+	private final int postId;
+	private final String userName;
+	private final ObservableList<Reply> items = FXCollections.observableArrayList();
+
+	private boolean unreadOnly = false;
+	private boolean hasOlder = false;
+	private boolean hasNewer = false;
+	private boolean loadingOlder = false;
+	private boolean loadingNewer = false;
+	// Bumped by reload, so windows still loading for an earlier filter are ignored
+	private int generation = 0;
+
+	// Rows whose content the table has asked for, loaded together once the layout pass ends
+	private final Map<Integer, Reply> contentWanted = new LinkedHashMap<>();
+	private boolean contentScheduled = false;
+
+	/**********
+	 * <p> Title: ReplyWindow() Constructor </p>
+	 *
+	 * @param table The reply table; its items are set to this window's replies.
+	 * @param postId The post whose replies are shown.
+	 * @param userName The user whose read flags are shown, or null.
+	 */
+	public ReplyWindow(TableView<Reply> table, int postId, String userName) {
+		this.table = table;
+		this.postId = postId;
+		this.userName = userName;
+		table.setItems(items);
+		installScrollPaging();
+	}
+
+	/**********
+	 * <p> Title: reload() Method </p>
+	 *
+	 * <p> Description: Empties the table and loads the post's first window
+	 *  of replies. </p>
+	 *
+	 * @param unreadOnly true to show only the replies the user has not read.
+	 */
+	public void reload(boolean unreadOnly) {
+		this.unreadOnly = unreadOnly;
+		generation++;
+		items.clear();
+		contentWanted.clear();
+		hasOlder = false;
+		hasNewer = false;
+		loadingOlder = false;
+		loadingNewer = false;
+		table.setPlaceholder(new Label("Loading replies..."));
+		loadWindow(null, true);
+	}
+
+	/**********
+	 * <p> Title: wantContent() Method </p>
+	 *
+	 * <p> Description: Called by the content cells for a row whose content
+	 *  has not been loaded. Requests made during one layout pass are loaded
+	 *  with one query. </p>
+	 *
+	 * @param reply The reply whose content is needed.
+	 */
+	public void wantContent(Reply reply) {
+		contentWanted.put(reply.getId(), reply);
+		if (contentScheduled) return;
+		contentScheduled = true;
+		Platform.runLater(this::loadContent);
+	}
+
+	/**********
+	 * <p> Title: loadContent() Method </p>
+	 *
+	 * <p> Description: Loads the content of the wanted rows that are still on
+	 *  screen; rows scrolled past before the layout pass ended are skipped. </p>
+	 */
+	private void loadContent() {
+		contentScheduled = false;
+		List<Reply> visible = new ArrayList<>();
+		int first = firstVisibleIndex();
+		int last = lastVisibleIndex();
+		for (Reply r : contentWanted.values()) {
+			int index = items.indexOf(r);
+			if (index >= 0 && (first < 0 || (index >= first && index <= last))) visible.add(r);
+		}
+		contentWanted.clear();
+		if (visible.isEmpty()) return;
+
+		List<Integer> ids = new ArrayList<>();
+		for (Reply r : visible) ids.add(r.getId());
+		FxAsync.deliver(ControllerViewPosts.loadReplyContents(ids), contents -> {
+			for (Reply r : visible) {
+				String content = contents.get(r.getId());
+				// A reply deleted since its window loaded shows as empty
+				r.setContent(content == null ? "" : content);
+			}
+			table.refresh();
+		}, error -> { });
+	}
+
+	/**********
+	 * <p> Title: loadWindow() Method </p>
+	 *
+	 * <p> Description: Asks the Controller for the window next to the given
+	 *  reply and adds it to the table when it arrives, keeping the rows on
+	 *  screen where they are. </p>
+	 *
+	 * @param from The reply at the end of the table to load past, or null for
+	 *  the first window.
+	 * @param newer true to load the replies after it, false for those before it.
+	 */
+	private void loadWindow(Reply from, boolean newer) {
+		if (newer) loadingNewer = true; else loadingOlder = true;
+		int loadGeneration = generation;
+		// (MVC): View requests data from Controller.
+		FxAsync.deliver(ControllerViewPosts.loadReplyWindow(postId, userName, unreadOnly, from, newer),
+			window -> {
+				if (loadGeneration != generation) return;
+				boolean more = window.size() >= ControllerViewPosts.REPLY_WINDOW_SIZE;
+				table.setPlaceholder(new Label("No replies"));
+				if (newer) {
+					loadingNewer = false;
+					hasNewer = more;
+					items.addAll(window);
+					// Drop the oldest rows, and keep the rows on screen in view
+					int excess = items.size() - MAX_ROWS;
+					if (excess > 0) {
+						int first = firstVisibleIndex();
+						items.remove(0, excess);
+						hasOlder = true;
+						if (first >= 0) table.scrollTo(Math.max(0, first - excess));
+					}
+				} else {
+					loadingOlder = false;
+					hasOlder = more;
+					int first = firstVisibleIndex();
+					items.addAll(0, window);
+					if (first >= 0) table.scrollTo(first + window.size());
+					// Drop the newest rows
+					int excess = items.size() - MAX_ROWS;
+					if (excess > 0) {
+						items.remove(items.size() - excess, items.size());
+						hasNewer = true;
+					}
+				}
+			},
+			error -> {
+				if (loadGeneration != generation) return;
+				if (newer) loadingNewer = false; else loadingOlder = false;
+				table.setPlaceholder(new Label("Could not load replies"));
+			});
+	}
+
+	/**********
+	 * <p> Title: installScrollPaging() Method </p>
+	 *
+	 * <p> Description: Watches the table's vertical scroll bar and loads the
+	 *  next window when the user nears the bottom, or the previous one when
+	 *  they near the top of a table that has dropped its first rows. The
+	 *  scroll bar only exists once the table has a skin, so the listener is
+	 *  attached then. </p>
+	 */
+	private void installScrollPaging() {
+		table.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+			for (javafx.scene.Node n : table.lookupAll(".scroll-bar")) {
+				if (n instanceof ScrollBar && ((ScrollBar) n).getOrientation() == Orientation.VERTICAL) {
+					ScrollBar bar = (ScrollBar) n;
+					bar.valueProperty().addListener((o, oldValue, newValue) -> {
+						if (items.isEmpty()) return;
+						if (newValue.doubleValue() >= bar.getMax() * 0.9 && hasNewer && !loadingNewer) {
+							loadWindow(items.get(items.size() - 1), true);
+						} else if (newValue.doubleValue() <= bar.getMax() * 0.1 && hasOlder && !loadingOlder) {
+							loadWindow(items.get(0), false);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	// The index of the first row on screen, or -1 before the table is laid out
+	private int firstVisibleIndex() {
+		VirtualFlow<?> flow = (VirtualFlow<?>) table.lookup(".virtual-flow");
+		IndexedCell<?> cell = (flow == null) ? null : flow.getFirstVisibleCell();
+		return (cell == null) ? -1 : cell.getIndex();
+	}
+
+	// The index of the last row on screen, or -1 before the table is laid out
+	private int lastVisibleIndex() {
+		VirtualFlow<?> flow = (VirtualFlow<?>) table.lookup(".virtual-flow");
+		IndexedCell<?> cell = (flow == null) ? null : flow.getLastVisibleCell();
+		return (cell == null) ? -1 : cell.getIndex();
+	}
+}
@@ -4,12 +4,13 @@ import applicationMain.FoundationsMain;
 import entityClasses.Post;
 import entityClasses.Reply;
 import entityClasses.User;
+import guiTools.FxAsync;
 import guiViewPosts.ControllerViewPosts;
-import javafx.collections.FXCollections;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextArea;
@@ -20,7 +21,6 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
 
 /*******
@@ -123,17 +123,35 @@ public class ViewPostDetail {
 		TableColumn<Reply, String> cRead = new TableColumn<>("Read?");
 
 		cRead.setCellValueFactory(cell -> javafx.beans.binding.Bindings.createStringBinding(() -> {
-			int id = cell.getValue().getId();
-			// (MVC): View calls database (via Controller) 
-			// for dynamic data.
-			boolean read = FoundationsMain.database.isReplyReadByUser(id, (user == null) ? "" : user.getUserName());
-			return read ? "Read" : "Unread";
+			// (MVC): The read flag came with the reply from the Controller.
+			return cell.getValue().getRead() ? "Read" : "Unread";
 		}));
 		cRead.setPrefWidth(80);
 
+		// The replies shown, loaded a window at a time as the user scrolls
+		ReplyWindow replies = new ReplyWindow(replyTable, post.getId(),
+				(user == null) ? null : user.getUserName());
+
 		// Column for "View post and replies
+		// Content is loaded only for the rows on screen, so a row shows a
+		// placeholder until its content arrives.
 		TableColumn<Reply, String> cContent = new TableColumn<>("Content");
 		cContent.setCellValueFactory(new PropertyValueFactory<>("content"));
+		cContent.setCellFactory(column -> new TableCell<Reply, String>() {
+			@Override
+			protected void updateItem(String content, boolean empty) {
+				super.updateItem(content, empty);
+				int index = getIndex();
+				if (empty || index < 0 || index >= getTableView().getItems().size()) {
+					setText(null);
+				} else if (content == null) {
+					setText("Loading...");
+					replies.wantContent(getTableView().getItems().get(index));
+				} else {
+					setText(content);
+				}
+			}
+		});
 		cContent.setPrefWidth(width - 460);
 
 		replyTable.getColumns().addAll(cAuthor, cCreated, cRead, cContent);
@@ -150,21 +168,9 @@ public class ViewPostDetail {
 		 *  
 		 */
 		Runnable reloadReplies = () -> {
-			// (MVC): View requests data from Controller.
-			List<Reply> allReplies = ControllerViewPosts.getRepliesForPost(post.getId());
-			
-			// Implements "Unread Replies" filter story.
-			if (filterMode[0] == 1 && user != null) {
-				List<Reply> unreadOnly = new ArrayList<>();
-				for (Reply r : allReplies) {
-					// View requests data from Model/DB.
-					boolean isRead = FoundationsMain.database.isReplyReadByUser(r.getId(), user.getUserName());
-					if (!isRead) unreadOnly.add(r);
-				}
-				replyTable.setItems(FXCollections.observableArrayList(unreadOnly));
-			} else {
-				replyTable.setItems(FXCollections.observableArrayList(allReplies));
-			}
+			// (MVC): View requests data from Controller, with each reply's read flag.
+			// Implements "Unread Replies" filter story; the filtering is done by the query.
+			replies.reload(filterMode[0] == 1 && user != null);
 		};
 
 		// Initial reply load
@@ -176,10 +182,22 @@ public class ViewPostDetail {
 			if (event.getClickCount() == 2) {
 				Reply sel = replyTable.getSelectionModel().getSelectedItem();
 				if (sel != null) {
-					// (MVC): View delegates to another View.
-					ViewReplyDetail.displayReplyDetail(stage, user, sel);
-					// After returning from reply detail, reload replies into the table to for any changed read flags
-					reloadReplies.run();
+					Runnable openReply = () -> {
+						// (MVC): View delegates to another View.
+						ViewReplyDetail.displayReplyDetail(stage, user, sel);
+						// After returning from reply detail, reload replies into the table to for any changed read flags
+						reloadReplies.run();
+					};
+					if (sel.getContent() != null) {
+						openReply.run();
+					} else {
+						// The row was opened before its content arrived, so load it first in the background
+						FxAsync.deliver(ControllerViewPosts.loadReplyContents(List.of(sel.getId())), contents -> {
+							String content = contents.get(sel.getId());
+							sel.setContent(content == null ? "" : content);
+							openReply.run();
+						}, error -> { });
+					}
 				}
 			}
 		});
@@ -3,14 +3,18 @@ package guiViewPosts;
 import applicationMain.FoundationsMain;
 import entityClasses.Post;
 import entityClasses.User;
+import guiTools.FxAsync;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -72,6 +76,16 @@ public class ViewViewPosts {
 	 * The main table displaying the list of all posts.
 	 */
 	private TableView<Post> postTable = new TableView<>();
+
+	/**
+	 * The posts loaded so far; pages are appended as the user scrolls.
+	 */
+	private ObservableList<Post> postItems = FXCollections.observableArrayList();
+
+	/**
+	 * False once a page came back short, meaning every matching post is loaded.
+	 */
+	private boolean hasMorePosts = true;
 	
 	/**
 	 * Text field for keyword searches.
@@ -191,6 +205,8 @@ public class ViewViewPosts {
 
 
 		setupTable();
+		postTable.setItems(postItems);
+		installScrollPaging();
 
 		postTable.setLayoutX(20);
 		postTable.setLayoutY(115);
@@ -385,36 +401,24 @@ public class ViewViewPosts {
 
 		// Column for "View all posts" (Reply Count)
 		TableColumn<Post, Integer> colReplies = new TableColumn<>("Replies");
-		// Non-obvious code. This cell value factory
-		// must call the Controller to fetch data (reply count) that
-		// is not on the Post object itself.
-		colReplies.setCellValueFactory(cell -> {
-			int id = cell.getValue().getId();
-			// (MVC): View calls Controller for data.
-			int count = ControllerViewPosts.getReplyCountForPost(id);
-			return new SimpleIntegerProperty(count).asObject();
-		});
+		// The reply count was filled in on the Post by the
+		// Controller's single summary query, so no query runs per row.
+		colReplies.setCellValueFactory(cell ->
+			new SimpleIntegerProperty(cell.getValue().getReplyCount()).asObject());
 		colReplies.setPrefWidth(80);
 		
 		// Column for "View all posts" (Unread Count)
 		TableColumn<Post, Integer> colUnreadReplies = new TableColumn<>("Unread Replies");
-		// Non-obvious code. This cell value factory
-		// must call the Controller to fetch data (reply count) that
-		// is not on the Post object itself.
-		colUnreadReplies.setCellValueFactory(cell -> {
-			int id = cell.getValue().getId();
-			// (MVC): View calls Controller for data.
-			int unread = ControllerViewPosts.getUnreadCountForPost(id);
-			return new SimpleIntegerProperty(unread).asObject();
-		});
+		// Filled in by the same summary query as the reply count.
+		colUnreadReplies.setCellValueFactory(cell ->
+			new SimpleIntegerProperty(cell.getValue().getUnreadCount()).asObject());
 		colUnreadReplies.setPrefWidth(110);
 
 		// Column for "View all posts" (Read Status)
 		TableColumn<Post, String> colReadStatus = new TableColumn<>("Read?");
 		colReadStatus.setCellValueFactory(cell -> javafx.beans.binding.Bindings.createStringBinding(() -> {
-			int id = cell.getValue().getId();
-			// (MVC): View calls Controller for data.
-			boolean read = ControllerViewPosts.isPostReadForCurrentUser(id);
+			// (MVC): View asks Controller to interpret the read flag on the Post.
+			boolean read = ControllerViewPosts.isPostReadForCurrentUser(cell.getValue());
 			return read ? "Read" : "Unread";
 		}));
 		colReadStatus.setPrefWidth(90);
@@ -432,10 +436,12 @@ public class ViewViewPosts {
 
 		TableColumn<Post, String> colBody = new TableColumn<>("Body (preview)");
 		colBody.setCellValueFactory(cell -> javafx.beans.binding.Bindings.createStringBinding(() -> {
+			// Posts are loaded with one character past the preview length,
+			// which is how we know whether to add the ellipsis.
 			String b = cell.getValue().getBody();
 			if (b == null) return "";
-			
-			return b.length() > 200 ? b.substring(0, 200) + "..." : b;
+			int max = database.Database.POST_PREVIEW_LENGTH;
+			return b.length() > max ? b.substring(0, max) + "..." : b;
 		}));
 		colBody.setPrefWidth(600);
 
@@ -455,53 +461,82 @@ public class ViewViewPosts {
 	/**********
 	 * <p> Title: reloadTable() Method </p>
 	 * 
-	 * <p> Description: Gets and filters posts from the db based on
-	 * search terms, thread, ownership, and unread status. Updates the
-	 * table view </p>
+	 * <p> Description: Starts the post list over from the first page using
+	 * the current search terms, thread, ownership, and unread filters.
+	 * Further pages are fetched by {@link #loadNextPage()} as the user
+	 * scrolls. The posts already shown stay in the table until the first
+	 * page arrives. </p>
 	 * * <p><b>(Operations):</b> This operation is called 
 	 * by the Controller (or internal event handlers) to refresh 
 	 * the View's data.
 	 */
 	protected void reloadTable() {
+		hasMorePosts = true;
+		postTable.setPlaceholder(new Label("Loading posts..."));
+		loadPage(null, true);
+	}
+
+	/**********
+	 * <p> Title: loadNextPage() Method </p>
+	 * 
+	 * <p> Description: Appends the next page of posts, continuing after
+	 * the last post in the table. Does nothing once a short page has shown
+	 * there are no more posts, or while a page is still loading. </p>
+	 */
+	private void loadNextPage() {
+		if (!hasMorePosts || ControllerViewPosts.isLoadingPosts()) return;
+		Post last = postItems.isEmpty() ? null : postItems.get(postItems.size() - 1);
+		loadPage(last, false);
+	}
+
+	/**********
+	 * <p> Title: loadPage() Method </p>
+	 * 
+	 * <p> Description: Asks the Controller for the page after the given post
+	 * and shows it when it arrives, either replacing the table's contents or
+	 * appending to them. </p>
+	 * 
+	 * @param after The last post already shown, or null for the first page.
+	 * @param replace true to replace the posts in the table.
+	 */
+	private void loadPage(Post after, boolean replace) {
 		// (MVC): View requests data from Controller.
 		String kw = text_Search.getText();
 		String th = combo_Thread.getValue();
 		if ("All".equals(th)) th = null;
-		List<Post> posts = ControllerViewPosts.loadPosts(kw, th);
-
-		// Implements "My Posts" filter.
-		if (onlyMine) {
-			List<Post> filtered = new ArrayList<>();
-			String currentUser = (ControllerViewPosts.theUser == null) ? null : ControllerViewPosts.theUser.getUserName();
-			if (currentUser != null) {
-				for (Post p : posts) {
-					if (currentUser.equals(p.getAuthorUsername())) {
-						filtered.add(p);
-					}
+		FxAsync.deliver(ControllerViewPosts.loadPostsPage(kw, th, onlyMine, onlyUnread, after),
+			page -> {
+				hasMorePosts = page.size() >= ControllerViewPosts.POST_PAGE_SIZE;
+				postTable.setPlaceholder(new Label("No posts"));
+				//(MVC): View updates its own state with new data.
+				if (replace) {
+					postItems.setAll(page);
+					postTable.scrollTo(0);
+				} else {
+					postItems.addAll(page);
 				}
-			}
-			posts = filtered;
-		}
+			},
+			error -> postTable.setPlaceholder(new Label("Could not load posts")));
+	}
 
-		// Implements "Show Unread" filter.
-		if (onlyUnread) {
-			List<Post> filteredUnread = new ArrayList<>();
-			String currentUser = (ControllerViewPosts.theUser == null) ? null : ControllerViewPosts.theUser.getUserName();
-			if (currentUser != null) {
-				for (Post p : posts) {
-					// (MVC): View calls Controller for data.
-					if (!ControllerViewPosts.isPostReadForCurrentUser(p.getId())) {
-						filteredUnread.add(p);
-					}
+	/**********
+	 * <p> Title: installScrollPaging() Method </p>
+	 * 
+	 * <p> Description: Watches the table's vertical scroll bar and loads the
+	 * next page when the user nears the bottom. The scroll bar only exists
+	 * once the table has a skin, so the listener is attached then. </p>
+	 */
+	private void installScrollPaging() {
+		postTable.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+			for (javafx.scene.Node n : postTable.lookupAll(".scroll-bar")) {
+				if (n instanceof ScrollBar && ((ScrollBar) n).getOrientation() == Orientation.VERTICAL) {
+					ScrollBar bar = (ScrollBar) n;
+					bar.valueProperty().addListener((o, oldValue, newValue) -> {
+						if (newValue.doubleValue() >= bar.getMax() * 0.9) loadNextPage();
+					});
 				}
-			} else {
-				filteredUnread = posts;
 			}
-			posts = filteredUnread;
-		}
-
-		//(MVC): View updates its own state with new data.
-		postTable.setItems(FXCollections.observableArrayList(posts));
+		});
 	}
 	
 	/**********
@@ -2,6 +2,7 @@ module FoundationsF25 {
 	requires javafx.controls;
 	requires javafx.graphics;
 	requires java.sql;
+	requires java.management;
 	requires javafx.base;
     requires org.junit.jupiter.api;
     
@@ -11,4 +12,6 @@ module FoundationsF25 {
 	opens guiAdminHome to javafx.graphics;
     opens guiListUsers to javafx.graphics;
     opens database to org.junit.platform.commons;
+    // The platform MBean server reads QueryMetricsMBean when the metrics are on
+    exports database to java.management;
 }
\ No newline at end of file
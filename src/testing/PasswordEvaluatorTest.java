@@ -0,0 +1,89 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import validation.PasswordEvaluator;
+import validation.PasswordResult;
+
+/*******
+ * <p> Title: PasswordEvaluatorTest Class </p>
+ * <p> Description: This class performs JUnit 5 testing on the password evaluator.
+ * The messages checked here are the ones the New Account and First Admin pages have
+ * always shown, so they must not change. </p>
+ */
+public class PasswordEvaluatorTest {
+
+    @Test
+    public void testValidPassword() {
+        PasswordResult result = PasswordEvaluator.evaluate("Abcdef1!");
+        assertTrue(result.isValid());
+        assertEquals("", result.getErrorMessage());
+        assertEquals(-1, result.getIndexOfError());
+        assertTrue(result.isFoundUpperCase());
+        assertTrue(result.isFoundLowerCase());
+        assertTrue(result.isFoundNumericDigit());
+        assertTrue(result.isFoundSpecialChar());
+        assertTrue(result.isFoundLongEnough());
+        assertTrue(result.isNotTooLong());
+    }
+
+    @Test
+    public void testEmptyPassword() {
+        assertError("*** Error *** The password is empty!", 0, "");
+        assertError("*** Error *** The password is empty!", 0, null);
+    }
+
+    @Test
+    public void testTooLong() {
+        assertTrue(PasswordEvaluator.evaluate("Abcdef1!" + "a".repeat(24)).isValid(), "32 characters is allowed");
+        PasswordResult result = assertError(
+                "*** Error *** The password is too long! Maximum allowed length is 32 characters.", 0,
+                "Abcdef1!" + "a".repeat(25));
+        assertFalse(result.isNotTooLong());
+    }
+
+    @Test
+    public void testInvalidCharacter() {
+        assertError("*** Error *** An invalid character has been found!", 8, "Abcdef1!é");
+        assertError("*** Error *** An invalid character has been found!", 3, "Abc def1!");
+    }
+
+    @Test
+    public void testMissingRequirementsAreListed() {
+        PasswordResult result = assertError(
+                "Upper case; Numeric digits; Special character; Long Enough; conditions were not satisfied",
+                3, "abc");
+        assertFalse(result.isFoundUpperCase());
+        assertTrue(result.isFoundLowerCase());
+        assertFalse(result.isFoundNumericDigit());
+        assertFalse(result.isFoundSpecialChar());
+        assertFalse(result.isFoundLongEnough());
+        assertTrue(result.isNotTooLong());
+    }
+
+    @Test
+    public void testSingleMissingRequirement() {
+        assertError("Special character; conditions were not satisfied", 8, "Abcdefg1");
+        assertError("Long Enough; conditions were not satisfied", 4, "Ab1!");
+    }
+
+    @Test
+    public void testEveryAllowedSpecialCharacter() {
+        for (char c : PasswordEvaluator.SPECIAL_CHARACTERS.toCharArray()) {
+            assertTrue(PasswordEvaluator.evaluate("Abcdef1" + c).isValid(), "'" + c + "' should be allowed");
+        }
+    }
+
+    /*******
+     * <p> Method: assertError() </p>
+     * <p> Description: Checks the message and error index the evaluator gives for an input.</p>
+     */
+    private static PasswordResult assertError(String message, int index, String input) {
+        PasswordResult result = PasswordEvaluator.evaluate(input);
+        assertFalse(result.isValid(), "\"" + input + "\" should be rejected");
+        assertEquals(message, result.getErrorMessage());
+        assertEquals(index, result.getIndexOfError());
+        return result;
+    }
+}
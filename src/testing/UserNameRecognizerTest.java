@@ -0,0 +1,72 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import validation.UserNameRecognizer;
+import validation.ValidationResult;
+
+/*******
+ * <p> Title: UserNameRecognizerTest Class </p>
+ * <p> Description: This class performs JUnit 5 testing on the UserName recognizer.
+ * The messages checked here are the ones the New Account and First Admin pages have
+ * always shown, so they must not change. </p>
+ */
+public class UserNameRecognizerTest {
+
+    @Test
+    public void testValidUserName() {
+        ValidationResult result = UserNameRecognizer.check("a.b-c_d9");
+        assertTrue(result.isValid());
+        assertEquals("", result.getErrorMessage());
+        assertEquals(-1, result.getIndexOfError());
+    }
+
+    @Test
+    public void testEmptyInput() {
+        assertError("\n*** ERROR *** The input is empty", 0, "");
+        assertError("\n*** ERROR *** The input is empty", 0, null);
+    }
+
+    @Test
+    public void testMustStartWithLetter() {
+        assertError("\n*** ERROR *** A UserName must start with A-Z, a-z.\n", 0, "1abc");
+        assertError("\n*** ERROR *** A UserName must start with A-Z, a-z.\n", 0, "_abc");
+    }
+
+    @Test
+    public void testTooShort() {
+        assertError("\n*** ERROR *** A UserName must have at least 4 characters.\n", 3, "abc");
+    }
+
+    @Test
+    public void testLengthLimits() {
+        assertTrue(UserNameRecognizer.check("abcd").isValid(), "4 characters is the minimum");
+        assertTrue(UserNameRecognizer.check("abcdefghijklmnop").isValid(), "16 characters is the maximum");
+        assertError("\n*** ERROR *** A UserName must have no more than 16 characters.\n", 17,
+                "abcdefghijklmnopq");
+    }
+
+    @Test
+    public void testCannotEndWithSeparator() {
+        assertError("\n*** ERROR *** A UserName cannot end with '-', '_', or '.'.\n", 4, "abc-");
+        assertError("\n*** ERROR *** A UserName cannot end with '-', '_', or '.'.\n", 5, "abcd.");
+    }
+
+    @Test
+    public void testInvalidCharacter() {
+        assertError("\n*** ERROR *** A UserName character may only contain the characters "
+                + "A-Z, a-z, 0-9, '-', '_', or '.'.\n", 4, "abcd!e");
+    }
+
+    /*******
+     * <p> Method: assertError() </p>
+     * <p> Description: Checks the message and error index the recognizer gives for an input.</p>
+     */
+    private static void assertError(String message, int index, String input) {
+        ValidationResult result = UserNameRecognizer.check(input);
+        assertFalse(result.isValid(), "\"" + input + "\" should be rejected");
+        assertEquals(message, result.getErrorMessage());
+        assertEquals(index, result.getIndexOfError());
+    }
+}
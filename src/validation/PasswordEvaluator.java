@@ -0,0 +1,105 @@
+package validation;
+
+/*******
+ * <p> Title: PasswordEvaluator Class. </p>
+ *
+ * <p> Description: The password Directed Graph as a precompiled table of character classes.
+ * One pass over the input notes which requirements its characters satisfy.  Everything is kept
+ * in local variables and returned in an immutable PasswordResult, so evaluate may be called
+ * from any number of threads at once and nothing is printed.</p>
+ *
+ * <p> A password needs an upper case letter, a lower case letter, a digit and one of the
+ * special characters below, and must be 8 to 32 characters long.</p>
+ *
+ */
+public final class PasswordEvaluator {
+
+	/** The fewest characters a password may have. */
+	public static final int MIN_LENGTH = 8;
+
+	/** The most characters a password may have. */
+	public static final int MAX_LENGTH = 32;
+
+	/** The characters that count as special characters. */
+	public static final String SPECIAL_CHARACTERS = "~`!@#$%^&*()_-+={}[]|\\:;\"'<>,.?/";
+
+	// Character classes
+	private static final byte INVALID = 0;
+	private static final byte UPPER = 1;
+	private static final byte LOWER = 2;
+	private static final byte DIGIT = 3;
+	private static final byte SPECIAL = 4;
+
+	// The class of every ASCII character; anything else is INVALID
+	private static final byte[] CLASS_OF = new byte[128];
+	static {
+		for (int c = 0; c < CLASS_OF.length; c++) {
+			if (c >= 'A' && c <= 'Z') CLASS_OF[c] = UPPER;
+			else if (c >= 'a' && c <= 'z') CLASS_OF[c] = LOWER;
+			else if (c >= '0' && c <= '9') CLASS_OF[c] = DIGIT;
+			else if (SPECIAL_CHARACTERS.indexOf(c) >= 0) CLASS_OF[c] = SPECIAL;
+			else CLASS_OF[c] = INVALID;
+		}
+	}
+
+	private PasswordEvaluator() {
+	}
+
+	/*******
+	 * <p> Method: PasswordResult evaluate(String input) </p>
+	 *
+	 * <p> Description: Check a password against every requirement.</p>
+	 *
+	 * @param input the password to check
+	 *
+	 * @return the result; its message is empty if the password satisfies every requirement
+	 */
+	public static PasswordResult evaluate(String input) {
+		if (input == null) input = "";
+		int length = input.length();
+		boolean upper = false, lower = false, digit = false, special = false;
+		int invalidAt = -1;
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			switch ((c < CLASS_OF.length) ? CLASS_OF[c] : INVALID) {
+			case UPPER: upper = true; break;
+			case LOWER: lower = true; break;
+			case DIGIT: digit = true; break;
+			case SPECIAL: special = true; break;
+			default:
+				if (invalidAt < 0) invalidAt = i;
+			}
+		}
+		boolean longEnough = length >= MIN_LENGTH;
+		boolean notTooLong = length <= MAX_LENGTH;
+
+		String error;
+		int index;
+		if (length == 0) {
+			error = "*** Error *** The password is empty!";
+			index = 0;
+		} else if (!notTooLong) {
+			error = "*** Error *** The password is too long! Maximum allowed length is 32 characters.";
+			index = 0;
+		} else if (invalidAt >= 0) {
+			error = "*** Error *** An invalid character has been found!";
+			index = invalidAt;
+		} else {
+			// A list of the requirements that were not found
+			StringBuilder missing = new StringBuilder();
+			if (!upper) missing.append("Upper case; ");
+			if (!lower) missing.append("Lower case; ");
+			if (!digit) missing.append("Numeric digits; ");
+			if (!special) missing.append("Special character; ");
+			if (!longEnough) missing.append("Long Enough; ");
+			if (missing.length() == 0) {
+				error = "";
+				index = -1;
+			} else {
+				error = missing.append("conditions were not satisfied").toString();
+				index = length;
+			}
+		}
+		return new PasswordResult(error, index, upper, lower, digit, special, longEnough, notTooLong);
+	}
+}
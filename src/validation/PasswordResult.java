@@ -0,0 +1,61 @@
+package validation;
+
+/*******
+ * <p> Title: PasswordResult Class. </p>
+ *
+ * <p> Description: The result of PasswordEvaluator.evaluate: the error message and index, plus
+ * which of the password requirements the input satisfies, so a page can show each one as it is
+ * met.</p>
+ *
+ */
+public class PasswordResult extends ValidationResult {
+
+	private final boolean foundUpperCase;
+	private final boolean foundLowerCase;
+	private final boolean foundNumericDigit;
+	private final boolean foundSpecialChar;
+	private final boolean foundLongEnough;
+	private final boolean notTooLong;
+
+	PasswordResult(String errorMessage, int indexOfError, boolean foundUpperCase,
+			boolean foundLowerCase, boolean foundNumericDigit, boolean foundSpecialChar,
+			boolean foundLongEnough, boolean notTooLong) {
+		super(errorMessage, indexOfError);
+		this.foundUpperCase = foundUpperCase;
+		this.foundLowerCase = foundLowerCase;
+		this.foundNumericDigit = foundNumericDigit;
+		this.foundSpecialChar = foundSpecialChar;
+		this.foundLongEnough = foundLongEnough;
+		this.notTooLong = notTooLong;
+	}
+
+	/** @return true if the password has an upper case letter */
+	public boolean isFoundUpperCase() {
+		return foundUpperCase;
+	}
+
+	/** @return true if the password has a lower case letter */
+	public boolean isFoundLowerCase() {
+		return foundLowerCase;
+	}
+
+	/** @return true if the password has a numeric digit */
+	public boolean isFoundNumericDigit() {
+		return foundNumericDigit;
+	}
+
+	/** @return true if the password has a special character */
+	public boolean isFoundSpecialChar() {
+		return foundSpecialChar;
+	}
+
+	/** @return true if the password has at least the minimum number of characters */
+	public boolean isFoundLongEnough() {
+		return foundLongEnough;
+	}
+
+	/** @return true if the password has no more than the maximum number of characters */
+	public boolean isNotTooLong() {
+		return notTooLong;
+	}
+}
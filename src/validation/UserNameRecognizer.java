@@ -0,0 +1,98 @@
+package validation;
+
+/*******
+ * <p> Title: UserNameRecognizer Class. </p>
+ *
+ * <p> Description: The UserName Finite State Machine as a precompiled transition table.  Each
+ * character is mapped to a character class, and NEXT[state][class] gives the next state or
+ * HALT.  The tables are built once and never change and all of the machine's state lives in
+ * local variables, so check may be called from any number of threads at once and nothing is
+ * printed.</p>
+ *
+ * <p> A UserName starts with a letter, continues with letters and digits, may contain '.',
+ * '-' or '_' each followed by a letter or digit, and is 4 to 16 characters long.  The error
+ * messages are the ones the FSM-translated recognizer by Lynn Robert Carter produced.</p>
+ *
+ */
+public final class UserNameRecognizer {
+
+	/** The fewest characters a UserName may have. */
+	public static final int MIN_LENGTH = 4;
+
+	/** The most characters a UserName may have. */
+	public static final int MAX_LENGTH = 16;
+
+	// Character classes
+	private static final int LETTER = 0;
+	private static final int DIGIT = 1;
+	private static final int SEPARATOR = 2;
+	private static final int OTHER = 3;
+
+	private static final int HALT = -1;
+
+	// The class of every ASCII character; anything else is OTHER
+	private static final byte[] CLASS_OF = new byte[128];
+	static {
+		for (int c = 0; c < CLASS_OF.length; c++) {
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) CLASS_OF[c] = LETTER;
+			else if (c >= '0' && c <= '9') CLASS_OF[c] = DIGIT;
+			else if (c == '.' || c == '-' || c == '_') CLASS_OF[c] = SEPARATOR;
+			else CLASS_OF[c] = OTHER;
+		}
+	}
+
+	// NEXT[state][class].  State 1 is the only final state.
+	private static final int[][] NEXT = {
+		//	LETTER	DIGIT	SEPARATOR	OTHER
+		{	1,		HALT,	HALT,		HALT },		// 0: the first character must be a letter
+		{	1,		1,		2,			HALT },		// 1: within the name
+		{	1,		1,		HALT,		HALT },		// 2: just after a separator
+	};
+
+	private UserNameRecognizer() {
+	}
+
+	/*******
+	 * <p> Method: ValidationResult check(String input) </p>
+	 *
+	 * <p> Description: Run the machine over the input.  It stops at the first character with no
+	 * transition, or once the input is known to be too long.</p>
+	 *
+	 * @param input the UserName to check
+	 *
+	 * @return the result; its message is empty if the UserName is valid
+	 */
+	public static ValidationResult check(String input) {
+		if (input == null || input.isEmpty()) {
+			return new ValidationResult("\n*** ERROR *** The input is empty", 0);
+		}
+
+		int state = 0;
+		int ndx = 0;
+		int length = input.length();
+		// One character past the maximum is enough to know that the name is too long
+		while (ndx < length && ndx <= MAX_LENGTH) {
+			char c = input.charAt(ndx);
+			int next = NEXT[state][(c < CLASS_OF.length) ? CLASS_OF[c] : OTHER];
+			if (next == HALT) break;
+			state = next;
+			ndx++;
+		}
+
+		String error;
+		if (state == 0) {
+			error = "A UserName must start with A-Z, a-z.\n";
+		} else if (ndx > MAX_LENGTH) {
+			error = "A UserName must have no more than 16 characters.\n";
+		} else if (state == 2) {
+			error = "A UserName cannot end with '-', '_', or '.'.\n";
+		} else if (ndx < MIN_LENGTH) {
+			error = "A UserName must have at least 4 characters.\n";
+		} else if (ndx < length) {
+			error = "A UserName character may only contain the characters A-Z, a-z, 0-9, '-', '_', or '.'.\n";
+		} else {
+			return new ValidationResult("", -1);
+		}
+		return new ValidationResult("\n*** ERROR *** " + error, ndx);
+	}
+}
@@ -0,0 +1,41 @@
+package validation;
+
+/*******
+ * <p> Title: ValidationResult Class. </p>
+ *
+ * <p> Description: What a recognizer found in one input: an error message that is empty when
+ * the input is valid, and the index of the character where the error was found.  Results are
+ * immutable, so a recognizer can be called from any number of threads at once.</p>
+ *
+ */
+public class ValidationResult {
+
+	private final String errorMessage;
+	private final int indexOfError;
+
+	/*******
+	 * <p> Method: ValidationResult(String errorMessage, int indexOfError) </p>
+	 *
+	 * @param errorMessage the message for the user, or "" if the input is valid
+	 * @param indexOfError where in the input the error was found, or -1 if it is valid
+	 */
+	public ValidationResult(String errorMessage, int indexOfError) {
+		this.errorMessage = errorMessage;
+		this.indexOfError = indexOfError;
+	}
+
+	/** @return true if the input is valid */
+	public boolean isValid() {
+		return errorMessage.isEmpty();
+	}
+
+	/** @return the message for the user, or "" if the input is valid */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/** @return where in the input the error was found, or -1 if the input is valid */
+	public int getIndexOfError() {
+		return indexOfError;
+	}
+}